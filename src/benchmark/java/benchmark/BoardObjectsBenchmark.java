@@ -0,0 +1,71 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import board.PageUrlFactory;
+import filter.FilterItem;
+import filter.FilterState;
+
+/**
+ * Small allocations made for every board and thread that is processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardObjectsBenchmark {
+	@Param({"10", "15"})
+	int pages;
+	
+	URL boardUrl;
+	URL threadUrl;
+	
+	@Setup
+	public void setUp() throws Exception {
+		boardUrl = new URL("http://boards.4chan.org/a/");
+		threadUrl = new URL("http://boards.4chan.org/a/res/57867301");
+	}
+	
+	@Benchmark
+	public ArrayList<URL> makePages() {
+		return PageUrlFactory.makePages(boardUrl, pages);
+	}
+	
+	@Benchmark
+	public FilterItem createFilterItem() {
+		return new FilterItem(threadUrl, "a", "post content, foo", FilterState.PENDING);
+	}
+}
@@ -0,0 +1,241 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import io.AidDAO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfiguration;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import com.github.dozedoff.commonj.io.BoneConnectionPool;
+import com.github.dozedoff.commonj.io.ConnectionPool;
+
+import config.DefaultMySQLconnection;
+import filter.FilterState;
+
+/**
+ * Measures the {@link AidDAO} calls on the download path against an embedded MariaDB
+ * that is seeded with synthetic rows. Every table is filled with the given number of rows,
+ * seeding a few million rows takes a while, so the trial setup is slow.
+ * See {@link DaoConcurrentBenchmark} for the same calls with several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+	private static final String CACHE_PREFIX = "http://i.4cdn.org/a/src/";
+	private static final String THREAD_PREFIX = "http://boards.4chan.org/a/res/";
+	private static final int DIRECTORIES = 1000;
+	/** Every n-th cache entry is older than the prune cut off. */
+	private static final int STALE_RATIO = 10;
+	private static final int PRUNE_BATCH = 100;
+	private static final long PRUNE_AGE = TimeUnit.DAYS.toMillis(7);
+	
+	@Param({"100000", "1000000", "4000000"})
+	int rows;
+	
+	private DB db;
+	private ConnectionPool connPool;
+	AidDAO sql;
+	final AtomicLong addCounter = new AtomicLong();
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+		config.setPort(0);
+		DBConfiguration dbConfig = config.build();
+		
+		db = DB.newEmbeddedDB(dbConfig);
+		db.start();
+		db.source("make.database.sql");
+		
+		connPool = new BoneConnectionPool(new DefaultMySQLconnection("127.0.0.1", dbConfig.getPort(), "aid", "root", ""), 16);
+		connPool.startPool();
+		seed();
+		
+		sql = new AidDAO(connPool);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if(connPool != null){
+			connPool.stopPool();
+		}
+		
+		if(db != null){
+			db.stop();
+		}
+	}
+	
+	/**
+	 * Put the cache entries deleted by {@link #pruneCache()} back, so every iteration starts with the same amount of stale entries.
+	 */
+	@Setup(Level.Iteration)
+	public void restoreStaleCache() throws SQLException {
+		execute("INSERT IGNORE INTO cache (id, timestamp) SELECT CONCAT('" + CACHE_PREFIX + "', n, '.jpg'), NOW() - INTERVAL 30 DAY FROM bench_seq WHERE n % " + STALE_RATIO + " = 0");
+	}
+	
+	private void seed() throws SQLException {
+		execute("CREATE TABLE bench_seq (n INT UNSIGNED NOT NULL PRIMARY KEY) ENGINE=MyISAM");
+		execute("INSERT INTO bench_seq VALUES (0)");
+		
+		// double the sequence until it covers all rows
+		for(long count = 1; count < rows; count *= 2){
+			execute("INSERT INTO bench_seq SELECT n + " + count + " FROM bench_seq WHERE n + " + count + " < " + rows);
+		}
+		
+		execute("INSERT INTO dirlist (id, dirpath) SELECT n + 1, CONCAT('bench/dir', n) FROM bench_seq WHERE n < " + DIRECTORIES);
+		execute("INSERT INTO filelist (id, filename) SELECT n + 1, CONCAT(n, '.jpg') FROM bench_seq");
+		execute("INSERT INTO fileindex (id, size, dir, filename, location) SELECT UNHEX(SHA2(CONCAT('i', n), 256)), 1000 + n, 1 + n % " + DIRECTORIES + ", n + 1, 1 FROM bench_seq");
+		execute("INSERT INTO dnw (id) SELECT UNHEX(SHA2(CONCAT('d', n), 256)) FROM bench_seq");
+		execute("INSERT INTO filter (id, board, reason, status) SELECT CONCAT('" + THREAD_PREFIX + "', n), 'a', 'benchmark', n % 3 FROM bench_seq");
+		execute("INSERT INTO cache (id, timestamp) SELECT CONCAT('" + CACHE_PREFIX + "', n, '.jpg'), IF(n % " + STALE_RATIO + " = 0, NOW() - INTERVAL 30 DAY, NOW()) FROM bench_seq");
+	}
+	
+	private void execute(String statement) throws SQLException {
+		try (Connection cn = connPool.getConnection(); Statement stmt = cn.createStatement()) {
+			stmt.execute(statement);
+		}
+	}
+	
+	/**
+	 * Pre-computed keys per thread, so hashing does not show up in the measurement.
+	 * The keys are created on first use, as they depend on the number of rows of the benchmark state.
+	 */
+	@State(Scope.Thread)
+	public static class Keys {
+		private static final int KEY_COUNT = 4096;
+		private static final int MASK = KEY_COUNT - 1;
+		
+		String[] cached = new String[KEY_COUNT];
+		String[] uncached = new String[KEY_COUNT];
+		String[] indexed = new String[KEY_COUNT];
+		String[] notIndexed = new String[KEY_COUNT];
+		String[] dnw = new String[KEY_COUNT];
+		String[] threads = new String[KEY_COUNT];
+		int next = -1;
+		
+		private void create(int rows) throws Exception {
+			Random random = new Random(Thread.currentThread().getId());
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			
+			for(int i = 0; i < KEY_COUNT; i++){
+				int n = random.nextInt(rows);
+				
+				cached[i] = CACHE_PREFIX + n + ".jpg";
+				uncached[i] = CACHE_PREFIX + (rows + n) + ".jpg";
+				indexed[i] = hash(md, "i" + n);
+				notIndexed[i] = hash(md, "i" + (rows + n));
+				dnw[i] = hash(md, "d" + n);
+				threads[i] = THREAD_PREFIX + n;
+			}
+		}
+		
+		int next(DaoBenchmark benchmark) throws Exception {
+			if(next < 0){
+				create(benchmark.rows);
+				next = 0;
+			}
+			
+			return next++ & MASK;
+		}
+	}
+	
+	static String hash(MessageDigest md, String value) {
+		return DatatypeConverter.printHexBinary(md.digest(value.getBytes(StandardCharsets.US_ASCII)));
+	}
+	
+	@Benchmark
+	public boolean isCachedHit(Keys keys) throws Exception {
+		return sql.isCached(keys.cached[keys.next(this)]);
+	}
+	
+	@Benchmark
+	public boolean isCachedMiss(Keys keys) throws Exception {
+		return sql.isCached(keys.uncached[keys.next(this)]);
+	}
+	
+	@Benchmark
+	public boolean isHashedHit(Keys keys) throws Exception {
+		return sql.isHashed(keys.indexed[keys.next(this)]);
+	}
+	
+	@Benchmark
+	public boolean isHashedMiss(Keys keys) throws Exception {
+		return sql.isHashed(keys.notIndexed[keys.next(this)]);
+	}
+	
+	@Benchmark
+	public boolean isDnw(Keys keys) throws Exception {
+		return sql.isDnw(keys.dnw[keys.next(this)]);
+	}
+	
+	@Benchmark
+	public FilterState getFilterState(Keys keys) throws Exception {
+		return sql.getFilterState(keys.threads[keys.next(this)]);
+	}
+	
+	/**
+	 * Adds a new file, including a new filename entry, like a completed download does.
+	 */
+	@Benchmark
+	public boolean addIndex() throws Exception {
+		long id = addCounter.incrementAndGet();
+		String hash = hash(MessageDigest.getInstance("SHA-256"), "new" + id);
+		
+		return sql.addIndex(hash, "bench/new/" + id + ".jpg", id, "UNKNOWN");
+	}
+	
+	/**
+	 * Deletes one batch of stale entries. Once the stale entries of an iteration are used up,
+	 * this measures the lookup on the timestamp index only.
+	 */
+	@Benchmark
+	public int pruneCache() {
+		return sql.pruneCache(System.currentTimeMillis() - PRUNE_AGE, PRUNE_BATCH);
+	}
+}
@@ -0,0 +1,28 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Runs the {@link DaoBenchmark} calls with several threads sharing the connection pool,
+ * as the image loader and page loader threads do.
+ */
+@Threads(8)
+public class DaoConcurrentBenchmark extends DaoBenchmark {
+}
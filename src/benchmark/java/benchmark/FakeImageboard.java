@@ -0,0 +1,324 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Local imageboard that serves generated boards, threads, thumbnails and images
+ * in the layout {@link board.FourChanStrategy} parses.<br/>
+ * Threads are replaced at a fixed interval to simulate churn, and every response can
+ * be delayed to simulate a slow site. Content is derived from the thread and post numbers,
+ * so the same URL always returns the same data.
+ * <p>
+ * Options (key=value):
+ * <ul>
+ * <li>port - port to listen on</li>
+ * <li>boards - comma separated board shortcuts</li>
+ * <li>pages, threadsPerPage, postsPerThread - size of each board</li>
+ * <li>imageRatio - fraction of posts with an image</li>
+ * <li>churn - fraction of threads replaced every churnInterval seconds</li>
+ * <li>latency, jitter - delay of every response in milliseconds</li>
+ * <li>sizes - image size distribution, see {@link SizeDistribution}</li>
+ * </ul>
+ * </p>
+ */
+public class FakeImageboard {
+	private static final Pattern BOARD_PAGE = Pattern.compile("^/(\\w+)/(\\d*)$");
+	private static final Pattern THREAD = Pattern.compile("^/(\\w+)/res/(\\d+)$");
+	private static final Pattern IMAGE = Pattern.compile("^/images/(\\w+)/src/(\\d+)\\.jpg$");
+	private static final Pattern THUMB = Pattern.compile("^/thumbs/(\\w+)/thumb/(\\d+)s\\.jpg$");
+	private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "image", "thread", "board", "picture", "nice"};
+	private static final int POST_ID_FACTOR = 1000;
+	private static final int THUMB_SIZE = 4 * 1024;
+	
+	private final int port;
+	private final int pages, threadsPerPage, postsPerThread;
+	private final double imageRatio, churn;
+	private final int churnInterval, latency, jitter;
+	private final SizeDistribution sizes;
+	private final Map<String, LinkedList<Long>> boards = new LinkedHashMap<>();
+	private final Random random = new Random();
+	private long nextThreadId = 1000;
+	
+	private Server server;
+	private Timer churnTimer;
+	
+	public FakeImageboard(Map<String, String> options) {
+		port = Integer.parseInt(option(options, "port", "8090"));
+		pages = Integer.parseInt(option(options, "pages", "10"));
+		threadsPerPage = Integer.parseInt(option(options, "threadsPerPage", "15"));
+		postsPerThread = Integer.parseInt(option(options, "postsPerThread", "20"));
+		imageRatio = Double.parseDouble(option(options, "imageRatio", "0.5"));
+		churn = Double.parseDouble(option(options, "churn", "0.1"));
+		churnInterval = Integer.parseInt(option(options, "churnInterval", "60"));
+		latency = Integer.parseInt(option(options, "latency", "0"));
+		jitter = Integer.parseInt(option(options, "jitter", "0"));
+		sizes = SizeDistribution.parse(option(options, "sizes", "lognormal:150000:1.0"));
+		
+		for(String board : option(options, "boards", "a,b").split(",")){
+			LinkedList<Long> threads = new LinkedList<>();
+			
+			for(int i = 0; i < pages * threadsPerPage; i++){
+				threads.add(nextThreadId++);
+			}
+			
+			boards.put(board, threads);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		FakeImageboard imageboard = new FakeImageboard(options);
+		imageboard.start();
+		System.out.println("Fake imageboard running on " + imageboard.getBaseUrl());
+		imageboard.server.join();
+	}
+	
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		
+		for(String arg : args){
+			String[] pair = arg.split("=", 2);
+			
+			if(pair.length != 2){
+				throw new IllegalArgumentException("Invalid option " + arg + ", expected key=value");
+			}
+			
+			options.put(pair[0], pair[1]);
+		}
+		
+		return options;
+	}
+	
+	static String option(Map<String, String> options, String key, String defaultValue) {
+		return options.containsKey(key) ? options.get(key) : defaultValue;
+	}
+	
+	public String getBaseUrl() {
+		return "http://localhost:" + port + "/";
+	}
+	
+	public void start() throws Exception {
+		server = new Server(port);
+		server.setHandler(new ImageboardHandler());
+		server.start();
+		
+		if(churnInterval > 0 && churn > 0){
+			churnTimer = new Timer("Imageboard churn", true);
+			churnTimer.schedule(new ChurnTask(), churnInterval * 1000L, churnInterval * 1000L);
+		}
+	}
+	
+	public void stop() throws Exception {
+		if(churnTimer != null){
+			churnTimer.cancel();
+		}
+		
+		server.stop();
+	}
+	
+	/**
+	 * New threads are added to the front, the oldest threads fall off the last page.
+	 */
+	synchronized void churn() {
+		int replaced = (int)Math.ceil(pages * threadsPerPage * churn);
+		
+		for(LinkedList<Long> threads : boards.values()){
+			for(int i = 0; i < replaced; i++){
+				threads.removeLast();
+				threads.addFirst(nextThreadId++);
+			}
+		}
+	}
+	
+	synchronized List<Long> threadsOnPage(String board, int page) {
+		LinkedList<Long> threads = boards.get(board);
+		int from = Math.min(page * threadsPerPage, threads.size());
+		int to = Math.min(from + threadsPerPage, threads.size());
+		
+		return new ArrayList<>(threads.subList(from, to));
+	}
+	
+	synchronized boolean isLive(String board, long thread) {
+		return boards.containsKey(board) && boards.get(board).contains(thread);
+	}
+	
+	String mainPage() {
+		StringBuilder sb = new StringBuilder("<html><head><title>Fake imageboard</title></head><body><div class=\"column\">");
+		
+		for(String board : boards.keySet()){
+			sb.append("<a class=\"boardlink\" href=\"//localhost:").append(port).append("/").append(board)
+				.append("/\" title=\"Board ").append(board).append("\">/").append(board).append("/</a>");
+		}
+		
+		return sb.append("</div></body></html>").toString();
+	}
+	
+	String boardPage(String board, int page) {
+		StringBuilder sb = new StringBuilder("<html><head><title>/").append(board).append("/</title></head><body>");
+		sb.append("<form id=\"delform\"><div class=\"board\">");
+		
+		for(long thread : threadsOnPage(board, page)){
+			sb.append("<div class=\"thread\" id=\"t").append(thread).append("\"><div class=\"post op\">");
+			sb.append("<blockquote class=\"postMessage\">").append(comment(thread)).append("</blockquote>");
+			sb.append("<a href=\"res/").append(thread).append("\" class=\"replylink\">Reply</a></div></div>");
+		}
+		
+		sb.append("</div></form><div class=\"prev\"></div><div class=\"pages\">");
+		
+		for(int i = 0; i < pages; i++){
+			sb.append("[<a href=\"").append(i == 0 ? "./" : String.valueOf(i + 1)).append("\">").append(i + 1).append("</a>] ");
+		}
+		
+		return sb.append("</div></body></html>").toString();
+	}
+	
+	String threadPage(String board, long thread) {
+		Random postRandom = new Random(thread);
+		String host = "//localhost:" + port;
+		StringBuilder sb = new StringBuilder("<html><head><title>/").append(board).append("/ - ").append(thread).append("</title></head><body>");
+		sb.append("<form id=\"delform\"><div class=\"board\"><div class=\"thread\" id=\"t").append(thread).append("\">");
+		
+		for(int i = 0; i < postsPerThread; i++){
+			long post = thread * POST_ID_FACTOR + i;
+			sb.append("<div class=\"postContainer\"><div class=\"post reply\" id=\"p").append(post).append("\">");
+			
+			if(postRandom.nextDouble() < imageRatio){
+				String image = host + "/images/" + board + "/src/" + post + ".jpg";
+				String thumb = host + "/thumbs/" + board + "/thumb/" + post + "s.jpg";
+				
+				sb.append("<div class=\"file\"><div class=\"fileInfo\"><span class=\"fileText\">File: <a href=\"").append(image)
+					.append("\" target=\"_blank\">").append(post).append(".jpg</a>-(").append(imageSize(post) / 1024).append(" KB, <span title=\"image_").append(post)
+					.append(".jpg\">image_").append(post).append(".jpg</span>)</span></div>");
+				sb.append("<a class=\"fileThumb\" href=\"").append(image).append("\"><img src=\"").append(thumb).append("\"></a></div>");
+			}
+			
+			sb.append("<blockquote class=\"postMessage\">").append(comment(post)).append("</blockquote></div></div>");
+		}
+		
+		return sb.append("</div></div></form></body></html>").toString();
+	}
+	
+	private String comment(long seed) {
+		Random wordRandom = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		
+		for(int i = 0; i < 5 + wordRandom.nextInt(20); i++){
+			sb.append(WORDS[wordRandom.nextInt(WORDS.length)]).append(" ");
+		}
+		
+		return sb.toString().trim();
+	}
+	
+	byte[] image(long post, int size) {
+		byte[] data = new byte[size];
+		new Random(post).nextBytes(data);
+		
+		return data;
+	}
+	
+	int imageSize(long post) {
+		return sizes.nextSize(new Random(post));
+	}
+	
+	private void delay() {
+		if(latency <= 0 && jitter <= 0){
+			return;
+		}
+		
+		int wait;
+		
+		synchronized (random) {
+			wait = latency + (jitter > 0 ? random.nextInt(jitter) : 0);
+		}
+		
+		try {
+			Thread.sleep(wait);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	class ChurnTask extends TimerTask {
+		@Override
+		public void run() {
+			churn();
+		}
+	}
+	
+	class ImageboardHandler extends AbstractHandler {
+		@Override
+		public void handle(String target, Request baseRequest, HttpServletRequest request,
+				HttpServletResponse response) throws IOException, ServletException {
+			delay();
+			
+			Matcher matcher;
+			
+			if("/".equals(target)){
+				sendHtml(response, mainPage());
+			}else if((matcher = THREAD.matcher(target)).matches() && isLive(matcher.group(1), Long.parseLong(matcher.group(2)))){
+				sendHtml(response, threadPage(matcher.group(1), Long.parseLong(matcher.group(2))));
+			}else if((matcher = BOARD_PAGE.matcher(target)).matches() && boards.containsKey(matcher.group(1))){
+				int page = matcher.group(2).isEmpty() ? 0 : Integer.parseInt(matcher.group(2)) - 1;
+				sendHtml(response, boardPage(matcher.group(1), page));
+			}else if((matcher = IMAGE.matcher(target)).matches()){
+				long post = Long.parseLong(matcher.group(2));
+				sendImage(response, image(post, imageSize(post)));
+			}else if((matcher = THUMB.matcher(target)).matches()){
+				sendImage(response, image(Long.parseLong(matcher.group(2)), THUMB_SIZE));
+			}else{
+				return; // not handled, Jetty answers with 404
+			}
+			
+			baseRequest.setHandled(true);
+		}
+		
+		private void sendHtml(HttpServletResponse response, String html) throws IOException {
+			response.setContentType("text/html; charset=UTF-8");
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.getWriter().write(html);
+		}
+		
+		private void sendImage(HttpServletResponse response, byte[] data) throws IOException {
+			response.setContentType("image/jpeg");
+			response.setContentLength(data.length);
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.getOutputStream().write(data);
+		}
+	}
+}
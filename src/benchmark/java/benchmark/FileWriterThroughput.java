@@ -0,0 +1,232 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import io.FileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import metrics.Histogram;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import com.github.dozedoff.commonj.hash.HashMaker;
+
+/**
+ * Measures how fast the {@link FileWriter} hashes, checks and writes files.<br/>
+ * The index and blacklist are kept in memory by {@link InMemoryFilter}, so only hashing
+ * and disk IO are measured. Point dir at a tmpfs to take the disk out of the measurement.
+ * Files are added as fast as possible, so the buffer can grow to the size of all files
+ * and the heap may need to be increased for large runs.
+ * <p>
+ * Options are given as key=value, for example:<br/>
+ * <code>java -cp target/benchmarks.jar benchmark.FileWriterThroughput dir=/dev/shm/aid files=2000 sizes=lognormal:150000:1.0 duplicates=0.2</code>
+ * </p>
+ * <ul>
+ * <li>dir - directory to write to, a new sub-directory is created and removed for each run</li>
+ * <li>files - number of files to add</li>
+ * <li>sizes - file size distribution, see {@link SizeDistribution}</li>
+ * <li>duplicates - fraction of files that repeat an earlier file</li>
+ * <li>blacklisted - fraction of files that are on the blacklist</li>
+ * <li>seed - seed for the random generator</li>
+ * <li>keep - keep the written files</li>
+ * </ul>
+ */
+public class FileWriterThroughput {
+	private static final int SAMPLE_INTERVAL = 1; // in milliseconds
+	private static final int RECENT_FILES = 100; // files remembered for creating duplicates
+	
+	private final Map<String, String> options;
+	private final Random random;
+	private final byte[] noise;
+	private final HashMaker hashMaker = new HashMaker();
+	
+	private volatile boolean sampling;
+	private long highWaterFiles, highWaterBytes;
+	
+	public FileWriterThroughput(Map<String, String> options) {
+		this.options = options;
+		this.random = new Random(Long.parseLong(option("seed", "42")));
+		this.noise = new byte[SizeDistribution.MAX_SIZE];
+		random.nextBytes(noise);
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		
+		for(String arg : args){
+			String[] pair = arg.split("=", 2);
+			
+			if(pair.length != 2){
+				System.err.println("Invalid option " + arg + ", expected key=value");
+				System.exit(1);
+			}
+			
+			options.put(pair[0], pair[1]);
+		}
+		
+		new FileWriterThroughput(options).run();
+		System.exit(0);
+	}
+	
+	private String option(String key, String defaultValue) {
+		return options.containsKey(key) ? options.get(key) : defaultValue;
+	}
+	
+	public void run() throws Exception {
+		int files = Integer.parseInt(option("files", "2000"));
+		double duplicates = Double.parseDouble(option("duplicates", "0.1"));
+		double blacklisted = Double.parseDouble(option("blacklisted", "0.01"));
+		SizeDistribution sizes = SizeDistribution.parse(option("sizes", "lognormal:150000:1.0"));
+		Path runDir = Files.createTempDirectory(Files.createDirectories(new File(option("dir", System.getProperty("java.io.tmpdir"))).toPath()), "aid-bench");
+		
+		InMemoryFilter filter = new InMemoryFilter();
+		FileWriter fileWriter = new FileWriter(filter);
+		Thread sampler = startSampler(fileWriter);
+		
+		List<byte[]> recent = new ArrayList<>();
+		long bytesOffered = 0;
+		long start = System.nanoTime();
+		
+		for(int i = 0; i < files; i++){
+			byte[] data;
+			
+			if(!recent.isEmpty() && random.nextDouble() < duplicates){
+				data = recent.get(random.nextInt(recent.size()));
+			}else{
+				data = createFile(i, sizes.nextSize(random));
+				remember(recent, data);
+				
+				if(random.nextDouble() < blacklisted){
+					filter.blacklist(hashMaker.hash(data));
+				}
+			}
+			
+			fileWriter.add(runDir.resolve("file" + i + ".jpg").toFile(), data);
+			bytesOffered += data.length;
+		}
+		
+		fileWriter.shutdown(); // flushes the remaining buffer
+		long elapsed = System.nanoTime() - start;
+		
+		sampling = false;
+		sampler.join();
+		
+		report(files, bytesOffered, elapsed);
+		
+		if(!Boolean.parseBoolean(option("keep", "false"))){
+			delete(runDir);
+		}
+	}
+	
+	/**
+	 * Files are unique because the index is written into the first bytes.
+	 */
+	private byte[] createFile(int index, int size) {
+		size = Math.min(size, noise.length);
+		byte[] data = new byte[size];
+		int offset = random.nextInt(noise.length - size + 1);
+		System.arraycopy(noise, offset, data, 0, size);
+		
+		for(int i = 0; i < 4 && i < size; i++){
+			data[i] = (byte)(index >>> (i * 8));
+		}
+		
+		return data;
+	}
+	
+	private void remember(List<byte[]> recent, byte[] data) {
+		if(recent.size() < RECENT_FILES){
+			recent.add(data);
+		}else{
+			recent.set(random.nextInt(RECENT_FILES), data);
+		}
+	}
+	
+	private Thread startSampler(final FileWriter fileWriter) {
+		final MetricsRegistry registry = MetricsRegistry.getDefault();
+		sampling = true;
+		
+		Thread sampler = new Thread("Buffer sampler") {
+			@Override
+			public void run() {
+				while(sampling){
+					highWaterFiles = Math.max(highWaterFiles, fileWriter.getPendingWrites());
+					highWaterBytes = Math.max(highWaterBytes, registry.gaugeValue(MetricNames.WRITE_BUFFER_BYTES));
+					
+					try {
+						Thread.sleep(SAMPLE_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		
+		sampler.setDaemon(true);
+		sampler.start();
+		
+		return sampler;
+	}
+	
+	private void report(int files, long bytes, long elapsedNanos) {
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		Map<String, Long> counters = registry.getCounters();
+		double seconds = elapsedNanos / 1000000000.0;
+		double megabytes = bytes / (1024.0 * 1024.0);
+		
+		System.out.println(String.format("Files:      %d in %.2f s, %d saved, %d discarded", files, seconds,
+				counters.get(MetricNames.FILES_SAVED), counters.get(MetricNames.FILES_DISCARDED)));
+		System.out.println(String.format("Throughput: %.1f files/s, %.1f MB/s", files / seconds, megabytes / seconds));
+		System.out.println(String.format("Buffer:     high-water mark %d files, %.1f MB", highWaterFiles, highWaterBytes / (1024.0 * 1024.0)));
+		
+		String[] stages = {MetricNames.FLUSH_TIME, MetricNames.HASH_TIME, MetricNames.WRITE_TIME, MetricNames.ADD_INDEX_TIME};
+		
+		for(String stage : stages){
+			Histogram.Snapshot snapshot = registry.histogram(stage).getSnapshot();
+			System.out.println(String.format("%-20s %s", stage, snapshot));
+		}
+	}
+	
+	static void delete(Path directory) throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
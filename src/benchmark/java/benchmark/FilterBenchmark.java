@@ -0,0 +1,107 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import gui.BlockListDataModel;
+import gui.ElementListModel;
+
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import board.Post;
+import filter.Filter;
+
+/**
+ * Checks posts against filter lists of different sizes.
+ * The clean post has to be compared with every term, which is the common case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+	private static final String TERM_CHARS = "abcdefghijklmnopqrstuvwxyz";
+	
+	@Param({"10", "100", "1000"})
+	int terms;
+	
+	Filter filter;
+	Post cleanPost;
+	Post blockedPost;
+	
+	@Setup
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		ElementListModel<String> fileNameModel = new ElementListModel<>();
+		ElementListModel<String> postContentModel = new ElementListModel<>();
+		
+		for(int i = 0; i < terms; i++){
+			fileNameModel.addElement("zz" + randomTerm(random));
+			postContentModel.addElement("zz" + randomTerm(random));
+		}
+		
+		filter = new Filter(null, new BlockListDataModel(), fileNameModel, postContentModel, null);
+		
+		cleanPost = createPost("1364034471123.jpg", "Not much to see here, just a regular comment with a few words in it.");
+		blockedPost = createPost("1364034471124.jpg", "This comment contains " + postContentModel.lastElement());
+	}
+	
+	private String randomTerm(Random random) {
+		StringBuilder sb = new StringBuilder();
+		
+		for(int i = 0; i < 8; i++){
+			sb.append(TERM_CHARS.charAt(random.nextInt(TERM_CHARS.length())));
+		}
+		
+		return sb.toString();
+	}
+	
+	private Post createPost(String imageName, String comment) throws Exception {
+		Post post = new Post();
+		post.setImageName(imageName);
+		post.setImageUrl(new URL("http://images.4chan.org/a/src/" + imageName));
+		post.setComment(comment);
+		
+		return post;
+	}
+	
+	@Benchmark
+	public String checkCleanPost() {
+		return filter.checkPost(cleanPost);
+	}
+	
+	@Benchmark
+	public String checkBlockedPost() {
+		return filter.checkPost(blockedPost);
+	}
+}
@@ -0,0 +1,102 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import board.FourChanStrategy;
+import board.Post;
+
+/**
+ * Parses the recorded pages used by the FourChanStrategy tests.<br/>
+ * The *FromHtml benchmarks include building the document, as the board workers do for every page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FourChanStrategyBenchmark {
+	private static final String PAGE_BASE_URL = "http://boards.4chan.org/htmlnew";
+	private static final String THREAD_BASE_URL = "http://boards.4chan.org/p/res/57867301";
+	
+	FourChanStrategy strategy;
+	String pageHtml, threadHtml;
+	Document pageDocument, threadDocument;
+	
+	@Setup
+	public void setUp() throws Exception {
+		strategy = new FourChanStrategy();
+		
+		pageHtml = readFixture("HtmlData/pageTestData");
+		threadHtml = readFixture("HtmlData/threadData.html");
+		
+		pageDocument = Jsoup.parse(pageHtml, PAGE_BASE_URL);
+		threadDocument = Jsoup.parse(threadHtml, THREAD_BASE_URL);
+	}
+	
+	private String readFixture(String name) {
+		InputStream is = ClassLoader.getSystemResourceAsStream(name);
+		
+		if(is == null){
+			throw new IllegalStateException("Missing benchmark fixture " + name);
+		}
+		
+		try (Scanner scanner = new Scanner(is, "UTF-8")) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+	
+	@Benchmark
+	public List<URL> parsePage() {
+		return strategy.parsePage(pageDocument);
+	}
+	
+	@Benchmark
+	public List<Post> parseThread() {
+		return strategy.parseThread(threadDocument);
+	}
+	
+	@Benchmark
+	public List<URL> parsePageFromHtml() {
+		return strategy.parsePage(Jsoup.parse(pageHtml, PAGE_BASE_URL));
+	}
+	
+	@Benchmark
+	public List<Post> parseThreadFromHtml() {
+		return strategy.parseThread(Jsoup.parse(threadHtml, THREAD_BASE_URL));
+	}
+}
@@ -0,0 +1,127 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import filter.ConcurrentElementList;
+import filter.Filter;
+import filter.FilterItem;
+import filter.FilterState;
+import io.AidTables;
+
+/**
+ * Filter that keeps the index, blacklist and download cache in memory, so that the
+ * FileWriter and board workers can be measured without a database.
+ * The filter lists are empty, so no thread is ever suspended.
+ */
+public class InMemoryFilter extends Filter {
+	private final Set<String> index = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> blacklist = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> cache = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Map<String, AidTables> md5s = new ConcurrentHashMap<>();
+	private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+	private final Set<String> fingerprinted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Map<String, AtomicInteger> fingerprints = new ConcurrentHashMap<>();
+	
+	public InMemoryFilter() {
+		super(null, new ConcurrentElementList<FilterItem>(), new ConcurrentElementList<String>(), new ConcurrentElementList<String>(), null);
+	}
+	
+	public void blacklist(String hash) {
+		blacklist.add(hash);
+	}
+	
+	@Override
+	public boolean exists(String hash) {
+		return index.contains(hash);
+	}
+	
+	@Override
+	public boolean isBlacklisted(String hash) {
+		return blacklist.contains(hash);
+	}
+	
+	@Override
+	public void addIndex(String hash, String md5, String prefixMd5, String path, long size) {
+		index.add(hash);
+		sizes.put(hash, size);
+		
+		if(md5 != null){
+			md5s.put(md5, AidTables.Fileindex);
+		}
+		
+		addFingerprint(hash, prefixMd5);
+	}
+	
+	@Override
+	public void addFingerprint(String hash, String prefixMd5) {
+		Long size = sizes.get(hash);
+		
+		if(prefixMd5 == null || size == null || ! fingerprinted.add(hash)){
+			return;
+		}
+		
+		String key = size + ":" + prefixMd5;
+		fingerprints.putIfAbsent(key, new AtomicInteger());
+		fingerprints.get(key).incrementAndGet();
+	}
+	
+	@Override
+	public boolean isKnownFingerprint(long size, String prefixMd5) {
+		AtomicInteger count = fingerprints.get(size + ":" + prefixMd5);
+		return count != null && count.get() == 1;
+	}
+	
+	@Override
+	public void addMd5(String hash, String md5) {
+		if(md5 != null && ! md5s.containsKey(md5)){
+			md5s.put(md5, blacklist.contains(hash) ? AidTables.Block : AidTables.Fileindex);
+		}
+	}
+	
+	@Override
+	public AidTables findMd5(String md5) {
+		return md5 == null ? null : md5s.get(md5);
+	}
+	
+	@Override
+	public FilterState getFilterState(URL urlToTest) {
+		return FilterState.UNKNOWN;
+	}
+	
+	@Override
+	public boolean isCached(URL url) {
+		return cache.contains(url.toString());
+	}
+	
+	@Override
+	public void cache(URL url) {
+		cache.add(url.toString());
+	}
+	
+	@Override
+	public void pruneCache() {
+		cache.clear();
+	}
+}
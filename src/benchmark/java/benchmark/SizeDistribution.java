@@ -0,0 +1,76 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * File sizes used by the benchmark harness.<br/>
+ * Parsed from "fixed:SIZE", "uniform:MIN:MAX" or "lognormal:MEDIAN:SIGMA", sizes are in bytes.
+ */
+public abstract class SizeDistribution {
+	static final int MAX_SIZE = 50 * 1024 * 1024;
+	
+	public abstract int nextSize(Random random);
+	
+	public static SizeDistribution parse(String spec) {
+		String[] parts = spec.split(":");
+		
+		switch(parts[0]){
+		case "fixed":
+			return fixed(Integer.parseInt(parts[1]));
+		case "uniform":
+			return uniform(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+		case "lognormal":
+			return logNormal(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+		default:
+			throw new IllegalArgumentException("Unknown size distribution " + spec);
+		}
+	}
+	
+	public static SizeDistribution fixed(final int size) {
+		return new SizeDistribution() {
+			@Override
+			public int nextSize(Random random) {
+				return size;
+			}
+		};
+	}
+	
+	public static SizeDistribution uniform(final int min, final int max) {
+		return new SizeDistribution() {
+			@Override
+			public int nextSize(Random random) {
+				return min + random.nextInt(max - min + 1);
+			}
+		};
+	}
+	
+	/**
+	 * Image sizes on boards are roughly log-normal, with a few very large files.
+	 */
+	public static SizeDistribution logNormal(final int median, final double sigma) {
+		return new SizeDistribution() {
+			@Override
+			public int nextSize(Random random) {
+				double size = median * Math.exp(sigma * random.nextGaussian());
+				return (int)Math.max(1, Math.min(MAX_SIZE, size));
+			}
+		};
+	}
+}
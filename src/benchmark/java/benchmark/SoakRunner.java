@@ -0,0 +1,242 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package benchmark;
+
+import filter.ConcurrentElementList;
+import filter.Filter;
+import filter.FilterItem;
+import io.AidDAO;
+import io.ArchiveResponseCache;
+import io.DownloadQueueLog;
+import io.FileWriter;
+import io.HttpArchive;
+import io.ImageLoader;
+import io.QueryMetrics;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+
+import metrics.Histogram;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import org.jsoup.Jsoup;
+
+import board.Board;
+import board.FourChanStrategy;
+
+import com.github.dozedoff.commonj.io.BoneConnectionPool;
+import com.github.dozedoff.commonj.io.ConnectionPool;
+
+/**
+ * Runs the board workers, {@link ImageLoader} and {@link FileWriter} against a {@link FakeImageboard}
+ * for a fixed time and reports sustained images/s, heap usage and database load.<br/>
+ * The boards are found through the main page of the fake imageboard, like the application does.
+ * <p>
+ * Options (key=value), in addition to the ones of {@link FakeImageboard}:
+ * <ul>
+ * <li>duration - length of the run in seconds</li>
+ * <li>rescan - seconds between board runs</li>
+ * <li>imageThreads - number of download workers</li>
+ * <li>report - seconds between progress reports</li>
+ * <li>dir - directory to save files in, a new sub-directory is created for each run</li>
+ * <li>db - path to a mysql.ini; the schema must exist. Without it the index is kept in memory</li>
+ * <li>dbPoolSize - number of database connections</li>
+ * <li>keep - keep the downloaded files</li>
+ * <li>record - record all responses to this {@link HttpArchive}</li>
+ * <li>replay - serve all responses from this {@link HttpArchive}, the fake imageboard is not started.
+ * Use the same port as for the recording</li>
+ * </ul>
+ * </p>
+ */
+public class SoakRunner {
+	private final Map<String, String> options;
+	private final MetricsRegistry registry = MetricsRegistry.getDefault();
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	
+	private ConnectionPool connPool;
+	private long peakHeap;
+	
+	public SoakRunner(Map<String, String> options) {
+		this.options = options;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		new SoakRunner(FakeImageboard.parseOptions(args)).run();
+		System.exit(0);
+	}
+	
+	private String option(String key, String defaultValue) {
+		return FakeImageboard.option(options, key, defaultValue);
+	}
+	
+	public void run() throws Exception {
+		int duration = Integer.parseInt(option("duration", "600"));
+		int rescan = Integer.parseInt(option("rescan", "60"));
+		int imageThreads = Integer.parseInt(option("imageThreads", "4"));
+		int reportInterval = Integer.parseInt(option("report", "10"));
+		Path baseDir = Files.createDirectories(Paths.get(option("dir", System.getProperty("java.io.tmpdir"))));
+		Path runDir = Files.createTempDirectory(baseDir, "aid-soak");
+		
+		FakeImageboard imageboard = new FakeImageboard(options);
+		ArchiveResponseCache archive = installArchive();
+		boolean replay = archive != null && archive.getMode() == ArchiveResponseCache.Mode.REPLAY;
+		
+		if(! replay){
+			imageboard.start();
+		}
+		
+		Filter filter = createFilter();
+		FileWriter fileWriter = new FileWriter(filter);
+		ImageLoader imageLoader = new ImageLoader(fileWriter, filter, runDir.toFile(), imageThreads, new DownloadQueueLog(runDir.resolve("download.queue")));
+		FourChanStrategy strategy = new FourChanStrategy("http");
+		
+		List<Board> boards = new ArrayList<>();
+		
+		for(URL boardUrl : strategy.findBoards(Jsoup.connect(imageboard.getBaseUrl()).get()).values()){
+			Board board = new Board(boardUrl, strategy.getBoardShortcut(boardUrl), strategy, filter, imageLoader);
+			board.start(0, TimeUnit.SECONDS.toMillis(rescan));
+			boards.add(board);
+		}
+		
+		System.out.println("Soak test with " + boards.size() + " boards for " + duration + " s, saving to " + runDir);
+		
+		long start = System.nanoTime();
+		long lastFiles = 0;
+		long lastBytes = 0;
+		
+		for(int elapsed = reportInterval; elapsed <= duration; elapsed += reportInterval){
+			Thread.sleep(TimeUnit.SECONDS.toMillis(reportInterval));
+			
+			long files = registry.meter(MetricNames.DOWNLOAD_FILES).getCount();
+			long bytes = registry.meter(MetricNames.DOWNLOAD_BYTES).getCount();
+			report(elapsed, (files - lastFiles) / (double)reportInterval, (bytes - lastBytes) / (double)reportInterval);
+			lastFiles = files;
+			lastBytes = bytes;
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		
+		for(Board board : boards){
+			board.stop();
+		}
+		
+		imageLoader.shutdown();
+		fileWriter.shutdown();
+		
+		if(! replay){
+			imageboard.stop();
+		}
+		
+		if(archive != null){
+			archive.uninstall();
+		}
+		
+		summary(seconds);
+		
+		if(connPool != null){
+			connPool.stopPool();
+		}
+		
+		if(!Boolean.parseBoolean(option("keep", "false"))){
+			FileWriterThroughput.delete(runDir);
+		}
+	}
+	
+	private ArchiveResponseCache installArchive() throws Exception {
+		if(option("record", null) != null){
+			return ArchiveResponseCache.install(new HttpArchive(Paths.get(option("record", null))), ArchiveResponseCache.Mode.RECORD);
+		}
+		
+		if(option("replay", null) != null){
+			return ArchiveResponseCache.install(new HttpArchive(Paths.get(option("replay", null))), ArchiveResponseCache.Mode.REPLAY);
+		}
+		
+		return null;
+	}
+	
+	private Filter createFilter() throws Exception {
+		String dbConfig = option("db", null);
+		
+		if(dbConfig == null){
+			return new InMemoryFilter();
+		}
+		
+		Properties dbProperties = new Properties();
+		
+		try (InputStream is = new FileInputStream(dbConfig)) {
+			dbProperties.load(is);
+		}
+		
+		connPool = new BoneConnectionPool(dbProperties, Integer.parseInt(option("dbPoolSize", "10")));
+		connPool.startPool();
+		
+		QueryMetrics queryMetrics = new QueryMetrics(registry, 1000);
+		AidDAO sql = new AidDAO(connPool, queryMetrics);
+		
+		return new Filter(sql, new ConcurrentElementList<FilterItem>(), new ConcurrentElementList<String>(), new ConcurrentElementList<String>(), null);
+	}
+	
+	private void report(int elapsed, double filesPerSecond, double bytesPerSecond) {
+		long heap = memory.getHeapMemoryUsage().getUsed();
+		peakHeap = Math.max(peakHeap, heap);
+		
+		System.out.println(String.format("%5ds %7.1f images/s %7.2f MB/s queue %5d buffer %4d heap %5d MB%s", elapsed, filesPerSecond,
+				bytesPerSecond / (1024 * 1024), registry.gaugeValue(MetricNames.DOWNLOAD_QUEUE), registry.gaugeValue(MetricNames.WRITE_BUFFER),
+				heap / (1024 * 1024), databaseLoad()));
+	}
+	
+	private String databaseLoad() {
+		if(connPool == null){
+			return "";
+		}
+		
+		Histogram.Snapshot queries = registry.histogram(MetricNames.QUERY_TIME).getSnapshot();
+		Histogram.Snapshot poolWait = registry.histogram(MetricNames.POOL_WAIT_TIME).getSnapshot();
+		
+		return String.format(" db %d statements p99 %.1f ms, pool wait p99 %.1f ms", queries.getCount(),
+				queries.get99thPercentile() / 1000.0, poolWait.get99thPercentile() / 1000.0);
+	}
+	
+	private void summary(double seconds) {
+		long files = registry.meter(MetricNames.DOWNLOAD_FILES).getCount();
+		long bytes = registry.meter(MetricNames.DOWNLOAD_BYTES).getCount();
+		
+		System.out.println(String.format("Downloaded %d images (%.1f MB) in %.0f s: %.1f images/s, %.2f MB/s sustained",
+				files, bytes / (1024.0 * 1024.0), seconds, files / seconds, bytes / (1024.0 * 1024.0) / seconds));
+		System.out.println(String.format("Peak heap %d MB%s", peakHeap / (1024 * 1024), databaseLoad()));
+		
+		String[] stages = {MetricNames.LOAD_PAGE_TIME, MetricNames.PARSE_THREAD_TIME, MetricNames.DOWNLOAD_TIME, MetricNames.WRITE_TIME};
+		
+		for(String stage : stages){
+			System.out.println(String.format("%-20s %s", stage, registry.histogram(stage).getSnapshot()));
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import board.FourChanStrategy;
+import board.SiteStrategy;
+import config.DefaultAppSettings;
+import config.DefaultMySQLconnection;
+
+/**
+ * Configuration loading shared by the GUI and the {@link Daemon}.
+ * This class must not use any GUI classes.
+ */
+public class AppConfig {
+	private static final Logger logger = LoggerFactory.getLogger(AppConfig.class);
+	private static final String FOURCHAN_DOMAIN = "4chan.org";
+	
+	/**
+	 * Loads the Application configuration from file.
+	 * If an error occurs whilst loading the configuration, a default config
+	 * is returned.
+	 * @return Property Object containing the configuration.
+	 */
+	public static Properties loadAppConfig(String filepath){
+		Properties appSetting = new DefaultAppSettings();
+		
+		try (InputStream is = new FileInputStream(filepath)) {
+			appSetting.load(is);
+			return appSetting;
+		} catch (IOException ioe) {
+			logger.warn("Error accessing file "+ ioe.getMessage());
+			return new DefaultAppSettings();
+		}
+	}
+	
+	/**
+	 * Load the mySql settings
+	 */
+	public static Properties loadMySqlConfig(String filepath){
+		Properties sqlProps = new DefaultMySQLconnection();
+		
+		try (InputStream is = new FileInputStream(filepath)) {
+			sqlProps.load(is);
+			return sqlProps;
+		} catch (IOException ioe) {
+			logger.warn("Error accessing file "+ ioe.getMessage());
+			return new DefaultMySQLconnection();
+		}
+	}
+	
+	public static SiteStrategy findSiteStrategy(URL boardUrl) {
+		//TODO code me
+		// get strategy list, iterate and test
+		if(boardUrl.getHost().endsWith(FOURCHAN_DOMAIN)){
+			return new FourChanStrategy();
+		}
+		
+		// other hosts, like a local test server, are accessed with the scheme of the base URL
+		return new FourChanStrategy(boardUrl.getProtocol());
+	}
+	
+	/**
+	 * Map the board URLs to their shortcuts, e.g. "a" for /a/.
+	 */
+	public static Map<String, URL> createShortcutMap(SiteStrategy strategy, Map<String, URL> boardMap) {
+		Map<String, URL> shortcutMap = new HashMap<>();
+		
+		for (URL boardUrl : boardMap.values()) {
+			String shortcut = strategy.getBoardShortcut(boardUrl);
+			shortcutMap.put(shortcut, boardUrl);
+		}
+		
+		return shortcutMap;
+	}
+}
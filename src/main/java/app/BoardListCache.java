@@ -0,0 +1,143 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import board.SiteStrategy;
+import io.WebClient;
+
+/**
+ * Keeps the boards found on the main page of a site, so that a restart does not have to wait
+ * for the main page to load. The list is stored per site, a different base URL discards it.
+ */
+public class BoardListCache {
+	private static final Logger logger = LoggerFactory.getLogger(BoardListCache.class);
+	private static final String BASE_URL_KEY = "_base_url";
+	
+	private final Path cacheFile;
+	
+	public BoardListCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+	
+	/**
+	 * Load the cached boards.
+	 * @param baseUrl the site the boards belong to
+	 * @return map of board shortcuts to board URLs, empty if there are no cached boards for the site
+	 */
+	public Map<String, URL> load(URL baseUrl) {
+		Map<String, URL> boards = new HashMap<>();
+		
+		if(! Files.exists(cacheFile)){
+			return boards;
+		}
+		
+		Properties cache = new Properties();
+		
+		try (InputStream is = Files.newInputStream(cacheFile)) {
+			cache.load(is);
+		} catch (IOException e) {
+			logger.warn("Failed to read board list cache {}: {}", cacheFile, e.getMessage());
+			return boards;
+		}
+		
+		if(! baseUrl.toString().equals(cache.getProperty(BASE_URL_KEY))){
+			logger.info("Board list cache {} is for a different site, ignoring it", cacheFile);
+			return boards;
+		}
+		
+		cache.remove(BASE_URL_KEY);
+		
+		for(String shortcut : cache.stringPropertyNames()){
+			try {
+				boards.put(shortcut, new URL(cache.getProperty(shortcut)));
+			} catch (MalformedURLException e) {
+				logger.warn("Invalid URL for board {} in board list cache: {}", shortcut, e.getMessage());
+			}
+		}
+		
+		return boards;
+	}
+	
+	/**
+	 * Load the main page of the site, find the boards on it and cache them.
+	 * @param strategy strategy for the site
+	 * @param baseUrl main page of the site
+	 * @return map of board shortcuts to board URLs, empty if the page could not be loaded
+	 */
+	public Map<String, URL> fetch(SiteStrategy strategy, URL baseUrl) {
+		Document mainpage;
+		
+		try {
+			mainpage = WebClient.getDefault().getPage(baseUrl);
+		} catch (IOException e) {
+			logger.warn("Failed to load page {} with error {}", baseUrl, e);
+			return new HashMap<>();
+		}
+		
+		Map<String, URL> boards = AppConfig.createShortcutMap(strategy, strategy.findBoards(mainpage));
+		
+		if(! boards.isEmpty()){
+			save(baseUrl, boards);
+		}
+		
+		return boards;
+	}
+	
+	/**
+	 * Replace the cached boards. The file is replaced atomically, so a crash does not leave a partial list.
+	 * @param baseUrl the site the boards belong to
+	 * @param boards map of board shortcuts to board URLs
+	 */
+	public void save(URL baseUrl, Map<String, URL> boards) {
+		Properties cache = new Properties();
+		cache.setProperty(BASE_URL_KEY, baseUrl.toString());
+		
+		for(Entry<String, URL> board : boards.entrySet()){
+			cache.setProperty(board.getKey(), board.getValue().toString());
+		}
+		
+		try {
+			Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+			
+			try (OutputStream os = Files.newOutputStream(tempFile)) {
+				cache.store(os, "Boards found on " + baseUrl);
+			}
+			
+			Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Failed to write board list cache {}: {}", cacheFile, e.getMessage());
+		}
+	}
+}
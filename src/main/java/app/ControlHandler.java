@@ -0,0 +1,150 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Status server handler to control the daemon. Requests have to be POSTed with the control token
+ * in the X-Control-Token header, all requests are refused if the token is empty:
+ * <ul>
+ * <li>POST /control/start?board=a - start a board, all boards if no board is given</li>
+ * <li>POST /control/stop?board=a - stop a board, all boards if no board is given</li>
+ * <li>POST /control/clear-queue - clear the image queue</li>
+ * <li>POST /control/prune-cache - prune the download cache</li>
+ * <li>POST /control/shutdown - stop the daemon</li>
+ * </ul>
+ */
+public class ControlHandler extends AbstractHandler {
+	private static final Logger logger = LoggerFactory.getLogger(ControlHandler.class);
+	
+	static final String CONTROL_PREFIX = "/control/";
+	static final String CONTROL_TOKEN_HEADER = "X-Control-Token";
+	
+	private final String controlToken;
+	private final Control control;
+	
+	/**
+	 * The actions that can be requested.
+	 */
+	public interface Control {
+		/**
+		 * @param board shortcut of the board, null for all
+		 * @return true if a board was started
+		 */
+		boolean start(String board);
+		
+		/**
+		 * @param board shortcut of the board, null for all
+		 * @return true if a board was stopped
+		 */
+		boolean stop(String board);
+		
+		void clearQueue();
+		
+		void pruneCache();
+		
+		void shutdown();
+	}
+	
+	/**
+	 * @param controlToken token the requests must send, empty to refuse all requests
+	 * @param control carries out the requests
+	 */
+	public ControlHandler(String controlToken, Control control) {
+		this.controlToken = controlToken;
+		this.control = control;
+	}
+	
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request,
+			HttpServletResponse response) throws IOException, ServletException {
+		if(! target.startsWith(CONTROL_PREFIX)){
+			return;
+		}
+		
+		baseRequest.setHandled(true);
+		
+		if(! "POST".equals(request.getMethod())){
+			response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+			return;
+		}
+		
+		if(! isAuthorized(request)){
+			logger.warn("Refused control request {} from {}", target, request.getRemoteAddr());
+			response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		
+		String board = request.getParameter("board");
+		boolean done;
+		
+		switch(target.substring(CONTROL_PREFIX.length())){
+		case "start":
+			done = control.start(board);
+			break;
+		case "stop":
+			done = control.stop(board);
+			break;
+		case "clear-queue":
+			control.clearQueue();
+			done = true;
+			break;
+		case "prune-cache":
+			control.pruneCache();
+			done = true;
+			break;
+		case "shutdown":
+			logger.info("Shutdown requested via status server");
+			control.shutdown();
+			done = true;
+			break;
+		default:
+			done = false;
+		}
+		
+		response.setStatus(done ? HttpServletResponse.SC_OK : HttpServletResponse.SC_NOT_FOUND);
+		response.setContentType("application/json");
+		response.getWriter().write("{\"ok\":" + done + "}");
+	}
+	
+	/**
+	 * The token is sent in a custom header, so a browser has to send a preflight request first, which the server does not answer.
+	 * A web page can therefore neither send nor guess it with a simple form POST.
+	 */
+	private boolean isAuthorized(HttpServletRequest request) {
+		String token = request.getHeader(CONTROL_TOKEN_HEADER);
+		
+		if(controlToken.isEmpty() || token == null){
+			return false;
+		}
+		
+		return MessageDigest.isEqual(controlToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,229 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.io.File;
+import java.util.Properties;
+
+import metrics.MetricsRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import board.Board;
+
+import config.AppSetting;
+import filter.ConcurrentElementList;
+import filter.FilterItem;
+
+/**
+ * Runs the crawler without a GUI, no Swing or AWT classes are used.<br/>
+ * Settings are read from the same config.ini and mysql.ini as the GUI, default_directory
+ * must be set. All boards in preferredBoards are started, with a delay between them.
+ * The daemon is controlled through the status server, see {@link ControlHandler}. Like in the GUI,
+ * the status server only runs if status_server is set, without it the daemon can only be stopped with a signal.
+ */
+public class Daemon {
+	private static final Logger logger = LoggerFactory.getLogger(Daemon.class);
+	
+	private static final String MYSQL_CFG_FILENAME = "mysql.ini";
+	private static final String APP_CFG_FILENAME = "config.ini";
+	private static final int STARTUP_DELAY = 7; // delay between board starts, in minutes
+	
+	private final String PWD = System.getProperty("user.dir");
+	
+	private Properties appSettings;
+	private Engine engine;
+	private StatusServer statusServer;
+	private final ConcurrentElementList<Board> boards = new ConcurrentElementList<>();
+	
+	public static void main(String[] args) {
+		// fail instead of opening a display if a GUI class is used by accident
+		System.setProperty("java.awt.headless", "true");
+		new Daemon().init();
+	}
+	
+	private void init() {
+		Runtime.getRuntime().addShutdownHook(new Shutdown());
+		
+		// so java will not be appended to http user-agent field
+		System.setProperty("http.agent", "");
+		
+		logger.info("Working directory is: " + PWD);
+		
+		build();
+		
+		engine.startServices();
+		
+		if(statusServer != null){
+			try {
+				statusServer.start();
+			} catch (Exception e) {
+				die("Unable to start status server: " + e.getMessage(), 10);
+			}
+		}
+		
+		startBoards(null);
+		logger.info("Daemon startup complete, {} boards", boards.size());
+	}
+	
+	private void build() {
+		appSettings = AppConfig.loadAppConfig(APP_CFG_FILENAME);
+		
+		if(! SettingValidator.validateAppSettings(appSettings)){
+			die("One or more program settings in " + APP_CFG_FILENAME + " are invalid.", 1);
+		}
+		
+		String saveDirectory = appSettings.getProperty("default_directory");
+		
+		if(saveDirectory == null || saveDirectory.isEmpty()){
+			die("default_directory must be set in " + APP_CFG_FILENAME + " to run as daemon.", 2);
+		}
+		
+		File basePath = new File(saveDirectory);
+		
+		if(! basePath.exists()){
+			die(saveDirectory + " is an invalid save location.", 3);
+		}
+		
+		engine = new Engine(appSettings, AppConfig.loadMySqlConfig(MYSQL_CFG_FILENAME), basePath);
+		
+		try {
+			engine.start();
+			engine.build(new ConcurrentElementList<FilterItem>(), new ConcurrentElementList<String>(), new ConcurrentElementList<String>(), boards);
+		} catch (StartupException e) {
+			die(e.getMessage(), e.getErrorCode());
+		}
+		
+		if(Boolean.parseBoolean(appSettings.getProperty(AppSetting.status_server.toString()))){
+			startStatusServer();
+		}else{
+			logger.warn("status_server is off in {}, the daemon can only be stopped with a signal", APP_CFG_FILENAME);
+		}
+	}
+	
+	private void startStatusServer() {
+		int statusPort = Integer.parseInt(appSettings.getProperty(AppSetting.status_port.toString()));
+		String controlToken = appSettings.getProperty(AppSetting.control_token.toString());
+		
+		if(controlToken.isEmpty()){
+			logger.warn("No control_token is set in {}, the /control endpoints are disabled", APP_CFG_FILENAME);
+		}
+		
+		statusServer = new StatusServer(statusPort, boards, MetricsRegistry.getDefault());
+		statusServer.addHandler(new ControlHandler(controlToken, new ControlHandler.Control() {
+			@Override
+			public boolean start(String board) {
+				return startBoards(board);
+			}
+			
+			@Override
+			public boolean stop(String board) {
+				return stopBoards(board);
+			}
+			
+			@Override
+			public void clearQueue() {
+				engine.getImageLoader().clearQueue();
+			}
+			
+			@Override
+			public void pruneCache() {
+				engine.getFilter().pruneCache();
+			}
+			
+			@Override
+			public void shutdown() {
+				// exit from a different thread, the shutdown hook stops the status server
+				new Thread("Daemon shutdown") {
+					@Override
+					public void run() {
+						System.exit(0);
+					}
+				}.start();
+			}
+		}));
+	}
+	
+	private void die(String message, int errorCode) {
+		logger.error(message);
+		System.exit(errorCode);
+	}
+	
+	/**
+	 * Start the board, or all boards with a delay between them.
+	 * @param shortcut board to start, null for all
+	 * @return true if a board was started
+	 */
+	boolean startBoards(String shortcut) {
+		int delay = 0;
+		boolean started = false;
+		
+		for(Object o : boards.toArray()){
+			Board board = (Board)o;
+			
+			if(shortcut == null){
+				board.start(delay);
+				delay += STARTUP_DELAY;
+				started = true;
+			}else if(board.toString().equals("/" + shortcut + "/")){
+				board.start();
+				started = true;
+			}
+		}
+		
+		return started;
+	}
+	
+	/**
+	 * Stop the board, or all boards.
+	 * @param shortcut board to stop, null for all
+	 * @return true if a board was stopped
+	 */
+	boolean stopBoards(String shortcut) {
+		boolean stopped = false;
+		
+		for(Object o : boards.toArray()){
+			Board board = (Board)o;
+			
+			if(shortcut == null || board.toString().equals("/" + shortcut + "/")){
+				board.stop();
+				stopped = true;
+			}
+		}
+		
+		return stopped;
+	}
+	
+	class Shutdown extends Thread {
+		@Override
+		public void run() {
+			logger.info("Shutting down...");
+			
+			if(statusServer != null){
+				statusServer.stop();
+			}
+			
+			if(engine != null){
+				engine.shutdown();
+			}
+			
+			logger.info("Shutdown complete");
+		}
+	}
+}
@@ -0,0 +1,397 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import io.AidDAO;
+import io.ArchiveResponseCache;
+import io.AsyncDownloadEngine;
+import io.CachePrune;
+import io.DownloadQueueLog;
+import io.FileWriter;
+import io.HostRateLimiter;
+import io.HttpArchive;
+import io.ImageLoader;
+import io.QueryMetrics;
+import io.SchemaUpdater;
+import io.TableCompactor;
+import io.ThumbnailLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import metrics.Gauge;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.MetricsReporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import board.Board;
+import board.SiteStrategy;
+
+import com.github.dozedoff.commonj.io.BoneConnectionPool;
+import com.github.dozedoff.commonj.io.ConnectionPool;
+
+import config.AppSetting;
+import filter.ElementList;
+import filter.Filter;
+import filter.FilterItem;
+
+/**
+ * Builds and stops the crawler, shared by the GUI and the daemon.<br/>
+ * {@link #start()} loads the board list and connects to the database in the background,
+ * so the caller can build its front end in the meantime. {@link #build(ElementList, ElementList, ElementList, ElementList)}
+ * waits for them and creates the filter, the downloads and the boards.
+ */
+public class Engine {
+	private static final Logger logger = LoggerFactory.getLogger(Engine.class);
+	
+	private static final String FILTER_DATA_FILENAME = "filter.dat";
+	private static final String BOARD_CACHE_FILENAME = "boardlist.cache";
+	private static final String DOWNLOAD_QUEUE_FILENAME = "download.queue";
+	
+	// time budgets for the startup steps, in milliseconds
+	private static final long BOARD_LIST_BUDGET = 10*1000;
+	private static final long DATABASE_BUDGET = 10*1000;
+	private static final long SCHEMA_BUDGET = 30*1000;
+	private static final long FILTER_BUDGET = 2*1000;
+	
+	private final Properties appSettings;
+	private final Properties sqlProps;
+	private final File basePath;
+	private final Startup startup = new Startup();
+	private final BoardListCache boardListCache = new BoardListCache(Paths.get(BOARD_CACHE_FILENAME));
+	
+	private URL siteUrl;
+	private SiteStrategy strategy;
+	private Startup.Step<Map<String, URL>> boardListStep;
+	private Startup.Step<AidDAO> databaseStep;
+	private Startup.Step<Void> schemaStep;
+	
+	private ArchiveResponseCache httpArchive;
+	private ConnectionPool connPool;
+	private QueryMetrics queryMetrics;
+	private Filter filter;
+	private FileWriter fileWriter;
+	private ImageLoader imageLoader;
+	private CachePrune cachePrune;
+	private TableCompactor tableCompactor;
+	private MetricsReporter metricsReporter;
+	private ElementList<Board> boards;
+	
+	/**
+	 * @param appSettings validated program settings
+	 * @param sqlProps database connection settings
+	 * @param basePath directory to save files to
+	 */
+	public Engine(Properties appSettings, Properties sqlProps, File basePath) {
+		this.appSettings = appSettings;
+		this.sqlProps = sqlProps;
+		this.basePath = basePath;
+	}
+	
+	/**
+	 * Install the HTTP archive and start loading the board list, the database and the schema update.
+	 * @throws StartupException if the archive or the site URL are invalid
+	 */
+	public void start() throws StartupException {
+		HostRateLimiter.getDefault().setRequestsPerSecond(Integer.parseInt(appSettings.getProperty(AppSetting.host_requests_per_second.toString())));
+		
+		String archiveMode = appSettings.getProperty(AppSetting.http_archive.toString());
+		
+		if(! "off".equalsIgnoreCase(archiveMode)){
+			installHttpArchive(appSettings.getProperty(AppSetting.http_archive_file.toString()), ArchiveResponseCache.Mode.valueOf(archiveMode.toUpperCase()));
+		}
+		
+		String baseUrl = appSettings.getProperty(AppSetting.base_url.toString());
+		
+		try {
+			siteUrl = new URL(baseUrl);
+		} catch (MalformedURLException e) {
+			throw new StartupException("No valid baseUrl was specified: " + baseUrl, 8);
+		}
+		
+		strategy = AppConfig.findSiteStrategy(siteUrl); //TODO change settings to contain list of site URLs
+		
+		boardListStep = startup.submit("board list", BOARD_LIST_BUDGET, new Callable<Map<String, URL>>() {
+			@Override
+			public Map<String, URL> call() {
+				return boardListCache.fetch(strategy, siteUrl);
+			}
+		});
+		
+		final int dbPoolSize = Integer.parseInt(appSettings.getProperty(AppSetting.db_pool_size.toString()));
+		int slowQueryMs = Integer.parseInt(appSettings.getProperty(AppSetting.slow_query_ms.toString()));
+		
+		connPool = new BoneConnectionPool(sqlProps, dbPoolSize); // connection pool for database connections
+		MetricsRegistry.getDefault().register(MetricNames.DB_POOL_SIZE, new Gauge() {
+			@Override
+			public long getValue() {
+				return dbPoolSize;
+			}
+		});
+		queryMetrics = new QueryMetrics(MetricsRegistry.getDefault(), slowQueryMs);
+		
+		databaseStep = startup.submit("database", DATABASE_BUDGET, new Callable<AidDAO>() {
+			@Override
+			public AidDAO call() throws Exception {
+				connPool.startPool();
+				return new AidDAO(connPool, queryMetrics);
+			}
+		});
+		
+		schemaStep = startup.submit("schema update", SCHEMA_BUDGET, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				databaseStep.get();
+				SchemaUpdater.update(new AidDAO(connPool), new InternalSetting());
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Wait for the database and create the filter, the downloads and the boards. Downloads of the last run are resumed.
+	 * @param blockList filter items to review
+	 * @param fileNames filtered file names
+	 * @param postContents filtered post contents
+	 * @param boards the boards in preferredBoards are added to this list
+	 * @throws StartupException if the database could not be opened or updated
+	 */
+	public void build(ElementList<FilterItem> blockList, ElementList<String> fileNames, ElementList<String> postContents, ElementList<Board> boards) throws StartupException {
+		this.boards = boards;
+		AidDAO mySQL;
+		
+		try {
+			mySQL = databaseStep.get();
+		} catch (ExecutionException e) {
+			throw new StartupException("Unable to connect to database: " + e.getCause().getMessage(), 7);
+		}
+		
+		// nothing may use the tables while they are migrated, resumed downloads would be checked and indexed against the old schema
+		try {
+			schemaStep.get();
+		} catch (ExecutionException e) {
+			throw new StartupException("Schema update failed: " + e.getCause().getMessage(), 6);
+		}
+		
+		ThumbnailLoader thumbLoader = new ThumbnailLoader(mySQL);
+		filter = new Filter(mySQL, blockList, fileNames, postContents, thumbLoader);
+		
+		Startup.Step<Boolean> filterStep = startup.submit("filter file", FILTER_BUDGET, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return filter.loadFilter(new File(FILTER_DATA_FILENAME)); // load list of filtered items
+			}
+		});
+		
+		int imageThreads = Integer.parseInt(appSettings.getProperty(AppSetting.image_threads.toString()));
+		
+		fileWriter = new FileWriter(filter); // disk IO
+		fileWriter.setWriteBlocked(Boolean.parseBoolean(appSettings.getProperty(AppSetting.write_blocked.toString())));
+		imageLoader = new ImageLoader(fileWriter, filter, basePath, imageThreads, new DownloadQueueLog(Paths.get(DOWNLOAD_QUEUE_FILENAME)));
+		imageLoader.setStreamThreshold(Long.parseLong(appSettings.getProperty(AppSetting.stream_threshold_kb.toString())) * 1024);
+		imageLoader.setPrefixFingerprints(Boolean.parseBoolean(appSettings.getProperty(AppSetting.prefix_fingerprints.toString())));
+		startAsyncEngine(imageThreads);
+		imageLoader.resume(); // continue with the downloads of the last run
+		logger.info("Saving files to the basePath " + basePath);
+		
+		cachePrune = new CachePrune(mySQL, siteUrl, 15*60, 120*60, 240*60);
+		tableCompactor = new TableCompactor(mySQL, 60*60, 30*60, 7*24*60*60);
+		metricsReporter = new MetricsReporter(MetricsRegistry.getDefault(), 5*60);
+		
+		// boards must not check posts against the filter before its items are loaded
+		try {
+			filterStep.get();
+		} catch (ExecutionException e) {
+			logger.warn("Failed to load the filter file: {}", e.getCause().getMessage());
+		}
+		
+		addBoards(appSettings.getProperty(AppSetting.preferredBoards.toString()).split(","));
+		
+		startup.finish();
+	}
+	
+	private void addBoards(String[] preferredBoards) {
+		// a complete cached board list is used right away, the fetch only updates the cache
+		Map<String, URL> shortcutMap = boardListCache.load(siteUrl);
+		
+		if(shortcutMap.keySet().containsAll(Arrays.asList(preferredBoards))){
+			logger.info("Using cached board list from {}", BOARD_CACHE_FILENAME);
+		}else if(shortcutMap.isEmpty()){
+			try {
+				shortcutMap = boardListStep.get();
+			} catch (ExecutionException e) {
+				logger.warn("Failed to load the board list: {}", e.getCause().getMessage());
+			}
+		}else{
+			shortcutMap = boardListStep.get(shortcutMap);
+		}
+		
+		for(String shortcut : preferredBoards){
+			if(shortcutMap.containsKey(shortcut)){
+				boards.addElement(new Board(shortcutMap.get(shortcut), shortcut, strategy, filter, imageLoader));
+			}else{
+				logger.warn("Board {} was not found on {}", shortcut, siteUrl);
+			}
+		}
+	}
+	
+	/**
+	 * Record all HTTP responses to the archive, or serve them from it.
+	 */
+	private void installHttpArchive(String archiveFile, ArchiveResponseCache.Mode mode) throws StartupException {
+		try {
+			HttpArchive archive = new HttpArchive(Paths.get(archiveFile));
+			
+			if(mode == ArchiveResponseCache.Mode.REPLAY && archive.getUriCount() == 0){
+				throw new StartupException("The HTTP archive " + archiveFile + " contains no responses to replay.", 9);
+			}
+			
+			httpArchive = ArchiveResponseCache.install(archive, mode);
+		} catch (IOException e) {
+			throw new StartupException("Unable to open HTTP archive " + archiveFile + ": " + e.getMessage(), 9);
+		}
+	}
+	
+	/**
+	 * Use the async download engine if it is enabled, the worker threads are used if it fails to start.
+	 * The engine bypasses the HTTP archive, so the worker threads are also used while the archive is active.
+	 */
+	private void startAsyncEngine(int threads) {
+		int connectionsPerHost = Integer.parseInt(appSettings.getProperty(AppSetting.async_connections_per_host.toString()));
+		
+		if(connectionsPerHost > 0 && httpArchive != null){
+			logger.warn("The async download engine does not use the HTTP archive, downloading with the worker threads instead");
+			return;
+		}
+		
+		if(connectionsPerHost > 0){
+			AsyncDownloadEngine asyncEngine = new AsyncDownloadEngine(connectionsPerHost, threads);
+			
+			if(asyncEngine.start()){
+				imageLoader.setAsyncEngine(asyncEngine);
+			}
+		}
+	}
+	
+	/**
+	 * Start the filter updater, cache pruning, table compaction and metrics reporting.
+	 */
+	public void startServices() {
+		filter.startUpdater();
+		cachePrune.start();
+		tableCompactor.start();
+		metricsReporter.start();
+	}
+	
+	/**
+	 * Stop the boards and downloads, then close the archive and the database and save the filter.
+	 * Safe to call if startup failed part way.
+	 */
+	public void shutdown() {
+		// stop boards
+		if(boards != null){
+			logger.info("Stopping all boards...");
+			
+			for(Object o : boards.toArray()){
+				((Board)o).stop();
+			}
+		}
+		
+		// shutdown file downloading
+		if(imageLoader != null){
+			imageLoader.shutdown();
+		}
+		
+		// shutdown writing to disk
+		try {
+			if(fileWriter != null){
+				fileWriter.shutdown();
+				fileWriter.join();
+			}
+		} catch (InterruptedException e) {
+			logger.debug("FileWriter was interrupted");
+		}
+		
+		// stop cache pruning
+		if(cachePrune != null){
+			cachePrune.stop();
+		}
+		
+		// stop table compaction
+		if(tableCompactor != null){
+			tableCompactor.stop();
+		}
+		
+		// log the final metrics
+		if(metricsReporter != null){
+			metricsReporter.stop();
+			metricsReporter.dump();
+		}
+		
+		if(queryMetrics != null){
+			queryMetrics.dump();
+		}
+		
+		// close the HTTP archive, downloads have stopped
+		if(httpArchive != null){
+			httpArchive.uninstall();
+		}
+		
+		// close all DB connections
+		if(connPool != null){
+			connPool.stopPool();
+		}
+		
+		// save the thread filter
+		if(filter != null){
+			logger.info("Saving Filter...");
+			filter.saveFilter(new File(FILTER_DATA_FILENAME));
+		}
+	}
+	
+	public Filter getFilter() {
+		return filter;
+	}
+	
+	public FileWriter getFileWriter() {
+		return fileWriter;
+	}
+	
+	public ImageLoader getImageLoader() {
+		return imageLoader;
+	}
+	
+	public MetricsReporter getMetricsReporter() {
+		return metricsReporter;
+	}
+	
+	public QueryMetrics getQueryMetrics() {
+		return queryMetrics;
+	}
+}
@@ -27,6 +27,6 @@ public class InternalSetting extends Properties {
 	public InternalSetting() {
 		super();
 		
-		put(DBsettings.SchemaVersion.toString(), "2");
+		put(DBsettings.SchemaVersion.toString(), "8");
 	}
 }
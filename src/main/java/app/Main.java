@@ -21,46 +21,27 @@ import gui.Aid;
 import gui.BlockList;
 import gui.BlockListDataModel;
 import gui.BoardListDataModel;
+import gui.ElementListModel;
 import gui.Filterlist;
 import gui.Stats;
-import io.AidDAO;
-import io.CachePrune;
-import io.FileWriter;
-import io.ImageLoader;
-import io.ThumbnailLoader;
+import metrics.MetricsRegistry;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.DefaultListModel;
 import javax.swing.JOptionPane;
 import javax.swing.UIManager;
 
-import board.Board;
-import board.FourChanStrategy;
-import board.SiteStrategy;
-
 import com.github.dozedoff.commonj.gui.Log;
-import com.github.dozedoff.commonj.io.BoneConnectionPool;
-import com.github.dozedoff.commonj.io.ConnectionPool;
 
 import config.AppSetting;
 import config.DefaultAppSettings;
@@ -83,19 +64,15 @@ public class Main implements ActionListener{
 	private static final Logger logger = LoggerFactory.getLogger(Main.class);
 	private PropertyChangeSupport change = new PropertyChangeSupport(this);
 
-	private io.FileWriter fileWriter;
-	private filter.Filter filter;
-	private ImageLoader imageLoader;
+	private Engine engine;
 
 	private Aid aid;
 	private Filterlist filterlist;
 	private BlockList blockList;
 	private BlockListDataModel blockListModel;
-	private ThumbnailLoader thumbLoader;
-	private ConnectionPool connPool;
-	private AidDAO mySQL;
-	private CachePrune cachePrune;
-	private SiteStrategy strategy;
+	private ElementListModel<String> fileNameModel;
+	private ElementListModel<String> postContentModel;
+	private StatusServer statusServer;
 
 	private BoardListDataModel boards = new BoardListDataModel();
 	Properties appSettings = new DefaultAppSettings();
@@ -104,13 +81,6 @@ public class Main implements ActionListener{
 	private final String PWD = System.getProperty("user.dir");
 	private final String MYSQL_CFG_FILENAME = "mysql.ini";
 	private final String APP_CFG_FILENAME = "config.ini";
-	private final String FILTER_DATA_FILENAME = "filter.dat";
-	
-	private final String DEFAULT_PAGE_THREADS = "1";
-	private final String DEFAULT_IMAGE_THREADS = "1";
-	private final String DEFAULT_WRITE_BLOCKED = "false";
-	private final String DEFAULT_BASE_URL = "http://boards.4chan.org/";
-	private final String DEFAULT_SUB_PAGES = "a;15,w;15,wg;15";
 	
 	public static void main(String[] args) {
 		new Main().init();
@@ -120,14 +90,8 @@ public class Main implements ActionListener{
 	 * This method constructs all Objects
 	 */
 	final private void build(){
-		String page, image, writeBlocked, baseUrl = "", preferredBoards = "";
-		int pageThreads = 1, imageThreads = 1;
-		boolean writeBlock = false;
-	
-		
-		
 		//  -------------- Configuration loading starts here --------------
-		appSettings = loadAppConfig(APP_CFG_FILENAME);
+		appSettings = AppConfig.loadAppConfig(APP_CFG_FILENAME);
 
 		if(! SettingValidator.validateAppSettings(appSettings)){
 			String message = "One or more program settings are invalid. Please correct them and restart the program.\n"
@@ -136,16 +100,10 @@ public class Main implements ActionListener{
 			dieWithError(message, 1);
 		}
 
-		page = appSettings.getProperty(AppSetting.page_threads.toString(),DEFAULT_PAGE_THREADS);
-		image = appSettings.getProperty(AppSetting.image_threads.toString(),DEFAULT_IMAGE_THREADS);
-		writeBlocked = appSettings.getProperty(AppSetting.write_blocked.toString(),DEFAULT_WRITE_BLOCKED);
-		baseUrl = appSettings.getProperty(AppSetting.base_url.toString(),DEFAULT_BASE_URL);
-		preferredBoards = appSettings.getProperty(AppSetting.preferredBoards.toString(),DEFAULT_SUB_PAGES);
-	 
-
-		if(page != null){pageThreads = Integer.parseInt(page);}
-		if(image != null){imageThreads = Integer.parseInt(image);}
-		if(writeBlocked != null){writeBlock = Boolean.parseBoolean(writeBlocked);}
+		if(Boolean.parseBoolean(appSettings.getProperty(AppSetting.status_server.toString()))){
+			int statusPort = Integer.parseInt(appSettings.getProperty(AppSetting.status_port.toString()));
+			statusServer = new StatusServer(statusPort, boards, MetricsRegistry.getDefault());
+		}
 		
 		defaultDirectory = appSettings.getProperty("default_directory",null);
 
@@ -175,84 +133,30 @@ public class Main implements ActionListener{
 			dieWithError(message, 3);
 		}
 
-		sqlProps = loadMySqlConfig(MYSQL_CFG_FILENAME);
+		sqlProps = AppConfig.loadMySqlConfig(MYSQL_CFG_FILENAME);
 
 		if(sqlProps == null){
 			String message = "Unable to load MySQL config.\nCheck settings and restart the Programm.";
 			dieWithError(message, 4);
 		}
 
-		URL checkAliveUrl = null;
-		try {
-			checkAliveUrl = new URL(baseUrl);
-		} catch (MalformedURLException e) {
-			String message = "URL is invalid: ";
-			logger.warn(message + e.getMessage());
-		}
-
-		if (checkAliveUrl == null) {
-			try {
-				checkAliveUrl = new URL(baseUrl);
-			} catch (MalformedURLException e) {
-				String message = "URL is invalid: ";
-				logger.warn(message + e.getMessage());
-			}
-		}
-		 
-		if(checkAliveUrl == null){
-			dieWithError("No valid baseUrl was specified: "+baseUrl
-							+", will now exit...", 8);
-		}
-		
-		strategy = findSiteStrategy(checkAliveUrl); //TODO change settings to contain list of site URLs
-		
 		//  -------------- Class instantiation starts here --------------  //
-		connPool = new BoneConnectionPool(sqlProps,10); // connection pool for database connections
-		try {
-			connPool.startPool();
-		} catch (Exception e) {
-			String message = "Unable to connect to database:\n"
-						+e.getMessage();
-			dieWithError(message, 7);
-		}
-		blockListModel = new BlockListDataModel();
-		mySQL = new AidDAO(connPool);
-		thumbLoader = new ThumbnailLoader(mySQL);
-		DefaultListModel<String> fileNameModel = new DefaultListModel<>();
-		DefaultListModel<String> postContentModel = new DefaultListModel<>();
-		filter = new filter.Filter(mySQL,blockListModel,fileNameModel, postContentModel, thumbLoader); // filter handler
-		filterlist = new Filterlist(filter, fileNameModel, postContentModel); // filter GUI
-		fileWriter = new FileWriter(filter); // disk IO
-
-		imageLoader = new ImageLoader(fileWriter, filter, basePath,imageThreads);
-		logger.info("Saving files to the basePath "+basePath.toString());
-		blockList = new BlockList(filter,blockListModel);
-		
-		cachePrune = new CachePrune(mySQL, checkAliveUrl, 15*60, 120*60, 240*60);
-
-		// parse subpages
-		String[] subP = preferredBoards.split(",");
+		// the database and the main page are loaded in parallel, while the GUI is built
+		engine = new Engine(appSettings, sqlProps, basePath);
 		
-		
-		//TODO put this into setting loader class?
-		Document mainpage = loadPage(checkAliveUrl);
-		Map<String, URL> boardMap = strategy.findBoards(mainpage);
-		Map<String, URL> shortcutMap = createShortcutMap(boardMap);
-
-		for (String s : subP) {
-			try {
-				if (shortcutMap.containsKey(s)) {
-					Board b = new Board(shortcutMap.get(s), s, strategy, filter, imageLoader);
-					boards.addElement(b);
-				}
-			} catch (IndexOutOfBoundsException oob) {
-				logger.warn("Sub_pages is not configured correctly");
-			}
+		try {
+			engine.start();
+			
+			blockListModel = new BlockListDataModel();
+			fileNameModel = new ElementListModel<>();
+			postContentModel = new ElementListModel<>();
+			aid = new Aid(boards,this);
+			Stats.addStatListener(aid);
+			
+			engine.build(blockListModel, fileNameModel, postContentModel, boards);
+		} catch (StartupException e) {
+			dieWithError(e.getMessage(), e.getErrorCode());
 		}
-
-		aid = new Aid(boards,this);
-		Stats.addStatListener(aid);
-		fileWriter.setWriteBlocked(writeBlock);
 		
 		int x = 0, y = 0;
 		
@@ -262,25 +166,6 @@ public class Main implements ActionListener{
 		aid.setLocation(x,y);
 	}
 	
-	private Map<String, URL> createShortcutMap(Map<String, URL> boardMap) {
-		Map<String, URL> shortcutMap = new HashMap<>();
-		
-		Collection<URL> boardUrls = boardMap.values();
-		
-		for (URL boardUrl : boardUrls) {
-			String shortcut = strategy.getBoardShortcut(boardUrl);
-			shortcutMap.put(shortcut, boardUrl);
-		}
-		
-		return shortcutMap;
-	}
-	
-	private SiteStrategy findSiteStrategy(URL boardUrl) {
-		//TODO code me
-		// get strategy list, iterate and test
-		return new FourChanStrategy();
-	}
-
 	/**
 	 * This Method initializes the Program
 	 */
@@ -299,29 +184,11 @@ public class Main implements ActionListener{
 
 		logger.info("Working directory is: " + PWD);
 
-		// create all needed classes
+		// create all needed classes, update the schema and load the filter
 		build();
-		//FIXME re-enable Schema updater
-//		try {
-//			SchemaUpdater.update(new AidDAO(connPool), new InternalSetting());
-//		} catch (SchemaUpdateException e) {
-//			String message = "Schema update failed: "+e.getMessage();
-//			dieWithError(message, 6);
-//		}
-		
-		InputStream is = null;
-		try{
-			is = new FileInputStream(FILTER_DATA_FILENAME);
-			if(is != null){
-				filter.loadFilter(is); // load list of filtered items
-				is.close();
-			}
-		}catch(IOException ioe){
-			logger.warn("Error accessing file " + ioe.getMessage());
-		}
 
-		filter.startUpdater();
-		cachePrune.start();
+		engine.startServices();
+		startStatusServer();
 		aid.setVisible(true);
 
 		String startupMessage = "Startup complete";
@@ -329,80 +196,73 @@ public class Main implements ActionListener{
 		Log.add(startupMessage);
 	}
 	
+	private void startStatusServer(){
+		if(statusServer == null){
+			return;
+		}
+		
+		try {
+			statusServer.start();
+		} catch (Exception e) {
+			String message = "Unable to start status server: " + e.getMessage();
+			logger.warn(message);
+			Log.add(message);
+		}
+	}
+	
 	private void dieWithError(String message, int errorCode){
 		logger.error(message);
 		JOptionPane.showMessageDialog(null, message, "Fatal Error", JOptionPane.ERROR_MESSAGE);
 		System.exit(errorCode);
 	}
 	
-	private Document loadPage(URL url) {
-		try {
-			return Jsoup.connect(url.toString()).userAgent("Mozilla").get();
-		} catch (IOException e) {
-			logger.warn("Failed to load page {} with error {}", url, e);
-			return Jsoup.parse("");
-		}
-	}
 
 	/**
-	 * Load the mySql settings
+	 * The review and filter frames are only built when they are first opened.
 	 */
-	public Properties loadMySqlConfig(String filepath){
-		try {
-			Properties sqlProps = new DefaultMySQLconnection(); 
-			InputStream is = new FileInputStream(filepath);
-			if(is != null)
-				sqlProps.load(is);
-			return sqlProps;
-		} catch (IOException ioe) {
-			logger.warn("Error accessing file "+ ioe.getMessage());
-			return new DefaultMySQLconnection();
+	private BlockList getBlockList(){
+		if(blockList == null){
+			blockList = new BlockList(engine.getFilter(),blockListModel);
 		}
+		
+		return blockList;
 	}
 	
-	/**
-	 * Loads the Application configuration from file.
-	 * If an error occurs whilst loading the configuration, a default config
-	 * is returned.
-	 * @return Property Object containing the configuration.
-	 */
-	public Properties loadAppConfig(String filepath){
-		try {
-			Properties appSetting = new DefaultAppSettings();
-			InputStream is = new FileInputStream(filepath);
-			
-			if(is != null) {
-				appSetting.load(is);
-			}
-
-			return appSetting;
-		} catch (IOException ioe) {
-			logger.warn("Error accessing file "+ ioe.getMessage());
-			return new DefaultAppSettings();
+	private Filterlist getFilterlist(){
+		if(filterlist == null){
+			filterlist = new Filterlist(engine.getFilter(), fileNameModel, postContentModel);
 		}
+		
+		return filterlist;
 	}
 	
 	public void actionPerformed(ActionEvent e){
 		if("Clear ImageQueue".equals(e.getActionCommand())){
-			imageLoader.clearQueue();
+			engine.getImageLoader().clearQueue();
 		}
 
 		if("Prune cache".equals(e.getActionCommand())){
-			filter.pruneCache();
+			engine.getFilter().pruneCache();
 		}
 
 		if("Filter".equals(e.getActionCommand())){
-			blockList.setVisible(true);
+			getBlockList().setVisible(true);
 		}
 
 		if("Filterlist".equals(e.getActionCommand())){
-			filterlist.setVisible(true);
+			getFilterlist().setVisible(true);
 		}
 
 		if ("Clear stats".equals(e.getActionCommand())){
-			fileWriter.clearStats();
+			engine.getFileWriter().clearStats();
 			Log.add("Stats cleared");
 		}
+		
+		if ("Dump metrics".equals(e.getActionCommand())){
+			engine.getMetricsReporter().dump();
+			engine.getQueryMetrics().dump();
+			Log.add("Metrics written to log");
+		}
 	}
 	
 	public void addPropertyChangeListener(PropertyChangeListener listener){
@@ -418,41 +278,14 @@ public class Main implements ActionListener{
 		public void run(){
 			logger.info("Shutting down...");
 
-			// stop boards
-			logger.info("Stopping all boards...");
-			for(Object o : boards.toArray()){
-				((Board)o).stop();
-			}
-
-			// shutdown file downloading
-			if(imageLoader != null){
-				imageLoader.shutdown();
-			}
-
-			// shutdown writing to disk
-			try {
-				if(fileWriter != null){
-					fileWriter.shutdown();
-					fileWriter.join();
-				}
-			} catch (InterruptedException e) {
-				logger.debug("FileWriter was interrupted");
+			// stop status server
+			if(statusServer != null){
+				statusServer.stop();
 			}
 			
-			// stop cache pruning
-			if(cachePrune != null){
-				cachePrune.stop();
-			}
-
-			// close all DB connections
-			if(connPool != null){
-				connPool.stopPool();
-			}
-
-			// save the thread filter
-			if(filter != null){
-				logger.info("Saving Filter...");
-				filter.saveFilter(new File(PWD,FILTER_DATA_FILENAME));
+			// stop the crawler and save the filter
+			if(engine != null){
+				engine.shutdown();
 			}
 
 			// update window position
@@ -26,6 +26,8 @@ public class SettingValidator {
 	private static final Logger logger = LoggerFactory.getLogger(SettingValidator.class);
 	private static final String SUBPAGE_REGEX = "([a-zA-Z]+,)*+[a-zA-Z]+$";
 	private static final String BASEURL_REGEX = "(?m)(http:|https:)//([0-9a-zA-Z.-]+\\.)+([a-zA-Z])*/$";
+	private static final String HTTP_ARCHIVE_REGEX = "(?i)(off|record|replay)";
+	private static final String CONTROL_TOKEN_REGEX = "([0-9a-zA-Z_-]{16,})?";
 
 	public static boolean validateAppSettings(Properties appSettings){
 		// validate loaded parameters
@@ -38,6 +40,16 @@ public class SettingValidator {
 		valid &= validateSubPages(appSettings);
 		valid &= validateXpos(appSettings);
 		valid &= validateYpos(appSettings);
+		valid &= validateStatusServer(appSettings);
+		valid &= validateStatusPort(appSettings);
+		valid &= validateDbPoolSize(appSettings);
+		valid &= validateSlowQueryMs(appSettings);
+		valid &= validateHttpArchive(appSettings);
+		valid &= validateStreamThreshold(appSettings);
+		valid &= validateAsyncConnections(appSettings);
+		valid &= validateHostRequestRate(appSettings);
+		valid &= validatePrefixFingerprints(appSettings);
+		valid &= validateControlToken(appSettings);
 
 		return valid;
 	}
@@ -82,13 +94,17 @@ public class SettingValidator {
 	 */
 	protected static boolean validateWriteBlocked(Properties appSettings) {
 		// validate "write blocked" flag
-		String writeBlocked = appSettings.getProperty(write_blocked.toString());
-		if(writeBlocked == null || !(writeBlocked.toLowerCase().equals("false") || writeBlocked.toLowerCase().equals("true"))){
-			String errorMsg = invalidPropertyMessage(write_blocked.toString(),appSettings);
-			logger.warn(errorMsg);
-			return false;
-		}
-		return true;
+		return testBoolean(appSettings, write_blocked.toString());
+	}
+	
+	protected static boolean validateStatusServer(Properties appSettings) {
+		// validate "status server" flag
+		return testBoolean(appSettings, status_server.toString());
+	}
+	
+	protected static boolean validateStatusPort(Properties appSettings) {
+		// validate status server port
+		return testLessThan(appSettings, status_port.toString(), 1) && testGreaterThan(appSettings, status_port.toString(), 65535);
 	}
 
 	/**
@@ -121,6 +137,78 @@ public class SettingValidator {
 		return true;
 	}
 
+	protected static boolean validateDbPoolSize(Properties appSettings) {
+		// validate number of database connections
+		return testLessThan(appSettings, db_pool_size.toString(), 1);
+	}
+	
+	protected static boolean validateSlowQueryMs(Properties appSettings) {
+		// validate slow query threshold
+		return testLessThan(appSettings, slow_query_ms.toString(), 0);
+	}
+	
+	protected static boolean validateHttpArchive(Properties appSettings) {
+		// validate HTTP archive mode
+		return testRegexMatch(appSettings, http_archive.toString(), HTTP_ARCHIVE_REGEX);
+	}
+	
+	protected static boolean validateStreamThreshold(Properties appSettings) {
+		// validate size from which on files are streamed to disk, 0 disables streaming
+		return testLessThan(appSettings, stream_threshold_kb.toString(), 0);
+	}
+	
+	protected static boolean validateAsyncConnections(Properties appSettings) {
+		// validate connections per host for the async download engine, 0 uses the worker threads
+		return testLessThan(appSettings, async_connections_per_host.toString(), 0);
+	}
+	
+	protected static boolean validateHostRequestRate(Properties appSettings) {
+		// validate requests per second and host, 0 disables the rate limit
+		return testLessThan(appSettings, host_requests_per_second.toString(), 0);
+	}
+	
+	protected static boolean validatePrefixFingerprints(Properties appSettings) {
+		// validate if downloads are stopped when the start of the file matches a known file
+		return testBoolean(appSettings, prefix_fingerprints.toString());
+	}
+	
+	protected static boolean validateControlToken(Properties appSettings) {
+		// validate the daemon control token, empty disables the control endpoints
+		return testRegexMatch(appSettings, control_token.toString(), CONTROL_TOKEN_REGEX);
+	}
+	
+	/**
+	 * Tests if the property is either "true" or "false", ignoring case.
+	 */
+	private static boolean testBoolean(Properties appSettings, String property) {
+		String toTest = appSettings.getProperty(property);
+		if(toTest == null || !(toTest.toLowerCase().equals("false") || toTest.toLowerCase().equals("true"))){
+			String errorMsg = invalidPropertyMessage(property,appSettings);
+			logger.warn(errorMsg);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Test if the string's int value is greater than greaterThan.
+	 * @return false if greater or not a number, else true
+	 */
+	private static boolean testGreaterThan(Properties appSettings, String property, int greaterThan) {
+		String toTest = appSettings.getProperty(property);
+		String errorMsg = invalidPropertyMessage(property,appSettings);
+		try{
+			if(toTest == null || Integer.parseInt(toTest) > greaterThan){
+				logger.warn(errorMsg);
+				return false;
+			}
+		}catch(NumberFormatException nfe){
+			logger.warn(errorMsg);
+			return false;
+		}
+		return true;
+	}
+	
 	/**
 	 * Test if the string's int value is less than LessThan.
 	 * @param toTest string to test
@@ -0,0 +1,148 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs startup steps in parallel. A step that depends on another step waits for it with {@link Step#get()},
+ * so steps are started in dependency order by the code that submits them.<br/>
+ * Every step has a time budget. Waiting for a step that exceeds its budget logs a warning and
+ * continues to wait, unless the caller has a fallback, see {@link Step#get(Object)}.
+ */
+public class Startup {
+	private static final Logger logger = LoggerFactory.getLogger(Startup.class);
+	
+	private final long startTime = System.nanoTime();
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger threadNr = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Startup " + threadNr.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * A submitted startup step.
+	 */
+	public class Step<T> {
+		private final String name;
+		private final long budgetMillis;
+		private final long submitted = System.nanoTime();
+		private Future<T> future;
+		
+		Step(String name, long budgetMillis) {
+			this.name = name;
+			this.budgetMillis = budgetMillis;
+		}
+		
+		/**
+		 * Wait for the step to complete.
+		 * @return the result of the step
+		 * @throws ExecutionException if the step failed
+		 */
+		public T get() throws ExecutionException {
+			try {
+				return future.get(remainingBudget(), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				logger.warn("Startup step {} exceeded its budget of {} ms, waiting for it to complete", name, budgetMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExecutionException("Interrupted while waiting for " + name, e);
+			}
+			
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExecutionException("Interrupted while waiting for " + name, e);
+			}
+		}
+		
+		/**
+		 * Wait for the step until its budget is used up.
+		 * @param fallback value to use if the step failed or exceeded its budget, it keeps running in the background
+		 * @return the result of the step or the fallback
+		 */
+		public T get(T fallback) {
+			try {
+				return future.get(remainingBudget(), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				logger.warn("Startup step {} exceeded its budget of {} ms, using fallback", name, budgetMillis);
+			} catch (ExecutionException e) {
+				logger.warn("Startup step {} failed, using fallback: {}", name, e.getCause().toString());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			return fallback;
+		}
+		
+		private long remainingBudget() {
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted);
+			return Math.max(0, budgetMillis - elapsed);
+		}
+	}
+	
+	/**
+	 * Start a step in the background.
+	 * @param name name for log messages
+	 * @param budgetMillis time the step is expected to take at most
+	 * @param task the work to do
+	 */
+	public <T> Step<T> submit(final String name, long budgetMillis, final Callable<T> task) {
+		final Step<T> step = new Step<>(name, budgetMillis);
+		
+		step.future = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				long start = System.nanoTime();
+				
+				try {
+					return task.call();
+				} finally {
+					logger.info("Startup step {} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				}
+			}
+		});
+		
+		return step;
+	}
+	
+	/**
+	 * Log the total startup time. Steps that are still running will complete in the background.
+	 */
+	public void finish() {
+		executor.shutdown();
+		logger.info("Startup took {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+	}
+}
@@ -0,0 +1,234 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.PrometheusWriter;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.HandlerList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import board.Board;
+import filter.ElementList;
+
+/**
+ * Small HTTP server that makes the state of the application available without the GUI.<br/>
+ * It only listens on the loopback interface.
+ * <ul>
+ * <li>/metrics - all metrics in the Prometheus text format</li>
+ * <li>/status - board status, queue depths and database metrics as JSON</li>
+ * </ul>
+ * Additional handlers, like the controls of the {@link Daemon}, can be added before the server is started.
+ */
+public class StatusServer {
+	private static final Logger logger = LoggerFactory.getLogger(StatusServer.class);
+	private static final String HOST = "127.0.0.1";
+	private static final String DB_PREFIX = "db.";
+	private static final String[] QUEUES = {MetricNames.DOWNLOAD_QUEUE, MetricNames.WRITE_BUFFER, MetricNames.PENDING_FILTERS};
+	
+	private final int port;
+	private final ElementList<Board> boards;
+	private final MetricsRegistry registry;
+	private final PrometheusWriter prometheusWriter;
+	private final List<Handler> handlers = new ArrayList<>();
+	private Server server;
+	
+	public StatusServer(int port, ElementList<Board> boards, MetricsRegistry registry) {
+		this.port = port;
+		this.boards = boards;
+		this.registry = registry;
+		this.prometheusWriter = new PrometheusWriter(registry);
+	}
+	
+	public boolean start() throws Exception {
+		if(server != null){
+			return false;
+		}
+		
+		HandlerList handlerList = new HandlerList();
+		handlerList.addHandler(new StatusHandler());
+		
+		for(Handler handler : handlers){
+			handlerList.addHandler(handler);
+		}
+		
+		server = new Server(new InetSocketAddress(HOST, port));
+		server.setHandler(handlerList);
+		server.start();
+		logger.info("Status server listening on {}:{}", HOST, port);
+		
+		return true;
+	}
+	
+	/**
+	 * Add a handler for requests that are not status requests. Has no effect once the server is running.
+	 */
+	public void addHandler(Handler handler) {
+		handlers.add(handler);
+	}
+	
+	public void stop() {
+		if(server == null){
+			return;
+		}
+		
+		logger.info("Stopping status server...");
+		
+		try {
+			server.stop();
+		} catch (Exception e) {
+			logger.warn("Failed to stop status server: {}", e.getMessage());
+		}
+		
+		server = null;
+	}
+	
+	String statusJson() {
+		StringBuilder sb = new StringBuilder();
+		
+		sb.append("{\"boards\":[");
+		
+		Object[] boardList = boards.toArray();
+		
+		for(int i = 0; i < boardList.length; i++){
+			Board board = (Board)boardList[i];
+			
+			if(i > 0){
+				sb.append(",");
+			}
+			
+			sb.append("{\"board\":").append(quote(board.toString()));
+			sb.append(",\"status\":").append(quote(board.getStatus())).append("}");
+		}
+		
+		sb.append("],\"queues\":{");
+		
+		for(int i = 0; i < QUEUES.length; i++){
+			if(i > 0){
+				sb.append(",");
+			}
+			
+			sb.append(quote(QUEUES[i])).append(":").append(registry.gaugeValue(QUEUES[i]));
+		}
+		
+		sb.append("},\"db\":");
+		appendObject(sb, databaseMetrics());
+		sb.append("}");
+		
+		return sb.toString();
+	}
+	
+	private SortedMap<String, Long> databaseMetrics() {
+		SortedMap<String, Long> values = new TreeMap<>();
+		
+		for(Entry<String, Long> entry : registry.getCounters().entrySet()){
+			if(entry.getKey().startsWith(DB_PREFIX)){
+				values.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		for(Entry<String, Long> entry : registry.getGauges().entrySet()){
+			if(entry.getKey().startsWith(DB_PREFIX)){
+				values.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		return values;
+	}
+	
+	private void appendObject(StringBuilder sb, Map<String, Long> values) {
+		sb.append("{");
+		boolean first = true;
+		
+		for(Entry<String, Long> entry : values.entrySet()){
+			if(!first){
+				sb.append(",");
+			}
+			
+			sb.append(quote(entry.getKey())).append(":").append(entry.getValue());
+			first = false;
+		}
+		
+		sb.append("}");
+	}
+	
+	static String quote(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		
+		for(char c : value.toCharArray()){
+			switch(c){
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			default:
+				if(c < 0x20){
+					sb.append(String.format("\\u%04x", (int)c));
+				}else{
+					sb.append(c);
+				}
+			}
+		}
+		
+		return sb.append("\"").toString();
+	}
+	
+	class StatusHandler extends AbstractHandler {
+		@Override
+		public void handle(String target, Request baseRequest, HttpServletRequest request,
+				HttpServletResponse response) throws IOException, ServletException {
+			String body;
+			
+			if("/metrics".equals(target)){
+				response.setContentType(PrometheusWriter.CONTENT_TYPE);
+				body = prometheusWriter.write();
+			}else if("/status".equals(target)){
+				response.setContentType("application/json");
+				body = statusJson();
+			}else{
+				return;
+			}
+			
+			response.setCharacterEncoding("UTF-8");
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.getWriter().write(body);
+			baseRequest.setHandled(true);
+		}
+	}
+}
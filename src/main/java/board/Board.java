@@ -17,7 +17,9 @@
  */
 package board;
 
+import io.AidTables;
 import io.ImageLoader;
+import io.WebClient;
 
 import java.io.IOException;
 import java.net.URL;
@@ -33,6 +35,11 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import metrics.Histogram;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.StripedCounter;
+
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
@@ -60,6 +67,15 @@ public class Board {
 	
 	private static final Logger logger = LoggerFactory.getLogger(Board.class);
 	
+	private static final Histogram loadPageTime = MetricsRegistry.getDefault().histogram(MetricNames.LOAD_PAGE_TIME);
+	private static final Histogram parsePageTime = MetricsRegistry.getDefault().histogram(MetricNames.PARSE_PAGE_TIME);
+	private static final Histogram parseThreadTime = MetricsRegistry.getDefault().histogram(MetricNames.PARSE_THREAD_TIME);
+	private static final Histogram checkPostTime = MetricsRegistry.getDefault().histogram(MetricNames.CHECK_POST_TIME);
+	private static final Histogram threadStateTime = MetricsRegistry.getDefault().histogram(MetricNames.THREAD_STATE_TIME);
+	private static final Histogram cacheCheckTime = MetricsRegistry.getDefault().histogram(MetricNames.CACHE_CHECK_TIME);
+	private static final Histogram md5CheckTime = MetricsRegistry.getDefault().histogram(MetricNames.MD5_CHECK_TIME);
+	private static final StripedCounter filesSkipped = MetricsRegistry.getDefault().counter(MetricNames.FILES_SKIPPED);
+	
 	public Board(URL boardUrl, String boardId, SiteStrategy siteStrategy, Filter filter, ImageLoader imageLoader){
 		this.boardUrl = boardUrl;
 		this.boardId = boardId;
@@ -101,13 +117,50 @@ public class Board {
 	}
 
 	public void start(int delay){
+		start(delay, WAIT_TIME);
+	}
+
+	/**
+	 * @param delay delay in minutes before the first run
+	 * @param interval time between runs in milliseconds
+	 */
+	public void start(int delay, long interval){
 		logger.info("Starting board {} with a delay of {}", boardId, delay);
 		pageAdder = new Timer("Board "+boardId+" worker", true);
 
 		this.stoppped = false;
-		pageAdder.schedule(new BoardWorker(delay), delay*60*1000, WAIT_TIME);
+		pageAdder.schedule(new BoardWorker(delay), delay*60*1000, interval);
 	}
 
+	/**
+	 * Check the MD5 hash published by the site, so reposts of known files are not downloaded.
+	 * Skipped files are cached, so they are not looked up again.<br/>
+	 * Blacklisted files are still downloaded, so the FileWriter can tag them or write them if blocked files are kept.
+	 * @param post post with an image
+	 * @return true if the file can be skipped
+	 */
+	boolean isKnownFile(Post post) {
+		URL imageUrl = post.getImageUrl();
+		
+		long start = System.nanoTime();
+		AidTables table = filter.findMd5(post.getImageMd5());
+		md5CheckTime.time(start);
+		
+		if(table == null){
+			return false;
+		}
+		
+		if(table == AidTables.Block){
+			logger.debug("{} is blacklisted, downloading it to tag it", imageUrl);
+			return false;
+		}
+		
+		logger.debug("{} is already known ({}), not downloading it", imageUrl, table);
+		filter.cache(imageUrl);
+		filesSkipped.increment();
+		return true;
+	}
+	
 	class BoardWorker extends TimerTask{
 		public BoardWorker(int delay){
 			setTime(delay);
@@ -155,7 +208,9 @@ public class Board {
 					break;
 				}
 				Document pageDoc = loadPage(page);
+				long start = System.nanoTime();
 				List<URL> threads = siteStartegy.parsePage(pageDoc);
+				parsePageTime.time(start);
 				pageThreads.addAll(threads);
 			}
 			
@@ -176,7 +231,9 @@ public class Board {
 		}
 		
 		private boolean isBlockedByFilter(URL currentPageThread){
+			long start = System.nanoTime();
 			FilterState state = filter.getFilterState(currentPageThread);
+			threadStateTime.time(start);
 			
 			if(state == FilterState.DENY || state == FilterState.PENDING) {
 				logger.info("{} is blocked by the filter", currentPageThread);
@@ -192,7 +249,9 @@ public class Board {
 					break;
 				}
 				Document threadPage = loadPage(thread);
+				long start = System.nanoTime();
 				List<Post> posts = siteStartegy.parseThread(threadPage);
+				parseThreadTime.time(start);
 				String reason = filterPosts(posts);
 				
 				if (reason != null){
@@ -211,7 +270,9 @@ public class Board {
 		private String filterPosts(List<Post> posts) {
 			String reason = null;
 			for (Post post : posts) {
+				long start = System.nanoTime();
 				reason = filter.checkPost(post);
+				checkPostTime.time(start);
 				
 				if (reason != null){
 					break;
@@ -235,7 +296,11 @@ public class Board {
 				if(currentPost.hasImage()){
 					URL imageUrl = currentPost.getImageUrl();
 					
-					if(filter.isCached(imageUrl)) {
+					long start = System.nanoTime();
+					boolean cached = filter.isCached(imageUrl);
+					cacheCheckTime.time(start);
+					
+					if(cached || isKnownFile(currentPost)) {
 						iterator.remove();
 					}
 				}else{
@@ -255,7 +320,7 @@ public class Board {
 					}
 
 					String relativeImagePath = Paths.get(boardId, threadId,	imageName).toString();
-					imageLoader.add(post.getImageUrl(), relativeImagePath);
+					imageLoader.add(post.getImageUrl(), relativeImagePath, post.getImageSize());
 				} catch (InvalidPathException ipe) {
 					Object[] data = { post.getImageUrl(), post.getImageName(), ipe.getReason() };
 					logger.warn("Failed to add image ({}) for download to {} - reason: {}",	data);
@@ -264,11 +329,15 @@ public class Board {
 		}
 		
 		private Document loadPage(URL url) {
+			long start = System.nanoTime();
+			
 			try {
-				return Jsoup.connect(url.toString()).userAgent("Mozilla").get();
+				return WebClient.getDefault().getPage(url);
 			} catch (IOException e) {
 				logger.warn("Failed to load page {} with error {}", url, e);
 				return Jsoup.parse("");
+			} finally {
+				loadPageTime.time(start);
 			}
 		}
 	}
@@ -19,10 +19,15 @@ package board;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.DatatypeConverter;
 
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -35,6 +40,27 @@ import com.github.dozedoff.commonj.net.GetHtml;
 public class FourChanStrategy implements SiteStrategy {
 	GetHtml getHtml = new GetHtml();
 	static final Logger logger = LoggerFactory.getLogger(FourChanStrategy.class);
+	// file size in the file info, e.g. "-(585 KB, 897x1350, "
+	private static final Pattern FILE_SIZE = Pattern.compile("(\\d+(?:\\.\\d+)?) ?(B|KB|MB|GB)\\b");
+	private static final List<String> FILE_SIZE_UNITS = Arrays.asList("B", "KB", "MB", "GB");
+	private static final int MD5_LENGTH = 16;
+	
+	// the site uses protocol relative links
+	private final String boardScheme;
+	private final String imageScheme;
+	
+	public FourChanStrategy() {
+		this.boardScheme = "http:";
+		this.imageScheme = "https:";
+	}
+	
+	/**
+	 * @param scheme scheme to use for all protocol relative links, e.g. "http" for a local test server
+	 */
+	public FourChanStrategy(String scheme) {
+		this.boardScheme = scheme + ":";
+		this.imageScheme = scheme + ":";
+	}
 	
 	@Override
 	public boolean validSiteStrategy(URL siteUrl) {
@@ -61,7 +87,7 @@ public class FourChanStrategy implements SiteStrategy {
 			String name = boardEntry.attr("title");
 			
 			try {
-				String fullUrl = "http:" + url;
+				String fullUrl = boardScheme + url;
 				boardMap.put(name, new URL(fullUrl));
 			} catch (Exception e) {
 				logger.warn("Could not add Board " + name + " due to: " + e.getMessage());
@@ -135,9 +161,11 @@ public class FourChanStrategy implements SiteStrategy {
 				}
 				
 				postObject.setImageName(imageInfo.select("span").attr("title"));
+				postObject.setImageSize(parseFileSize(imageInfo.ownText()));
+				postObject.setImageMd5(parseMd5(file.select("a.fileThumb > img").attr("data-md5")));
 				imageUrl = imageInfo.select("a").attr("href");
 				
-				postObject.setImageUrl(new URL("https:" + imageUrl));
+				postObject.setImageUrl(new URL(imageScheme + imageUrl));
 			}catch(MalformedURLException mue){
 				logger.warn("Invalid image URL (" + imageUrl+ ") in thread " + threadUrl);
 				postObject.setImageName(null);
@@ -149,6 +177,49 @@ public class FourChanStrategy implements SiteStrategy {
 		return postObject;
 	}
 
+	/**
+	 * Parse the file size shown in the file info.
+	 * @param fileInfo text of the file info
+	 * @return size in bytes, -1 if there is no size
+	 */
+	protected static long parseFileSize(String fileInfo) {
+		Matcher matcher = FILE_SIZE.matcher(fileInfo);
+		
+		if(! matcher.find()){
+			return -1;
+		}
+		
+		double size = Double.parseDouble(matcher.group(1));
+		int exponent = FILE_SIZE_UNITS.indexOf(matcher.group(2));
+		
+		return (long) (size * Math.pow(1024, exponent));
+	}
+	
+	/**
+	 * Convert the MD5 hash of the thumbnail data-md5 attribute, which is Base64 encoded.
+	 * @param base64 value of the attribute
+	 * @return upper case hexadecimal MD5 hash, null if there is no valid hash
+	 */
+	protected static String parseMd5(String base64) {
+		if(base64 == null || base64.isEmpty()){
+			return null;
+		}
+		
+		byte[] md5;
+		
+		try {
+			md5 = DatatypeConverter.parseBase64Binary(base64);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		
+		if(md5.length != MD5_LENGTH){
+			return null;
+		}
+		
+		return DatatypeConverter.printHexBinary(md5);
+	}
+
 	@Override
 	public int getThreadNumber(URL threadUrl) {
 		String urlFragments[] = threadUrl.toString().split("/");
@@ -31,6 +31,8 @@ public class Post {
 	protected String imageName;
 
 	protected URL imageUrl;
+	protected long imageSize = -1; // approximate size in bytes as shown on the page, -1 if unknown
+	protected String imageMd5; // hexadecimal MD5 hash published by the site, null if unknown
 
 	public void setComment(String comment) {
 		this.comment = comment;
@@ -41,6 +43,12 @@ public class Post {
 	public void setImageUrl(URL imageUrl) {
 		this.imageUrl = imageUrl;
 	}
+	public void setImageSize(long imageSize) {
+		this.imageSize = imageSize;
+	}
+	public void setImageMd5(String imageMd5) {
+		this.imageMd5 = imageMd5;
+	}
 	public String getComment() {
 		return comment;
 	}
@@ -50,6 +58,12 @@ public class Post {
 	public URL getImageUrl() {
 		return imageUrl;
 	}
+	public long getImageSize() {
+		return imageSize;
+	}
+	public String getImageMd5() {
+		return imageMd5;
+	}
 	public boolean hasImage(){
 		return imageName != null ? true : false;
 	}
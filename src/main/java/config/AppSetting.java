@@ -18,5 +18,5 @@
 package config;
 
 public enum AppSetting {
-	page_threads, image_threads, write_blocked, base_url, preferredBoards, xpos, ypos
+	page_threads, image_threads, write_blocked, base_url, preferredBoards, xpos, ypos, status_server, status_port, db_pool_size, slow_query_ms, http_archive, http_archive_file, stream_threshold_kb, async_connections_per_host, host_requests_per_second, prefix_fingerprints, control_token
 }
@@ -31,5 +31,16 @@ public class DefaultAppSettings extends Properties {
 		this.setProperty(preferredBoards.toString(),"a,w,wg");
 		this.setProperty(xpos.toString(), "0");
 		this.setProperty(ypos.toString(), "0");
+		this.setProperty(status_server.toString(), "false");
+		this.setProperty(status_port.toString(), "8089");
+		this.setProperty(db_pool_size.toString(), "10");
+		this.setProperty(slow_query_ms.toString(), "1000");
+		this.setProperty(http_archive.toString(), "off");
+		this.setProperty(http_archive_file.toString(), "crawl.warc");
+		this.setProperty(stream_threshold_kb.toString(), "4096");
+		this.setProperty(async_connections_per_host.toString(), "0");
+		this.setProperty(host_requests_per_second.toString(), "10");
+		this.setProperty(prefix_fingerprints.toString(), "false");
+		this.setProperty(control_token.toString(), "");
 	}
 }
@@ -0,0 +1,58 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package filter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Thread safe {@link ElementList} that does not depend on Swing.
+ * Reads are much more common than changes, so a copy on write list is used.
+ */
+public class ConcurrentElementList<E> implements ElementList<E> {
+	private final List<E> elements = new CopyOnWriteArrayList<>();
+	
+	@Override
+	public void addElement(E element) {
+		elements.add(element);
+	}
+	
+	@Override
+	public boolean removeElement(Object element) {
+		return elements.remove(element);
+	}
+	
+	@Override
+	public boolean contains(Object element) {
+		return elements.contains(element);
+	}
+	
+	@Override
+	public void clear() {
+		elements.clear();
+	}
+	
+	@Override
+	public Object[] toArray() {
+		return elements.toArray();
+	}
+	
+	public int size() {
+		return elements.size();
+	}
+}
@@ -0,0 +1,35 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package filter;
+
+/**
+ * List of elements shared between the {@link Filter} and whatever displays them.<br/>
+ * The method names follow the Swing list models, so the GUI models implement this
+ * without additional code. Headless setups use a {@link ConcurrentElementList}.
+ */
+public interface ElementList<E> {
+	void addElement(E element);
+	
+	boolean removeElement(Object element);
+	
+	boolean contains(Object element);
+	
+	void clear();
+	
+	Object[] toArray();
+}
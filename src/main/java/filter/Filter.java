@@ -17,11 +17,15 @@
  */
 package filter;
 
-import gui.BlockListDataModel;
 import gui.Stats;
 import io.AidDAO;
 import io.AidTables;
+import io.BatchOperation;
+import io.CachePrune;
+import io.PrefixFingerprint;
+import io.ThrottledBatch;
 import io.ThumbnailLoader;
+import io.WebClient;
 
 import java.awt.Image;
 import java.io.File;
@@ -36,11 +40,18 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metrics.Gauge;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,8 +59,6 @@ import javax.swing.DefaultListModel;
 
 import board.Post;
 
-import com.github.dozedoff.commonj.net.GetHtml;
-
 /**
  * Class used to filter thread contents based on Post content and Filenames,
  * as well as checking File Hashes, performing cache look up's and checking
@@ -59,22 +68,29 @@ public class Filter implements FilterModifiable{
 	private static Logger logger = LoggerFactory.getLogger(Filter.class);
 	private static int FILTER_UPDATER_INTERVAL = 60*1000; // one minute
 	private final String LOCATION_TAG = "DL_CLIENT";
-	private int filterNr = 0;	// filter item counter
+	private final AtomicInteger filterNr = new AtomicInteger();	// filter item counter
 
-	private BlockListDataModel blocklistModel;
-	private DefaultListModel<String> fileNameModel;
-	private DefaultListModel<String> postContentModel;
+	private ElementList<FilterItem> blocklistModel;
+	private ElementList<String> fileNameModel;
+	private ElementList<String> postContentModel;
 	private ThumbnailLoader thumbLoader;
 
 	private AidDAO sql;
 	private Timer filterUpdateTimer = new Timer("Filter update daemon", true);
 	
-	public Filter(AidDAO sql, BlockListDataModel blockListModel,DefaultListModel<String> fileNameModel, DefaultListModel<String> postContentModel, ThumbnailLoader thumbLoader){
+	public Filter(AidDAO sql, ElementList<FilterItem> blockListModel, ElementList<String> fileNameModel, ElementList<String> postContentModel, ThumbnailLoader thumbLoader){
 		this.sql = sql;
 		this.blocklistModel = blockListModel;
 		this.fileNameModel = fileNameModel;
 		this.postContentModel = postContentModel;
 		this.thumbLoader = thumbLoader;
+		
+		MetricsRegistry.getDefault().register(MetricNames.PENDING_FILTERS, new Gauge() {
+			@Override
+			public long getValue() {
+				return filterNr.get();
+			}
+		});
 	}
 	
 	public boolean loadFilter(String path){
@@ -100,21 +116,20 @@ public class Filter implements FilterModifiable{
 	/**
 	 * Load filter data from a File.
 	 */
-	@SuppressWarnings("unchecked")
 	public boolean loadFilter(InputStream is){
 		try{
 			if(is == null)
 				return false;
 			ObjectInputStream o = new ObjectInputStream(is);
-			DefaultListModel<String> tmpPostContentModel = (DefaultListModel<String>)o.readObject();
-			DefaultListModel<String> tmpFileNameModel = (DefaultListModel<String>)o.readObject();
+			Object[] tmpPostContent = readTerms(o.readObject());
+			Object[] tmpFileNames = readTerms(o.readObject());
 			o.close();
 			
-			for(Object obj : tmpFileNameModel.toArray()){
+			for(Object obj : tmpFileNames){
 				fileNameModel.addElement((String)obj);
 			}
 			
-			for(Object obj : tmpPostContentModel.toArray()){
+			for(Object obj : tmpPostContent){
 				postContentModel.addElement((String)obj);
 			}
 		}catch (IOException io) { 
@@ -126,6 +141,17 @@ public class Filter implements FilterModifiable{
 		}
 		return true;
 	}
+	
+	/**
+	 * Filter files saved by older versions contain Swing list models instead of lists.
+	 */
+	private Object[] readTerms(Object terms){
+		if(terms instanceof List){
+			return ((List<?>)terms).toArray();
+		}
+		
+		return ((DefaultListModel<?>)terms).toArray();
+	}
 
 	public boolean saveFilter(File file){
 		return saveFilter(file.toString());
@@ -138,8 +164,8 @@ public class Filter implements FilterModifiable{
 		try{
 			FileOutputStream file = new FileOutputStream(path);
 			ObjectOutputStream o = new ObjectOutputStream( file );  
-			o.writeObject(postContentModel);
-			o.writeObject(fileNameModel);
+			o.writeObject(new ArrayList<>(Arrays.asList(postContentModel.toArray())));
+			o.writeObject(new ArrayList<>(Arrays.asList(fileNameModel.toArray())));
 			o.close();
 			logger.info("Saved filter to "+path);
 			return true;
@@ -207,8 +233,7 @@ public class Filter implements FilterModifiable{
 	public void reviewThread(FilterItem filterItem){
 		sql.addFilter(filterItem.getUrl().toString(),  filterItem.getBoard(), filterItem.getReason(), filterItem.getState());
 		blocklistModel.addElement(filterItem);
-		filterNr++;
-		Stats.setFilterSize(filterNr);
+		Stats.setFilterSize(filterNr.incrementAndGet());
 	}
 
 	/**
@@ -219,8 +244,7 @@ public class Filter implements FilterModifiable{
 	 */
 	public void setAllow(URL url){
 		sql.updateState(url.toString(), FilterState.ALLOW);
-		filterNr--;
-		Stats.setFilterSize(filterNr);
+		Stats.setFilterSize(filterNr.decrementAndGet());
 	}
 
 	/**
@@ -229,8 +253,7 @@ public class Filter implements FilterModifiable{
 	 */
 	public void setDeny(URL url){
 		sql.updateState(url.toString(), FilterState.DENY);
-		filterNr--;
-		Stats.setFilterSize(filterNr);
+		Stats.setFilterSize(filterNr.decrementAndGet());
 	}
 	
 	/**
@@ -294,8 +317,14 @@ public class Filter implements FilterModifiable{
 	public void pruneCache(){
 		Calendar exp = Calendar.getInstance();
 		exp.add(Calendar.HOUR, -3);
+		final long maxAge = exp.getTimeInMillis(); //keys that are older than 3 Hour
 
-		sql.pruneCache(exp.getTimeInMillis()); //keys that are older than 3 Hour
+		new ThrottledBatch(CachePrune.BATCH_SIZE, CachePrune.BATCH_PAUSE, CachePrune.TIME_BUDGET).run(new BatchOperation() {
+			@Override
+			public int runBatch(int batchSize) {
+				return sql.pruneCache(maxAge, batchSize);
+			}
+		});
 		Stats.setCacheSize(sql.size(AidTables.Cache));
 	}
 	
@@ -310,8 +339,56 @@ public class Filter implements FilterModifiable{
 		return exists;
 	}
 	
-	public void addIndex(String hash, String path, int size) throws SQLException{
-				sql.addIndex(hash, path, size, LOCATION_TAG);
+	public void addIndex(String hash, String md5, String prefixMd5, String path, long size) throws SQLException{
+				sql.addIndex(hash, md5, prefixMd5, path, size, LOCATION_TAG);
+	}
+	
+	/**
+	 * Record the prefix fingerprint of a file that is already indexed.
+	 * @param hash Hash of the known file
+	 * @param prefixMd5 MD5 hash of the file prefix, see {@link PrefixFingerprint}. Ignored if null.
+	 */
+	public void addFingerprint(String hash, String prefixMd5){
+		if(prefixMd5 == null){
+			return;
+		}
+		
+		sql.addFingerprint(hash, prefixMd5);
+	}
+	
+	/**
+	 * Check if a file that is being downloaded matches exactly one indexed file.
+	 * If several files share the fingerprint, the download has to finish so the full hash can decide.
+	 * @param size size of the file in bytes
+	 * @param prefixMd5 MD5 hash of the file prefix, see {@link PrefixFingerprint}
+	 * @return true if the fingerprint is known.<br/>
+	 * Returns false on error.
+	 */
+	public boolean isKnownFingerprint(long size, String prefixMd5){
+		return sql.countFingerprint(size, prefixMd5) == 1;
+	}
+	
+	/**
+	 * Record the MD5 hash of a file that is already known, so it can be skipped by {@link #findMd5(String)}.
+	 * @param hash Hash of the known file
+	 * @param md5 MD5 hash of the file
+	 */
+	public void addMd5(String hash, String md5){
+		sql.addMd5(hash, md5);
+	}
+	
+	/**
+	 * Check the MD5 hash published by the site, so files can be skipped before they are downloaded.
+	 * @param md5 MD5 hash to check, may be null
+	 * @return the table the hash was found in, null if it is unknown or there is no hash.<br/>
+	 * Returns null on error.
+	 */
+	public AidTables findMd5(String md5){
+		if(md5 == null){
+			return null;
+		}
+		
+		return sql.findMd5(md5);
 	}
 	
 	/**
@@ -356,7 +433,9 @@ public class Filter implements FilterModifiable{
 		String currString = url.toString();
 
 		try {
-			if (new GetHtml().getResponse(currString) == 404){
+			int responseCode = WebClient.getDefault().getResponseCode(url);
+			
+			if (responseCode == 404){
 				sql.delete(AidTables.Filter, currString);
 				return false;
 			}else{
@@ -378,16 +457,17 @@ public class Filter implements FilterModifiable{
 		@Override
 		public void run() {
 			LinkedList<FilterItem> filterList = new LinkedList<>();
-			filterNr = 0;
+			int pending = 0;
 			filterList.addAll(sql.getPendingFilters());
 			blocklistModel.clear();
 			for(FilterItem fi : filterList){
 				if(refreshFilterItem(fi.getUrl())){
 					blocklistModel.addElement(fi);
-					filterNr++;
+					pending++;
 				}
 			}
-			Stats.setFilterSize(filterNr);
+			filterNr.set(pending);
+			Stats.setFilterSize(pending);
 		}
 	}
 	
@@ -77,6 +77,8 @@ public class Aid extends JFrame implements ActionListener, StatListener{
 			else
 				g.drawString("Data discarded: "+df.format(Stats.getBytesDiscarded()/1048576.0/1024.0)+" gb", 5, 135);
 
+			g.drawString("Download rate: "+df.format(Stats.getDownloadRate()/1024.0)+" kb/s", 5, 145);
+
 			//	g.drawString("pending : "+fileWriter.getPendingWrites(), 160, 125);
 		}
 	}
@@ -100,6 +102,7 @@ public class Aid extends JFrame implements ActionListener, StatListener{
 	private JMenuItem jMenuItemFilterlist = new JMenuItem("Filterlist");
 	private JMenuItem jMenuItemPruneCache = new JMenuItem("Prune cache");
 	private JMenuItem jMenuItemSkipOutput = new JMenuItem("Log skipped files");
+	private JMenuItem jMenuItemDumpMetrics = new JMenuItem("Dump metrics");
 
 	private JMenu jSystemMenu = new JMenu("System");
 	private JMenu jDebugMenu = new JMenu("Debug");
@@ -139,12 +142,14 @@ public class Aid extends JFrame implements ActionListener, StatListener{
 		jSystemMenu.add(jMenuItemPruneCache);
 
 		jDebugMenu.add(jMenuItemSkipOutput);
+		jDebugMenu.add(jMenuItemDumpMetrics);
 
 		jMenuItemClearPage.addActionListener(parent);
 		jMenuItemClearImage.addActionListener(parent);
 		jMenuItemClearStats.addActionListener(parent);
 		jMenuItemFilterlist.addActionListener(parent);
 		jMenuItemPruneCache.addActionListener(parent);
+		jMenuItemDumpMetrics.addActionListener(parent);
 		jMenuItemClearLog.addActionListener(this);
 		jMenuBar.validate();
 		jMenuBar.repaint();
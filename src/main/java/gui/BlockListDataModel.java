@@ -19,12 +19,11 @@ package gui;
 
 import java.net.URL;
 
-import javax.swing.DefaultListModel;
 import filter.FilterItem;
 /**
  * Listmodel for the Blocklist.
  */
-public class BlockListDataModel extends DefaultListModel<FilterItem> {
+public class BlockListDataModel extends ElementListModel<FilterItem> {
 	private static final long serialVersionUID = 1L;
 
 	public URL getUrl(int index){
@@ -17,14 +17,12 @@
  */
 package gui;
 
-import javax.swing.DefaultListModel;
-
 import board.Board;
 
 /**
  * Listmodel for the Boardlist.
  */
-public class BoardListDataModel extends DefaultListModel<Board>{
+public class BoardListDataModel extends ElementListModel<Board>{
 	private static final long serialVersionUID = 1L;
 
 	public String getStatus(int index){
@@ -0,0 +1,29 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import javax.swing.DefaultListModel;
+
+import filter.ElementList;
+
+/**
+ * Swing list model that can be shared with the {@link filter.Filter}.
+ */
+public class ElementListModel<E> extends DefaultListModel<E> implements ElementList<E> {
+	private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,127 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Collects stat changes and publishes them to the {@link StatListener}s at a fixed rate.<br/>
+ * Reporting a change only adds the stat name to a set, repeated changes of the same stat
+ * between two dispatches are merged. Listeners are called on the Swing event dispatch thread.
+ */
+public class StatDispatcher {
+	private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final CopyOnWriteArrayList<StatListener> statListeners = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean dispatchQueued = new AtomicBoolean(false);
+	private final long intervalMillis;
+	private Timer dispatchTimer;
+	
+	private final Runnable dispatchRunnable = new Runnable() {
+		@Override
+		public void run() {
+			dispatchQueued.set(false);
+			dispatch();
+		}
+	};
+	
+	/**
+	 * @param intervalMillis time between dispatches in milliseconds
+	 */
+	public StatDispatcher(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+	
+	public synchronized void start() {
+		if(dispatchTimer != null){
+			return;
+		}
+		
+		dispatchTimer = new Timer("Stat dispatcher", true);
+		dispatchTimer.scheduleAtFixedRate(new DispatchTask(), intervalMillis, intervalMillis);
+	}
+	
+	public synchronized void stop() {
+		if(dispatchTimer != null){
+			dispatchTimer.cancel();
+			dispatchTimer = null;
+		}
+	}
+	
+	public void addStatListener(StatListener listener) {
+		statListeners.addIfAbsent(listener);
+	}
+	
+	public void removeStatListener(StatListener listener) {
+		statListeners.remove(listener);
+	}
+	
+	/**
+	 * Mark the stat as changed, listeners are notified with the next dispatch.
+	 * @param stat name of the stat
+	 */
+	public void statChanged(String stat) {
+		pending.add(stat);
+	}
+	
+	/**
+	 * Notify the listeners of all stats that changed since the last dispatch,
+	 * on the calling thread.
+	 */
+	void dispatch() {
+		List<String> changed = new LinkedList<>();
+		Iterator<String> iterator = pending.iterator();
+		
+		while(iterator.hasNext()){
+			changed.add(iterator.next());
+			iterator.remove();
+		}
+		
+		for(String stat : changed){
+			for(StatListener listener : statListeners){
+				listener.statChanged(stat);
+			}
+		}
+	}
+	
+	class DispatchTask extends TimerTask {
+		@Override
+		public void run() {
+			// nobody is listening when running headless, do not start the event dispatch thread
+			if(statListeners.isEmpty()){
+				pending.clear();
+				return;
+			}
+			
+			// only queue one dispatch at a time, in case the event dispatch thread falls behind
+			if(!pending.isEmpty() && dispatchQueued.compareAndSet(false, true)){
+				SwingUtilities.invokeLater(dispatchRunnable);
+			}
+		}
+	}
+}
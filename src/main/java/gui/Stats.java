@@ -17,69 +17,79 @@
  */
 package gui;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import metrics.Gauge;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.Meter;
+import metrics.StripedCounter;
+
 /**
- * Convenience class for GUI information.
+ * Convenience class for GUI information.<br/>
+ * Byte counts and rates are read from the {@link MetricsRegistry}.
+ * Listeners are notified asynchronously by a {@link StatDispatcher}.
  */
 public class Stats {
-	private static List<StatListener> statListeners = new LinkedList<>();
+	private static final long DISPATCH_INTERVAL = 100; // 10 updates per second
+	private static final StatDispatcher dispatcher = new StatDispatcher(DISPATCH_INTERVAL);
 
-	private static int cacheSize;
-	private static long bytesSaved, bytesDiscarded;
-	private static int filterSize;
-	private static String pageQueueSize, fileQueueSize;
+	private static volatile int cacheSize;
+	private static final StripedCounter bytesSaved, bytesDiscarded;
+	private static final Meter downloadRate;
+	private static volatile int filterSize;
+	private static volatile String pageQueueSize, fileQueueSize;
 	private static AtomicInteger timeGraphValue;
 	
 	static{
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		
 		cacheSize = -1;
-		bytesDiscarded = 0;
-		bytesSaved = 0;
+		bytesDiscarded = registry.counter(MetricNames.BYTES_DISCARDED);
+		bytesSaved = registry.counter(MetricNames.BYTES_SAVED);
+		downloadRate = registry.meter(MetricNames.DOWNLOAD_BYTES);
 		filterSize = 0;
 		timeGraphValue = new AtomicInteger();
 		
 		pageQueueSize = "";
 		fileQueueSize = "";
+		
+		registry.register(MetricNames.CACHE_SIZE, new Gauge() {
+			@Override
+			public long getValue() {
+				return cacheSize;
+			}
+		});
+		
+		dispatcher.start();
 	}
 
 	public static void addStatListener(StatListener listener) {
-		synchronized(statListeners) {
-			if(!statListeners.contains(listener)) {
-				statListeners.add(listener);
-			}
-		}
+		dispatcher.addStatListener(listener);
 	}
 
 	public static void removeStatListener(StatListener listener) {
-		synchronized(statListeners) {
-			statListeners.remove(listener);
-		}		
+		dispatcher.removeStatListener(listener);
 	}
 
 	private static void statChanged(String stat) {
-		synchronized(statListeners) {
-			for(StatListener listener : statListeners) {
-				listener.statChanged(stat);
-			}
-		}
+		dispatcher.statChanged(stat);
 	}
 
 	// Update stats
 	
 	public static void resetStats(){
-		bytesSaved = 0;
-		bytesDiscarded = 0;
+		bytesSaved.reset();
+		bytesDiscarded.reset();
 	}
 	
 	public static void saveBytes(long saved){
-		bytesSaved += saved;
+		bytesSaved.add(saved);
 		statChanged("savedBytes");
 	}
 	
 	public static void discardBytes(long discarded){
-		bytesDiscarded += discarded;
+		bytesDiscarded.add(discarded);
 		statChanged("discardedBytes");
 	}
 	
@@ -111,11 +121,18 @@ public class Stats {
 	// Fetch stats
 	
 	public static double getBytesSaved(){
-		return bytesSaved;
+		return bytesSaved.sum();
 	}
 	
 	public static double getBytesDiscarded(){
-		return bytesDiscarded;
+		return bytesDiscarded.sum();
+	}
+	
+	/**
+	 * @return downloaded bytes per second
+	 */
+	public static double getDownloadRate(){
+		return downloadRate.getRate();
 	}
 	
 	public static int getCacheSize(){
@@ -0,0 +1,128 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrency limit that adapts to the server with additive increase, multiplicative decrease (AIMD).<br/>
+ * While downloads complete within the latency target and the limit is used up, the limit grows by one
+ * for every limit downloads. Overload signals (503, 429, timeouts) halve the limit, but only once per
+ * latency target, so the errors of downloads that were started with the old limit only count once.
+ */
+public class AdaptiveConcurrencyLimit {
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+	private static final double DECREASE_FACTOR = 0.5;
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTarget;
+	
+	private double limit;
+	private int inFlight = 0;
+	private long lastDecrease;
+	private boolean decreased = false;
+	
+	/**
+	 * @param minLimit the limit never drops below this
+	 * @param maxLimit the limit never grows beyond this
+	 * @param initialLimit limit to start with
+	 * @param latencyTarget downloads taking longer than this do not increase the limit, in nanoseconds
+	 */
+	public AdaptiveConcurrencyLimit(int minLimit, int maxLimit, int initialLimit, long latencyTarget) {
+		if(minLimit < 1 || maxLimit < minLimit){
+			throw new IllegalArgumentException("Invalid limits " + minLimit + " - " + maxLimit);
+		}
+		
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTarget = latencyTarget;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+	
+	/**
+	 * Start a download if the limit allows it, every successful call has to be followed by {@link #release()}.
+	 * @return true if the download may start
+	 */
+	public synchronized boolean tryAcquire() {
+		if(inFlight >= getLimit()){
+			return false;
+		}
+		
+		inFlight++;
+		return true;
+	}
+	
+	/**
+	 * A download has finished.
+	 */
+	public synchronized void release() {
+		if(inFlight > 0){
+			inFlight--;
+		}
+	}
+	
+	/**
+	 * Forget about all running downloads, used when downloads are cancelled without notice.
+	 */
+	public synchronized void clearInFlight() {
+		inFlight = 0;
+	}
+	
+	/**
+	 * A download completed, call before {@link #release()}.
+	 * @param latency time the download took in nanoseconds
+	 */
+	public synchronized void onSuccess(long latency) {
+		if(latency > latencyTarget || inFlight < getLimit()){
+			// slow, or the limit was not reached and says nothing about the server
+			return;
+		}
+		
+		limit = Math.min(maxLimit, limit + 1 / limit);
+	}
+	
+	/**
+	 * The server is overloaded or refusing requests.
+	 */
+	public synchronized void onOverload() {
+		long now = System.nanoTime();
+		
+		if(decreased && now - lastDecrease < latencyTarget){
+			return;
+		}
+		
+		limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+		lastDecrease = now;
+		decreased = true;
+		logger.info("Server overloaded, reducing download limit to {}", getLimit());
+	}
+	
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+	
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+}
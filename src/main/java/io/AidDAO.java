@@ -24,6 +24,7 @@ import io.dao.DuplicateDAO;
 import io.dao.FilterDAO;
 import io.dao.IndexDAO;
 import io.dao.LocationDAO;
+import io.dao.ThumbnailDAO;
 import io.tables.BlacklistRecord;
 import io.tables.Cache;
 import io.tables.DirectoryPathRecord;
@@ -33,6 +34,7 @@ import io.tables.FilePathRecord;
 import io.tables.FileRecord;
 import io.tables.IndexRecord;
 import io.tables.LocationRecord;
+import io.tables.Md5Persister;
 import io.tables.Settings;
 import io.tables.Thumbnail;
 
@@ -50,7 +52,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import org.slf4j.Logger;
@@ -64,6 +69,9 @@ import com.github.dozedoff.commonj.io.ConnectionPool;
 import com.github.dozedoff.commonj.io.DBsettings;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.db.MysqlDatabaseType;
+import com.j256.ormlite.jdbc.DataSourceConnectionSource;
 import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.SelectArg;
 import com.j256.ormlite.support.ConnectionSource;
@@ -76,10 +84,16 @@ public class AidDAO{
 	protected final String RS_CLOSE_ERR = "Could not close ResultSet: ";
 	protected final String SQL_OP_ERR = "MySQL operation failed: ";
 	private final String DEFAULT_LOCATION = "UNKNOWN";
+	private final int PAGE_SIZE = 1000;
+	// blacklist first, so a blocked file is reported as such
+	private final String MD5_LOOKUP = "SELECT 'Block' FROM block WHERE md5 = UNHEX(?)"
+			+ " UNION ALL SELECT 'Dnw' FROM dnw WHERE md5 = UNHEX(?)"
+			+ " UNION ALL SELECT 'Fileindex' FROM fileindex WHERE md5 = UNHEX(?) ORDER BY 1 LIMIT 1";
 	protected final ConnectionPool connPool;
+	private final InstrumentedDataSource dataSource;
 	
 	private CacheDAO cacheDAO;
-	private Dao<Thumbnail, Integer> ThumbnailDAO;
+	private ThumbnailDAO thumbnailDAO;
 	private LocationDAO locationDao;
 	private IndexDAO indexDao;
 	private Dao<DirectoryPathRecord, Integer> directoryDAO;
@@ -93,16 +107,36 @@ public class AidDAO{
 
 	public AidDAO(ConnectionPool connPool){
 		this.connPool = connPool;
+		this.dataSource = null;
 		createDaos();
 	}
 	
+	/**
+	 * Create a DAO that records statement and pool timing.
+	 * All connections, including those used by the ORM, are taken from the pool.
+	 */
+	public AidDAO(ConnectionPool connPool, QueryMetrics queryMetrics){
+		this.connPool = connPool;
+		this.dataSource = new InstrumentedDataSource(connPool, queryMetrics);
+		createDaos();
+	}
+	
+	private ConnectionSource createConnectionSource() throws SQLException {
+		if(dataSource == null){
+			return connPool.getConnectionSource();
+		}
+		
+		return new DataSourceConnectionSource(dataSource, new MysqlDatabaseType());
+	}
+	
 	private void createDaos() {
 		try{
-			ConnectionSource cSource = connPool.getConnectionSource();
+			ConnectionSource cSource = createConnectionSource();
 			
 			cacheDAO = new CacheDAO(cSource);
 			DaoManager.registerDao(cSource, cacheDAO);
-			ThumbnailDAO = DaoManager.createDao(cSource, Thumbnail.class);
+			thumbnailDAO = new ThumbnailDAO(cSource);
+			DaoManager.registerDao(cSource, thumbnailDAO);
 			indexDao = new IndexDAO(cSource);
 			DaoManager.registerDao(cSource, indexDao);
 			locationDao = new LocationDAO(cSource);
@@ -124,6 +158,10 @@ public class AidDAO{
 
 	protected Connection getConnection(){
 		try {
+			if(dataSource != null){
+				return dataSource.getConnection();
+			}
+			
 			return connPool.getConnection();
 		} catch (SQLException e) {
 			logger.warn("Failed to get database connection");
@@ -201,6 +239,46 @@ public class AidDAO{
 	public LinkedList<FileRecord> getDuplicatesAndOriginal() {
 		return duplicateDAO.getDuplicatesAndOriginals();
 	}
+	
+	/**
+	 * Load all index records, including path and location, with a single query.
+	 * @return all index records, empty on error
+	 */
+	public List<IndexRecord> getAllIndexRecords() {
+		try {
+			return indexDao.queryForAllJoined();
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return new LinkedList<>();
+	}
+	
+	/**
+	 * Load all duplicate records, including path and location, with a single query.
+	 * @return all duplicate records, empty on error
+	 */
+	public List<DuplicateRecord> getAllDuplicateRecords() {
+		try {
+			return duplicateDAO.queryForAllJoined();
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return new LinkedList<>();
+	}
+	
+	/**
+	 * Iterate over all duplicates and their originals without loading them all into memory.
+	 * @return iterator over the records
+	 */
+	public Iterator<FileRecord> getDuplicatesAndOriginalIterator() {
+		return getDuplicatesAndOriginalIterator(PAGE_SIZE);
+	}
+	
+	public Iterator<FileRecord> getDuplicatesAndOriginalIterator(int pageSize) {
+		return duplicateDAO.iterateDuplicatesAndOriginals(pageSize);
+	}
 
 	protected PreparedStatement getPrepStmt(String command){
 		if(prepStmts.containsKey(command)){
@@ -277,13 +355,25 @@ public class AidDAO{
 		Thumbnail thumb = new Thumbnail(url, filename, data);
 		
 		try {
-			ThumbnailDAO.create(thumb);
+			thumbnailDAO.create(thumb);
 		} catch (SQLException e) {
 			logSQLerror(e);
 		}
 	}
 	
 	public boolean addIndex(FileInfo fileInfo, String location){
+		return addIndex(fileInfo, null, null, location);
+	}
+	
+	/**
+	 * Add a file to the index.
+	 * @param fileInfo hash, path and size of the file
+	 * @param md5 hexadecimal MD5 hash of the file, null if unknown
+	 * @param prefixMd5 hexadecimal MD5 hash of the file prefix, see {@link PrefixFingerprint}. Null if the file has none.
+	 * @param location location tag of the file
+	 * @return true if the file was added
+	 */
+	public boolean addIndex(FileInfo fileInfo, String md5, String prefixMd5, String location){
 		try {
 			LocationRecord locationRec = locationDao.queryForLocation(location);
 			
@@ -292,6 +382,8 @@ public class AidDAO{
 			}
 			
 			IndexRecord index = new IndexRecord(fileInfo, locationRec);
+			index.setMd5(md5);
+			index.setPrefixMd5(prefixMd5);
 			
 			if(indexDao.idExists(fileInfo.getHash())) {
 				return false;
@@ -336,10 +428,105 @@ public class AidDAO{
 	}
 	
 	public boolean addIndex(String hash, String path, long size, String location){
+		return addIndex(hash, null, null, path, size, location);
+	}
+	
+	public boolean addIndex(String hash, String md5, String prefixMd5, String path, long size, String location){
 		FileInfo info = new FileInfo(Paths.get(path), hash);
 		info.setSize(size);
 		
-		return addIndex(info, location);
+		return addIndex(info, md5, prefixMd5, location);
+	}
+	
+	/**
+	 * Record the MD5 hash of a file that is in the index, DNW list or blacklist.
+	 * Entries that already have a MD5 hash are not changed.
+	 * @param hash hash of the entry
+	 * @param md5 hexadecimal MD5 hash of the file
+	 */
+	public void addMd5(String hash, String md5){
+		if(! HashValue.isValidHex(hash) || ! Md5Persister.isValidHex(md5)){
+			return;
+		}
+		
+		try {
+			indexDao.updateRaw("UPDATE fileindex SET md5 = UNHEX(?) WHERE id = UNHEX(?) AND md5 IS NULL", md5, hash);
+			dnwDAO.updateRaw("UPDATE dnw SET md5 = UNHEX(?) WHERE id = UNHEX(?) AND md5 IS NULL", md5, hash);
+			blackListDAO.updateRaw("UPDATE block SET md5 = UNHEX(?) WHERE id = UNHEX(?) AND md5 IS NULL", md5, hash);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+	}
+	
+	/**
+	 * Record the prefix fingerprint of a file that is in the index.
+	 * Entries that already have a fingerprint are not changed.
+	 * @param hash hash of the entry
+	 * @param prefixMd5 hexadecimal MD5 hash of the file prefix, see {@link PrefixFingerprint}
+	 */
+	public void addFingerprint(String hash, String prefixMd5){
+		if(! HashValue.isValidHex(hash) || ! Md5Persister.isValidHex(prefixMd5)){
+			return;
+		}
+		
+		try {
+			indexDao.updateRaw("UPDATE fileindex SET prefix_md5 = UNHEX(?) WHERE id = UNHEX(?) AND prefix_md5 IS NULL", prefixMd5, hash);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+	}
+	
+	/**
+	 * Count the indexed files with the given prefix fingerprint.
+	 * @param size size of the file in bytes
+	 * @param prefixMd5 hexadecimal MD5 hash of the file prefix, see {@link PrefixFingerprint}
+	 * @return number of matching files.<br/>
+	 * Returns -1 on error.
+	 */
+	public int countFingerprint(long size, String prefixMd5){
+		if(! Md5Persister.isValidHex(prefixMd5)){
+			return 0;
+		}
+		
+		try {
+			GenericRawResults<String[]> rawResults = indexDao.queryRaw("SELECT COUNT(*) FROM fileindex WHERE size = ? AND prefix_md5 = UNHEX(?)", Long.toString(size), prefixMd5);
+			List<String[]> rows = rawResults.getResults();
+			rawResults.close();
+			
+			return Integer.parseInt(rows.get(0)[0]);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Look up a MD5 hash in the blacklist, DNW list and index, in that order.
+	 * @param md5 hexadecimal MD5 hash
+	 * @return the table the hash was found in, null if it is unknown.<br/>
+	 * Returns null on error.
+	 */
+	public AidTables findMd5(String md5){
+		if(! Md5Persister.isValidHex(md5)){
+			return null;
+		}
+		
+		try {
+			GenericRawResults<String[]> rawResults = indexDao.queryRaw(MD5_LOOKUP, md5, md5, md5);
+			List<String[]> rows = rawResults.getResults();
+			rawResults.close();
+			
+			if(rows.isEmpty()){
+				return null;
+			}
+			
+			return AidTables.valueOf(rows.get(0)[0]);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return null;
 	}
 	
 	public boolean addDuplicate(String hash, String path, long size, String location){
@@ -382,7 +569,7 @@ public class AidDAO{
 		ArrayList<Image> images = new ArrayList<>(1);
 		
 		try {
-			thumbs = new LinkedList<>(ThumbnailDAO.queryForEq("url", url));
+			thumbs = new LinkedList<>(thumbnailDAO.queryForEq("url", url));
 			images = new ArrayList<>(thumbs.size());
 			
 			for(Thumbnail thumb : thumbs){
@@ -464,7 +651,7 @@ public class AidDAO{
 	}
 
 	public boolean isDnw(String hash){
-		if(hash == null){
+		if(! HashValue.isValidHex(hash)){
 			return false;
 		}
 		
@@ -481,6 +668,10 @@ public class AidDAO{
 	}
 
 	public boolean isHashed(String hash){
+		if(! HashValue.isValidHex(hash)){
+			return false;
+		}
+		
 		try {
 			return indexDao.idExists(hash);
 		} catch (SQLException e) {
@@ -491,6 +682,10 @@ public class AidDAO{
 	}
 
 	public boolean isBlacklisted(String hash){
+		if(! HashValue.isValidHex(hash)){
+			return false;
+		}
+		
 		try {
 			return blackListDAO.idExists(hash);
 		} catch (SQLException e) {
@@ -528,13 +723,13 @@ public class AidDAO{
 		try {
 			switch (table) {
 			case Block:
-				BlacklistRecord blacklist = new BlacklistRecord(id);
-				blackListDAO.createOrUpdate(blacklist);
+				BlacklistRecord blacklist = new BlacklistRecord(id, indexDao.queryForMd5(id));
+				blackListDAO.createIfNotExists(blacklist);
 				break;
 				
 			case Dnw:
-				DnwRecord dnw = new DnwRecord(id);
-				dnwDAO.createOrUpdate(dnw);
+				DnwRecord dnw = new DnwRecord(id, indexDao.queryForMd5(id));
+				dnwDAO.createIfNotExists(dnw);
 				break;
 
 			default:
@@ -610,12 +805,51 @@ public class AidDAO{
 		return affectedRows;
 	}
 	
-	public void pruneCache(long maxAge){
+	/**
+	 * Delete at most batchSize cache entries that are older than maxAge.
+	 * @param maxAge timestamp in milliseconds, older entries are deleted
+	 * @param batchSize maximum number of entries to delete
+	 * @return number of deleted entries, -1 on error
+	 */
+	public int pruneCache(long maxAge, int batchSize){
+		try {
+			return cacheDAO.pruneCache(maxAge, batchSize);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Delete thumbnails that do not belong to a pending filter item.
+	 * @param batchSize maximum number of thumbnails to delete
+	 * @return number of deleted thumbnails, -1 on error
+	 */
+	public int deleteOrphanedThumbs(int batchSize) {
+		try {
+			return thumbnailDAO.deleteOrphans(batchSize);
+		} catch (SQLException e) {
+			logSQLerror(e);
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Delete denied filter items that have not been refreshed since maxAge.
+	 * @param maxAge timestamp in milliseconds, older items are deleted
+	 * @param batchSize maximum number of items to delete
+	 * @return number of deleted items, -1 on error
+	 */
+	public int deleteStaleFilters(long maxAge, int batchSize) {
 		try {
-			cacheDAO.pruneCache(maxAge);
+			return filterDAO.deleteStaleDenied(new Date(maxAge), batchSize);
 		} catch (SQLException e) {
 			logSQLerror(e);
 		}
+		
+		return -1;
 	}
 	
 	/**
@@ -691,7 +925,7 @@ public class AidDAO{
 	 */
 	public String getPath(String hash){
 		try {
-			IndexRecord index = indexDao.queryForId(hash);
+			IndexRecord index = indexDao.queryForIdJoined(hash);
 			return index.getRelativePath().toString();
 		} catch (SQLException e) {
 			logSQLerror(e);
@@ -701,24 +935,36 @@ public class AidDAO{
 	
 	public ArrayList<Path> getLocationPathList(String locationTag) {
 		ArrayList<Path> pathList = new ArrayList<>();
+		Iterator<IndexRecord> records = getLocationIndexIterator(locationTag);
 		
+		while(records.hasNext()){
+			pathList.add(records.next().getRelativePath());
+		}
+		
+		return pathList;
+	}
+	
+	/**
+	 * Iterate over all index records of a location without loading them all into memory.
+	 * @param locationTag location to list
+	 * @return iterator over the records, empty if the location does not exist
+	 */
+	public Iterator<IndexRecord> getLocationIndexIterator(String locationTag) {
+		return getLocationIndexIterator(locationTag, PAGE_SIZE);
+	}
+	
+	public Iterator<IndexRecord> getLocationIndexIterator(String locationTag, int pageSize) {
 		try {
-			List<LocationRecord> locRec = locationDao.queryForEq("location", locationTag);
+			LocationRecord locRec = locationDao.queryForLocation(locationTag);
 			
-			if(! locRec.isEmpty()){
-				IndexRecord index = new IndexRecord();
-				index.setLocation(locRec.get(0));
-				List<IndexRecord> results = indexDao.queryForMatchingArgs(index);
-				
-				for(IndexRecord result : results){
-					pathList.add(result.getRelativePath());
-				}
+			if(locRec != null){
+				return indexDao.iterateLocation(locRec, pageSize);
 			}
 		} catch (SQLException e) {
 			logSQLerror(e);
 		}
 		
-		return pathList;
+		return Collections.<IndexRecord>emptyList().iterator();
 	}
 	
 	public ArrayList<String> getLocationFilelist(String locationTag) {
@@ -754,7 +1000,7 @@ public class AidDAO{
 	
 	public String getLocationById(String id) {
 		try {
-			IndexRecord index = indexDao.queryForId(id);
+			IndexRecord index = indexDao.queryForIdJoined(id);
 			if (index == null) {
 				return DEFAULT_LOCATION;
 			} else {
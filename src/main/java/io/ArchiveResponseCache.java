@@ -0,0 +1,192 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CacheRequest;
+import java.net.CacheResponse;
+import java.net.HttpURLConnection;
+import java.net.ResponseCache;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records or replays all HTTP responses of the JVM with a {@link HttpArchive}.
+ * Page loading, image and thumbnail downloads use {@link HttpURLConnection},
+ * which consults the default {@link ResponseCache} for every request.<br/>
+ * In replay mode no requests reach the network, URIs that are not in the
+ * archive are answered with 404.
+ */
+public class ArchiveResponseCache extends ResponseCache {
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveResponseCache.class);
+	
+	public enum Mode {
+		RECORD, REPLAY
+	}
+	
+	private final HttpArchive archive;
+	private final Mode mode;
+	
+	public ArchiveResponseCache(HttpArchive archive, Mode mode) {
+		this.archive = archive;
+		this.mode = mode;
+	}
+	
+	/**
+	 * Install a archive as the default response cache of the JVM.
+	 * @return the installed cache
+	 */
+	public static ArchiveResponseCache install(HttpArchive archive, Mode mode) {
+		ArchiveResponseCache cache = new ArchiveResponseCache(archive, mode);
+		ResponseCache.setDefault(cache);
+		logger.info("HTTP responses are {} with {}", mode == Mode.RECORD ? "recorded" : "replayed", archive);
+		
+		return cache;
+	}
+	
+	/**
+	 * Remove the response cache and close the archive.
+	 */
+	public void uninstall() {
+		if(ResponseCache.getDefault() == this){
+			ResponseCache.setDefault(null);
+		}
+		
+		archive.close();
+	}
+	
+	public Mode getMode() {
+		return mode;
+	}
+	
+	@Override
+	public CacheResponse get(URI uri, String rqstMethod, Map<String, List<String>> rqstHeaders) throws IOException {
+		if(mode != Mode.REPLAY){
+			return null;
+		}
+		
+		HttpArchive.Response response = archive.replay(uri);
+		
+		if(response == null){
+			logger.debug("No recorded response for {}", uri);
+			return new ArchivedResponse(notFound(), new byte[0]);
+		}
+		
+		return new ArchivedResponse(response.getHeaders(), response.getBody());
+	}
+	
+	private Map<String, List<String>> notFound() {
+		Map<String, List<String>> headers = new HashMap<>();
+		headers.put(null, Collections.singletonList("HTTP/1.1 404 Not Found"));
+		headers.put("Content-Length", Collections.singletonList("0"));
+		
+		return headers;
+	}
+	
+	@Override
+	public CacheRequest put(URI uri, URLConnection conn) throws IOException {
+		if(mode != Mode.RECORD || ! (conn instanceof HttpURLConnection)){
+			return null;
+		}
+		
+		HttpURLConnection http = (HttpURLConnection)conn;
+		
+		return new RecordingRequest(uri, http.getResponseCode(), http.getHeaderFields());
+	}
+	
+	/**
+	 * Receives the body while the connection is read, the record is written once the body is complete.
+	 */
+	private class RecordingRequest extends CacheRequest {
+		private final URI uri;
+		private final int status;
+		private final Map<String, List<String>> headers;
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private boolean aborted;
+		
+		public RecordingRequest(URI uri, int status, Map<String, List<String>> headers) {
+			this.uri = uri;
+			this.status = status;
+			this.headers = headers;
+		}
+		
+		@Override
+		public OutputStream getBody() throws IOException {
+			return new OutputStream() {
+				private boolean closed;
+				
+				@Override
+				public void write(int b) throws IOException {
+					body.write(b);
+				}
+				
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					body.write(b, off, len);
+				}
+				
+				@Override
+				public void close() throws IOException {
+					if(closed || aborted){
+						return;
+					}
+					
+					closed = true;
+					archive.record(uri, new HttpArchive.Response(status, headers, body.toByteArray()));
+				}
+			};
+		}
+		
+		@Override
+		public void abort() {
+			aborted = true;
+			logger.debug("Incomplete response for {} was not recorded", uri);
+		}
+	}
+	
+	private static class ArchivedResponse extends CacheResponse {
+		private final Map<String, List<String>> headers;
+		private final byte[] body;
+		
+		public ArchivedResponse(Map<String, List<String>> headers, byte[] body) {
+			this.headers = headers;
+			this.body = body;
+		}
+		
+		@Override
+		public Map<String, List<String>> getHeaders() throws IOException {
+			return headers;
+		}
+		
+		@Override
+		public InputStream getBody() throws IOException {
+			return new ByteArrayInputStream(body);
+		}
+	}
+}
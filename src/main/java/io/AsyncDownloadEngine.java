@@ -0,0 +1,277 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.jetty.client.ContentExchange;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.io.Buffer;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Download engine using non-blocking I/O, an alternative to the worker threads of {@link ImageLoader}.<br/>
+ * A transfer only holds a thread while data is processed, so a few threads can serve hundreds of transfers.
+ * The number of connections per host is limited, further downloads for the host wait until a connection is free.
+ * Downloads with a {@link PrefixFingerprint.Check} are cancelled once the prefix shows that the file is known.
+ * The check may query the database, so it runs on a separate thread while the transfer continues.
+ */
+public class AsyncDownloadEngine {
+	private static final Logger logger = LoggerFactory.getLogger(AsyncDownloadEngine.class);
+	
+	private static final int CONNECT_TIMEOUT = 10 * 1000;
+	private static final int IDLE_TIMEOUT = 30 * 1000;
+	private static final long EXCHANGE_TIMEOUT = 5 * 60 * 1000;
+	private static final int CHECK_THREADS = 2;
+	
+	/**
+	 * Result of a download, called by one of the engine threads.
+	 */
+	public interface Callback {
+		/**
+		 * @param url the downloaded file
+		 * @param fullPath where the file should be saved
+		 * @param data content of the file
+		 */
+		void completed(URL url, File fullPath, byte[] data);
+		
+		/**
+		 * @param url the file that could not be downloaded
+		 * @param fullPath where the file should have been saved
+		 * @param responseCode HTTP response code, -1 if there was no response
+		 */
+		void failed(URL url, File fullPath, int responseCode);
+		
+		/**
+		 * The prefix matched a known file and the transfer was cancelled.
+		 * @param url the file that was skipped
+		 * @param fullPath where the file should have been saved
+		 * @param size size of the complete file in bytes
+		 */
+		void skipped(URL url, File fullPath, long size);
+	}
+	
+	private final HttpClient client = new HttpClient();
+	private final ConcurrentMap<HttpExchange, URL> active = new ConcurrentHashMap<>();
+	private final ExecutorService checkExecutor = Executors.newFixedThreadPool(CHECK_THREADS, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Prefix check");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	/**
+	 * @param connectionsPerHost maximum number of connections to a single host
+	 * @param threads number of threads for processing responses
+	 */
+	public AsyncDownloadEngine(int connectionsPerHost, int threads) {
+		client.setConnectorType(HttpClient.CONNECTOR_SELECT_CHANNEL);
+		client.setMaxConnectionsPerAddress(connectionsPerHost);
+		client.setThreadPool(new QueuedThreadPool(threads));
+		client.setConnectTimeout(CONNECT_TIMEOUT);
+		client.setIdleTimeout(IDLE_TIMEOUT);
+		client.setTimeout(EXCHANGE_TIMEOUT);
+		client.registerListener("org.eclipse.jetty.client.RedirectListener");
+	}
+	
+	public boolean start() {
+		try {
+			client.start();
+			logger.info("Async download engine started with {} connections per host", client.getMaxConnectionsPerAddress());
+			return true;
+		} catch (Exception e) {
+			logger.error("Failed to start async download engine: {}", e.getMessage());
+			return false;
+		}
+	}
+	
+	public void stop() {
+		cancelAll();
+		checkExecutor.shutdownNow();
+		
+		try {
+			client.stop();
+		} catch (Exception e) {
+			logger.warn("Failed to stop async download engine: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Start a download, the callback is notified once it is complete.
+	 * @param url file to download
+	 * @param fullPath where the file should be saved, passed to the callback
+	 * @param callback notified of the result
+	 */
+	public void download(URL url, File fullPath, Callback callback) {
+		download(url, fullPath, null, callback);
+	}
+	
+	/**
+	 * Start a download, the callback is notified once it is complete.
+	 * @param url file to download
+	 * @param fullPath where the file should be saved, passed to the callback
+	 * @param check asked once the prefix has arrived, may be null
+	 * @param callback notified of the result
+	 */
+	public void download(final URL url, final File fullPath, final PrefixFingerprint.Check check, final Callback callback) {
+		ContentExchange exchange = new ContentExchange(true) {
+			private long received = 0;
+			private boolean prefixChecked = (check == null);
+			
+			@Override
+			protected synchronized void onResponseContent(Buffer content) throws IOException {
+				int length = content.length();
+				super.onResponseContent(content);
+				
+				if(prefixChecked){
+					return;
+				}
+				
+				received += length;
+				
+				if(received < PrefixFingerprint.PREFIX_SIZE){
+					return;
+				}
+				
+				prefixChecked = true;
+				long size = getResponseFields().getLongField("Content-Length");
+				
+				if(getResponseStatus() == 200 && PrefixFingerprint.hasFingerprint(size)){
+					checkPrefix(size, getResponseContentBytes());
+				}
+			}
+			
+			/**
+			 * The engine threads must not wait for the database, the transfer continues until the check is done.
+			 */
+			private void checkPrefix(final long size, final byte[] prefix) {
+				final HttpExchange exchange = this;
+				
+				try {
+					checkExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							// a transfer that completed in the meantime has already been removed
+							if(check.isKnown(url, size, prefix) && active.remove(exchange) != null){
+								exchange.cancel();
+								callback.skipped(url, fullPath, size);
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					logger.debug("Prefix of {} not checked, the engine is stopping", url);
+				}
+			}
+			
+			@Override
+			protected void onResponseComplete() throws IOException {
+				if(active.remove(this) == null){
+					return;	// cancelled
+				}
+				
+				int status = getResponseStatus();
+				
+				if(status == 200){
+					callback.completed(url, fullPath, getResponseContentBytes());
+				}else{
+					callback.failed(url, fullPath, status);
+				}
+			}
+			
+			@Override
+			protected void onConnectionFailed(Throwable x) {
+				failed(x);
+			}
+			
+			@Override
+			protected void onException(Throwable x) {
+				failed(x);
+			}
+			
+			@Override
+			protected void onExpire() {
+				failed(new IOException("Timed out"));
+			}
+			
+			private void failed(Throwable x) {
+				// a cancelled exchange has already been removed
+				if(active.remove(this) != null){
+					logger.info("Download of {} failed: {}", url, x.getMessage());
+					callback.failed(url, fullPath, -1);
+				}
+			}
+		};
+		
+		exchange.setURL(url.toString());
+		exchange.setRequestHeader("User-Agent", "Mozilla");
+		active.put(exchange, url);
+		
+		try {
+			client.send(exchange);
+		} catch (IOException e) {
+			active.remove(exchange);
+			logger.warn("Failed to send request for {}: {}", url, e.getMessage());
+			callback.failed(url, fullPath, -1);
+		}
+	}
+	
+	/**
+	 * Cancel all downloads, the callbacks are not notified.
+	 * @return the files that were cancelled
+	 */
+	public List<URL> cancelAll() {
+		List<URL> cancelled = new LinkedList<>();
+		
+		for(HttpExchange exchange : active.keySet()){
+			URL url = active.remove(exchange);
+			
+			if(url != null){
+				exchange.cancel();
+				cancelled.add(url);
+			}
+		}
+		
+		return cancelled;
+	}
+	
+	public int getConnectionsPerHost() {
+		return client.getMaxConnectionsPerAddress();
+	}
+	
+	/**
+	 * @return number of downloads that are waiting for a connection or in progress
+	 */
+	public int getActiveDownloads() {
+		return active.size();
+	}
+}
@@ -27,16 +27,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.dozedoff.commonj.gui.Log;
-import com.github.dozedoff.commonj.net.GetHtml;
 
+/**
+ * Periodically removes old entries from the cache.<br/>
+ * Entries are deleted in batches with a pause in between, so that cache look-ups
+ * are not blocked for the whole duration of the prune.
+ */
 public class CachePrune {
-	GetHtml getHtml = new GetHtml();
+	// also used by Filter.pruneCache(), so a manual prune is throttled the same way
+	public static final int BATCH_SIZE = 1000;
+	public static final long BATCH_PAUSE = 200; // in milliseconds
+	public static final long TIME_BUDGET = 5 * 60 * 1000; // five minutes
+	
+	WebClient webClient = WebClient.getDefault();
 	URL testAliveUrl;
 	int refreshInterSec = 1;
 	int startupDelaySec = 1;
 	int maximumAgeSec = 1;
 	Timer cachePruneTimer;
 	AidDAO sql;
+	ThrottledBatch throttledBatch = new ThrottledBatch(BATCH_SIZE, BATCH_PAUSE, TIME_BUDGET);
 
 	static final Logger logger = LoggerFactory.getLogger(CachePrune.class);
 
@@ -75,7 +85,7 @@ public class CachePrune {
 		public void run() {
 			int response = -1;
 			try{
-				response = getHtml.getResponse(testAliveUrl);
+				response = webClient.getResponseCode(testAliveUrl);
 			}catch (Exception e){
 				String message = "Failed to contact URL: "+e.getMessage()+"\n"
 								+"Response code was: "+response;
@@ -90,7 +100,15 @@ public class CachePrune {
 					return;
 				}
 
-				sql.pruneCache(maxAge(maximumAgeSec)); // delete keys that are older than maximumAgeMin
+				final long maxAge = maxAge(maximumAgeSec); // delete keys that are older than maximumAgeMin
+				int pruned = throttledBatch.run(new BatchOperation() {
+					@Override
+					public int runBatch(int batchSize) {
+						return sql.pruneCache(maxAge, batchSize);
+					}
+				});
+				
+				logger.info("Pruned {} entries from the cache", pruned);
 				Stats.setCacheSize(sql.size(AidTables.Cache)); // update GUI
 		}
 
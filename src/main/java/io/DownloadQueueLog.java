@@ -0,0 +1,230 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the pending downloads in an append only log, so that the download queue survives a restart.<br/>
+ * Every queued file appends an add record (URL, relative path), every finished file a done record.
+ * Once there are more done records than pending files, the log is rewritten with only the pending files.
+ * The order of the files is preserved, so they are resumed in the order they were queued.<br/>
+ * If the log cannot be written, the queue is only kept in memory.
+ */
+public class DownloadQueueLog implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(DownloadQueueLog.class);
+	
+	private static final byte RECORD_ADD = 'A';
+	private static final byte RECORD_DONE = 'D';
+	private static final int MIN_COMPACT_RECORDS = 100;
+	
+	private final Path logFile;
+	private final Map<String, String> pending = new LinkedHashMap<>();
+	private DataOutputStream out;
+	private int doneRecords;
+	
+	/**
+	 * Open the log, pending files of a previous run can be retrieved with {@link #getPending()}.
+	 * @param logFile file to store the log in, created if it does not exist
+	 */
+	public DownloadQueueLog(Path logFile) {
+		this.logFile = logFile;
+		
+		read();
+		compact();
+		
+		if(! pending.isEmpty()){
+			logger.info("Found {} pending downloads in {}", pending.size(), logFile);
+		}
+	}
+	
+	private void read() {
+		if(! Files.exists(logFile)){
+			return;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+			while(true){
+				byte type = in.readByte();
+				
+				if(type == RECORD_ADD){
+					String url = in.readUTF();
+					pending.put(url, in.readUTF());
+				}else if(type == RECORD_DONE){
+					pending.remove(in.readUTF());
+				}else{
+					logger.warn("Invalid record type {} in {}, ignoring the rest of the log", type, logFile);
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// end of the log, or a record that was cut off by a crash
+		} catch (IOException e) {
+			logger.warn("Failed to read download queue log {}: {}", logFile, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Record a queued file. Files that are already pending are not recorded again.
+	 * @param url URL of the file
+	 * @param relativePath path the file will be saved to
+	 */
+	public synchronized void add(URL url, String relativePath) {
+		String key = url.toString();
+		
+		if(pending.containsKey(key)){
+			return;
+		}
+		
+		pending.put(key, relativePath);
+		
+		if(out != null){
+			try {
+				out.writeByte(RECORD_ADD);
+				out.writeUTF(key);
+				out.writeUTF(relativePath);
+				out.flush();
+			} catch (IOException e) {
+				writeFailed(e);
+			}
+		}
+	}
+	
+	/**
+	 * Record a file as done, either downloaded or failed.
+	 * @param url URL of the file
+	 */
+	public synchronized void remove(String url) {
+		if(pending.remove(url) == null){
+			return;
+		}
+		
+		doneRecords++;
+		
+		if(out != null){
+			try {
+				out.writeByte(RECORD_DONE);
+				out.writeUTF(url);
+				out.flush();
+			} catch (IOException e) {
+				writeFailed(e);
+			}
+		}
+		
+		if(doneRecords >= MIN_COMPACT_RECORDS && doneRecords > pending.size()){
+			compact();
+		}
+	}
+	
+	/**
+	 * Remove all pending files.
+	 */
+	public synchronized void clear() {
+		pending.clear();
+		compact();
+	}
+	
+	/**
+	 * @return the pending files in the order they were queued, URL to relative path
+	 */
+	public synchronized Map<URL, String> getPending() {
+		Map<URL, String> files = new LinkedHashMap<>();
+		
+		for(Entry<String, String> entry : pending.entrySet()){
+			try {
+				files.put(new URL(entry.getKey()), entry.getValue());
+			} catch (MalformedURLException e) {
+				logger.warn("Invalid URL {} in download queue log: {}", entry.getKey(), e.getMessage());
+			}
+		}
+		
+		return files;
+	}
+	
+	public synchronized int size() {
+		return pending.size();
+	}
+	
+	/**
+	 * Rewrite the log with the pending files only. The file is replaced atomically,
+	 * a crash during compaction leaves the old log.
+	 */
+	private void compact() {
+		closeStream();
+		
+		Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+		
+		try {
+			try (DataOutputStream temp = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				for(Entry<String, String> entry : pending.entrySet()){
+					temp.writeByte(RECORD_ADD);
+					temp.writeUTF(entry.getKey());
+					temp.writeUTF(entry.getValue());
+				}
+			}
+			
+			Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile, StandardOpenOption.APPEND)));
+			doneRecords = 0;
+		} catch (IOException e) {
+			writeFailed(e);
+		}
+	}
+	
+	private void writeFailed(IOException e) {
+		logger.warn("Failed to write download queue log {}, the queue will not be resumed: {}", logFile, e.getMessage());
+		closeStream();
+	}
+	
+	private void closeStream() {
+		if(out == null){
+			return;
+		}
+		
+		try {
+			out.close();
+		} catch (IOException e) {
+			logger.warn("Failed to close download queue log {}: {}", logFile, e.getMessage());
+		}
+		
+		out = null;
+	}
+	
+	@Override
+	public synchronized void close() {
+		closeStream();
+	}
+}
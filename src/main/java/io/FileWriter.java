@@ -21,8 +21,13 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.LinkedList;
@@ -32,6 +37,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.activity.InvalidActivityException;
+import javax.xml.bind.DatatypeConverter;
+
+import metrics.Gauge;
+import metrics.Histogram;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.StripedCounter;
 
 import com.github.dozedoff.commonj.file.BinaryFileReader;
 import com.github.dozedoff.commonj.file.FileUtil;
@@ -54,19 +66,42 @@ public class FileWriter extends Thread{
 
 	boolean writeBlocked = false;
 	HashMaker hashMaker = new HashMaker(); // used to generate SHA-2 Hash
-	//TODO use this to output current buffer size to GUI
 	AtomicLong bufferSize = new AtomicLong(0); // amount of data in the buffer 
 	volatile boolean stop = false; // stop the FileWrite and do a clean Shutdown
 	//TODO will FileWriter shut down correctly without volatile?
 	private Filter filter;
+	private final Object saveLock = new Object(); // the duplicate check and the write of a file must not overlap with another file
 	private static Logger logger = LoggerFactory.getLogger(FileWriter.class);
 
-	long bytesSaved = 0;		// bytes written to disk
-	long bytesDiscarded = 0;  // bytes discarded (Hash found in mySQL Database)
+	// shared with Stats, which updates the byte counters
+	final StripedCounter bytesSaved = MetricsRegistry.getDefault().counter(MetricNames.BYTES_SAVED);		// bytes written to disk
+	final StripedCounter bytesDiscarded = MetricsRegistry.getDefault().counter(MetricNames.BYTES_DISCARDED);  // bytes discarded (Hash found in mySQL Database)
+	final StripedCounter filesSaved = MetricsRegistry.getDefault().counter(MetricNames.FILES_SAVED);
+	final StripedCounter filesDiscarded = MetricsRegistry.getDefault().counter(MetricNames.FILES_DISCARDED);
+	
+	private final Histogram hashTime = MetricsRegistry.getDefault().histogram(MetricNames.HASH_TIME);
+	private final Histogram writeTime = MetricsRegistry.getDefault().histogram(MetricNames.WRITE_TIME);
+	private final Histogram addIndexTime = MetricsRegistry.getDefault().histogram(MetricNames.ADD_INDEX_TIME);
+	private final Histogram flushTime = MetricsRegistry.getDefault().histogram(MetricNames.FLUSH_TIME);
 	
 	public FileWriter(Filter filter){
 		super("FileWriter");
 		this.filter = filter;
+		
+		MetricsRegistry.getDefault().register(MetricNames.WRITE_BUFFER, new Gauge() {
+			@Override
+			public long getValue() {
+				return fileBuffer.size();
+			}
+		});
+		
+		MetricsRegistry.getDefault().register(MetricNames.WRITE_BUFFER_BYTES, new Gauge() {
+			@Override
+			public long getValue() {
+				return bufferSize.get();
+			}
+		});
+		
 		this.start();
 	}
 
@@ -93,16 +128,16 @@ public class FileWriter extends Thread{
 	 * @return Number of bytes saved.
 	 */
 	public long getBytesSaved() {
-		return bytesSaved;
+		return bytesSaved.sum();
 	}
 	
 	/**
 	 * Resets BytesSaved and BytesDiscarded to 0.
 	 */
 	public void clearStats(){
-		bytesSaved = 0;
-		bytesDiscarded = 0;
 		Stats.resetStats();
+		filesSaved.reset();
+		filesDiscarded.reset();
 	}
 	
 	/**
@@ -112,7 +147,7 @@ public class FileWriter extends Thread{
 	 * @return Number of bytes discarded.
 	 */
 	public long getBytesDiscarded() {
-		return bytesDiscarded;
+		return bytesDiscarded.sum();
 	}
 	
 	/**
@@ -136,6 +171,103 @@ public class FileWriter extends Thread{
 		}
 	}
 	
+	/**
+	 * Adds a file that was downloaded to a temporary file, see {@link StreamingDownloader}.
+	 * The file gets the same checks as buffered files, if it passes them it is moved into place.
+	 * Unlike {@link #add(File, byte[])} this is done right away by the calling thread.
+	 * The temporary file is removed in any case.
+	 * 
+	 * @param path Filesystem path to save the file to.
+	 * @param tempFile the downloaded file, must be on the same file system as path
+	 * @param hash Hash value of the file data.
+	 * @throws InvalidActivityException Thrown if files are added during shutdown.
+	 */
+	public void addStreamed(File path, Path tempFile, String hash) throws InvalidActivityException {
+		if (stop) {
+			throw new InvalidActivityException("FileWriter is shutting down");
+		}
+		
+		try {
+			long size = Files.size(tempFile);
+			long hashStart = System.nanoTime();
+			String md5 = md5(tempFile);
+			hashTime.time(hashStart);
+			
+			saveStreamed(path, tempFile, hash, md5, size);
+		} catch (IOException e) {
+			logger.warn("Failed to save streamed file {}: {}", path, e.getMessage());
+		} finally {
+			try {
+				Files.deleteIfExists(tempFile);
+			} catch (IOException e) {
+				logger.warn("Failed to delete {}: {}", tempFile, e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Check the streamed file and move it into place, the buffer thread does not save files meanwhile.
+	 */
+	private void saveStreamed(File path, Path tempFile, String hash, String md5, long size) throws IOException {
+		synchronized (saveLock) {
+			if (filter.isBlacklisted(hash)){
+				filter.addMd5(hash, md5);
+				Path dir = path.toPath().getParent();
+				String name = path.getName();
+				
+				if(writeBlocked){
+					path = dir.resolve("WARNING-"+hash+"-"+name).toFile();
+					timedMoveToDisk(tempFile, path, hash, md5, size);
+				}else{
+					path = dir.resolve("WARNING-"+hash+"-"+name+".txt").toFile();
+					dir.toFile().mkdirs();
+					path.createNewFile();
+				}
+				
+				logger.warn("WARNING! "+ path + " is blacklisted");
+				Log.add("WARNING! "+ path + " is blacklisted");
+				return;
+			}
+			
+			if (filter.exists(hash)){
+				filter.addMd5(hash, md5);
+				filter.addFingerprint(hash, PrefixFingerprint.of(tempFile));
+				Stats.discardBytes(size);
+				filesDiscarded.increment();
+				return;
+			}
+			
+			timedMoveToDisk(tempFile, path, hash, md5, size);
+		}
+	}
+	
+	private void timedMoveToDisk(Path tempFile, File fullPath, String hash, String md5, long size) throws IOException {
+		long start = System.nanoTime();
+		fullPath.getParentFile().mkdirs();
+		
+		if(fullPath.exists()){
+			fullPath = newFileName(fullPath, true);
+		}
+		
+		if(! FileUtil.hasValidWindowsFilename(fullPath)){
+			fullPath = newFileName(fullPath, false);
+		}
+		
+		Files.move(tempFile, fullPath.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		writeTime.time(start);
+		
+		start = System.nanoTime();
+		try {
+			filter.addIndex(hash, md5, PrefixFingerprint.of(fullPath.toPath()), fullPath.toString(), size);
+			Stats.saveBytes(size);
+			filesSaved.increment();
+		} catch (SQLException e) {
+			logger.warn("Could not add Hash to database: "+e.getMessage());
+		} finally {
+			addIndexTime.time(start);
+		}
+	}
+	
 	/**
 	 * Writes all files in the file buffer to disk.
 	 * In case a file already exist, _{time in long format} will be apended to
@@ -144,8 +276,9 @@ public class FileWriter extends Thread{
 	 * @param data Data of the file
 	 * @param path Filepath of the file.
 	 * @param hash Hash value of the file data.
+	 * @param md5 MD5 hash of the file data.
 	 */
-	private void writeToDisk(byte[] data, String path, String hash){
+	private void writeToDisk(byte[] data, String path, String hash, String md5){
 		File directory = new File(path).getParentFile();
 		File fullPath = new File(path);
 
@@ -160,11 +293,15 @@ public class FileWriter extends Thread{
 					
 					if(newFileHash.equals(existingFileHash)){
 						//files are identical, normally this should not happen
-						bytesDiscarded += data.length;
+						Stats.discardBytes(data.length);
+						filesDiscarded.increment();
+						long start = System.nanoTime();
 						try {
-							filter.addIndex(existingFileHash, fullPath.toString(), data.length);
+							filter.addIndex(existingFileHash, md5, PrefixFingerprint.of(data), fullPath.toString(), data.length);
 						} catch (SQLException e) {
 							logger.warn("Could not add Hash to database: "+e.getMessage());
+						} finally {
+							addIndexTime.time(start);
 						}
 						return;
 					}else{
@@ -190,9 +327,15 @@ public class FileWriter extends Thread{
 			buffOut.write(data);
 			buffOut.close();
 			
-			filter.addIndex(hash, path, data.length);
-			bytesSaved += data.length; // in bytes
-			Stats.saveBytes(data.length);
+			long start = System.nanoTime();
+			try {
+				filter.addIndex(hash, md5, PrefixFingerprint.of(data), path, data.length);
+			} finally {
+				addIndexTime.time(start);
+			}
+			
+			Stats.saveBytes(data.length); // in bytes
+			filesSaved.increment();
 		}catch(SQLException se){
 			if(se.getLocalizedMessage().contains("Incorrect string value")){ //TODO instead of writing the file here, add the data back to the buffer
 				logger.warn("Unable to add hash to database due to :"+se.getMessage());
@@ -215,6 +358,12 @@ public class FileWriter extends Thread{
 		}
 	}
 	
+	private void timedWriteToDisk(byte[] data, String path, String hash, String md5){
+		long start = System.nanoTime();
+		writeToDisk(data, path, hash, md5);
+		writeTime.time(start);
+	}
+	
 	/**
 	 * Write the contents of the file buffer to disk.<br/>
 	 * Before writing to disk, the file is hashed (SHA-2) and checked against the Database.<br/>
@@ -224,8 +373,7 @@ public class FileWriter extends Thread{
 	 */
 	private void flushBuffer(){
 		byte[] data;
-		String path, hash;
-		Path dir;
+		String path, hash, md5;
 		LinkedList<FileItem> flushBuffer = new LinkedList<>();
 		fileBuffer.drainTo(flushBuffer);
 
@@ -234,23 +382,38 @@ public class FileWriter extends Thread{
 
 			path = fi.getPath().toString();
 			data = fi.getData();
+			bufferSize.addAndGet(-data.length);
 			
 			if(data.length == 0){
 				Log.add("Zero size file ignored: "+path);
 				continue;
 			}
 
+			long hashStart = System.nanoTime();
 			hash = hashMaker.hash(data);
+			md5 = md5(data);
+			hashTime.time(hashStart);
+			
+			saveBuffered(data, path, hash, md5);
+		}
+	}
+	
+	/**
+	 * Check the buffered file and write it to disk, streamed files are not saved meanwhile.
+	 */
+	private void saveBuffered(byte[] data, String path, String hash, String md5) {
+		synchronized (saveLock) {
 			if (filter.isBlacklisted(hash)){ // files will be renamed to WARNING-{hash value}-{filename}{file extension}
+				filter.addMd5(hash, md5);
 				Path realPath = Paths.get(path);
-				dir = realPath.getParent();
+				Path dir = realPath.getParent();
 				String name = realPath.getFileName().toString();
 				
 				// should blocked files be written to disk, or only create a placeholder?
 				if(writeBlocked){ 
 					path = dir.resolve("WARNING-"+hash+"-"+name).toString(); //add tag to unwanted file
 
-					writeToDisk(data, path, hash);
+					timedWriteToDisk(data, path, hash, md5);
 				}else{
 					path=dir.resolve("WARNING-"+hash+"-"+name+".txt").toString(); 
 					dir.toFile().mkdirs();
@@ -265,17 +428,45 @@ public class FileWriter extends Thread{
 
 				logger.warn("WARNING! "+ path + " is blacklisted");
 				Log.add("WARNING! "+ path + " is blacklisted");
-				continue;
+				return;
 			}
 
 			if (filter.exists(hash)){
-				bytesDiscarded += data.length; // in bytes
-				Stats.discardBytes(data.length);
-				continue;
+				filter.addMd5(hash, md5); // the site's MD5 lets the next copy be skipped before download
+				filter.addFingerprint(hash, PrefixFingerprint.of(data)); // for sites without one, the prefix lets it stop early
+				Stats.discardBytes(data.length); // in bytes
+				filesDiscarded.increment();
+				return;
 			}
-			writeToDisk(data, path, hash);
+			timedWriteToDisk(data, path, hash, md5);
+		}
+	}
+	
+	private static MessageDigest md5Digest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
 		}
-		bufferSize.set(0);	// reset counter
+	}
+	
+	private static String md5(byte[] data) {
+		return DatatypeConverter.printHexBinary(md5Digest().digest(data));
+	}
+	
+	private static String md5(Path file) throws IOException {
+		MessageDigest digest = md5Digest();
+		byte[] buffer = new byte[64 * 1024];
+		
+		try (InputStream is = Files.newInputStream(file)) {
+			int read;
+			
+			while((read = is.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+		}
+		
+		return DatatypeConverter.printHexBinary(digest.digest());
 	}
 	
 	/**
@@ -336,8 +527,14 @@ public class FileWriter extends Thread{
 					}
 				}
 			}
-			flushBuffer();
+			timedFlushBuffer();
 		}
-		flushBuffer(); // write buffer to Disk when the Thread is stopped
+		timedFlushBuffer(); // write buffer to Disk when the Thread is stopped
+	}
+	
+	private void timedFlushBuffer(){
+		long start = System.nanoTime();
+		flushBuffer();
+		flushTime.time(start);
 	}
 }
@@ -0,0 +1,278 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the hash ids of the file tables from VARCHAR(64) hex Strings to BINARY(32).<br/>
+ * The binary values are copied into a new column in batches, walking the old id in key
+ * order, so no long running lock is held while the data is copied and other clients can
+ * keep using the tables. A final pass catches rows added in the meantime, rows that do
+ * not contain a valid hash are dropped, and the new column replaces the old id.<br/>
+ * Every step can be repeated, so an interrupted migration is simply run again.
+ */
+class HashMigration {
+	private static final Logger logger = LoggerFactory.getLogger(HashMigration.class);
+	
+	private static final int BATCH_SIZE = 1000;
+	private static final long BATCH_PAUSE = 100;
+	
+	static final String[] TABLES = {"block", "dnw", "fileindex", "fileduplicate"};
+	static final String NEW_COLUMN = "id_bin";
+	
+	private final AidDAO sql;
+	private final ThrottledBatch throttledBatch;
+	
+	public HashMigration(AidDAO sql) {
+		this(sql, new ThrottledBatch(BATCH_SIZE, BATCH_PAUSE, 0));
+	}
+	
+	public HashMigration(AidDAO sql, ThrottledBatch throttledBatch) {
+		this.sql = sql;
+		this.throttledBatch = throttledBatch;
+	}
+	
+	/**
+	 * Migrate all tables.
+	 * @return true if all tables use binary ids
+	 */
+	public boolean migrate() {
+		for(String table : TABLES){
+			try {
+				if(! migrateTable(table)){
+					return false;
+				}
+			} catch (SQLException e) {
+				logger.error("Hash migration of table {} failed: {}", table, e.getMessage());
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	boolean migrateTable(final String table) throws SQLException {
+		if("binary".equalsIgnoreCase(getColumnType(table, "id"))){
+			logger.info("Table {} already uses binary hashes", table);
+			return true;
+		}
+		
+		logger.info("Migrating hashes of table {}", table);
+		
+		if(getColumnType(table, NEW_COLUMN) == null){
+			update("ALTER TABLE `" + table + "` ADD COLUMN `" + NEW_COLUMN + "` BINARY(32) NULL");
+		}
+		
+		BackfillOperation backfill = new BackfillOperation(table);
+		int copied = throttledBatch.run(backfill);
+		
+		if(! backfill.isDone()){
+			logger.warn("Hash migration of table {} stopped after {} rows", table, copied);
+			return false;
+		}
+		
+		int late = update("UPDATE `" + table + "` SET " + convertedId() + " WHERE `" + NEW_COLUMN + "` IS NULL");
+		int invalid = update("DELETE FROM `" + table + "` WHERE `" + NEW_COLUMN + "` IS NULL");
+		
+		if(invalid > 0){
+			logger.warn("Removed {} rows with invalid hashes from table {}", invalid, table);
+		}
+		
+		update(swapStatement(table, getIndexes(table), getPrimaryKey(table)));
+		logger.info("Migrated {} hashes of table {}", copied + late, table);
+		
+		return true;
+	}
+	
+	private String convertedId() {
+		return "`" + NEW_COLUMN + "` = IF(CHAR_LENGTH(id) = " + HashValue.HEX_LENGTH + ", UNHEX(id), NULL)";
+	}
+	
+	/**
+	 * @param indexes secondary indexes that contain the old id, they duplicate the primary key and are dropped with the column
+	 * @param primaryKey columns of the current primary key, empty if the table has none
+	 */
+	private String swapStatement(String table, List<String> indexes, List<String> primaryKey) {
+		StringBuilder statement = new StringBuilder("ALTER TABLE `" + table + "`");
+		
+		if(! primaryKey.isEmpty()){
+			statement.append(" DROP PRIMARY KEY,");
+		}
+		
+		for(String index : indexes){
+			statement.append(" DROP INDEX `").append(index).append("`,");
+		}
+		
+		statement.append(" DROP COLUMN id, CHANGE COLUMN `").append(NEW_COLUMN).append("` id BINARY(32) NOT NULL FIRST, ADD PRIMARY KEY (");
+		
+		if(primaryKey.isEmpty()){
+			statement.append("id");
+		}else{
+			for(String column : primaryKey){
+				statement.append(column).append(", ");
+			}
+			
+			statement.setLength(statement.length() - 2);
+		}
+		
+		return statement.append(")").toString();
+	}
+	
+	/**
+	 * The key names differ between databases that were set up with different versions of the script, so they are looked up.
+	 */
+	private List<String> getIndexes(String table) throws SQLException {
+		return queryColumn("SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'id' AND INDEX_NAME <> 'PRIMARY'", table);
+	}
+	
+	private List<String> getPrimaryKey(String table) throws SQLException {
+		return queryColumn("SELECT COLUMN_NAME FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = 'PRIMARY' ORDER BY SEQ_IN_INDEX", table);
+	}
+	
+	/**
+	 * Copies the hashes of the next batchSize ids, using the last copied id as the start of the next batch.
+	 */
+	class BackfillOperation implements BatchOperation {
+		private final String table;
+		private String lastId = "";
+		private boolean done = false;
+		
+		public BackfillOperation(String table) {
+			this.table = table;
+		}
+		
+		@Override
+		public int runBatch(int batchSize) {
+			try {
+				String[] page = queryRow("SELECT COUNT(*), MAX(id) FROM (SELECT id FROM `" + table + "` WHERE id > ? ORDER BY id LIMIT " + batchSize + ") AS page", lastId);
+				int pageSize = Integer.parseInt(page[0]);
+				
+				if(pageSize == 0){
+					done = true;
+					return 0;
+				}
+				
+				update("UPDATE `" + table + "` SET " + convertedId() + " WHERE id > ? AND id <= ?", lastId, page[1]);
+				lastId = page[1];
+				
+				if(pageSize < batchSize){
+					done = true;
+				}
+				
+				return pageSize;
+			} catch (SQLException e) {
+				logger.warn("Failed to copy hashes of table {}: {}", table, e.getMessage());
+				return -1;
+			}
+		}
+		
+		public boolean isDone() {
+			return done;
+		}
+	}
+	
+	private String getColumnType(String table, String column) throws SQLException {
+		String[] row = queryRow("SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column);
+		
+		if(row == null){
+			return null;
+		}
+		
+		return row[0];
+	}
+	
+	private String[] queryRow(String statement, String... arguments) throws SQLException {
+		Connection cn = sql.getConnection();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		
+		try {
+			ps = prepare(cn, statement, arguments);
+			rs = ps.executeQuery();
+			
+			if(! rs.next()){
+				return null;
+			}
+			
+			String[] row = new String[rs.getMetaData().getColumnCount()];
+			
+			for(int i = 0; i < row.length; i++){
+				row[i] = rs.getString(i + 1);
+			}
+			
+			return row;
+		} finally {
+			sql.silentClose(cn, ps, rs);
+		}
+	}
+	
+	private List<String> queryColumn(String statement, String... arguments) throws SQLException {
+		Connection cn = sql.getConnection();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		List<String> values = new LinkedList<>();
+		
+		try {
+			ps = prepare(cn, statement, arguments);
+			rs = ps.executeQuery();
+			
+			while(rs.next()){
+				values.add(rs.getString(1));
+			}
+			
+			return values;
+		} finally {
+			sql.silentClose(cn, ps, rs);
+		}
+	}
+	
+	private int update(String statement, String... arguments) throws SQLException {
+		Connection cn = sql.getConnection();
+		PreparedStatement ps = null;
+		
+		try {
+			ps = prepare(cn, statement, arguments);
+			return ps.executeUpdate();
+		} finally {
+			sql.silentClose(cn, ps, null);
+		}
+	}
+	
+	private PreparedStatement prepare(Connection cn, String statement, String... arguments) throws SQLException {
+		if(cn == null){
+			throw new SQLException("No database connection available");
+		}
+		
+		PreparedStatement ps = cn.prepareStatement(statement);
+		
+		for(int i = 0; i < arguments.length; i++){
+			ps.setString(i + 1, arguments[i]);
+		}
+		
+		return ps;
+	}
+}
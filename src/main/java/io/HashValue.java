@@ -0,0 +1,155 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.util.Arrays;
+
+/**
+ * A SHA-256 hash value stored as 32 raw bytes.<br/>
+ * This is the representation used by the database (BINARY(32) columns), the
+ * hexadecimal String form used in the rest of the program can be converted with
+ * {@link HashValue#fromHex(String)} and {@link HashValue#toHex()}.
+ */
+public final class HashValue implements Comparable<HashValue> {
+	public static final int LENGTH = 32;
+	public static final int HEX_LENGTH = LENGTH * 2;
+	
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	private final byte[] hash;
+	
+	private HashValue(byte[] hash) {
+		this.hash = hash;
+	}
+	
+	/**
+	 * Create a hash value from raw bytes. The array is copied.
+	 * @param hash 32 bytes
+	 * @return the hash value
+	 * @throws IllegalArgumentException if the array has the wrong length
+	 */
+	public static HashValue fromBytes(byte[] hash) {
+		if(hash == null || hash.length != LENGTH){
+			throw new IllegalArgumentException("Hash must be " + LENGTH + " bytes long");
+		}
+		
+		return new HashValue(Arrays.copyOf(hash, LENGTH));
+	}
+	
+	/**
+	 * Create a hash value from a hexadecimal String, case is ignored.
+	 * @param hex 64 hexadecimal characters
+	 * @return the hash value
+	 * @throws IllegalArgumentException if the String is not a valid hash
+	 */
+	public static HashValue fromHex(String hex) {
+		if(! isValidHex(hex)){
+			throw new IllegalArgumentException("Not a valid hash: " + hex);
+		}
+		
+		byte[] hash = new byte[LENGTH];
+		
+		for(int i = 0; i < LENGTH; i++){
+			int high = Character.digit(hex.charAt(2 * i), 16);
+			int low = Character.digit(hex.charAt(2 * i + 1), 16);
+			hash[i] = (byte) ((high << 4) | low);
+		}
+		
+		return new HashValue(hash);
+	}
+	
+	/**
+	 * Check if the String can be converted with {@link HashValue#fromHex(String)}.
+	 * @param hex String to check
+	 * @return true if the String consists of 64 hexadecimal characters
+	 */
+	public static boolean isValidHex(String hex) {
+		if(hex == null || hex.length() != HEX_LENGTH){
+			return false;
+		}
+		
+		for(int i = 0; i < HEX_LENGTH; i++){
+			if(Character.digit(hex.charAt(i), 16) == -1){
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return a copy of the raw bytes
+	 */
+	public byte[] toBytes() {
+		return Arrays.copyOf(hash, LENGTH);
+	}
+	
+	/**
+	 * @return the hash as 64 upper case hexadecimal characters
+	 */
+	public String toHex() {
+		char[] hex = new char[HEX_LENGTH];
+		
+		for(int i = 0; i < LENGTH; i++){
+			hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		
+		return new String(hex);
+	}
+	
+	/**
+	 * Compares the bytes as unsigned values, which is the same order the database
+	 * uses for BINARY columns.
+	 */
+	@Override
+	public int compareTo(HashValue other) {
+		for(int i = 0; i < LENGTH; i++){
+			int difference = (hash[i] & 0xFF) - (other.hash[i] & 0xFF);
+			
+			if(difference != 0){
+				return difference;
+			}
+		}
+		
+		return 0;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj){
+			return true;
+		}
+		
+		if(!(obj instanceof HashValue)){
+			return false;
+		}
+		
+		return Arrays.equals(hash, ((HashValue) obj).hash);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(hash);
+	}
+	
+	@Override
+	public String toString() {
+		return toHex();
+	}
+}
@@ -0,0 +1,191 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.StripedCounter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Paces the requests to each host, shared by everything that talks to the site.<br/>
+ * Every host has a token bucket that refills at the configured rate and holds up to one second
+ * worth of requests. A 503 or 429 response opens the circuit for the host: no requests are made
+ * until the backoff has passed, the backoff doubles with every further 503 or 429 and is reset
+ * by the first successful response.
+ */
+public class HostRateLimiter {
+	private static final Logger logger = LoggerFactory.getLogger(HostRateLimiter.class);
+	private static final HostRateLimiter defaultLimiter = new HostRateLimiter(0, TimeUnit.SECONDS.toMillis(5), TimeUnit.MINUTES.toMillis(10));
+	
+	private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+	private final long baseBackoff;
+	private final long maxBackoff;
+	private volatile double requestsPerSecond;
+	
+	private final StripedCounter backoffs = MetricsRegistry.getDefault().counter(MetricNames.HTTP_BACKOFFS);
+	
+	/**
+	 * @return the limiter used by the application
+	 */
+	public static HostRateLimiter getDefault() {
+		return defaultLimiter;
+	}
+	
+	/**
+	 * @param requestsPerSecond requests per second and host, 0 for no limit
+	 * @param baseBackoffMillis backoff after the first 503 or 429
+	 * @param maxBackoffMillis the backoff does not grow beyond this
+	 */
+	public HostRateLimiter(double requestsPerSecond, long baseBackoffMillis, long maxBackoffMillis) {
+		this.requestsPerSecond = requestsPerSecond;
+		this.baseBackoff = TimeUnit.MILLISECONDS.toNanos(baseBackoffMillis);
+		this.maxBackoff = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+	}
+	
+	/**
+	 * @param requestsPerSecond requests per second and host, 0 for no limit
+	 */
+	public void setRequestsPerSecond(double requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+	}
+	
+	/**
+	 * Wait until a request to the host of the URL may be made.
+	 * @param url the URL that will be requested
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquire(URL url) throws InterruptedException {
+		long wait;
+		
+		while((wait = reserve(url)) > 0){
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+	
+	/**
+	 * Take a request token for the host if one is available.
+	 * @param url the URL that will be requested
+	 * @return 0 if the request may be made now, else the time to wait in nanoseconds before trying again
+	 */
+	public long reserve(URL url) {
+		return host(url).reserve(System.nanoTime(), requestsPerSecond);
+	}
+	
+	/**
+	 * Report the response for a request. 503 and 429 open the circuit for the host,
+	 * other responses below 500 close it.
+	 * @param url the requested URL
+	 * @param responseCode the HTTP response code
+	 */
+	public void onResponse(URL url, int responseCode) {
+		Host host = host(url);
+		
+		if(responseCode == 503 || responseCode == 429){
+			long backoff = host.open(System.nanoTime(), baseBackoff, maxBackoff);
+			backoffs.increment();
+			logger.warn("Got {} from {}, pausing requests to the host for {} ms", responseCode, url.getHost(), TimeUnit.NANOSECONDS.toMillis(backoff));
+		}else if(responseCode > 0 && responseCode < 500){
+			host.close();
+		}
+	}
+	
+	/**
+	 * @param url any URL of the host
+	 * @return true if requests to the host are paused after a 503 or 429
+	 */
+	public boolean isOpen(URL url) {
+		return host(url).isOpen(System.nanoTime());
+	}
+	
+	private Host host(URL url) {
+		String name = url.getHost().toLowerCase(Locale.ENGLISH);
+		Host host = hosts.get(name);
+		
+		if(host == null){
+			Host newHost = new Host();
+			host = hosts.putIfAbsent(name, newHost);
+			
+			if(host == null){
+				host = newHost;
+			}
+		}
+		
+		return host;
+	}
+	
+	private static class Host {
+		private double tokens = -1;
+		private long lastRefill;
+		private long openUntil = System.nanoTime();	// nanoTime may be negative
+		private long backoff = 0;
+		
+		synchronized long reserve(long now, double requestsPerSecond) {
+			if(now - openUntil < 0){
+				return openUntil - now;
+			}
+			
+			if(requestsPerSecond <= 0){
+				return 0;
+			}
+			
+			double capacity = Math.max(1, requestsPerSecond);
+			
+			if(tokens < 0){
+				tokens = capacity;	// first request for the host
+			}else{
+				tokens = Math.min(capacity, tokens + (now - lastRefill) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+			}
+			
+			lastRefill = now;
+			
+			if(tokens >= 1){
+				tokens--;
+				return 0;
+			}
+			
+			return Math.max(1, (long) ((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+		}
+		
+		synchronized long open(long now, long baseBackoff, long maxBackoff) {
+			if(now - openUntil < 0){
+				return openUntil - now;	// already open, responses to requests made before the backoff
+			}
+			
+			backoff = backoff == 0 ? baseBackoff : Math.min(maxBackoff, backoff * 2);
+			openUntil = now + backoff;
+			return backoff;
+		}
+		
+		synchronized void close() {
+			backoff = 0;
+		}
+		
+		synchronized boolean isOpen(long now) {
+			return now - openUntil < 0;
+		}
+	}
+}
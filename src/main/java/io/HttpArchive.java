@@ -0,0 +1,390 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only archive of HTTP responses, using the record layout of WARC response records.
+ * Each record holds the status line, the headers and the body of one response.<br/>
+ * Responses for the same URI are returned in the order they were recorded, the last
+ * one is repeated once all have been read. This way a crawl replays the changes between
+ * board runs.
+ */
+public class HttpArchive {
+	private static final Logger logger = LoggerFactory.getLogger(HttpArchive.class);
+	
+	private static final String WARC_VERSION = "WARC/1.0";
+	private static final String CRLF = "\r\n";
+	private static final String TARGET_URI = "WARC-Target-URI";
+	private static final String CONTENT_LENGTH = "Content-Length";
+	
+	private final Path archive;
+	private final Map<String, List<long[]>> index = new HashMap<>();
+	private final Map<String, Integer> replayPosition = new HashMap<>();
+	
+	private OutputStream out;
+	private RandomAccessFile in;
+	
+	/**
+	 * A recorded response.
+	 */
+	public static class Response {
+		private final int status;
+		private final Map<String, List<String>> headers;
+		private final byte[] body;
+		
+		/**
+		 * @param status HTTP status code
+		 * @param headers response headers, the key null holds the status line
+		 * @param body response body
+		 */
+		public Response(int status, Map<String, List<String>> headers, byte[] body) {
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+		}
+		
+		public int getStatus() {
+			return status;
+		}
+		
+		public Map<String, List<String>> getHeaders() {
+			return headers;
+		}
+		
+		public byte[] getBody() {
+			return body;
+		}
+	}
+	
+	/**
+	 * The data at the position is not the start of a record.
+	 */
+	private static class InvalidRecordException extends IOException {
+		private static final long serialVersionUID = 1L;
+		
+		InvalidRecordException(String message) {
+			super(message);
+		}
+	}
+	
+	/**
+	 * Open a archive. Existing records are indexed, new records are appended.
+	 * @param archive file to use, created if it does not exist
+	 * @throws IOException if the archive could not be read
+	 */
+	public HttpArchive(Path archive) throws IOException {
+		this.archive = archive;
+		
+		if(Files.exists(archive)){
+			readIndex();
+		}
+	}
+	
+	/**
+	 * Index all complete records. A record that was cut off by a crash while it was written
+	 * is removed, so new records are appended after the last complete one.
+	 */
+	private void readIndex() throws IOException {
+		int records = 0;
+		long complete = 0;	// end of the last complete record
+		
+		try (RandomAccessFile raf = new RandomAccessFile(archive.toFile(), "r")) {
+			long fileLength = raf.length();
+			
+			while(raf.getFilePointer() < fileLength){
+				Map<String, String> recordHeaders = readRecordHeader(raf);
+				String uri = recordHeaders.get(TARGET_URI);
+				long length = Long.parseLong(recordHeaders.get(CONTENT_LENGTH));
+				long offset = raf.getFilePointer();
+				long end = offset + length + 4;	// the block and the trailing CRLF CRLF
+				
+				if(end > fileLength){
+					throw new EOFException("Record at " + complete + " ends after the end of the file");
+				}
+				
+				if(uri != null){
+					List<long[]> entries = index.get(uri);
+					
+					if(entries == null){
+						entries = new ArrayList<>();
+						index.put(uri, entries);
+					}
+					
+					entries.add(new long[]{offset, length});
+					records++;
+				}
+				
+				raf.seek(end);
+				complete = end;
+			}
+		} catch (EOFException | InvalidRecordException | NumberFormatException e) {
+			// the archive is only appended to, so everything after the last complete record is a record cut off by a crash
+			logger.warn("Ignoring the cut off record at {} in {}: {}", complete, archive, e.getMessage());
+			truncate(complete);
+		}
+		
+		logger.info("Indexed {} responses for {} URIs in {}", records, index.size(), archive);
+	}
+	
+	private void truncate(long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.WRITE)) {
+			logger.warn("Removing {} bytes from the end of {}", channel.size() - length, archive);
+			channel.truncate(length);
+		}
+	}
+	
+	private Map<String, String> readRecordHeader(RandomAccessFile raf) throws IOException {
+		String version = raf.readLine();
+		
+		if(version == null){
+			throw new EOFException("Truncated archive " + archive);
+		}
+		
+		if(! version.equals(WARC_VERSION)){
+			throw new InvalidRecordException("Expected " + WARC_VERSION + " at " + raf.getFilePointer() + " in " + archive + " but found " + version);
+		}
+		
+		Map<String, String> headers = new HashMap<>();
+		String line;
+		
+		while((line = raf.readLine()) != null && ! line.isEmpty()){
+			int split = line.indexOf(':');
+			
+			if(split > 0){
+				headers.put(line.substring(0, split).trim(), line.substring(split + 1).trim());
+			}
+		}
+		
+		return headers;
+	}
+	
+	/**
+	 * Append a response to the archive.
+	 * @param uri URI that was requested
+	 * @param response the response to store
+	 * @throws IOException if the record could not be written
+	 */
+	public synchronized void record(URI uri, Response response) throws IOException {
+		if(out == null){
+			out = new BufferedOutputStream(Files.newOutputStream(archive, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+		}
+		
+		byte[] httpHeader = httpHeader(response).getBytes(StandardCharsets.ISO_8859_1);
+		long length = httpHeader.length + response.getBody().length;
+		
+		StringBuilder record = new StringBuilder();
+		record.append(WARC_VERSION).append(CRLF);
+		record.append("WARC-Type: response").append(CRLF);
+		record.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append('>').append(CRLF);
+		record.append("WARC-Date: ").append(warcDate()).append(CRLF);
+		record.append(TARGET_URI).append(": ").append(uri).append(CRLF);
+		record.append("Content-Type: application/http; msgtype=response").append(CRLF);
+		record.append(CONTENT_LENGTH).append(": ").append(length).append(CRLF);
+		record.append(CRLF);
+		
+		out.write(record.toString().getBytes(StandardCharsets.ISO_8859_1));
+		out.write(httpHeader);
+		out.write(response.getBody());
+		out.write((CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+		out.flush();
+	}
+	
+	private String httpHeader(Response response) {
+		StringBuilder sb = new StringBuilder();
+		List<String> statusLine = response.getHeaders().get(null);
+		
+		if(statusLine == null || statusLine.isEmpty()){
+			sb.append("HTTP/1.1 ").append(response.getStatus());
+		}else{
+			sb.append(statusLine.get(0));
+		}
+		
+		sb.append(CRLF);
+		
+		for(Entry<String, List<String>> header : response.getHeaders().entrySet()){
+			String name = header.getKey();
+			
+			// the body is stored decoded and complete
+			if(name == null || name.equalsIgnoreCase("Transfer-Encoding") || name.equalsIgnoreCase(CONTENT_LENGTH)){
+				continue;
+			}
+			
+			for(String value : header.getValue()){
+				sb.append(name).append(": ").append(value).append(CRLF);
+			}
+		}
+		
+		sb.append(CONTENT_LENGTH).append(": ").append(response.getBody().length).append(CRLF);
+		sb.append(CRLF);
+		
+		return sb.toString();
+	}
+	
+	private String warcDate() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(new Date());
+	}
+	
+	/**
+	 * Get the next recorded response for the URI.
+	 * @param uri URI to look up
+	 * @return the response, or null if the URI was not recorded
+	 * @throws IOException if the record could not be read
+	 */
+	public synchronized Response replay(URI uri) throws IOException {
+		List<long[]> entries = index.get(uri.toString());
+		
+		if(entries == null){
+			return null;
+		}
+		
+		Integer position = replayPosition.get(uri.toString());
+		int next = position == null ? 0 : position;
+		replayPosition.put(uri.toString(), Math.min(next + 1, entries.size() - 1));
+		
+		long[] entry = entries.get(next);
+		byte[] block = new byte[(int)entry[1]];
+		
+		if(in == null){
+			in = new RandomAccessFile(archive.toFile(), "r");
+		}
+		
+		in.seek(entry[0]);
+		in.readFully(block);
+		
+		return parseResponse(block);
+	}
+	
+	private Response parseResponse(byte[] block) throws IOException {
+		InputStream is = new ByteArrayInputStream(block);
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		
+		String statusLine = readLine(is);
+		headers.put(null, Collections.singletonList(statusLine));
+		
+		String line;
+		
+		while(! (line = readLine(is)).isEmpty()){
+			int split = line.indexOf(':');
+			
+			if(split > 0){
+				String name = line.substring(0, split).trim();
+				List<String> values = headers.get(name);
+				
+				if(values == null){
+					values = new ArrayList<>();
+					headers.put(name, values);
+				}
+				
+				values.add(line.substring(split + 1).trim());
+			}
+		}
+		
+		int bodyStart = block.length - is.available();
+		byte[] body = Arrays.copyOfRange(block, bodyStart, block.length);
+		
+		return new Response(parseStatus(statusLine), headers, body);
+	}
+	
+	private String readLine(InputStream is) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		
+		while((b = is.read()) != '\n'){
+			if(b == -1){
+				throw new EOFException("Truncated response header in " + archive);
+			}
+			
+			if(b != '\r'){
+				line.write(b);
+			}
+		}
+		
+		return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+	
+	private int parseStatus(String statusLine) throws IOException {
+		String[] parts = statusLine.split(" ");
+		
+		try {
+			return Integer.parseInt(parts[1]);
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid status line " + statusLine + " in " + archive);
+		}
+	}
+	
+	/**
+	 * @return number of distinct URIs in the archive when it was opened
+	 */
+	public synchronized int getUriCount() {
+		return index.size();
+	}
+	
+	@Override
+	public String toString() {
+		return archive.toString();
+	}
+	
+	public synchronized void close() {
+		try {
+			if(out != null){
+				out.close();
+			}
+			
+			if(in != null){
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Failed to close archive {}: {}", archive, e.getMessage());
+		}
+		
+		out = null;
+		in = null;
+	}
+}
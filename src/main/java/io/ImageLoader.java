@@ -18,7 +18,25 @@
 package io;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,27 +48,368 @@ import com.github.dozedoff.commonj.net.PageLoadException;
 
 import filter.Filter;
 import gui.Stats;
+import metrics.Gauge;
+import metrics.Histogram;
+import metrics.Meter;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.StripedCounter;
 
 public class ImageLoader extends FileLoader {
 private static final Logger logger = LoggerFactory.getLogger(ImageLoader.class);
 
 private FileWriter fileWriter;
 private Filter filter;
+private final DownloadQueueLog queueLog;
+private volatile boolean shuttingDown = false;
+private final File workingDir;
+
+private static final int STREAM_WORKERS = 2;
+private static final int STREAM_ATTEMPTS = 5;
+private volatile long streamThreshold = 0; // files of this size or larger are streamed to disk, 0 to disable
+private final StreamingDownloader streamingDownloader = new StreamingDownloader(STREAM_ATTEMPTS);
+private volatile boolean prefixFingerprints = false;	// stop downloads whose prefix matches a known file
+private final Set<String> streaming = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+private volatile AsyncDownloadEngine asyncEngine;	// null to use the worker threads
+
+// files are handed to the workers or the engine as the adaptive limit allows, the rest wait here
+private static final long LATENCY_TARGET = TimeUnit.SECONDS.toNanos(10);
+private static final int ASYNC_MAX_TRANSFERS = 256;
+private volatile AdaptiveConcurrencyLimit limit;
+private final ConcurrentLinkedDeque<QueuedFile> pending = new ConcurrentLinkedDeque<>();
+private final Set<String> pendingUrls = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+private final Set<String> approved = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());	// checked before they were handed to the workers
+private final ExecutorService streamExecutor = Executors.newFixedThreadPool(STREAM_WORKERS, new ThreadFactory() {
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, "StreamingDownload");
+		thread.setDaemon(true);
+		return thread;
+	}
+});
+
+// dispatching waits for the host rate limit without blocking the thread that queued the file
+private final HostRateLimiter rateLimiter;
+private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+private final ScheduledExecutorService dispatchScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, "ImageLoader dispatch");
+		thread.setDaemon(true);
+		return thread;
+	}
+});
 
 private final int TIME_GRAPH_FACTOR = 1; // factor used for scaling DataGraph output
 
-	public ImageLoader(FileWriter fileWriter, Filter filter, File workingDir, int imageQueueWorkers) {
+private final Meter downloadedBytes = MetricsRegistry.getDefault().meter(MetricNames.DOWNLOAD_BYTES);
+private final Meter downloadedFiles = MetricsRegistry.getDefault().meter(MetricNames.DOWNLOAD_FILES);
+private final Histogram downloadTime = MetricsRegistry.getDefault().histogram(MetricNames.DOWNLOAD_TIME);
+private final Meter skippedBytes = MetricsRegistry.getDefault().meter(MetricNames.BYTES_SKIPPED);
+private final StripedCounter filesSkipped = MetricsRegistry.getDefault().counter(MetricNames.FILES_SKIPPED);
+
+private final PrefixFingerprint.Check knownFileCheck = new PrefixFingerprint.Check() {
+	@Override
+	public boolean isKnown(URL url, long size, byte[] prefix) {
+		return filter.isKnownFingerprint(size, PrefixFingerprint.hash(prefix));
+	}
+};
+// time at which a URL was handed to a worker or the engine, removed once the file is done or its transfer is cancelled
+private final ConcurrentMap<String, Long> queuedAt = new ConcurrentHashMap<>();
+
+	public ImageLoader(FileWriter fileWriter, Filter filter, File workingDir, int imageQueueWorkers, DownloadQueueLog queueLog) {
+		this(fileWriter, filter, workingDir, imageQueueWorkers, queueLog, HostRateLimiter.getDefault());
+	}
+	
+	ImageLoader(FileWriter fileWriter, Filter filter, File workingDir, int imageQueueWorkers, DownloadQueueLog queueLog, HostRateLimiter rateLimiter) {
 		super(workingDir, imageQueueWorkers);
+		this.rateLimiter = rateLimiter;
 		this.fileWriter = fileWriter;
 		this.filter = filter;
+		this.queueLog = queueLog;
+		this.workingDir = workingDir;
+		// start with the configured number of workers, the limit can only drop below it
+		this.limit = new AdaptiveConcurrencyLimit(1, imageQueueWorkers, imageQueueWorkers, LATENCY_TARGET);
+		
+		MetricsRegistry.getDefault().register(MetricNames.DOWNLOAD_QUEUE, new Gauge() {
+			@Override
+			public long getValue() {
+				return downloadList.size() + pending.size();
+			}
+		});
+		
+		MetricsRegistry.getDefault().register(MetricNames.DOWNLOAD_LIMIT, new Gauge() {
+			@Override
+			public long getValue() {
+				return limit.getLimit();
+			}
+		});
 		
 		logger.info("ImageLoader started");
 	}
+	
+	/**
+	 * Queue the files that were still pending when the program was last shut down.
+	 */
+	public void resume() {
+		Map<URL, String> resumed = queueLog.getPending();
+		
+		if(resumed.isEmpty()){
+			return;
+		}
+		
+		logger.info("Resuming {} pending downloads", resumed.size());
+		
+		for(Entry<URL, String> file : resumed.entrySet()){
+			if(Files.exists(StreamingDownloader.partFile(new File(workingDir, file.getValue()).toPath()))){
+				addStreamed(file.getKey(), file.getValue());	// continue the partial download
+			}else{
+				queue(file.getKey(), file.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Download files with the engine instead of the worker threads. The engine has to be started,
+	 * and has to be set before files are added.
+	 * @param asyncEngine the engine to use
+	 */
+	public void setAsyncEngine(AsyncDownloadEngine asyncEngine) {
+		this.asyncEngine = asyncEngine;
+		this.limit = new AdaptiveConcurrencyLimit(1, ASYNC_MAX_TRANSFERS, asyncEngine.getConnectionsPerHost(), LATENCY_TARGET);
+	}
+	
+	/**
+	 * Set the size from which on files are streamed to disk instead of being buffered in memory.
+	 * @param streamThreshold size in bytes, 0 to buffer all files
+	 */
+	public void setStreamThreshold(long streamThreshold) {
+		this.streamThreshold = streamThreshold;
+	}
+	
+	/**
+	 * Stop downloads once their first {@value PrefixFingerprint#PREFIX_SIZE} bytes match exactly one indexed file.
+	 * Only used for streamed files and the {@link AsyncDownloadEngine}, the worker threads always load the whole file.<br/>
+	 * The match is not verified with the full hash, a file that only differs after the prefix is not downloaded.
+	 * @param prefixFingerprints true to check the prefix of downloads
+	 */
+	public void setPrefixFingerprints(boolean prefixFingerprints) {
+		this.prefixFingerprints = prefixFingerprints;
+	}
+	
+	private PrefixFingerprint.Check fingerprintCheck() {
+		return prefixFingerprints ? knownFileCheck : null;
+	}
+	
+	/**
+	 * Add a file to the queue. Files that are at least as large as the stream threshold are
+	 * downloaded directly to disk, see {@link StreamingDownloader}.
+	 * @param url URL of the file
+	 * @param fileName path to save the file to, relative to the working directory
+	 * @param expectedSize size of the file in bytes, -1 if unknown
+	 */
+	public void add(URL url, String fileName, long expectedSize) {
+		if(streamThreshold > 0 && expectedSize >= streamThreshold){
+			addStreamed(url, fileName);
+		}else{
+			queue(url, fileName);
+		}
+	}
+	
+	private void queue(URL url, String fileName) {
+		String key = url.toString();
+		
+		if(shuttingDown || queuedAt.containsKey(key) || !pendingUrls.add(key)){
+			return;	// already being downloaded or waiting
+		}
+		
+		queueLog.add(url, fileName);
+		pending.add(new QueuedFile(url, fileName));
+		dispatch();
+		updateFileQueueState();
+	}
+	
+	/**
+	 * Hand waiting files to the workers or the engine until the limit is reached.
+	 */
+	private void dispatch() {
+		QueuedFile file;
+		
+		while(!shuttingDown && (file = nextFile()) != null){
+			long wait = rateLimiter.reserve(file.url);
+			
+			if(wait > 0){
+				// put it back in front and try again once the host allows the next request
+				pending.addFirst(file);
+				limit.release();
+				scheduleDispatch(wait);
+				return;
+			}
+			
+			if(! beforeFileAdd(file.url, file.fileName)){
+				pendingUrls.remove(file.url.toString());
+				limit.release();
+				continue;
+			}
+			
+			if(asyncEngine != null){
+				addAsync(file.url, file.fileName);
+			}else{
+				approved.add(file.url.toString());
+				add(file.url, file.fileName);
+			}
+			
+			pendingUrls.remove(file.url.toString());	// it is tracked in queuedAt now
+		}
+	}
+	
+	private void scheduleDispatch(long delayNanos) {
+		if(! dispatchScheduled.compareAndSet(false, true)){
+			return;
+		}
+		
+		dispatchScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				dispatchScheduled.set(false);
+				dispatch();
+				updateFileQueueState();
+			}
+		}, delayNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	private synchronized QueuedFile nextFile() {
+		if(pending.isEmpty() || !limit.tryAcquire()){
+			return null;
+		}
+		
+		QueuedFile file = pending.poll();
+		
+		if(file == null){
+			limit.release();
+			return null;
+		}
+		
+		return file;	// stays in pendingUrls until it is handed out, so it cannot be queued twice meanwhile
+	}
+	
+	/**
+	 * A file handed out by {@link #dispatch()} is done.
+	 */
+	private void finished() {
+		limit.release();
+		dispatch();
+		updateFileQueueState();
+	}
+	
+	private void addAsync(URL url, String fileName) {
+		afterFileAdd(url, fileName);
+		
+		asyncEngine.download(url, new File(workingDir, fileName), fingerprintCheck(), new AsyncDownloadEngine.Callback() {
+			@Override
+			public void completed(URL url, File fullPath, byte[] data) {
+				afterFileDownload(data, fullPath, url);
+				finished();
+			}
+			
+			@Override
+			public void failed(URL url, File fullPath, int responseCode) {
+				downloadFailed(url, responseCode);
+				finished();
+			}
+			
+			@Override
+			public void skipped(URL url, File fullPath, long size) {
+				rateLimiter.onResponse(url, 200);
+				fileSkipped(url, size);
+				finished();
+			}
+		});
+	}
+	
+	private void addStreamed(final URL url, final String fileName) {
+		if(shuttingDown || !beforeFileAdd(url, fileName) || !streaming.add(url.toString())){
+			return;
+		}
+		
+		afterFileAdd(url, fileName);
+		
+		streamExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					streamFile(url, fileName);
+				} finally {
+					streaming.remove(url.toString());
+					updateFileQueueState();
+				}
+			}
+		});
+	}
+	
+	private void streamFile(URL url, String fileName) {
+		File fullpath = new File(workingDir, fileName);
+		Path target = fullpath.toPath();
+		
+		try {
+			String hash = streamingDownloader.download(url, target, fingerprintCheck());
+			long size = Files.size(StreamingDownloader.partFile(target));
+			
+			fileWriter.addStreamed(fullpath, StreamingDownloader.partFile(target), hash);
+			filter.cache(url);
+			downloadedBytes.mark(size);
+			downloadedFiles.mark();
+			Stats.addTimeGraphValue((int)((size/1024)*TIME_GRAPH_FACTOR));
+		} catch (StreamingDownloader.RefusedException e) {
+			logger.warn("Could not load file {}: {}", url, e.getMessage());
+		} catch (StreamingDownloader.KnownFileException e) {
+			fileSkipped(url, e.getSize());
+			return;
+		} catch (IOException e) {
+			// the partial file and the queue entry are kept, the download continues on the next attempt
+			logger.warn("Failed to stream {} to {}: {}", url, fullpath, e.getMessage());
+			queuedAt.remove(url.toString());
+			return;
+		} catch (InvalidActivityException e) {
+			// shutting down, the complete partial file is picked up again on the next start
+			logger.warn("Failed adding file {} to FileWriter ({})", fullpath, url);
+			return;
+		}
+		
+		Long start = queuedAt.remove(url.toString());
+		
+		if(start != null){
+			downloadTime.time(start);
+		}
+		
+		queueLog.remove(url.toString());
+	}
+
+	/**
+	 * The prefix of the file matched a known file, the download was stopped.
+	 * @param size size of the complete file in bytes
+	 */
+	private void fileSkipped(URL url, long size) {
+		logger.debug("Skipped {}, the prefix matches a known file", url);
+		queuedAt.remove(url.toString());
+		queueLog.remove(url.toString());
+		filter.cache(url);
+		filesSkipped.increment();
+		
+		if(size > PrefixFingerprint.PREFIX_SIZE){
+			skippedBytes.mark(size - PrefixFingerprint.PREFIX_SIZE);
+		}
+	}
 
 	@Override
 	protected boolean beforeFileAdd(URL url, String fileName) {
+		if(approved.remove(url.toString())){
+			return true;
+		}
+		
 		if(filter.isCached(url)){	// has the file been downloaded recently?
 			filter.cache(url);		// if it has, update cache timestamp
+			queueLog.remove(url.toString());	// may have been downloaded before the log was updated
 			return false;
 		}
 		return true;
@@ -58,31 +417,110 @@ private final int TIME_GRAPH_FACTOR = 1; // factor used for scaling DataGraph ou
 	
 	@Override
 	protected void afterFileAdd(URL url, String fileName) {
+		queuedAt.put(url.toString(), System.nanoTime());
+		queueLog.add(url, fileName);
 		updateFileQueueState();
 	}
 	
+	/**
+	 * @return number of files handed to the workers or the engine that have not finished yet
+	 */
+	int getInFlight() {
+		return limit.getInFlight();
+	}
+	
 	private void updateFileQueueState(){
-		Stats.setFileQueueState("FileQueue: "+downloadList.size()+" - "+"? / "+fileQueueWorkers);
-		// queue size  - active workers / pool size
+		int queued = downloadList.size() + pending.size() + streaming.size();
+		Stats.setFileQueueState("FileQueue: "+queued+" - "+limit.getInFlight()+" / "+limit.getLimit()+" (max "+limit.getMaxLimit()+")");
+		// queue size  - active downloads / adaptive limit (maximum limit)
+	}
+	
+	@Override
+	public void clearQueue() {
+		// files the workers have not started yet never call afterProcessItem, so their permits are returned here
+		int removed = 0;
+		
+		while(downloadList.poll() != null){
+			removed++;
+		}
+		
+		for(int i = 0; i < removed; i++){
+			limit.release();
+		}
+		
+		super.clearQueue();
 	}
 	
 	@Override
 	protected void afterClearQueue() {
+		pending.clear();
+		pendingUrls.clear();
+		approved.clear();
+		
+		if(asyncEngine != null){
+			cancelTransfers();
+			limit.clearInFlight();	// cancelled transfers do not call back, running worker downloads still release their permit
+		}else{
+			queuedAt.clear();	// files removed from the worker queue do not call back either
+		}
+		
+		if(! shuttingDown){	// keep the pending files for the next start
+			queueLog.clear();
+		}
+		
 		updateFileQueueState();
 	}
 	
+	@Override
+	public void shutdown() {
+		shuttingDown = true;
+		streamExecutor.shutdownNow();	// partial files are resumed on the next start
+		dispatchScheduler.shutdownNow();
+		
+		if(asyncEngine != null){
+			cancelTransfers();
+			asyncEngine.stop();	// unfinished downloads stay in the queue log
+		}
+		
+		super.shutdown();
+		queueLog.close();
+	}
+	
+	/**
+	 * Cancelled transfers do not call back, so they are not timed.
+	 */
+	private void cancelTransfers() {
+		for(URL url : asyncEngine.cancelAll()){
+			queuedAt.remove(url.toString());
+		}
+	}
+	
 	@Override
 	protected void afterProcessItem(DownloadItem ii) {
-		updateFileQueueState();
+		finished();
 	}
 	
 	@Override
 	protected void afterFileDownload(byte[] data, File fullpath, URL url) {
+		Long start = queuedAt.remove(url.toString());
+		
+		if(start != null){
+			downloadTime.time(start);
+			
+			if(data != null){
+				limit.onSuccess(System.nanoTime() - start);
+			}
+		}
+		
 		if(data != null){
+			rateLimiter.onResponse(url, 200);
+			
 			try {
 				logger.debug("Adding file {} to FileWriter, caching URL {}", fullpath, url);
 				fileWriter.add(fullpath, data.clone());
 				filter.cache(url);	//add URL to cache
+				downloadedBytes.mark(data.length);
+				downloadedFiles.mark();
 				Stats.addTimeGraphValue((int)((data.length/1024)*TIME_GRAPH_FACTOR)); // add data to the download graph
 			} catch (InvalidActivityException e) {
 				logger.warn("Failed adding file {} to FileWriter ({})", fullpath, url);
@@ -92,20 +530,51 @@ private final int TIME_GRAPH_FACTOR = 1; // factor used for scaling DataGraph ou
 		}else{
 			logger.warn("Downloaded data for {} ({}) was null", url, fullpath);
 		}
+		
+		queueLog.remove(url.toString());
 	}
 	
 	@Override
 	protected void onPageLoadException(PageLoadException ple) {
-		int responseCode = Integer.parseInt(ple.getMessage());
+		try {
+			downloadFailed(new URL(String.valueOf(ple.getUrl())), Integer.parseInt(ple.getMessage()));
+		} catch (MalformedURLException e) {
+			logger.warn("Failed to load invalid URL {}", ple.getUrl());
+		}
+	}
+	
+	private void downloadFailed(URL url, int responseCode) {
+		queuedAt.remove(url.toString());
+		queueLog.remove(url.toString());
+		rateLimiter.onResponse(url, responseCode);
+
+		if(responseCode == -1 || responseCode == 429 || responseCode == 503){
+			limit.onOverload();
+		}
+		
+		if(responseCode == -1){
+			logger.warn("Could not load file, no response for {}", url);
+			return;
+		}
 
 		if(responseCode == 404 || responseCode == 500){
-			logger.warn("Could not load file, invalid response ({}) for {}", responseCode, ple.getUrl());
+			logger.warn("Could not load file, invalid response ({}) for {}", responseCode, url);
 		}
 
 		if(responseCode == 503){
-			logger.warn("Got a 503 response for {} This cloud indicate server porblems or a possible IP ban.", ple.getUrl());
+			logger.warn("Got a 503 response for {} This cloud indicate server porblems or a possible IP ban.", url);
 		}else{
-			logger.info("GetBinary(size) http code "+ple.getMessage());
+			logger.info("GetBinary(size) http code "+responseCode);
+		}
+	}
+	
+	private static class QueuedFile {
+		final URL url;
+		final String fileName;
+		
+		QueuedFile(URL url, String fileName) {
+			this.url = url;
+			this.fileName = fileName;
 		}
 	}
 }
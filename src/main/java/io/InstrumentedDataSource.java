@@ -0,0 +1,195 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import com.github.dozedoff.commonj.io.ConnectionPool;
+
+/**
+ * Hands out connections from a {@link ConnectionPool} and records how long
+ * it takes to get a connection and to execute statements.<br/>
+ * Connections and statements are wrapped in dynamic proxies, so the time spent reading a
+ * {@link java.sql.ResultSet} is not included in the statement time.
+ */
+public class InstrumentedDataSource implements DataSource {
+	private final ConnectionPool connPool;
+	private final QueryMetrics queryMetrics;
+	
+	public InstrumentedDataSource(ConnectionPool connPool, QueryMetrics queryMetrics) {
+		this.connPool = connPool;
+		this.queryMetrics = queryMetrics;
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = connPool.getConnection();
+		queryMetrics.recordPoolWait(System.nanoTime() - start);
+		
+		if(connection == null){
+			throw new SQLException("Connection pool returned no connection");
+		}
+		
+		queryMetrics.connectionOpened();
+		
+		ConnectionHandler handler = new ConnectionHandler(connection);
+		handler.proxy = (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, handler);
+		
+		return handler.proxy;
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		// credentials are managed by the pool
+		return getConnection();
+	}
+	
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return null;
+	}
+	
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+	}
+	
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+	}
+	
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return 0;
+	}
+	
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+	
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if(iface.isInstance(this)){
+			return iface.cast(this);
+		}
+		
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+	
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+	
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private static String sqlArgument(Object[] args) {
+		if(args != null && args.length > 0 && args[0] instanceof String){
+			return (String)args[0];
+		}
+		
+		return null;
+	}
+	
+	class ConnectionHandler implements InvocationHandler {
+		private final Connection connection;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		Connection proxy;
+		
+		public ConnectionHandler(Connection connection) {
+			this.connection = connection;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if("close".equals(method.getName()) && closed.compareAndSet(false, true)){
+				queryMetrics.connectionClosed();
+			}
+			
+			Object result = invokeTarget(connection, method, args);
+			
+			if(result instanceof Statement){
+				StatementHandler handler = new StatementHandler((Statement)result, sqlArgument(args), this.proxy);
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{method.getReturnType()}, handler);
+			}
+			
+			return result;
+		}
+	}
+	
+	class StatementHandler implements InvocationHandler {
+		private final Statement statement;
+		private final String preparedSql;
+		private final Connection connection;
+		
+		/**
+		 * @param preparedSql SQL of a prepared statement, or null for plain statements
+		 * @param connection the proxy that created the statement
+		 */
+		public StatementHandler(Statement statement, String preparedSql, Connection connection) {
+			this.statement = statement;
+			this.preparedSql = preparedSql;
+			this.connection = connection;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			
+			if("getConnection".equals(name)){
+				return connection;
+			}
+			
+			if(!name.startsWith("execute")){
+				return invokeTarget(statement, method, args);
+			}
+			
+			String sql = sqlArgument(args);
+			
+			if(sql == null){
+				sql = preparedSql;
+			}
+			
+			long start = System.nanoTime();
+			
+			try {
+				return invokeTarget(statement, method, args);
+			} finally {
+				queryMetrics.record(sql, System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Fingerprint of a file, made of its size and the MD5 hash of its first {@value #PREFIX_SIZE} bytes.<br/>
+ * The index stores it for every file larger than the prefix, so a download can be stopped as soon as
+ * the prefix has arrived if it matches a known file. Smaller files have no fingerprint, they are only
+ * checked by their full hash once they are downloaded.
+ */
+public final class PrefixFingerprint {
+	public static final int PREFIX_SIZE = 64 * 1024;
+	
+	/**
+	 * Decides if a download can be stopped after the prefix.
+	 */
+	public interface Check {
+		/**
+		 * @param url the file that is being downloaded
+		 * @param size size of the complete file in bytes
+		 * @param prefix data starting with the first {@value PrefixFingerprint#PREFIX_SIZE} bytes of the file
+		 * @return true if the file is known and the rest is not needed
+		 */
+		boolean isKnown(URL url, long size, byte[] prefix);
+	}
+	
+	private PrefixFingerprint() {}
+	
+	/**
+	 * @param size size of the file in bytes
+	 * @return true if the file is large enough to have a fingerprint
+	 */
+	public static boolean hasFingerprint(long size) {
+		return size > PREFIX_SIZE;
+	}
+	
+	/**
+	 * @param data content of the file
+	 * @return hexadecimal MD5 hash of the prefix, null if the file has no fingerprint
+	 */
+	public static String of(byte[] data) {
+		if(! hasFingerprint(data.length)){
+			return null;
+		}
+		
+		return hash(data);
+	}
+	
+	/**
+	 * @param file the file to fingerprint, only the prefix is read
+	 * @return hexadecimal MD5 hash of the prefix, null if the file has no fingerprint
+	 */
+	public static String of(Path file) throws IOException {
+		if(! hasFingerprint(Files.size(file))){
+			return null;
+		}
+		
+		byte[] prefix = new byte[PREFIX_SIZE];
+		int length = 0;
+		
+		try (InputStream is = Files.newInputStream(file)) {
+			int read;
+			
+			while(length < PREFIX_SIZE && (read = is.read(prefix, length, PREFIX_SIZE - length)) != -1){
+				length += read;
+			}
+		}
+		
+		if(length < PREFIX_SIZE){
+			throw new IOException("File " + file + " is shorter than its size");
+		}
+		
+		return hash(prefix);
+	}
+	
+	/**
+	 * @param prefix data starting with the prefix, bytes after it are ignored
+	 * @return hexadecimal MD5 hash of the prefix
+	 */
+	public static String hash(byte[] prefix) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			digest.update(prefix, 0, Math.min(prefix.length, PREFIX_SIZE));
+			return DatatypeConverter.printHexBinary(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import metrics.Gauge;
+import metrics.Histogram;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+import metrics.StripedCounter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects timing for database statements and connections.<br/>
+ * Statements are grouped by their shape, which is the SQL with all literals replaced by '?'.
+ * Statements that take longer than the threshold are logged.
+ */
+public class QueryMetrics {
+	private static final Logger logger = LoggerFactory.getLogger(QueryMetrics.class);
+	
+	private static final int MAX_SHAPES = 500;
+	private static final int MAX_LOGGED_SQL = 500;
+	static final String OTHER_SHAPE = "(other)";
+	static final String BATCH_SHAPE = "(batch)";
+	
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b(?:0x[0-9a-fA-F]+|\\d+(?:\\.\\d+)?)\\b");
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	
+	private final ConcurrentMap<String, Histogram> statements = new ConcurrentHashMap<>();
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	private final long slowThresholdNanos;
+	
+	private final Histogram queryTime;
+	private final Histogram poolWaitTime;
+	private final StripedCounter slowQueries;
+	
+	/**
+	 * @param registry registry for the overall statement and pool metrics
+	 * @param slowQueryMillis statements that take longer than this are logged
+	 */
+	public QueryMetrics(MetricsRegistry registry, int slowQueryMillis) {
+		this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+		this.queryTime = registry.histogram(MetricNames.QUERY_TIME);
+		this.poolWaitTime = registry.histogram(MetricNames.POOL_WAIT_TIME);
+		this.slowQueries = registry.counter(MetricNames.SLOW_QUERIES);
+		
+		registry.register(MetricNames.ACTIVE_CONNECTIONS, new Gauge() {
+			@Override
+			public long getValue() {
+				return activeConnections.get();
+			}
+		});
+	}
+	
+	/**
+	 * Record the execution of a statement.
+	 * 
+	 * @param sql the executed SQL, or null for a batch of statements
+	 * @param durationNanos execution time in nanoseconds
+	 */
+	public void record(String sql, long durationNanos) {
+		String shape = sql == null ? BATCH_SHAPE : shape(sql);
+		
+		queryTime.record(durationNanos, TimeUnit.NANOSECONDS);
+		statementHistogram(shape).record(durationNanos, TimeUnit.NANOSECONDS);
+		
+		if(durationNanos > slowThresholdNanos){
+			slowQueries.increment();
+			logger.warn("Slow statement took {} ms: {}", TimeUnit.NANOSECONDS.toMillis(durationNanos), truncate(sql == null ? shape : sql));
+		}
+	}
+	
+	public void recordPoolWait(long durationNanos) {
+		poolWaitTime.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	public void connectionOpened() {
+		activeConnections.incrementAndGet();
+	}
+	
+	public void connectionClosed() {
+		activeConnections.decrementAndGet();
+	}
+	
+	private Histogram statementHistogram(String shape) {
+		Histogram histogram = statements.get(shape);
+		
+		if(histogram != null){
+			return histogram;
+		}
+		
+		if(statements.size() >= MAX_SHAPES){
+			// do not let statements built with inline values fill the map
+			shape = OTHER_SHAPE;
+		}
+		
+		Histogram created = new Histogram();
+		histogram = statements.putIfAbsent(shape, created);
+		
+		return histogram == null ? created : histogram;
+	}
+	
+	/**
+	 * Reduce a statement to its shape by replacing literals and parameter lists with a single '?'.
+	 */
+	static String shape(String sql) {
+		String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+		shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+		shape = PARAMETER_LIST.matcher(shape).replaceAll("(?)");
+		shape = WHITESPACE.matcher(shape).replaceAll(" ");
+		
+		return shape.trim();
+	}
+	
+	private String truncate(String sql) {
+		if(sql.length() <= MAX_LOGGED_SQL){
+			return sql;
+		}
+		
+		return sql.substring(0, MAX_LOGGED_SQL) + "...";
+	}
+	
+	/**
+	 * @return snapshots of all statement shapes, sorted by shape
+	 */
+	public SortedMap<String, Histogram.Snapshot> getStatements() {
+		SortedMap<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+		
+		for(Entry<String, Histogram> entry : statements.entrySet()){
+			snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+		}
+		
+		return snapshots;
+	}
+	
+	/**
+	 * List the statements that took the most time in total, one per line.
+	 * 
+	 * @param limit maximum number of statements to list
+	 */
+	public String report(int limit) {
+		List<Entry<String, Histogram.Snapshot>> entries = new ArrayList<>(getStatements().entrySet());
+		
+		Collections.sort(entries, new Comparator<Entry<String, Histogram.Snapshot>>() {
+			@Override
+			public int compare(Entry<String, Histogram.Snapshot> o1, Entry<String, Histogram.Snapshot> o2) {
+				return Long.compare(o2.getValue().getSum(), o1.getValue().getSum());
+			}
+		});
+		
+		StringBuilder sb = new StringBuilder();
+		
+		for(Entry<String, Histogram.Snapshot> entry : entries.subList(0, Math.min(limit, entries.size()))){
+			Histogram.Snapshot snapshot = entry.getValue();
+			sb.append(String.format("total=%dms ", TimeUnit.MICROSECONDS.toMillis(snapshot.getSum())));
+			sb.append(snapshot).append(" ").append(entry.getKey()).append("\n");
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Log the statements that took the most time.
+	 */
+	public void dump() {
+		logger.info("Top statements by total time:\n{}", report(20));
+	}
+}
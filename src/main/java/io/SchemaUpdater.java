@@ -23,6 +23,10 @@ import com.github.dozedoff.commonj.io.DBsettings;
 
 public class SchemaUpdater {
 	public static void update(AidDAO sql, Properties settings) throws SchemaUpdateException{
+		update(sql, settings, new HashMigration(sql));
+	}
+	
+	static void update(AidDAO sql, Properties settings, HashMigration hashMigration) throws SchemaUpdateException{
 		try {
 			String s;
 			 s = sql.getSetting(DBsettings.SchemaVersion);
@@ -47,25 +51,60 @@ public class SchemaUpdater {
 				throw new SchemaUpdateException("Remote schema in newer than the local version");
 			}
 			
-			// do the actual updates
-			// note: missing breaks are intentional, to create cascade
-			switch(versionFromRemote){
-				case 1:
-					// update from version 1 to 2
-					if(! sql.batchExecute(UPDATE_1_TO_2))
-						throw new SchemaUpdateException("Batch command UPDATE_1_TO_2 failed");
-					
-				case 2:
-					// update from version 2 to 3
-					if(! sql.batchExecute(UPDATE_2_TO_3))
-						throw new SchemaUpdateException("Batch command UPDATE_2_TO_3 failed");
-				default:
+			// do the actual updates, each step runs if the remote is older and the local version supports it
+			if(needsUpdate(versionFromRemote, versionFromLocal, 2)){
+				// update from version 1 to 2
+				if(! sql.batchExecute(UPDATE_1_TO_2))
+					throw new SchemaUpdateException("Batch command UPDATE_1_TO_2 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 3)){
+				// update from version 2 to 3
+				if(! sql.batchExecute(UPDATE_2_TO_3))
+					throw new SchemaUpdateException("Batch command UPDATE_2_TO_3 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 4)){
+				// update from version 3 to 4, hashes are stored as binary
+				if(! hashMigration.migrate())
+					throw new SchemaUpdateException("Hash migration failed, restart to resume");
+				
+				if(! sql.batchExecute(UPDATE_3_TO_4))
+					throw new SchemaUpdateException("Batch command UPDATE_3_TO_4 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 5)){
+				// update from version 4 to 5, MD5 hashes for files published by the site
+				if(! sql.batchExecute(UPDATE_4_TO_5))
+					throw new SchemaUpdateException("Batch command UPDATE_4_TO_5 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 6)){
+				// update from version 5 to 6, prefix fingerprints of indexed files
+				if(! sql.batchExecute(UPDATE_5_TO_6))
+					throw new SchemaUpdateException("Batch command UPDATE_5_TO_6 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 7)){
+				// update from version 6 to 7, indexes for the batched compaction of filter and thumbs
+				if(! sql.batchExecute(UPDATE_6_TO_7))
+					throw new SchemaUpdateException("Batch command UPDATE_6_TO_7 failed");
+			}
+			
+			if(needsUpdate(versionFromRemote, versionFromLocal, 8)){
+				// update from version 7 to 8, index for the batched cache prune
+				if(! sql.batchExecute(UPDATE_7_TO_8))
+					throw new SchemaUpdateException("Batch command UPDATE_7_TO_8 failed");
 			}
 		} catch (NumberFormatException  e) {
 			throw new SchemaUpdateException(e.getMessage());
 		}
 	}
 	
+	private static boolean needsUpdate(int versionFromRemote, int versionFromLocal, int targetVersion) {
+		return versionFromRemote < targetVersion && versionFromLocal >= targetVersion;
+	}
+	
 	private final static String[] UPDATE_1_TO_2 ={
 			"ALTER TABLE `archive` CHANGE COLUMN `hash` `id` VARCHAR(64) NOT NULL COLLATE 'ascii_general_ci' FIRST",
 			"ALTER TABLE `hash` CHANGE COLUMN `hash` `id` VARCHAR(64) NOT NULL COLLATE 'ascii_general_ci' FIRST",
@@ -79,4 +118,31 @@ public class SchemaUpdater {
 		"INSERT IGNORE INTO `location_tags` (`tag_id`, `location`) VALUES (2, 'ARCHIVE');",
 		"UPDATE settings SET param='3' WHERE name ='SchemaVersion'"
 };
+	
+	private final static String[] UPDATE_3_TO_4 ={
+		"UPDATE settings SET param='4' WHERE name ='SchemaVersion'"
+	};
+	
+	private final static String[] UPDATE_4_TO_5 ={
+		"ALTER TABLE `fileindex` ADD COLUMN `md5` BINARY(16) NULL DEFAULT NULL AFTER `id`, ADD INDEX `index_md5` (`md5`)",
+		"ALTER TABLE `dnw` ADD COLUMN `md5` BINARY(16) NULL DEFAULT NULL AFTER `id`, ADD INDEX `dnw_md5` (`md5`)",
+		"ALTER TABLE `block` ADD COLUMN `md5` BINARY(16) NULL DEFAULT NULL AFTER `id`, ADD INDEX `block_md5` (`md5`)",
+		"UPDATE settings SET param='5' WHERE name ='SchemaVersion'"
+	};
+	
+	private final static String[] UPDATE_5_TO_6 ={
+		"ALTER TABLE `fileindex` ADD COLUMN `prefix_md5` BINARY(16) NULL DEFAULT NULL AFTER `size`, ADD INDEX `index_fingerprint` (`size`, `prefix_md5`)",
+		"UPDATE settings SET param='6' WHERE name ='SchemaVersion'"
+	};
+	
+	private final static String[] UPDATE_6_TO_7 ={
+		"ALTER TABLE `filter` ADD INDEX `status_timestamp` (`status`, `timestamp`)",
+		"ALTER TABLE `thumbs` ADD INDEX `url` (`url`)",
+		"UPDATE settings SET param='7' WHERE name ='SchemaVersion'"
+	};
+	
+	private final static String[] UPDATE_7_TO_8 ={
+		"ALTER TABLE `cache` ADD INDEX `timestamp` (`timestamp`)",
+		"UPDATE settings SET param='8' WHERE name ='SchemaVersion'"
+	};
 }
@@ -0,0 +1,270 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a file to disk instead of into memory, used for files that are too large to buffer.<br/>
+ * The data is written to a partial file next to the target ({@value #PART_SUFFIX}) and hashed while
+ * it is downloaded. If the connection breaks, the download continues where it stopped with a HTTP Range
+ * request, also across restarts as long as the partial file is kept. Servers that do not support Range
+ * requests send the whole file again.<br/>
+ * A {@link PrefixFingerprint.Check} can stop a new download once the first {@value PrefixFingerprint#PREFIX_SIZE}
+ * bytes have arrived, if they show that the file is already known.
+ */
+public class StreamingDownloader {
+	private static final Logger logger = LoggerFactory.getLogger(StreamingDownloader.class);
+	
+	public static final String PART_SUFFIX = ".part";
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final int maxAttempts;
+	
+	/**
+	 * @param maxAttempts number of connections to try before giving up on a file
+	 */
+	public StreamingDownloader(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+	
+	/**
+	 * @param target final location of the file
+	 * @return the partial file used while downloading
+	 */
+	public static Path partFile(Path target) {
+		return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+	}
+	
+	/**
+	 * Download the file to the partial file of the target, continuing a previous download if there is one.
+	 * The partial file is kept if the download fails, unless the server refused the file.
+	 * 
+	 * @param url file to download
+	 * @param target final location of the file, used for the name of the partial file
+	 * @return SHA-256 hash of the complete file as hexadecimal String
+	 * @throws IOException if the file could not be downloaded
+	 */
+	public String download(URL url, Path target) throws IOException {
+		return download(url, target, null);
+	}
+	
+	/**
+	 * Download the file to the partial file of the target, continuing a previous download if there is one.
+	 * The partial file is kept if the download fails, unless the server refused the file or it is known.
+	 * 
+	 * @param url file to download
+	 * @param target final location of the file, used for the name of the partial file
+	 * @param check asked once the prefix of a new download has arrived, may be null
+	 * @return SHA-256 hash of the complete file as hexadecimal String
+	 * @throws KnownFileException if the check reported the file as known
+	 * @throws IOException if the file could not be downloaded
+	 */
+	public String download(URL url, Path target, PrefixFingerprint.Check check) throws IOException {
+		Path part = partFile(target);
+		Files.createDirectories(part.getParent());
+		IOException lastError = null;
+		
+		for(int attempt = 1; attempt <= maxAttempts; attempt++){
+			try {
+				return transfer(url, part, check);
+			} catch (RefusedException | KnownFileException e) {
+				Files.deleteIfExists(part);
+				throw e;
+			} catch (IOException e) {
+				logger.info("Download of {} interrupted after {} bytes (attempt {} of {}): {}", url, size(part), attempt, maxAttempts, e.getMessage());
+				lastError = e;
+			}
+		}
+		
+		throw lastError;
+	}
+	
+	private String transfer(URL url, Path part, PrefixFingerprint.Check check) throws IOException {
+		long offset = size(part);
+		
+		try {
+			HostRateLimiter.getDefault().acquire(url);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+		}
+		
+		HttpURLConnection connection = WebClient.getDefault().openConnection(url);
+		
+		if(offset > 0){
+			connection.setRequestProperty("Range", "bytes=" + offset + "-");
+		}
+		
+		try {
+			int responseCode = connection.getResponseCode();
+			HostRateLimiter.getDefault().onResponse(url, responseCode);
+			
+			if(responseCode == 416 && offset > 0){
+				// partial file is not a prefix of the file on the server, start over
+				Files.delete(part);
+				throw new IOException("Requested range not satisfiable, restarting download");
+			}
+			
+			if(responseCode == HttpURLConnection.HTTP_OK){
+				offset = 0;
+			}else if(responseCode != HttpURLConnection.HTTP_PARTIAL || offset == 0){
+				String message = "Invalid response " + responseCode;
+				
+				if(responseCode >= 400 && responseCode < 500 && responseCode != 429){
+					throw new RefusedException(message);
+				}
+				
+				throw new IOException(message);
+			}
+			
+			MessageDigest digest = newDigest();
+			
+			if(offset > 0){
+				hashPart(part, digest);
+				logger.debug("Resuming download of {} at {} bytes", url, offset);
+			}
+			
+			long contentLength = connection.getContentLengthLong();
+			InputStream in = connection.getInputStream();
+			byte[] prefix = new byte[0];
+			
+			if(offset == 0 && check != null && PrefixFingerprint.hasFingerprint(contentLength)){
+				prefix = readPrefix(in);
+				
+				if(prefix.length == PrefixFingerprint.PREFIX_SIZE && check.isKnown(url, contentLength, prefix)){
+					in.close();
+					throw new KnownFileException("Prefix of " + url + " matches a known file", contentLength);
+				}
+			}
+			
+			long received = copy(in, prefix, part, offset > 0, digest);
+			
+			if(contentLength >= 0 && received != contentLength){
+				throw new IOException("Connection closed after " + received + " of " + contentLength + " bytes");
+			}
+			
+			return HashValue.fromBytes(digest.digest()).toHex();
+		} finally {
+			connection.disconnect();
+		}
+	}
+	
+	private byte[] readPrefix(InputStream in) throws IOException {
+		byte[] prefix = new byte[PrefixFingerprint.PREFIX_SIZE];
+		int length = 0;
+		int read;
+		
+		while(length < prefix.length && (read = in.read(prefix, length, prefix.length - length)) != -1){
+			length += read;
+		}
+		
+		return length == prefix.length ? prefix : Arrays.copyOf(prefix, length);
+	}
+	
+	private long copy(InputStream in, byte[] head, Path part, boolean append, MessageDigest digest) throws IOException {
+		StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long received = head.length;
+		
+		try (InputStream is = in; OutputStream os = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+			int read;
+			
+			digest.update(head);
+			os.write(head);
+			
+			while((read = is.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+				os.write(buffer, 0, read);
+				received += read;
+			}
+		}
+		
+		return received;
+	}
+	
+	private void hashPart(Path part, MessageDigest digest) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		
+		try (InputStream is = Files.newInputStream(part)) {
+			int read;
+			
+			while((read = is.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+		}
+	}
+	
+	private static long size(Path part) throws IOException {
+		return Files.exists(part) ? Files.size(part) : 0;
+	}
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+	
+	/**
+	 * The server refused the file, retrying will not help.
+	 */
+	public static class RefusedException extends IOException {
+		private static final long serialVersionUID = 1L;
+		
+		public RefusedException(String message) {
+			super(message);
+		}
+	}
+	
+	/**
+	 * The prefix of the file matched a known file, the rest was not downloaded.
+	 */
+	public static class KnownFileException extends IOException {
+		private static final long serialVersionUID = 1L;
+		private final long size;
+		
+		public KnownFileException(String message, long size) {
+			super(message);
+			this.size = size;
+		}
+		
+		/**
+		 * @return size of the complete file in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.util.Calendar;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes rows that are no longer needed from the thumbs and filter tables.<br/>
+ * Thumbnails are only needed while their filter item is pending, denied filter items
+ * expire once they have not been refreshed for the maximum age.
+ * Rows are deleted in small batches to keep the tables responsive.
+ */
+public class TableCompactor {
+	private static final Logger logger = LoggerFactory.getLogger(TableCompactor.class);
+	
+	private static final int BATCH_SIZE = 200;
+	private static final long BATCH_PAUSE = 500; // in milliseconds
+	private static final long TIME_BUDGET = 60 * 1000; // one minute per table and run
+	
+	int refreshInterSec = 1;
+	int startupDelaySec = 1;
+	int maximumAgeSec = 1;
+	Timer compactorTimer;
+	AidDAO sql;
+	ThrottledBatch throttledBatch = new ThrottledBatch(BATCH_SIZE, BATCH_PAUSE, TIME_BUDGET);
+	
+	public TableCompactor(AidDAO sql, int refreshInterSec, int startupDelaySec, int maximumAgeSec) {
+		this.sql = sql;
+		this.refreshInterSec = refreshInterSec * 1000;
+		this.startupDelaySec = startupDelaySec * 1000;
+		this.maximumAgeSec = maximumAgeSec;
+	}
+	
+	public boolean start(){
+		if(compactorTimer != null)
+			return false;
+		
+		compactorTimer = new Timer("TableCompactor Timer", true);
+		compactorTimer.schedule(new CompactorWorker(), startupDelaySec, refreshInterSec);
+		
+		return true;
+	}
+	
+	public void stop(){
+		logger.info("Shutting down TableCompactor...");
+		
+		if(compactorTimer == null){
+			return;
+		}
+		
+		compactorTimer.cancel();
+		compactorTimer = null;
+	}
+	
+	/**
+	 * Run a full compaction on the calling thread.
+	 */
+	public void compact() {
+		final long maxAge = maxAge(maximumAgeSec);
+		
+		int filters = throttledBatch.run(new BatchOperation() {
+			@Override
+			public int runBatch(int batchSize) {
+				return sql.deleteStaleFilters(maxAge, batchSize);
+			}
+		});
+		
+		int thumbs = throttledBatch.run(new BatchOperation() {
+			@Override
+			public int runBatch(int batchSize) {
+				return sql.deleteOrphanedThumbs(batchSize);
+			}
+		});
+		
+		logger.info("Compaction removed {} stale filter items and {} orphaned thumbnails", filters, thumbs);
+	}
+	
+	class CompactorWorker extends TimerTask{
+		@Override
+		public void run() {
+			compact();
+		}
+	}
+	
+	private long maxAge(int timeInSec){
+		Calendar exp = Calendar.getInstance();
+		exp.add(Calendar.SECOND, (-timeInSec));
+		
+		return exp.getTimeInMillis();
+	}
+}
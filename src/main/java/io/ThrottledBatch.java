@@ -0,0 +1,93 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a {@link BatchOperation} repeatedly until it runs out of work.<br/>
+ * A pause is inserted between batches so that other queries get a chance to access
+ * the table, and the whole run is aborted once the time budget is used up.
+ */
+public class ThrottledBatch {
+	private static final Logger logger = LoggerFactory.getLogger(ThrottledBatch.class);
+	
+	private final int batchSize;
+	private final long pauseMillis;
+	private final long timeBudgetMillis;
+	
+	/**
+	 * @param batchSize maximum number of rows per batch
+	 * @param pauseMillis pause between batches in milliseconds
+	 * @param timeBudgetMillis maximum run time in milliseconds, 0 for no limit
+	 */
+	public ThrottledBatch(int batchSize, long pauseMillis, long timeBudgetMillis) {
+		if(batchSize < 1){
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+		
+		this.batchSize = batchSize;
+		this.pauseMillis = pauseMillis;
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+	
+	/**
+	 * Run the operation until a batch processes less than the batch size, an error occurs,
+	 * the time budget is exceeded or the thread is interrupted.
+	 * @param operation operation to run
+	 * @return total number of rows processed
+	 */
+	public int run(BatchOperation operation) {
+		long deadline = System.currentTimeMillis() + timeBudgetMillis;
+		int total = 0;
+		
+		while(true){
+			int processed = operation.runBatch(batchSize);
+			
+			if(processed < 0){
+				logger.warn("Batch operation failed after {} rows", total);
+				break;
+			}
+			
+			total += processed;
+			
+			if(processed < batchSize){
+				break;
+			}
+			
+			if(timeBudgetMillis > 0 && System.currentTimeMillis() >= deadline){
+				logger.info("Time budget of {} ms used up after {} rows", timeBudgetMillis, total);
+				break;
+			}
+			
+			try {
+				Thread.sleep(pauseMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		
+		return total;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+}
@@ -19,6 +19,8 @@ package io;
 
 import java.awt.Image;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,14 +29,13 @@ import org.slf4j.LoggerFactory;
 
 import board.Post;
 
-import com.github.dozedoff.commonj.net.GetBinary;
-
 /**
  * Class for downloading and storing thumbnails.
  */
 public class ThumbnailLoader {
 	private static Logger logger = LoggerFactory.getLogger(ThumbnailLoader.class);
 	private final int NUM_OF_THUMBS = 17;
+	private static final int MAX_THUMB_SIZE = 2097152;  // 2 mb
 	private AidDAO sql;
 	public ThumbnailLoader(AidDAO sql){
 		this.sql = sql;
@@ -46,7 +47,6 @@ public class ThumbnailLoader {
 	 */
 	public void downloadThumbs(String url,List<Post> postList){
 		//TODO add code to re-fetch thumbs?
-		GetBinary gb = new GetBinary(2097152);  // 2 mb
 		int counter = 0;
 		logger.info("Fetching thumbs for {}", url);
 		for(Post p : postList){
@@ -61,7 +61,7 @@ public class ThumbnailLoader {
 			thumbUrl = thumbUrl.replace(".jpg", "s.jpg");
 
 			try {
-				byte data[] = gb.getViaHttp(thumbUrl); // get thumbnail
+				byte data[] = WebClient.getDefault().getBytes(new URL(thumbUrl), MAX_THUMB_SIZE); // get thumbnail
 
 				int split = thumbUrl.lastIndexOf("/")+1;
 				String filename = thumbUrl.substring(split); // get the filename (used for sorting)
@@ -70,6 +70,8 @@ public class ThumbnailLoader {
 				logger.debug("Adding thumbnail({})  URL: {}, Filename: {}, Thread: {}, Size: {} to database", logData);
 				sql.addThumb(url,filename, data); // add data to DB
 				counter++;
+			} catch (InterruptedIOException e) {
+				break;
 			} catch (IOException e) {
 				logger.warn("Could not load thumbnail {} -> {}", thumbUrl, e);		
 			}
@@ -0,0 +1,243 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * HTTP client shared by everything that loads pages or small files from the site.<br/>
+ * Connections are kept alive and reused by the JDK, up to {@value #MAX_IDLE_CONNECTIONS} idle connections per host,
+ * responses are always read to the end so the connection can be reused. Pages are requested with gzip or deflate
+ * compression. All requests go through a {@link HostRateLimiter} and report their response code to it.
+ */
+public class WebClient {
+	private static final int MAX_IDLE_CONNECTIONS = 10;
+	private static final int CONNECT_TIMEOUT = 10 * 1000;
+	private static final int READ_TIMEOUT = 30 * 1000;
+	private static final String USER_AGENT = "Mozilla";
+	private static final Pattern CHARSET = Pattern.compile("(?i)charset=\\s*\"?([^\\s;\"]+)");
+	
+	private static final WebClient defaultClient;
+	
+	static {
+		// read by the JDK when the first connection is kept alive
+		if(System.getProperty("http.maxConnections") == null){
+			System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+		}
+		
+		defaultClient = new WebClient(HostRateLimiter.getDefault(), CONNECT_TIMEOUT, READ_TIMEOUT);
+	}
+	
+	private final HostRateLimiter rateLimiter;
+	private final int connectTimeout;
+	private final int readTimeout;
+	
+	/**
+	 * @return the client used by the application
+	 */
+	public static WebClient getDefault() {
+		return defaultClient;
+	}
+	
+	/**
+	 * @param rateLimiter limiter for all requests
+	 * @param connectTimeout connect timeout in milliseconds
+	 * @param readTimeout read timeout in milliseconds
+	 */
+	public WebClient(HostRateLimiter rateLimiter, int connectTimeout, int readTimeout) {
+		this.rateLimiter = rateLimiter;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+	
+	/**
+	 * Open a connection with the timeouts and user agent of this client. The request is not rate limited.
+	 * @param url URL to connect to
+	 * @return the connection, not yet connected
+	 */
+	public HttpURLConnection openConnection(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestProperty("User-Agent", USER_AGENT);
+		return connection;
+	}
+	
+	/**
+	 * Load and parse a HTML page.
+	 * @param url the page to load
+	 * @return the parsed page
+	 * @throws ResponseCodeException if the response code was not 200
+	 * @throws IOException if the page could not be loaded
+	 */
+	public Document getPage(URL url) throws IOException {
+		HttpURLConnection connection = request(url, "GET", true);
+		
+		try (InputStream is = decode(connection)) {
+			return Jsoup.parse(is, charset(connection.getContentType()), url.toString());
+		}
+	}
+	
+	/**
+	 * Load a file into memory.
+	 * @param url the file to load
+	 * @param maxSize files larger than this are refused, in bytes
+	 * @return content of the file
+	 * @throws ResponseCodeException if the response code was not 200
+	 * @throws IOException if the file could not be loaded or is too large
+	 */
+	public byte[] getBytes(URL url, int maxSize) throws IOException {
+		HttpURLConnection connection = request(url, "GET", false);
+		
+		if(connection.getContentLength() > maxSize){
+			connection.disconnect();	// do not read a large body just to keep the connection
+			throw new IOException("File " + url + " is larger than " + maxSize + " bytes");
+		}
+		
+		try (InputStream is = connection.getInputStream()) {
+			ByteArrayOutputStream data = new ByteArrayOutputStream(Math.max(connection.getContentLength(), 1024));
+			byte[] buffer = new byte[8192];
+			int read;
+			
+			while((read = is.read(buffer)) != -1){
+				if(data.size() + read > maxSize){
+					throw new IOException("File " + url + " is larger than " + maxSize + " bytes");
+				}
+				
+				data.write(buffer, 0, read);
+			}
+			
+			return data.toByteArray();
+		}
+	}
+	
+	/**
+	 * Check if a URL exists, without loading the content.
+	 * @param url the URL to check
+	 * @return the response code
+	 * @throws IOException if the server could not be reached
+	 */
+	public int getResponseCode(URL url) throws IOException {
+		try {
+			request(url, "HEAD", false).disconnect();
+			return HttpURLConnection.HTTP_OK;
+		} catch (ResponseCodeException e) {
+			return e.getResponseCode();
+		}
+	}
+	
+	private HttpURLConnection request(URL url, String method, boolean compressed) throws IOException {
+		try {
+			rateLimiter.acquire(url);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+		}
+		
+		HttpURLConnection connection = openConnection(url);
+		connection.setRequestMethod(method);
+		
+		if(compressed){
+			connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		}
+		
+		int responseCode = connection.getResponseCode();
+		rateLimiter.onResponse(url, responseCode);
+		
+		if(responseCode != HttpURLConnection.HTTP_OK){
+			discardErrorBody(connection);
+			throw new ResponseCodeException(url, responseCode);
+		}
+		
+		return connection;
+	}
+	
+	private void discardErrorBody(HttpURLConnection connection) {
+		// the connection can only be reused once the body has been read
+		try (InputStream es = connection.getErrorStream()) {
+			if(es != null){
+				byte[] buffer = new byte[8192];
+				
+				while(es.read(buffer) != -1){
+				}
+			}
+		} catch (IOException e) {
+			connection.disconnect();
+		}
+	}
+	
+	private InputStream decode(HttpURLConnection connection) throws IOException {
+		String encoding = connection.getContentEncoding();
+		InputStream is = connection.getInputStream();
+		
+		if(encoding == null){
+			return is;
+		}
+		
+		switch(encoding.toLowerCase(Locale.ENGLISH)){
+			case "gzip":
+				return new GZIPInputStream(is);
+			case "deflate":
+				return new InflaterInputStream(is);
+			default:
+				return is;
+		}
+	}
+	
+	/**
+	 * @return the charset of the content type, null if there is none and Jsoup should detect it
+	 */
+	static String charset(String contentType) {
+		if(contentType == null){
+			return null;
+		}
+		
+		Matcher matcher = CHARSET.matcher(contentType);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+	
+	/**
+	 * The server answered with a response code other than 200.
+	 */
+	public static class ResponseCodeException extends IOException {
+		private static final long serialVersionUID = 1L;
+		private final int responseCode;
+		
+		public ResponseCodeException(URL url, int responseCode) {
+			super("Invalid response " + responseCode + " for " + url);
+			this.responseCode = responseCode;
+		}
+		
+		public int getResponseCode() {
+			return responseCode;
+		}
+	}
+}
@@ -28,7 +28,7 @@ import com.j256.ormlite.dao.GenericRawResults;
 import com.j256.ormlite.support.ConnectionSource;
 
 public class BlacklistDAO extends BaseDaoImpl<BlacklistRecord,String> {
-	final String BLACKLIST_STMT = "SELECT a.id FROM (select fileindex.id FROM block join fileindex on block.id = fileindex.id) AS a";
+	final String BLACKLIST_STMT = "SELECT HEX(a.id) FROM (select fileindex.id FROM block join fileindex on block.id = fileindex.id) AS a";
 	
 	public BlacklistDAO(ConnectionSource cSource) throws SQLException{
 		super(cSource, BlacklistRecord.class);
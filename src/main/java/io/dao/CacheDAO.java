@@ -19,31 +19,43 @@ package io.dao;
 
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
 
 import io.tables.Cache;
 
 import com.j256.ormlite.dao.BaseDaoImpl;
-import com.j256.ormlite.stmt.DeleteBuilder;
-import com.j256.ormlite.stmt.PreparedDelete;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.SelectArg;
 import com.j256.ormlite.support.ConnectionSource;
 
 public class CacheDAO extends BaseDaoImpl<Cache, String> {
-	PreparedDelete<Cache> pruneCacheQuery;
-	SelectArg timestamp;
-	
 	public CacheDAO(ConnectionSource cSource) throws SQLException {
 		super(cSource, Cache.class);
-		timestamp = new SelectArg();
-		DeleteBuilder<Cache, String> del = deleteBuilder();
-		del.where().le("timestamp", timestamp);
-		pruneCacheQuery = del.prepare();
 	}
 	
-	public int pruneCache(long timestampInMillis) throws SQLException {
-		Date date = new Date(timestampInMillis);
-		timestamp.setValue(date);
-		int updated = delete(pruneCacheQuery);
-		return updated;
+	/**
+	 * Delete at most limit entries that are older than the given timestamp.
+	 * The entries are selected using the timestamp index. The table uses MyISAM, so every batch locks the
+	 * whole table, but only for as long as it takes to delete one batch.
+	 * @param timestampInMillis entries with this timestamp or older are deleted
+	 * @param limit maximum number of entries to delete
+	 * @return number of deleted entries
+	 */
+	public int pruneCache(long timestampInMillis, int limit) throws SQLException {
+		PreparedQuery<Cache> expiredQuery = queryBuilder().selectColumns("id").limit((long)limit)
+				.where().le("timestamp", new SelectArg(new Date(timestampInMillis))).prepare();
+		
+		List<String> ids = new LinkedList<>();
+		
+		for(Cache cache : query(expiredQuery)){
+			ids.add(cache.getId());
+		}
+		
+		if(ids.isEmpty()){
+			return 0;
+		}
+		
+		return deleteIds(ids);
 	}
 }
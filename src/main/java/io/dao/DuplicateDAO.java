@@ -20,14 +20,13 @@ package io.dao;
 import io.tables.DuplicateRecord;
 import io.tables.FileRecord;
 import io.tables.IndexRecord;
-import io.tables.LocationRecord;
 
-import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
-import com.github.dozedoff.commonj.file.FileInfo;
 import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.dao.GenericRawResults;
 import com.j256.ormlite.dao.RawRowMapper;
@@ -35,45 +34,46 @@ import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.support.ConnectionSource;
 
 public class DuplicateDAO extends BaseDaoImpl<DuplicateRecord, String> {
-	final String DUPLICATE_STMT = "SELECT dv.id, dv.dupeloc AS loc, dv.dupePath AS path FROM dupeview AS dv";
-	final String ORIGINAL_STMT = "SELECT dv.id, dv.origloc AS loc, dv.origPath AS path  FROM dupeview AS dv";
+	// the fileduplicate primary key (id, dir, filename) is returned after the record columns,
+	// duplicates without an original are left out, the same as the former dupeview
+	final String DUPLICATE_STMT = "SELECT " + FileRecordMapper.RECORD_COLUMNS + ", HEX(rec.id), rec.dir, rec.filename FROM fileduplicate AS rec"
+			+ " JOIN fileindex AS orig ON orig.id = rec.id" + FileRecordMapper.RECORD_JOINS;
+	final String ORIGINAL_STMT = "SELECT " + FileRecordMapper.RECORD_COLUMNS + ", HEX(fd.id), fd.dir, fd.filename FROM fileduplicate AS fd"
+			+ " JOIN fileindex AS rec ON rec.id = fd.id" + FileRecordMapper.RECORD_JOINS;
+	final int KEY_COLUMN = 8;
 	
-	RawRowMapper<IndexRecord> indexMapper;
-	RawRowMapper<DuplicateRecord> duplicateMapper;
+	// keyset pagination over the fileduplicate primary key, %1$s is the alias of the fileduplicate table
+	final String PAGE_AFTER_KEY = " WHERE %1$s.id >= UNHEX(?) AND (%1$s.id > UNHEX(?) OR %1$s.dir > ? OR (%1$s.dir = ? AND %1$s.filename > ?))";
+	final String PAGE_ORDER = " ORDER BY %1$s.id, %1$s.dir, %1$s.filename LIMIT ";
+	
+	final FileRecordMapper<IndexRecord> indexMapper = new FileRecordMapper<IndexRecord>() {
+		@Override
+		protected IndexRecord createRecord() {
+			return new IndexRecord();
+		}
+	};
+	
+	final FileRecordMapper<DuplicateRecord> duplicateMapper = new FileRecordMapper<DuplicateRecord>() {
+		@Override
+		protected DuplicateRecord createRecord() {
+			return new DuplicateRecord();
+		}
+	};
 	
 	public DuplicateDAO(ConnectionSource cs) throws SQLException {
 		super(cs, DuplicateRecord.class);
-		createMappers();
 	}
 	
-	private void createMappers() {
-		indexMapper = new RawRowMapper<IndexRecord>() {
-
-			@Override
-			public IndexRecord mapRow(String[] columnNames,	String[] resultColumns) throws SQLException {
-				FileInfo info = new FileInfo(Paths.get(resultColumns[2]));
-				LocationRecord location= new LocationRecord(resultColumns[1]);
-				
-				IndexRecord index = new IndexRecord(info, location);
-				index.setId(resultColumns[0]);
-				
-				return index;
-			}
-		};
+	/**
+	 * Load all duplicate records, including path and location, with a single query.
+	 * @return all duplicate records
+	 */
+	public List<DuplicateRecord> queryForAllJoined() throws SQLException {
+		GenericRawResults<DuplicateRecord> rawResults = queryRaw(DUPLICATE_STMT, duplicateMapper);
+		List<DuplicateRecord> records = rawResults.getResults();
+		rawResults.close();
 		
-		duplicateMapper = new RawRowMapper<DuplicateRecord>() {
-
-			@Override
-			public DuplicateRecord mapRow(String[] columnNames,	String[] resultColumns) throws SQLException {
-				FileInfo info = new FileInfo(Paths.get(resultColumns[2]));
-				LocationRecord location= new LocationRecord(resultColumns[1]);
-				
-				DuplicateRecord duplicate = new DuplicateRecord(info, location);
-				duplicate.setId(resultColumns[0]);
-				
-				return duplicate;
-			}
-		};
+		return records;
 	}
 	
 	public LinkedList<FileRecord> getDuplicatesAndOriginals() {
@@ -102,8 +102,80 @@ public class DuplicateDAO extends BaseDaoImpl<DuplicateRecord, String> {
 		return records;
 	}
 	
+	/**
+	 * Iterate over all duplicates and their originals, loading pageSize rows at a time.
+	 * All originals are returned first, followed by the duplicates, the same as
+	 * {@link DuplicateDAO#getDuplicatesAndOriginals()}.
+	 * @param pageSize number of rows to load per query
+	 * @return iterator over the records
+	 */
+	public Iterator<FileRecord> iterateDuplicatesAndOriginals(int pageSize) {
+		final Iterator<IndexRecord> originals = new DuplicatePageIterator<>(ORIGINAL_STMT, "fd", indexMapper, pageSize);
+		final Iterator<DuplicateRecord> duplicates = new DuplicatePageIterator<>(DUPLICATE_STMT, "rec", duplicateMapper, pageSize);
+		
+		return new Iterator<FileRecord>() {
+			@Override
+			public boolean hasNext() {
+				return originals.hasNext() || duplicates.hasNext();
+			}
+
+			@Override
+			public FileRecord next() {
+				if(originals.hasNext()){
+					return originals.next();
+				}
+				
+				return duplicates.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Paged results are read only");
+			}
+		};
+	}
+	
+	/**
+	 * Pages through a duplicate query using the fileduplicate primary key.
+	 */
+	class DuplicatePageIterator<T extends FileRecord> extends PagedIterator<T> {
+		final String firstPage;
+		final String nextPage;
+		final RawRowMapper<T> mapper;
+		String[] lastKey = null;
+		
+		public DuplicatePageIterator(String statement, String keyAlias, RawRowMapper<T> mapper, int pageSize) {
+			super(pageSize);
+			this.firstPage = statement + String.format(PAGE_ORDER, keyAlias) + pageSize;
+			this.nextPage = statement + String.format(PAGE_AFTER_KEY + PAGE_ORDER, keyAlias) + pageSize;
+			this.mapper = mapper;
+		}
+		
+		@Override
+		protected List<T> nextPage(int pageSize) throws SQLException {
+			GenericRawResults<String[]> rawResults;
+			
+			if(lastKey == null){
+				rawResults = queryRaw(firstPage);
+			}else{
+				rawResults = queryRaw(nextPage, lastKey[0], lastKey[0], lastKey[1], lastKey[1], lastKey[2]);
+			}
+			
+			List<T> page = new LinkedList<>();
+			String[] columnNames = rawResults.getColumnNames();
+			
+			for(String[] row : rawResults){
+				page.add(mapper.mapRow(columnNames, row));
+				lastKey = new String[]{row[KEY_COLUMN], row[KEY_COLUMN + 1], row[KEY_COLUMN + 2]};
+			}
+			
+			rawResults.close();
+			return page;
+		}
+	}
+	
 	public boolean moveDuplicateToIndex(final String id) throws SQLException{
-		final String SQL_COPY_INDEX_STATEMENT = "INSERT INTO fileindex SELECT * FROM fileduplicate WHERE id = ? LIMIT 1" ;
+		final String SQL_COPY_INDEX_STATEMENT = "INSERT INTO fileindex SELECT * FROM fileduplicate WHERE id = UNHEX(?) LIMIT 1" ;
 		final String SQL_DELETE_DUPLICATE_STATEMENT = "DELETE fd FROM fileduplicate AS fd JOIN fileindex AS fi ON fi.id=fd.id AND fi.dir=fd.dir AND fi.filename=fd.filename";
 		
 		return TransactionManager.callInTransaction(connectionSource, new Callable<Boolean>() {
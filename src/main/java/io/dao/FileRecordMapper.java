@@ -0,0 +1,71 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.dao;
+
+import io.tables.DirectoryPathRecord;
+import io.tables.FilePathRecord;
+import io.tables.FileRecord;
+import io.tables.LocationRecord;
+
+import java.sql.SQLException;
+
+import com.j256.ormlite.dao.RawRowMapper;
+
+/**
+ * Builds a complete record, including directory, filename and location, from a single
+ * row of a JOIN query. This avoids the three extra selects per record that the
+ * foreignAutoRefresh fields of {@link FileRecord} would cause.<br/>
+ * Queries need to select {@link FileRecordMapper#RECORD_COLUMNS} first, using the
+ * alias "rec" for the record table and {@link FileRecordMapper#RECORD_JOINS}.
+ * Additional columns after these are ignored.
+ */
+abstract class FileRecordMapper<T extends FileRecord> implements RawRowMapper<T> {
+	static final String RECORD_COLUMNS = "HEX(rec.id), rec.size, dir.id, dir.dirpath, file.id, file.filename, loc.tag_id, loc.location";
+	static final String RECORD_JOINS = " JOIN dirlist AS dir ON dir.id = rec.dir"
+			+ " JOIN filelist AS file ON file.id = rec.filename"
+			+ " JOIN location_tags AS loc ON loc.tag_id = rec.location";
+	
+	/**
+	 * Create an empty record to fill with the row data.
+	 */
+	protected abstract T createRecord();
+	
+	@Override
+	public T mapRow(String[] columnNames, String[] resultColumns) throws SQLException {
+		T record = createRecord();
+		
+		record.setId(resultColumns[0]);
+		record.setSize(Long.parseLong(resultColumns[1]));
+		
+		DirectoryPathRecord directory = new DirectoryPathRecord();
+		directory.setId(Integer.parseInt(resultColumns[2]));
+		directory.setDirpath(resultColumns[3]);
+		record.setDirectory(directory);
+		
+		FilePathRecord file = new FilePathRecord();
+		file.setId(Integer.parseInt(resultColumns[4]));
+		file.setFilename(resultColumns[5]);
+		record.setFile(file);
+		
+		LocationRecord location = new LocationRecord(resultColumns[7]);
+		location.setTag_id(Integer.parseInt(resultColumns[6]));
+		record.setLocation(location);
+		
+		return record;
+	}
+}
@@ -18,6 +18,8 @@
 package io.dao;
 
 import java.sql.SQLException;
+import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
 
 import com.j256.ormlite.dao.BaseDaoImpl;
@@ -55,4 +57,27 @@ public class FilterDAO extends BaseDaoImpl<FilterItem, String>{
 	public int getPendingFilterCount() throws SQLException {
 		return (int)countOf(pendingFilterCountQuery);
 	}
+	
+	/**
+	 * Delete denied filter items that have not been refreshed since the given time.
+	 * @param olderThan items with a timestamp before this are deleted
+	 * @param limit maximum number of items to delete
+	 * @return number of deleted items
+	 */
+	public int deleteStaleDenied(Date olderThan, int limit) throws SQLException {
+		PreparedQuery<FilterItem> staleQuery = queryBuilder().selectColumns("id").limit((long)limit)
+				.where().eq("status", FilterState.DENY).and().lt("timestamp", new SelectArg(olderThan)).prepare();
+		
+		List<String> ids = new LinkedList<>();
+		
+		for(FilterItem item : query(staleQuery)){
+			ids.add(extractId(item));
+		}
+		
+		if(ids.isEmpty()){
+			return 0;
+		}
+		
+		return deleteIds(ids);
+	}
 }
@@ -18,20 +18,80 @@
 package io.dao;
 
 import io.tables.IndexRecord;
+import io.tables.LocationRecord;
 
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.GenericRawResults;
 import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.support.ConnectionSource;
 
 public class IndexDAO extends BaseDaoImpl<IndexRecord, String> {
+	final String RECORD_STMT = "SELECT " + FileRecordMapper.RECORD_COLUMNS + " FROM fileindex AS rec" + FileRecordMapper.RECORD_JOINS;
+	
+	final FileRecordMapper<IndexRecord> indexMapper = new FileRecordMapper<IndexRecord>() {
+		@Override
+		protected IndexRecord createRecord() {
+			return new IndexRecord();
+		}
+	};
+	
 	public IndexDAO(ConnectionSource cs) throws SQLException {
 		super(cs, IndexRecord.class);
 	}
 	
+	/**
+	 * Load all index records, including path and location, with a single query.
+	 * @return all index records
+	 */
+	public List<IndexRecord> queryForAllJoined() throws SQLException {
+		return queryJoined("");
+	}
+	
+	/**
+	 * Load a index record, including path and location, with a single query.
+	 * @param id hash of the record
+	 * @return the record or null if not found
+	 */
+	public IndexRecord queryForIdJoined(String id) throws SQLException {
+		List<IndexRecord> records = queryJoined(" WHERE rec.id = UNHEX(?)", id);
+		
+		if(records.isEmpty()){
+			return null;
+		}else{
+			return records.get(0);
+		}
+	}
+	
+	private List<IndexRecord> queryJoined(String condition, String... arguments) throws SQLException {
+		GenericRawResults<IndexRecord> rawResults = queryRaw(RECORD_STMT + condition, indexMapper, arguments);
+		List<IndexRecord> records = rawResults.getResults();
+		rawResults.close();
+		
+		return records;
+	}
+	
+	/**
+	 * Load the MD5 hash of a index record.
+	 * @param id hash of the record
+	 * @return hexadecimal MD5 hash, null if the record is not found or has no MD5 hash
+	 */
+	public String queryForMd5(String id) throws SQLException {
+		GenericRawResults<String[]> rawResults = queryRaw("SELECT HEX(md5) FROM fileindex WHERE id = UNHEX(?)", id);
+		List<String[]> rows = rawResults.getResults();
+		rawResults.close();
+		
+		if(rows.isEmpty()){
+			return null;
+		}else{
+			return rows.get(0)[0];
+		}
+	}
+	
 	public IndexRecord queryForFirst(IndexRecord index) throws SQLException {
 		List<IndexRecord> records = queryForMatchingArgs(index);
 		
@@ -42,8 +102,49 @@ public class IndexDAO extends BaseDaoImpl<IndexRecord, String> {
 		}
 	}
 	
+	/**
+	 * Query a page of index records for a location, ordered by id.
+	 * @param location location of the records
+	 * @param afterId only records with a greater id are returned, null for the first page
+	 * @param limit maximum number of records to return
+	 * @return a page of records
+	 */
+	public List<IndexRecord> queryForLocation(LocationRecord location, String afterId, long limit) throws SQLException {
+		final String ORDER = " ORDER BY rec.id LIMIT " + limit;
+		String locationId = Integer.toString(location.getTag_id());
+		
+		if(afterId == null){
+			return queryJoined(" WHERE rec.location = ?" + ORDER, locationId);
+		}else{
+			return queryJoined(" WHERE rec.location = ? AND rec.id > UNHEX(?)" + ORDER, locationId, afterId);
+		}
+	}
+	
+	/**
+	 * Iterate over all index records of a location, loading pageSize records at a time.
+	 * @param location location of the records
+	 * @param pageSize number of records to load per query
+	 * @return iterator over the records
+	 */
+	public Iterator<IndexRecord> iterateLocation(final LocationRecord location, int pageSize) {
+		return new PagedIterator<IndexRecord>(pageSize) {
+			String lastId = null;
+			
+			@Override
+			protected List<IndexRecord> nextPage(int pageSize) throws SQLException {
+				List<IndexRecord> page = queryForLocation(location, lastId, pageSize);
+				
+				if(! page.isEmpty()){
+					lastId = page.get(page.size() - 1).getId();
+				}
+				
+				return page;
+			}
+		};
+	}
+	
 	public boolean moveIndexToDuplicate(final String id) throws SQLException{
-		final String SQL_COPY_INDEX_STATEMENT = "INSERT INTO fileduplicate SELECT * FROM fileindex WHERE id = ?";
+		final String SQL_COPY_INDEX_STATEMENT = "INSERT INTO fileduplicate SELECT * FROM fileindex WHERE id = UNHEX(?)";
 		
 		return TransactionManager.callInTransaction(connectionSource, new Callable<Boolean>() {
 
@@ -0,0 +1,91 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.dao;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator that loads query results one page at a time.<br/>
+ * Implementations are expected to use keyset pagination (remember the key of the
+ * last row and continue after it), so every page is an index range scan and only
+ * one page is held in memory.
+ * Iteration ends early if a page fails to load.
+ */
+public abstract class PagedIterator<T> implements Iterator<T> {
+	private static final Logger logger = LoggerFactory.getLogger(PagedIterator.class);
+	
+	private final int pageSize;
+	private Iterator<T> page = Collections.<T>emptyList().iterator();
+	private boolean lastPage = false;
+	
+	public PagedIterator(int pageSize) {
+		if(pageSize < 1){
+			throw new IllegalArgumentException("Page size must be at least 1");
+		}
+		
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * Load the next page of results, starting after the last returned row.
+	 * @param pageSize maximum number of rows to load
+	 * @return the next page, a page smaller than pageSize ends the iteration
+	 */
+	protected abstract List<T> nextPage(int pageSize) throws SQLException;
+
+	@Override
+	public boolean hasNext() {
+		while(! page.hasNext() && ! lastPage){
+			loadPage();
+		}
+		
+		return page.hasNext();
+	}
+	
+	private void loadPage() {
+		try {
+			List<T> results = nextPage(pageSize);
+			lastPage = results.size() < pageSize;
+			page = results.iterator();
+		} catch (SQLException e) {
+			logger.warn("Failed to load page: " + e.getMessage());
+			lastPage = true;
+		}
+	}
+
+	@Override
+	public T next() {
+		if(! hasNext()){
+			throw new NoSuchElementException();
+		}
+		
+		return page.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Paged results are read only");
+	}
+}
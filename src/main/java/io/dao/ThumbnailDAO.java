@@ -0,0 +1,60 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.dao;
+
+import filter.FilterState;
+import io.tables.Thumbnail;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.support.ConnectionSource;
+
+public class ThumbnailDAO extends BaseDaoImpl<Thumbnail, Integer> {
+	final String ORPHAN_STMT = "SELECT t.id FROM thumbs AS t LEFT JOIN filter AS f ON f.id = t.url WHERE f.id IS NULL OR f.status <> "
+			+ FilterState.PENDING.ordinal() + " LIMIT ";
+	
+	public ThumbnailDAO(ConnectionSource cSource) throws SQLException {
+		super(cSource, Thumbnail.class);
+	}
+	
+	/**
+	 * Delete thumbnails that no longer belong to a pending filter item.
+	 * @param limit maximum number of thumbnails to delete
+	 * @return number of deleted thumbnails
+	 */
+	public int deleteOrphans(int limit) throws SQLException {
+		List<Integer> ids = new LinkedList<>();
+		GenericRawResults<String[]> rawResults = queryRaw(ORPHAN_STMT + limit);
+		
+		for(String[] row : rawResults){
+			ids.add(Integer.parseInt(row[0]));
+		}
+		
+		rawResults.close();
+		
+		if(ids.isEmpty()){
+			return 0;
+		}
+		
+		return deleteIds(ids);
+	}
+}
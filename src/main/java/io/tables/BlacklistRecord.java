@@ -24,8 +24,10 @@ import com.j256.ormlite.table.DatabaseTable;
 
 @DatabaseTable(tableName = "block", daoClass=BlacklistDAO.class)
 public class BlacklistRecord {
-	@DatabaseField(id=true, canBeNull = false)
+	@DatabaseField(id=true, canBeNull = false, persisterClass=HashPersister.class)
 	String id;
+	@DatabaseField(persisterClass=Md5Persister.class)
+	String md5;
 
 	public BlacklistRecord() {}
 
@@ -33,6 +35,11 @@ public class BlacklistRecord {
 		this.id = id;
 	}
 
+	public BlacklistRecord(String id, String md5) {
+		this.id = id;
+		this.md5 = md5;
+	}
+
 	public String getId() {
 		return id;
 	}
@@ -40,4 +47,12 @@ public class BlacklistRecord {
 	public void setId(String id) {
 		this.id = id;
 	}
+
+	public String getMd5() {
+		return md5;
+	}
+
+	public void setMd5(String md5) {
+		this.md5 = md5;
+	}
 }
@@ -30,6 +30,10 @@ public class DirectoryPathRecord {
 	public int getId() {
 		return id;
 	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
 
 	public String getDirpath() {
 		return dirpath;
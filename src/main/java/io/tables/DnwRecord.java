@@ -22,8 +22,10 @@ import com.j256.ormlite.table.DatabaseTable;
 
 @DatabaseTable(tableName = "dnw")
 public class DnwRecord {
-	@DatabaseField(id=true, canBeNull = false)
+	@DatabaseField(id=true, canBeNull = false, persisterClass=HashPersister.class)
 	String id;
+	@DatabaseField(persisterClass=Md5Persister.class)
+	String md5;
 
 	public DnwRecord() {}
 
@@ -31,6 +33,11 @@ public class DnwRecord {
 		this.id = id;
 	}
 
+	public DnwRecord(String id, String md5) {
+		this.id = id;
+		this.md5 = md5;
+	}
+
 	public String getId() {
 		return id;
 	}
@@ -38,4 +45,12 @@ public class DnwRecord {
 	public void setId(String id) {
 		this.id = id;
 	}
+
+	public String getMd5() {
+		return md5;
+	}
+
+	public void setMd5(String md5) {
+		this.md5 = md5;
+	}
 }
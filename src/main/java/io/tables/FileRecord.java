@@ -25,7 +25,7 @@ import com.github.dozedoff.commonj.file.FileUtil;
 import com.j256.ormlite.field.DatabaseField;
 
 public abstract class FileRecord {
-	@DatabaseField(id=true)
+	@DatabaseField(id=true, persisterClass=HashPersister.class)
 	private String id;
 	@DatabaseField
 	private long size;
@@ -0,0 +1,82 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.tables;
+
+import io.HashValue;
+
+import java.sql.SQLException;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.BaseDataType;
+import com.j256.ormlite.misc.SqlExceptionUtil;
+import com.j256.ormlite.support.DatabaseResults;
+
+/**
+ * Persists hexadecimal hash Strings as BINARY(32) columns.<br/>
+ * Use with {@code @DatabaseField(persisterClass = HashPersister.class)} on String fields.
+ */
+public class HashPersister extends BaseDataType {
+	private static final HashPersister singleton = new HashPersister();
+	
+	public static HashPersister getSingleton() {
+		return singleton;
+	}
+	
+	private HashPersister() {
+		super(SqlType.BYTE_ARRAY, new Class<?>[0]);
+	}
+	
+	@Override
+	public Object parseDefaultString(FieldType fieldType, String defaultStr) throws SQLException {
+		return javaToSqlArg(fieldType, defaultStr);
+	}
+	
+	@Override
+	public Object resultToSqlArg(FieldType fieldType, DatabaseResults results, int columnPos) throws SQLException {
+		return results.getBytes(columnPos);
+	}
+	
+	@Override
+	public Object javaToSqlArg(FieldType fieldType, Object javaObject) throws SQLException {
+		try {
+			return HashValue.fromHex((String) javaObject).toBytes();
+		} catch (IllegalArgumentException e) {
+			throw SqlExceptionUtil.create("Could not convert hash for field " + fieldType, e);
+		}
+	}
+	
+	@Override
+	public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) throws SQLException {
+		try {
+			return HashValue.fromBytes((byte[]) sqlArg).toHex();
+		} catch (IllegalArgumentException e) {
+			throw SqlExceptionUtil.create("Invalid hash in column " + columnPos + " for field " + fieldType, e);
+		}
+	}
+	
+	@Override
+	public boolean isAppropriateId() {
+		return true;
+	}
+	
+	@Override
+	public Class<?> getPrimaryClass() {
+		return String.class;
+	}
+}
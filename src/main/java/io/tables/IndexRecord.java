@@ -20,15 +20,37 @@ package io.tables;
 import io.dao.IndexDAO;
 
 import com.github.dozedoff.commonj.file.FileInfo;
+import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
 @DatabaseTable(tableName="fileindex", daoClass=IndexDAO.class)
 public class IndexRecord extends FileRecord {
+@DatabaseField(persisterClass=Md5Persister.class)
+private String md5;
+@DatabaseField(columnName="prefix_md5", persisterClass=Md5Persister.class)
+private String prefixMd5;
+
 public IndexRecord() {}
 
 public IndexRecord(FileInfo info, LocationRecord location) {
 	super(info, location);
 }
 
+public String getMd5() {
+	return md5;
+}
+
+public void setMd5(String md5) {
+	this.md5 = md5;
+}
+
+public String getPrefixMd5() {
+	return prefixMd5;
+}
+
+public void setPrefixMd5(String prefixMd5) {
+	this.prefixMd5 = prefixMd5;
+}
+
 
 }
@@ -38,6 +38,10 @@ public class LocationRecord {
 	public int getTag_id() {
 		return tag_id;
 	}
+	
+	public void setTag_id(int tag_id) {
+		this.tag_id = tag_id;
+	}
 
 	public String getLocation() {
 		return location;
@@ -0,0 +1,97 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.tables;
+
+import java.sql.SQLException;
+
+import javax.xml.bind.DatatypeConverter;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.BaseDataType;
+import com.j256.ormlite.misc.SqlExceptionUtil;
+import com.j256.ormlite.support.DatabaseResults;
+
+/**
+ * Persists hexadecimal MD5 Strings as BINARY(16) columns, null values are kept.<br/>
+ * Use with {@code @DatabaseField(persisterClass = Md5Persister.class)} on String fields.
+ */
+public class Md5Persister extends BaseDataType {
+	public static final int LENGTH = 16;
+	
+	private static final Md5Persister singleton = new Md5Persister();
+	
+	public static Md5Persister getSingleton() {
+		return singleton;
+	}
+	
+	private Md5Persister() {
+		super(SqlType.BYTE_ARRAY, new Class<?>[0]);
+	}
+	
+	/**
+	 * @param hex String to check
+	 * @return true if the String consists of 32 hexadecimal characters
+	 */
+	public static boolean isValidHex(String hex) {
+		return hex != null && hex.matches("[0-9a-fA-F]{" + LENGTH * 2 + "}");
+	}
+	
+	@Override
+	public Object parseDefaultString(FieldType fieldType, String defaultStr) throws SQLException {
+		return javaToSqlArg(fieldType, defaultStr);
+	}
+	
+	@Override
+	public Object resultToSqlArg(FieldType fieldType, DatabaseResults results, int columnPos) throws SQLException {
+		return results.getBytes(columnPos);
+	}
+	
+	@Override
+	public Object javaToSqlArg(FieldType fieldType, Object javaObject) throws SQLException {
+		if(javaObject == null){
+			return null;
+		}
+		
+		if(! isValidHex((String) javaObject)){
+			throw SqlExceptionUtil.create("Could not convert MD5 for field " + fieldType, new IllegalArgumentException("Not a valid MD5: " + javaObject));
+		}
+		
+		return DatatypeConverter.parseHexBinary((String) javaObject);
+	}
+	
+	@Override
+	public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) throws SQLException {
+		if(sqlArg == null){
+			return null;
+		}
+		
+		byte[] md5 = (byte[]) sqlArg;
+		
+		if(md5.length != LENGTH){
+			throw SqlExceptionUtil.create("Invalid MD5 in column " + columnPos + " for field " + fieldType, new IllegalArgumentException("MD5 must be " + LENGTH + " bytes long"));
+		}
+		
+		return DatatypeConverter.printHexBinary(md5);
+	}
+	
+	@Override
+	public Class<?> getPrimaryClass() {
+		return String.class;
+	}
+}
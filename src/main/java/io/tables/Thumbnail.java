@@ -17,11 +17,13 @@
  */
 package io.tables;
 
+import io.dao.ThumbnailDAO;
+
 import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
-@DatabaseTable(tableName="thumbs")
+@DatabaseTable(tableName="thumbs", daoClass=ThumbnailDAO.class)
 public class Thumbnail {
 	@DatabaseField(generatedId=true)
 	int id;
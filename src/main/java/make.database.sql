@@ -17,9 +17,10 @@ USE `aid`;
 
 -- Dumping structure for table aid.block
 CREATE TABLE IF NOT EXISTS `block` (
-  `id` varchar(64) NOT NULL,
+  `id` binary(32) NOT NULL,
+  `md5` binary(16) DEFAULT NULL,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `hash` (`id`)
+  KEY `block_md5` (`md5`)
 ) ENGINE=MyISAM DEFAULT CHARSET=ascii COMMENT='Blocked Items. Programm will tag files.';
 
 -- Data exporting was unselected.
@@ -30,7 +31,8 @@ CREATE TABLE IF NOT EXISTS `cache` (
   `id` varchar(48) NOT NULL,
   `timestamp` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `id` (`id`)
+  UNIQUE KEY `id` (`id`),
+  KEY `timestamp` (`timestamp`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8 COMMENT='Recently downloaded files';
 
 -- Data exporting was unselected.
@@ -50,9 +52,10 @@ CREATE TABLE IF NOT EXISTS `dirlist` (
 
 -- Dumping structure for table aid.dnw
 CREATE TABLE IF NOT EXISTS `dnw` (
-  `id` varchar(64) NOT NULL,
+  `id` binary(32) NOT NULL,
+  `md5` binary(16) DEFAULT NULL,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `hash` (`id`)
+  KEY `dnw_md5` (`md5`)
 ) ENGINE=MyISAM DEFAULT CHARSET=ascii COMMENT='Unwanted files';
 
 -- Data exporting was unselected.
@@ -61,7 +64,7 @@ CREATE TABLE IF NOT EXISTS `dnw` (
 -- Dumping structure for view aid.dupeview
 -- Creating temporary table to overcome VIEW dependency errors
 CREATE TABLE `dupeview` (
-	`id` VARCHAR(64) NOT NULL COLLATE 'ascii_general_ci',
+	`id` BINARY(32) NOT NULL,
 	`dupeloc` VARCHAR(30) NOT NULL COLLATE 'utf8_unicode_ci',
 	`dupePath` VARCHAR(510) NULL DEFAULT NULL COLLATE 'utf8_general_ci',
 	`origloc` VARCHAR(30) NOT NULL COLLATE 'utf8_unicode_ci',
@@ -71,13 +74,12 @@ CREATE TABLE `dupeview` (
 
 -- Dumping structure for table aid.fileduplicate
 CREATE TABLE IF NOT EXISTS `fileduplicate` (
-  `id` varchar(64) CHARACTER SET ascii NOT NULL,
+  `id` binary(32) NOT NULL,
   `size` bigint(20) unsigned NOT NULL DEFAULT '0',
   `dir` mediumint(8) unsigned NOT NULL DEFAULT '0',
   `filename` mediumint(8) unsigned NOT NULL DEFAULT '0',
   `location` smallint(5) unsigned NOT NULL,
   PRIMARY KEY (`id`,`dir`,`filename`),
-  UNIQUE KEY `id_dir_filename` (`id`,`dir`,`filename`),
   KEY `location_FK` (`location`),
   KEY `dir_FK` (`dir`),
   KEY `file_fk` (`filename`),
@@ -91,13 +93,16 @@ CREATE TABLE IF NOT EXISTS `fileduplicate` (
 
 -- Dumping structure for table aid.fileindex
 CREATE TABLE IF NOT EXISTS `fileindex` (
-  `id` varchar(64) CHARACTER SET ascii NOT NULL,
+  `id` binary(32) NOT NULL,
+  `md5` binary(16) DEFAULT NULL,
   `size` bigint(20) unsigned NOT NULL DEFAULT '0',
+  `prefix_md5` binary(16) DEFAULT NULL,
   `dir` mediumint(8) unsigned NOT NULL DEFAULT '0',
   `filename` mediumint(8) unsigned NOT NULL DEFAULT '0',
   `location` smallint(5) unsigned NOT NULL,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `hash` (`id`),
+  KEY `index_md5` (`md5`),
+  KEY `index_fingerprint` (`size`,`prefix_md5`),
   KEY `index_dir_FK` (`dir`),
   KEY `index_file_fk` (`filename`),
   KEY `index_location_FK` (`location`),
@@ -129,7 +134,8 @@ CREATE TABLE IF NOT EXISTS `filter` (
   `status` tinyint(3) unsigned NOT NULL COMMENT 'filter status',
   `timestamp` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `id` (`id`)
+  UNIQUE KEY `id` (`id`),
+  KEY `status_timestamp` (`status`,`timestamp`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8 COMMENT='filtered threads';
 
 -- Data exporting was unselected.
@@ -138,7 +144,7 @@ CREATE TABLE IF NOT EXISTS `filter` (
 -- Dumping structure for view aid.indexview
 -- Creating temporary table to overcome VIEW dependency errors
 CREATE TABLE `indexview` (
-	`id` VARCHAR(64) NOT NULL COLLATE 'ascii_general_ci',
+	`id` BINARY(32) NOT NULL,
 	`fullpath` VARCHAR(510) NULL DEFAULT NULL COLLATE 'utf8_general_ci',
 	`size` BIGINT(20) UNSIGNED NOT NULL DEFAULT '0',
 	`location` VARCHAR(30) NOT NULL COLLATE 'utf8_unicode_ci'
@@ -177,7 +183,7 @@ CREATE TABLE IF NOT EXISTS `settings` (
   UNIQUE KEY `name` (`name`)
 ) ENGINE=MyISAM DEFAULT CHARSET=ascii COMMENT='Global settings for all clients';
 
-INSERT IGNORE INTO `settings` (`name`, `param`) VALUES ('SchemaVersion', '3');
+INSERT IGNORE INTO `settings` (`name`, `param`) VALUES ('SchemaVersion', '8');
 
 
 
@@ -224,7 +230,8 @@ CREATE TABLE IF NOT EXISTS `thumbs` (
   `url` varchar(50) CHARACTER SET ascii NOT NULL,
   `filename` varchar(25) CHARACTER SET ascii NOT NULL,
   `thumb` blob NOT NULL,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `url` (`url`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci COMMENT='Thumbnails for items in the Filter list';
 
 -- Data exporting was unselected.
@@ -0,0 +1,210 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in log-linear buckets so that percentiles can be estimated.<br/>
+ * Values are stored in microseconds. Every power of two is split into {@link #SUB_BUCKETS}
+ * buckets, which keeps the error of a percentile below 12.5% with a fixed amount of memory.
+ * Recording a value is lock free.
+ */
+public class Histogram {
+	static final int SUB_BITS = 3;
+	static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+	static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong max = new AtomicLong();
+	private final StripedCounter sum = new StripedCounter();
+	
+	/**
+	 * Record the time that has passed since the given start time.
+	 * 
+	 * @param startNanos start time as returned by {@link System#nanoTime()}
+	 */
+	public void time(long startNanos) {
+		record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	public void record(long duration, TimeUnit unit) {
+		long micros = unit.toMicros(duration);
+		
+		if(micros < 0){
+			micros = 0;
+		}else if(micros > MAX_VALUE){
+			micros = MAX_VALUE;
+		}
+		
+		buckets.incrementAndGet(bucketIndex(micros));
+		sum.add(micros);
+		updateMax(micros);
+	}
+	
+	private void updateMax(long micros) {
+		long current = max.get();
+		
+		while(micros > current){
+			if(max.compareAndSet(current, micros)){
+				return;
+			}
+			
+			current = max.get();
+		}
+	}
+	
+	static int bucketIndex(long value) {
+		if(value < SUB_BUCKETS){
+			return (int)value;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		int sub = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+		
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+	
+	/**
+	 * @return the largest value that falls into the bucket
+	 */
+	static long bucketUpperBound(int index) {
+		if(index < SUB_BUCKETS){
+			return index;
+		}
+		
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS + sub) << shift;
+		
+		return lower + (1L << shift) - 1;
+	}
+	
+	/**
+	 * Take a copy of the current values. Values recorded while the copy is made
+	 * may or may not be included.
+	 */
+	public Snapshot getSnapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		
+		for(int i = 0; i < BUCKET_COUNT; i++){
+			counts[i] = buckets.get(i);
+		}
+		
+		return new Snapshot(counts, sum.sum(), max.get());
+	}
+	
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++){
+			buckets.set(i, 0);
+		}
+		
+		sum.reset();
+		max.set(0);
+	}
+	
+	/**
+	 * Immutable copy of a histogram. All values are in microseconds.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+		
+		Snapshot(long[] counts, long sum, long max) {
+			long total = 0;
+			
+			for(long c : counts){
+				total += c;
+			}
+			
+			this.counts = counts;
+			this.count = total;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return sum of all recorded values
+		 */
+		public long getSum() {
+			return sum;
+		}
+		
+		public long getMax() {
+			return max;
+		}
+		
+		/**
+		 * Estimate the value below which the given fraction of recorded values fall.
+		 * 
+		 * @param quantile between 0.0 and 1.0
+		 * @return the upper bound of the matching bucket, never more than the maximum
+		 */
+		public long getPercentile(double quantile) {
+			if(count == 0){
+				return 0;
+			}
+			
+			long rank = (long)Math.ceil(quantile * count);
+			
+			if(rank < 1){
+				rank = 1;
+			}
+			
+			long seen = 0;
+			
+			for(int i = 0; i < counts.length; i++){
+				seen += counts[i];
+				
+				if(seen >= rank){
+					return Math.min(bucketUpperBound(i), max);
+				}
+			}
+			
+			return max;
+		}
+		
+		public long getMedian() {
+			return getPercentile(0.5);
+		}
+		
+		public long get99thPercentile() {
+			return getPercentile(0.99);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("n=%d p50=%.1fms p99=%.1fms max=%.1fms", count, toMillis(getMedian()), toMillis(get99thPercentile()), toMillis(max));
+		}
+		
+		private double toMillis(long micros) {
+			return micros / 1000.0;
+		}
+	}
+}
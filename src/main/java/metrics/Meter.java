@@ -0,0 +1,90 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+/**
+ * Counts events and calculates the rate at which they occur.<br/>
+ * Marking an event only updates a {@link StripedCounter}, the rate is calculated when it is read.
+ * It is the number of events per second over the previous interval, so readers should
+ * query the meter at least once per interval.
+ */
+public class Meter {
+	private static final long DEFAULT_INTERVAL = 1000;
+	
+	private final StripedCounter count = new StripedCounter();
+	private final long intervalMillis;
+	
+	private long lastCount = 0;
+	private long lastTime;
+	private volatile double rate = 0.0;
+	
+	public Meter() {
+		this(DEFAULT_INTERVAL);
+	}
+	
+	/**
+	 * @param intervalMillis interval over which the rate is calculated
+	 */
+	public Meter(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+		this.lastTime = System.currentTimeMillis();
+	}
+	
+	public void mark() {
+		count.increment();
+	}
+	
+	public void mark(long events) {
+		count.add(events);
+	}
+	
+	/**
+	 * @return total number of events
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * @return events per second during the last complete interval
+	 */
+	public double getRate() {
+		update(System.currentTimeMillis());
+		return rate;
+	}
+	
+	synchronized void update(long now) {
+		long elapsed = now - lastTime;
+		
+		if(elapsed < intervalMillis){
+			return;
+		}
+		
+		long current = count.sum();
+		rate = (current - lastCount) * 1000.0 / elapsed;
+		lastCount = current;
+		lastTime = now;
+	}
+	
+	public synchronized void reset() {
+		count.reset();
+		lastCount = 0;
+		lastTime = System.currentTimeMillis();
+		rate = 0.0;
+	}
+}
@@ -0,0 +1,70 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+/**
+ * Names of the metrics used in the application.
+ */
+public final class MetricNames {
+	private MetricNames() {}
+	
+	// FileWriter
+	public static final String BYTES_SAVED = "writer.bytes.saved";
+	public static final String BYTES_DISCARDED = "writer.bytes.discarded";
+	public static final String FILES_SAVED = "writer.files.saved";
+	public static final String FILES_DISCARDED = "writer.files.discarded";
+	public static final String WRITE_BUFFER = "writer.buffer.files";
+	public static final String WRITE_BUFFER_BYTES = "writer.buffer.bytes";
+	public static final String FLUSH_TIME = "writer.flush";
+	public static final String HASH_TIME = "writer.hash";
+	public static final String WRITE_TIME = "writer.writeToDisk";
+	public static final String ADD_INDEX_TIME = "writer.addIndex";
+	
+	// ImageLoader
+	public static final String DOWNLOAD_QUEUE = "download.queue";
+	public static final String DOWNLOAD_BYTES = "download.bytes";
+	public static final String DOWNLOAD_FILES = "download.files";
+	/** From handing a file to a worker or the async engine until its data arrived, includes waiting for a free connection to the host */
+	public static final String DOWNLOAD_TIME = "download.latency";
+	public static final String DOWNLOAD_LIMIT = "download.limit";
+	public static final String BYTES_SKIPPED = "download.bytes.skipped";
+	
+	// HTTP
+	public static final String HTTP_BACKOFFS = "http.backoffs";
+	
+	// Board
+	public static final String LOAD_PAGE_TIME = "board.loadPage";
+	public static final String PARSE_PAGE_TIME = "board.parsePage";
+	public static final String PARSE_THREAD_TIME = "board.parseThread";
+	
+	// Filter and cache
+	public static final String PENDING_FILTERS = "filter.pending";
+	public static final String CACHE_SIZE = "cache.size";
+	public static final String CHECK_POST_TIME = "filter.checkPost";
+	public static final String THREAD_STATE_TIME = "filter.threadState";
+	public static final String CACHE_CHECK_TIME = "filter.isCached";
+	public static final String MD5_CHECK_TIME = "filter.findMd5";
+	public static final String FILES_SKIPPED = "filter.files.skipped";
+	
+	// Database
+	public static final String DB_POOL_SIZE = "db.pool.size";
+	public static final String POOL_WAIT_TIME = "db.pool.wait";
+	public static final String ACTIVE_CONNECTIONS = "db.connections.active";
+	public static final String QUERY_TIME = "db.query";
+	public static final String SLOW_QUERIES = "db.query.slow";
+}
@@ -0,0 +1,171 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Central place for counters, gauges, meters and histograms.<br/>
+ * Metrics are created on first use and identified by name, see {@link MetricNames}.
+ * Looking up a metric is cheap, but hot code should keep a reference to it.
+ */
+public class MetricsRegistry {
+	private static final MetricsRegistry defaultRegistry = new MetricsRegistry();
+	
+	private final ConcurrentMap<String, StripedCounter> counters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+	
+	/**
+	 * @return the registry used by the application
+	 */
+	public static MetricsRegistry getDefault() {
+		return defaultRegistry;
+	}
+	
+	/**
+	 * Get the counter with the given name, it is created if it does not exist.
+	 */
+	public StripedCounter counter(String name) {
+		StripedCounter counter = counters.get(name);
+		
+		if(counter == null){
+			StripedCounter created = new StripedCounter();
+			counter = counters.putIfAbsent(name, created);
+			
+			if(counter == null){
+				counter = created;
+			}
+		}
+		
+		return counter;
+	}
+	
+	/**
+	 * Get the meter with the given name, it is created if it does not exist.
+	 */
+	public Meter meter(String name) {
+		Meter meter = meters.get(name);
+		
+		if(meter == null){
+			Meter created = new Meter();
+			meter = meters.putIfAbsent(name, created);
+			
+			if(meter == null){
+				meter = created;
+			}
+		}
+		
+		return meter;
+	}
+	
+	/**
+	 * Get the histogram with the given name, it is created if it does not exist.
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		
+		if(histogram == null){
+			Histogram created = new Histogram();
+			histogram = histograms.putIfAbsent(name, created);
+			
+			if(histogram == null){
+				histogram = created;
+			}
+		}
+		
+		return histogram;
+	}
+	
+	/**
+	 * Register a gauge, replacing any gauge with the same name.
+	 */
+	public void register(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+	
+	public void unregister(String name) {
+		gauges.remove(name);
+	}
+	
+	/**
+	 * @return current value of the gauge, or -1 if there is no such gauge
+	 */
+	public long gaugeValue(String name) {
+		Gauge gauge = gauges.get(name);
+		
+		if(gauge == null){
+			return -1;
+		}
+		
+		return gauge.getValue();
+	}
+	
+	/**
+	 * @return the current counter values, sorted by name
+	 */
+	public SortedMap<String, Long> getCounters() {
+		SortedMap<String, Long> values = new TreeMap<>();
+		
+		for(Entry<String, StripedCounter> entry : counters.entrySet()){
+			values.put(entry.getKey(), entry.getValue().sum());
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * @return the current gauge values, sorted by name
+	 */
+	public SortedMap<String, Long> getGauges() {
+		SortedMap<String, Long> values = new TreeMap<>();
+		
+		for(Entry<String, Gauge> entry : gauges.entrySet()){
+			values.put(entry.getKey(), entry.getValue().getValue());
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * @return all meters, sorted by name
+	 */
+	public Map<String, Meter> getMeters() {
+		return Collections.unmodifiableMap(new TreeMap<String, Meter>(meters));
+	}
+	
+	/**
+	 * @return snapshots of all histograms, sorted by name
+	 */
+	public SortedMap<String, Histogram.Snapshot> getHistograms() {
+		SortedMap<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+		
+		for(Entry<String, Histogram> entry : histograms.entrySet()){
+			snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+		}
+		
+		return snapshots;
+	}
+}
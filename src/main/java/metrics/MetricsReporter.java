@@ -0,0 +1,127 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the metrics of a registry to the log.<br/>
+ * A one line summary of the latency histograms is logged periodically once started,
+ * {@link #dump()} logs all metrics on demand.
+ */
+public class MetricsReporter {
+	private static final Logger logger = LoggerFactory.getLogger(MetricsReporter.class);
+	
+	private final MetricsRegistry registry;
+	private final int intervalMillis;
+	private Timer reportTimer;
+	
+	public MetricsReporter(MetricsRegistry registry, int intervalSec) {
+		this.registry = registry;
+		this.intervalMillis = intervalSec * 1000;
+	}
+	
+	public boolean start(){
+		if(reportTimer != null)
+			return false;
+		
+		reportTimer = new Timer("MetricsReporter Timer", true);
+		reportTimer.schedule(new ReportWorker(), intervalMillis, intervalMillis);
+		
+		return true;
+	}
+	
+	public void stop(){
+		if(reportTimer == null){
+			return;
+		}
+		
+		reportTimer.cancel();
+		reportTimer = null;
+	}
+	
+	/**
+	 * @return all histograms that have values on a single line, or an empty string
+	 */
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		
+		for(Entry<String, Histogram.Snapshot> entry : registry.getHistograms().entrySet()){
+			if(entry.getValue().getCount() == 0){
+				continue;
+			}
+			
+			if(sb.length() > 0){
+				sb.append(" | ");
+			}
+			
+			sb.append(entry.getKey()).append(": ").append(entry.getValue());
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * @return all counters, gauges, meters and histograms, one per line
+	 */
+	public String snapshot() {
+		StringBuilder sb = new StringBuilder();
+		
+		for(Entry<String, Long> entry : registry.getCounters().entrySet()){
+			sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append("\n");
+		}
+		
+		for(Entry<String, Long> entry : registry.getGauges().entrySet()){
+			sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append("\n");
+		}
+		
+		for(Entry<String, Meter> entry : registry.getMeters().entrySet()){
+			Meter meter = entry.getValue();
+			sb.append(entry.getKey()).append(" = ").append(meter.getCount()).append(String.format(" (%.1f/s)", meter.getRate())).append("\n");
+		}
+		
+		for(Entry<String, Histogram.Snapshot> entry : registry.getHistograms().entrySet()){
+			sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append("\n");
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Log the current value of every metric.
+	 */
+	public void dump() {
+		logger.info("Metrics snapshot:\n{}", snapshot());
+	}
+	
+	class ReportWorker extends TimerTask {
+		@Override
+		public void run() {
+			String summary = summary();
+			
+			if(!summary.isEmpty()){
+				logger.info("Latency {}", summary);
+			}
+		}
+	}
+}
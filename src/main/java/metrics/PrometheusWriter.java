@@ -0,0 +1,90 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import java.util.Map.Entry;
+
+/**
+ * Formats the metrics of a registry in the Prometheus text exposition format.<br/>
+ * Metric names are prefixed with "aid_" and dots are replaced with underscores.
+ * Histograms are written as summaries in seconds, with an additional gauge for the maximum.
+ */
+public class PrometheusWriter {
+	static final String PREFIX = "aid_";
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+	
+	private final MetricsRegistry registry;
+	
+	public PrometheusWriter(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+	
+	public String write() {
+		StringBuilder sb = new StringBuilder();
+		
+		for(Entry<String, Long> entry : registry.getCounters().entrySet()){
+			String name = metricName(entry.getKey()) + "_total";
+			type(sb, name, "counter");
+			sample(sb, name, "", entry.getValue());
+		}
+		
+		for(Entry<String, Meter> entry : registry.getMeters().entrySet()){
+			String name = metricName(entry.getKey()) + "_total";
+			type(sb, name, "counter");
+			sample(sb, name, "", entry.getValue().getCount());
+		}
+		
+		for(Entry<String, Long> entry : registry.getGauges().entrySet()){
+			String name = metricName(entry.getKey());
+			type(sb, name, "gauge");
+			sample(sb, name, "", entry.getValue());
+		}
+		
+		for(Entry<String, Histogram.Snapshot> entry : registry.getHistograms().entrySet()){
+			String name = metricName(entry.getKey()) + "_seconds";
+			Histogram.Snapshot snapshot = entry.getValue();
+			
+			type(sb, name, "summary");
+			sample(sb, name, "{quantile=\"0.5\"}", seconds(snapshot.getMedian()));
+			sample(sb, name, "{quantile=\"0.99\"}", seconds(snapshot.get99thPercentile()));
+			sample(sb, name + "_sum", "", seconds(snapshot.getSum()));
+			sample(sb, name + "_count", "", snapshot.getCount());
+			
+			type(sb, name + "_max", "gauge");
+			sample(sb, name + "_max", "", seconds(snapshot.getMax()));
+		}
+		
+		return sb.toString();
+	}
+	
+	static String metricName(String name) {
+		return PREFIX + name.replaceAll("[^a-zA-Z0-9_]", "_");
+	}
+	
+	private void type(StringBuilder sb, String name, String type) {
+		sb.append("# TYPE ").append(name).append(" ").append(type).append("\n");
+	}
+	
+	private void sample(StringBuilder sb, String name, String labels, Object value) {
+		sb.append(name).append(labels).append(" ").append(value).append("\n");
+	}
+	
+	private double seconds(long micros) {
+		return micros / 1000000.0;
+	}
+}
@@ -0,0 +1,97 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that can be updated from many threads without contention.<br/>
+ * Each thread adds to one of several cells, chosen by thread id, and reading the value
+ * sums all cells. Cells are spaced apart so that updates from different threads do not
+ * share a cache line. Reads are not atomic with respect to concurrent updates.
+ */
+public class StripedCounter {
+	private static final int PADDING = 8; // longs per cache line
+	private static final int STRIPES = stripeCount(Runtime.getRuntime().availableProcessors());
+	
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+	
+	static int stripeCount(int processors) {
+		int stripes = 1;
+		
+		while(stripes < processors * 2){
+			stripes <<= 1;
+		}
+		
+		return stripes;
+	}
+	
+	private int cellIndex() {
+		return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+	}
+	
+	public void add(long value) {
+		cells.getAndAdd(cellIndex(), value);
+	}
+	
+	public void increment() {
+		add(1L);
+	}
+	
+	/**
+	 * @return the sum of all cells
+	 */
+	public long sum() {
+		long sum = 0;
+		
+		for(int i = 0; i < cells.length(); i += PADDING){
+			sum += cells.get(i);
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Set all cells to 0.
+	 */
+	public void reset() {
+		for(int i = 0; i < cells.length(); i += PADDING){
+			cells.set(i, 0L);
+		}
+	}
+	
+	/**
+	 * Set all cells to 0, returning the sum of the removed values.
+	 * Updates that happen concurrently are either included or kept for the next read.
+	 * @return the sum before the reset
+	 */
+	public long sumThenReset() {
+		long sum = 0;
+		
+		for(int i = 0; i < cells.length(); i += PADDING){
+			sum += cells.getAndSet(i, 0L);
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
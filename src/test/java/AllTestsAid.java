@@ -24,7 +24,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({ 	App.class,
 					Board.class, 
 					Filter.class, 
-					Io.class
+					Gui.class,
+					Io.class,
+					Metrics.class
 })
 public class AllTestsAid {
 
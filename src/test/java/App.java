@@ -19,11 +19,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import app.BoardListCacheTest;
+import app.ControlHandlerTest;
 import app.SettingValidatorTest;
+import app.StartupTest;
+import app.StatusServerTest;
 
 
 @RunWith(Suite.class)
-@SuiteClasses({SettingValidatorTest.class})
+@SuiteClasses({BoardListCacheTest.class, ControlHandlerTest.class, SettingValidatorTest.class, StartupTest.class, StatusServerTest.class})
 public class App {
 
 }
@@ -25,7 +25,8 @@ import filter.*;
 @RunWith(Suite.class)
 @SuiteClasses({
 	FilterItemTest.class,
-	FilterTest.class
+	FilterTest.class,
+	ConcurrentElementListTest.class
 })
 public class Filter {
 
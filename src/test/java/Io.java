@@ -26,7 +26,23 @@ import org.junit.runners.Suite.SuiteClasses;
 				FileWriterTest.class,
 				ImageItemTest.class,
 				AidDAOTest.class,
-				ThumbnailLoaderTest.class
+				ThumbnailLoaderTest.class,
+				ThrottledBatchTest.class,
+				TableCompactorTest.class,
+				HashValueTest.class,
+				QueryMetricsTest.class,
+				InstrumentedDataSourceTest.class,
+				HttpArchiveTest.class,
+				ArchiveResponseCacheTest.class,
+				DownloadQueueLogTest.class,
+				StreamingDownloaderTest.class,
+				AsyncDownloadEngineTest.class,
+				AdaptiveConcurrencyLimitTest.class,
+				HostRateLimiterTest.class,
+				WebClientTest.class,
+				PrefixFingerprintTest.class,
+				HashMigrationTest.class,
+				ImageLoaderTest.class
 })
 public class Io {
 
@@ -0,0 +1,84 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BoardListCacheTest {
+	Path cacheFile;
+	BoardListCache cache;
+	URL baseUrl;
+	Map<String, URL> boards;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheFile = Files.createTempFile("boardListCacheTest", ".cache");
+		Files.delete(cacheFile);
+		cache = new BoardListCache(cacheFile);
+		
+		baseUrl = new URL("http://boards.example.com/");
+		boards = new HashMap<>();
+		boards.put("a", new URL("http://boards.example.com/a/"));
+		boards.put("w", new URL("http://boards.example.com/w/"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(cacheFile);
+	}
+
+	@Test
+	public void testLoadMissingFile() throws Exception {
+		assertThat(cache.load(baseUrl).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testSaveLoad() throws Exception {
+		cache.save(baseUrl, boards);
+		
+		assertThat(cache.load(baseUrl), is(boards));
+	}
+
+	@Test
+	public void testLoadDifferentSite() throws Exception {
+		cache.save(baseUrl, boards);
+		
+		assertThat(cache.load(new URL("http://other.example.com/")).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testSaveReplaces() throws Exception {
+		cache.save(baseUrl, boards);
+		boards.remove("w");
+		cache.save(baseUrl, boards);
+		
+		assertThat(cache.load(baseUrl), is(boards));
+		assertThat(Files.exists(cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp")), is(false));
+	}
+}
@@ -0,0 +1,144 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import gui.BoardListDataModel;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ControlHandlerTest {
+	private static final int SERVER_PORT = 5986;
+	private static final String TOKEN = "0123456789abcdef";
+	
+	StatusServer statusServer;
+	ControlHandler.Control control;
+	
+	@Before
+	public void setUp() throws Exception {
+		control = mock(ControlHandler.Control.class);
+		when(control.start(anyString())).thenReturn(true);
+		when(control.stop(anyString())).thenReturn(false);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		statusServer.stop();
+	}
+	
+	private void startServer(String token) throws Exception {
+		statusServer = new StatusServer(SERVER_PORT, new BoardListDataModel(), new MetricsRegistry());
+		statusServer.addHandler(new ControlHandler(token, control));
+		statusServer.start();
+	}
+	
+	private HttpURLConnection request(String method, String path, String token) throws IOException {
+		URL url = new URL("http://localhost:" + SERVER_PORT + path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod(method);
+		
+		if(token != null){
+			connection.setRequestProperty(ControlHandler.CONTROL_TOKEN_HEADER, token);
+		}
+		
+		return connection;
+	}
+	
+	private int post(String path, String token) throws IOException {
+		return request("POST", path, token).getResponseCode();
+	}
+	
+	@Test
+	public void testGetNotAllowed() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(request("GET", "/control/shutdown", TOKEN).getResponseCode(), is(405));
+		verifyZeroInteractions(control);
+	}
+	
+	@Test
+	public void testMissingToken() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/shutdown", null), is(403));
+		verifyZeroInteractions(control);
+	}
+	
+	@Test
+	public void testWrongToken() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/shutdown", "fedcba9876543210"), is(403));
+		verifyZeroInteractions(control);
+	}
+	
+	@Test
+	public void testDisabledWithoutToken() throws Exception {
+		startServer("");
+		
+		assertThat(post("/control/shutdown", ""), is(403));
+		verifyZeroInteractions(control);
+	}
+	
+	@Test
+	public void testShutdown() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/shutdown", TOKEN), is(200));
+		verify(control).shutdown();
+	}
+	
+	@Test
+	public void testStartBoard() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/start?board=a", TOKEN), is(200));
+		verify(control).start("a");
+	}
+	
+	@Test
+	public void testStopUnknownBoard() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/stop?board=x", TOKEN), is(404));
+		verify(control).stop("x");
+	}
+	
+	@Test
+	public void testUnknownCommand() throws Exception {
+		startServer(TOKEN);
+		
+		assertThat(post("/control/restart", TOKEN), is(404));
+		verify(control, never()).shutdown();
+	}
+}
@@ -253,6 +253,158 @@ public class SettingValidatorTest {
 		assertThat(validateSubPages(appSettings), is(false));
 	}
 	
+	// status server tests
+	@Test
+	public void ssTrue(){
+		when(appSettings.getProperty(status_server.toString())).thenReturn("True");
+		assertThat(validateStatusServer(appSettings), is(true));
+	}
+	
+	@Test
+	public void ssInvalid(){
+		when(appSettings.getProperty(status_server.toString())).thenReturn("yes");
+		assertThat(validateStatusServer(appSettings), is(false));
+	}
+	
+	@Test
+	public void spPortValid(){
+		when(appSettings.getProperty(status_port.toString())).thenReturn("8089");
+		assertThat(validateStatusPort(appSettings), is(true));
+	}
+	
+	@Test
+	public void spPortZero(){
+		when(appSettings.getProperty(status_port.toString())).thenReturn("0");
+		assertThat(validateStatusPort(appSettings), is(false));
+	}
+	
+	@Test
+	public void spPortTooLarge(){
+		when(appSettings.getProperty(status_port.toString())).thenReturn("65536");
+		assertThat(validateStatusPort(appSettings), is(false));
+	}
+	
+	@Test
+	public void spPortNotNum(){
+		when(appSettings.getProperty(status_port.toString())).thenReturn("http");
+		assertThat(validateStatusPort(appSettings), is(false));
+	}
+	
+	// database tests
+	@Test
+	public void dbPoolSizeZero(){
+		when(appSettings.getProperty(db_pool_size.toString())).thenReturn("0");
+		assertThat(validateDbPoolSize(appSettings), is(false));
+	}
+	
+	@Test
+	public void dbPoolSizeValid(){
+		when(appSettings.getProperty(db_pool_size.toString())).thenReturn("20");
+		assertThat(validateDbPoolSize(appSettings), is(true));
+	}
+	
+	@Test
+	public void sqZero(){
+		when(appSettings.getProperty(slow_query_ms.toString())).thenReturn("0");
+		assertThat(validateSlowQueryMs(appSettings), is(true));
+	}
+	
+	@Test
+	public void sqNegative(){
+		when(appSettings.getProperty(slow_query_ms.toString())).thenReturn("-1");
+		assertThat(validateSlowQueryMs(appSettings), is(false));
+	}
+	
+	@Test
+	public void streamThresholdDisabled(){
+		when(appSettings.getProperty(stream_threshold_kb.toString())).thenReturn("0");
+		assertThat(validateStreamThreshold(appSettings), is(true));
+	}
+	
+	@Test
+	public void streamThresholdNegative(){
+		when(appSettings.getProperty(stream_threshold_kb.toString())).thenReturn("-1");
+		assertThat(validateStreamThreshold(appSettings), is(false));
+	}
+	
+	@Test
+	public void asyncConnectionsDisabled(){
+		when(appSettings.getProperty(async_connections_per_host.toString())).thenReturn("0");
+		assertThat(validateAsyncConnections(appSettings), is(true));
+	}
+	
+	@Test
+	public void asyncConnectionsValid(){
+		when(appSettings.getProperty(async_connections_per_host.toString())).thenReturn("8");
+		assertThat(validateAsyncConnections(appSettings), is(true));
+	}
+	
+	@Test
+	public void asyncConnectionsNegative(){
+		when(appSettings.getProperty(async_connections_per_host.toString())).thenReturn("-1");
+		assertThat(validateAsyncConnections(appSettings), is(false));
+	}
+	
+	@Test
+	public void hostRequestRateUnlimited(){
+		when(appSettings.getProperty(host_requests_per_second.toString())).thenReturn("0");
+		assertThat(validateHostRequestRate(appSettings), is(true));
+	}
+	
+	@Test
+	public void hostRequestRateNegative(){
+		when(appSettings.getProperty(host_requests_per_second.toString())).thenReturn("-1");
+		assertThat(validateHostRequestRate(appSettings), is(false));
+	}
+	
+	@Test
+	public void prefixFingerprintsFalse(){
+		when(appSettings.getProperty(prefix_fingerprints.toString())).thenReturn("false");
+		assertThat(validatePrefixFingerprints(appSettings), is(true));
+	}
+	
+	@Test
+	public void prefixFingerprintsInvalid(){
+		when(appSettings.getProperty(prefix_fingerprints.toString())).thenReturn("1");
+		assertThat(validatePrefixFingerprints(appSettings), is(false));
+	}
+	
+	@Test
+	public void controlTokenEmpty(){
+		when(appSettings.getProperty(control_token.toString())).thenReturn("");
+		assertThat(validateControlToken(appSettings), is(true));
+	}
+	
+	@Test
+	public void controlTokenValid(){
+		when(appSettings.getProperty(control_token.toString())).thenReturn("f3A9-kL2_x8QmZ7p");
+		assertThat(validateControlToken(appSettings), is(true));
+	}
+	
+	@Test
+	public void controlTokenTooShort(){
+		when(appSettings.getProperty(control_token.toString())).thenReturn("secret");
+		assertThat(validateControlToken(appSettings), is(false));
+	}
+	
+	@Test
+	public void controlTokenInvalidChars(){
+		when(appSettings.getProperty(control_token.toString())).thenReturn("f3A9 kL2 x8QmZ7p&");
+		assertThat(validateControlToken(appSettings), is(false));
+	}
+	
+	@Test
+	public void httpArchiveReplay(){
+		when(appSettings.getProperty(http_archive.toString())).thenReturn("Replay");
+		assertThat(validateHttpArchive(appSettings), is(true));
+	}
+	
+	@Test
+	public void httpArchiveInvalid(){
+		when(appSettings.getProperty(http_archive.toString())).thenReturn("recording");
+		assertThat(validateHttpArchive(appSettings), is(false));
+	}
+	
 	@Test
 	public void testEmptyPropertyFile(){
 		assertThat(SettingValidator.validateAppSettings(new Properties()), is(false));
@@ -262,4 +414,4 @@ public class SettingValidatorTest {
 	public void testDefaultPropertyFile(){
 		assertThat(SettingValidator.validateAppSettings(new DefaultAppSettings()), is(true));
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StartupTest {
+	Startup startup;
+	CountDownLatch release;
+
+	@Before
+	public void setUp() throws Exception {
+		startup = new Startup();
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		release.countDown();
+		startup.finish();
+	}
+
+	@Test
+	public void testGet() throws Exception {
+		Startup.Step<String> step = startup.submit("test", 1000, new Callable<String>() {
+			@Override
+			public String call() {
+				return "done";
+			}
+		});
+		
+		assertThat(step.get(), is("done"));
+	}
+
+	@Test
+	public void testGetAfterBudget() throws Exception {
+		Startup.Step<String> step = startup.submit("test", 10, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				Thread.sleep(100);
+				return "done";
+			}
+		});
+		
+		assertThat(step.get(), is("done"));
+	}
+
+	@Test
+	public void testFallbackOnTimeout() throws Exception {
+		Startup.Step<String> step = startup.submit("test", 10, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		});
+		
+		assertThat(step.get("fallback"), is("fallback"));
+	}
+
+	@Test
+	public void testFallbackOnFailure() throws Exception {
+		Startup.Step<String> step = startup.submit("test", 1000, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new Exception("failed");
+			}
+		});
+		
+		assertThat(step.get("fallback"), is("fallback"));
+	}
+
+	@Test(expected=ExecutionException.class)
+	public void testGetFailure() throws Exception {
+		Startup.Step<String> step = startup.submit("test", 1000, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new Exception("failed");
+			}
+		});
+		
+		step.get();
+	}
+
+	@Test
+	public void testDependentStep() throws Exception {
+		final Startup.Step<Integer> first = startup.submit("first", 1000, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				release.await();
+				return 1;
+			}
+		});
+		
+		Startup.Step<Integer> second = startup.submit("second", 1000, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return first.get() + 1;
+			}
+		});
+		
+		release.countDown();
+		assertThat(second.get(), is(2));
+	}
+}
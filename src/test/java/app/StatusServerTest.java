@@ -0,0 +1,148 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import gui.BoardListDataModel;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Scanner;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import metrics.Gauge;
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import board.Board;
+
+public class StatusServerTest {
+	private static final int SERVER_PORT = 5981;
+	
+	StatusServer statusServer;
+	MetricsRegistry registry;
+	BoardListDataModel boards;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		boards = new BoardListDataModel();
+		
+		Board board = mock(Board.class);
+		when(board.toString()).thenReturn("/a/");
+		when(board.getStatus()).thenReturn("/a/ 12:00:00 running");
+		boards.addElement(board);
+		
+		registry.register(MetricNames.DOWNLOAD_QUEUE, new Gauge() {
+			@Override
+			public long getValue() {
+				return 5;
+			}
+		});
+		registry.register(MetricNames.DB_POOL_SIZE, new Gauge() {
+			@Override
+			public long getValue() {
+				return 10;
+			}
+		});
+		
+		statusServer = new StatusServer(SERVER_PORT, boards, registry);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		statusServer.stop();
+	}
+
+	@Test
+	public void testStatusJson() {
+		assertThat(statusServer.statusJson(), is("{\"boards\":[{\"board\":\"/a/\",\"status\":\"/a/ 12:00:00 running\"}],"
+				+ "\"queues\":{\"download.queue\":5,\"writer.buffer.files\":-1,\"filter.pending\":-1},"
+				+ "\"db\":{\"db.pool.size\":10}}"));
+	}
+	
+	@Test
+	public void testQuote() {
+		assertThat(StatusServer.quote("a\"b\\c\n"), is("\"a\\\"b\\\\c\\u000a\""));
+	}
+	
+	@Test
+	public void testStartTwice() throws Exception {
+		assertThat(statusServer.start(), is(true));
+		assertThat(statusServer.start(), is(false));
+	}
+	
+	@Test
+	public void testMetricsEndpoint() throws Exception {
+		statusServer.start();
+		
+		assertThat(get("/metrics"), containsString("aid_download_queue 5"));
+	}
+	
+	@Test
+	public void testStatusEndpoint() throws Exception {
+		statusServer.start();
+		
+		assertThat(get("/status"), containsString("\"db.pool.size\":10"));
+	}
+	
+	@Test(expected=FileNotFoundException.class)
+	public void testUnknownPath() throws Exception {
+		statusServer.start();
+		get("/foo");
+	}
+	
+	@Test
+	public void testAdditionalHandler() throws Exception {
+		statusServer.addHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				response.getWriter().write("control");
+				baseRequest.setHandled(true);
+			}
+		});
+		statusServer.start();
+		
+		assertThat(get("/control/foo"), is("control"));
+		assertThat(get("/status"), containsString("\"db.pool.size\":10"));
+	}
+	
+	private String get(String path) throws Exception {
+		InputStream is = new URL("http://localhost:" + SERVER_PORT + path).openStream();
+		
+		try (Scanner scanner = new Scanner(is, "UTF-8")) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+}
@@ -20,8 +20,13 @@ package board;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.containsString;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import io.AidTables;
 import io.ImageLoader;
 
 import java.net.URL;
@@ -39,6 +44,8 @@ public class BoardTest {
 	Filter filter;
 	ImageLoader imageLoader;
 	
+	final String MD5 = "4E61F5A4F63A2AFE59B7FB2510F45A79";
+	
 	@Before
 	public void setup() throws Exception {
 		strategy = mock(SiteStrategy.class);
@@ -60,4 +67,34 @@ public class BoardTest {
 		board.stop();
 		assertThat(board.getStatus(), is("/t/  idle"));
 	}
+	
+	private Post post(String md5) throws Exception {
+		Post post = new Post();
+		post.setImageUrl(new URL("http://foo.bar/t/src/1.jpg"));
+		post.setImageMd5(md5);
+		return post;
+	}
+	
+	@Test
+	public void testKnownFileSkipped() throws Exception {
+		when(filter.findMd5(MD5)).thenReturn(AidTables.Fileindex);
+		
+		assertThat(board.isKnownFile(post(MD5)), is(true));
+		verify(filter).cache(new URL("http://foo.bar/t/src/1.jpg"));
+	}
+	
+	@Test
+	public void testUnknownFileNotSkipped() throws Exception {
+		assertThat(board.isKnownFile(post(MD5)), is(false));
+		assertThat(board.isKnownFile(post(null)), is(false));
+		verify(filter, never()).cache(any(URL.class));
+	}
+	
+	@Test
+	public void testBlacklistedFileDownloaded() throws Exception {
+		when(filter.findMd5(MD5)).thenReturn(AidTables.Block);
+		
+		assertThat(board.isKnownFile(post(MD5)), is(false));
+		verify(filter, never()).cache(any(URL.class));
+	}
 }
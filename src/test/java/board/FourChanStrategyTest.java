@@ -18,6 +18,7 @@
 package board;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.matchers.JUnitMatchers.hasItems;
@@ -154,6 +155,66 @@ public class FourChanStrategyTest {
 	
 	}
 	
+	@Test
+	public void testParseThreadImageSize() {
+		for(Post p : strategy.parseThread(threadPage)){
+			if(p.hasImage()){
+				assertThat(p.getImageSize() > 0, is(true));
+			}
+		}
+		
+		assertThat(strategy.parseThread(threadPage).get(0).getImageSize(), is(585L * 1024));
+	}
+	
+	@Test
+	public void testParseFileSize() {
+		assertThat(FourChanStrategy.parseFileSize("-(585 KB, 897x1350, )"), is(585L * 1024));
+		assertThat(FourChanStrategy.parseFileSize("-(2.5 MB, 1280x720, )"), is(5L * 1024 * 1024 / 2));
+		assertThat(FourChanStrategy.parseFileSize("-(831 B, 10x10, )"), is(831L));
+		assertThat(FourChanStrategy.parseFileSize("File: -(1280x720, )"), is(-1L));
+	}
+	
+	@Test
+	public void testParseThreadImageMd5() {
+		for(Post p : strategy.parseThread(threadPage)){
+			if(p.hasImage()){
+				assertThat(p.getImageMd5().length(), is(32));
+			}
+		}
+		
+		assertThat(strategy.parseThread(threadPage).get(0).getImageMd5(), is("4E61F5A4F63A2AFE59B7FB2510F45A79"));
+	}
+	
+	@Test
+	public void testParseMd5() {
+		assertThat(FourChanStrategy.parseMd5("34QbBnvMoSPsd/Q7uv5F/w=="), is("DF841B067BCCA123EC77F43BBAFE45FF"));
+		assertThat(FourChanStrategy.parseMd5("34QbBnvM"), is(nullValue()));
+		assertThat(FourChanStrategy.parseMd5(""), is(nullValue()));
+		assertThat(FourChanStrategy.parseMd5(null), is(nullValue()));
+	}
+	
+	@Test
+	public void testDefaultImageScheme() {
+		for(Post p : strategy.parseThread(threadPage)){
+			if(p.hasImage()){
+				assertThat(p.getImageUrl().getProtocol(), is("https"));
+			}
+		}
+	}
+	
+	@Test
+	public void testConfiguredScheme() throws Exception {
+		strategy = new FourChanStrategy("http");
+		
+		for(Post p : strategy.parseThread(threadPage)){
+			if(p.hasImage()){
+				assertThat(p.getImageUrl().getProtocol(), is("http"));
+			}
+		}
+		
+		assertThat(strategy.findBoards(mainBoard).get("Music"), is(new URL("http://boards.4chan.org/mu/")));
+	}
+	
 	@Test
 	public void testParseThreadInvalid() {
 		List<Post> posts = strategy.parseThread(invalidPage);
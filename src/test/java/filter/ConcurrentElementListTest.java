@@ -0,0 +1,60 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package filter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentElementListTest {
+	ConcurrentElementList<String> list;
+
+	@Before
+	public void setUp() throws Exception {
+		list = new ConcurrentElementList<>();
+		list.addElement("foo");
+		list.addElement("bar");
+	}
+
+	@Test
+	public void testContains() {
+		assertThat(list.contains("foo"), is(true));
+		assertThat(list.contains("baz"), is(false));
+	}
+	
+	@Test
+	public void testRemove() {
+		assertThat(list.removeElement("foo"), is(true));
+		assertThat(list.removeElement("foo"), is(false));
+		assertThat(list.size(), is(1));
+	}
+	
+	@Test
+	public void testToArrayKeepsOrder() {
+		assertThat(list.toArray(), is(new Object[]{"foo", "bar"}));
+	}
+	
+	@Test
+	public void testClear() {
+		list.clear();
+		
+		assertThat(list.size(), is(0));
+	}
+}
@@ -25,11 +25,14 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import gui.BlockListDataModel;
+import gui.ElementListModel;
 import io.AidDAO;
 import io.ThumbnailLoader;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
@@ -47,8 +50,8 @@ public class FilterTest {
 	AidDAO mockMySqlAid = mock(AidDAO.class);
 	ThumbnailLoader mockThumbnailLoader = mock(ThumbnailLoader.class);
 	
-	DefaultListModel<String> fileNameModel;
-	DefaultListModel<String> postContentModel;
+	ElementListModel<String> fileNameModel;
+	ElementListModel<String> postContentModel;
 	
 	Filter filter;
 	static File tempFolder;
@@ -69,8 +72,8 @@ public class FilterTest {
 			
 	@Before
 	public void setUp() throws Exception {
-		fileNameModel = new DefaultListModel<>();
-		postContentModel = new DefaultListModel<>();
+		fileNameModel = new ElementListModel<>();
+		postContentModel = new ElementListModel<>();
 		filter = new Filter(mockMySqlAid, new BlockListDataModel(),fileNameModel, postContentModel, mockThumbnailLoader);
 
 		testURL = new URL("http://foo.bar/test/12345");
@@ -82,6 +85,38 @@ public class FilterTest {
 		assertFalse(filter.saveFilter(""));
 	}
 
+	@Test
+	public void testLoadLegacyFilter() throws Exception {
+		DefaultListModel<String> legacyContent = new DefaultListModel<>();
+		DefaultListModel<String> legacyNames = new DefaultListModel<>();
+		legacyContent.addElement("oof");
+		legacyNames.addElement("foo");
+		
+		try (ObjectOutputStream o = new ObjectOutputStream(new FileOutputStream(testFile))) {
+			o.writeObject(legacyContent);
+			o.writeObject(legacyNames);
+		}
+		
+		assertTrue(filter.loadFilter(testFile));
+		assertThat(postContentModel.contains("oof"), is(true));
+		assertThat(fileNameModel.contains("foo"), is(true));
+	}
+	
+	@Test
+	public void testLoadFilterHeadless() throws Exception {
+		filter.addFileNameFilterItem("foo");
+		filter.addPostContentFilterItem("oof");
+		filter.saveFilter(testFile);
+		
+		ConcurrentElementList<String> fileNames = new ConcurrentElementList<>();
+		ConcurrentElementList<String> postContent = new ConcurrentElementList<>();
+		Filter headless = new Filter(mockMySqlAid, new ConcurrentElementList<FilterItem>(), fileNames, postContent, mockThumbnailLoader);
+		
+		assertTrue(headless.loadFilter(testFile));
+		assertThat(fileNames.contains("foo"), is(true));
+		assertThat(postContent.contains("oof"), is(true));
+	}
+
 	@Test
 	public void testLoadFilter() throws Exception {
 		// add test data
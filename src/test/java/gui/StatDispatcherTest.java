@@ -0,0 +1,106 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gui;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatDispatcherTest {
+	StatDispatcher dispatcher;
+	StatListener listener;
+
+	@Before
+	public void setUp() throws Exception {
+		dispatcher = new StatDispatcher(10);
+		listener = mock(StatListener.class);
+		dispatcher.addStatListener(listener);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		dispatcher.stop();
+	}
+
+	@Test
+	public void testNotCalledBeforeDispatch() {
+		dispatcher.statChanged("foo");
+		
+		verify(listener, never()).statChanged("foo");
+	}
+	
+	@Test
+	public void testDispatch() {
+		dispatcher.statChanged("foo");
+		dispatcher.dispatch();
+		
+		verify(listener).statChanged("foo");
+	}
+	
+	@Test
+	public void testChangesAreMerged() {
+		dispatcher.statChanged("foo");
+		dispatcher.statChanged("foo");
+		dispatcher.statChanged("bar");
+		dispatcher.dispatch();
+		
+		verify(listener, times(1)).statChanged("foo");
+		verify(listener, times(1)).statChanged("bar");
+	}
+	
+	@Test
+	public void testNothingPending() {
+		dispatcher.statChanged("foo");
+		dispatcher.dispatch();
+		dispatcher.dispatch();
+		
+		verify(listener, times(1)).statChanged("foo");
+	}
+	
+	@Test
+	public void testRemoveListener() {
+		dispatcher.removeStatListener(listener);
+		dispatcher.statChanged("foo");
+		dispatcher.dispatch();
+		
+		verify(listener, never()).statChanged("foo");
+	}
+	
+	@Test
+	public void testListenerAddedOnce() {
+		dispatcher.addStatListener(listener);
+		dispatcher.statChanged("foo");
+		dispatcher.dispatch();
+		
+		verify(listener, times(1)).statChanged("foo");
+	}
+	
+	@Test(timeout=5000)
+	public void testTimerDispatch() throws InterruptedException {
+		dispatcher.start();
+		dispatcher.statChanged("foo");
+		
+		verify(listener, timeout(4000)).statChanged("foo");
+	}
+}
@@ -0,0 +1,145 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+	private static final long LATENCY_TARGET = TimeUnit.HOURS.toNanos(1);
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	AdaptiveConcurrencyLimit limit;
+
+	@Before
+	public void setUp() throws Exception {
+		limit = new AdaptiveConcurrencyLimit(1, 16, 4, LATENCY_TARGET);
+	}
+	
+	private void acquireAll() {
+		while(limit.tryAcquire()){
+		}
+	}
+	
+	/**
+	 * Complete downloads, starting a new one for every completed one like a full queue would.
+	 */
+	private void complete(int downloads, long latency) {
+		for(int i = 0; i < downloads; i++){
+			limit.onSuccess(latency);
+			limit.release();
+			acquireAll();
+		}
+	}
+
+	@Test
+	public void testAcquireUpToLimit() throws Exception {
+		acquireAll();
+		
+		assertThat(limit.getInFlight(), is(4));
+		assertThat(limit.tryAcquire(), is(false));
+	}
+	
+	@Test
+	public void testRelease() throws Exception {
+		acquireAll();
+		limit.release();
+		
+		assertThat(limit.tryAcquire(), is(true));
+	}
+	
+	@Test
+	public void testAdditiveIncrease() throws Exception {
+		acquireAll();
+		complete(5, FAST);
+		
+		assertThat(limit.getLimit(), is(5));
+		assertThat(limit.getInFlight(), is(5));
+	}
+	
+	@Test
+	public void testNoIncreaseWhenSlow() throws Exception {
+		acquireAll();
+		complete(5, LATENCY_TARGET + 1);
+		
+		assertThat(limit.getLimit(), is(4));
+	}
+	
+	@Test
+	public void testNoIncreaseBelowLimit() throws Exception {
+		limit.tryAcquire();
+		limit.onSuccess(FAST);
+		limit.release();
+		
+		assertThat(limit.getLimit(), is(4));
+	}
+	
+	@Test
+	public void testMaxLimit() throws Exception {
+		acquireAll();
+		complete(1000, FAST);
+		
+		assertThat(limit.getLimit(), is(16));
+	}
+	
+	@Test
+	public void testMultiplicativeDecrease() throws Exception {
+		limit.onOverload();
+		
+		assertThat(limit.getLimit(), is(2));
+	}
+	
+	@Test
+	public void testDecreaseOncePerLatencyTarget() throws Exception {
+		limit.onOverload();
+		limit.onOverload();
+		limit.onOverload();
+		
+		assertThat(limit.getLimit(), is(2));
+	}
+	
+	@Test
+	public void testMinLimit() throws Exception {
+		limit = new AdaptiveConcurrencyLimit(1, 16, 4, 0);
+		
+		for(int i = 0; i < 10; i++){
+			limit.onOverload();
+		}
+		
+		assertThat(limit.getLimit(), is(1));
+	}
+	
+	@Test
+	public void testClearInFlight() throws Exception {
+		acquireAll();
+		limit.clearInFlight();
+		limit.release();
+		
+		assertThat(limit.getInFlight(), is(0));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidLimits() throws Exception {
+		new AdaptiveConcurrencyLimit(0, 16, 4, LATENCY_TARGET);
+	}
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 import static org.junit.matchers.JUnitMatchers.hasItems;
 import io.tables.FileRecord;
+import io.tables.IndexRecord;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -32,6 +33,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import org.dbunit.Assertion;
@@ -67,6 +69,10 @@ public class AidDAOTest extends DatabaseTestCase{
 	final String[] IGNORE_THUMBS_TRIGGER_COL = {"id","thumb"};
 	final String[] IGNORE_PATH_COL = {"id"};
 	final String[] IGNORE_ADD_HASH_COL = {"dir","filename"};
+	final String[] IGNORE_ADD_INDEX_COL = {"dir","filename","md5","prefix_md5"};
+	final String[] IGNORE_MD5_COL = {"md5","prefix_md5"};
+	final String MD5 = "4E61F5A4F63A2AFE59B7FB2510F45A79";
+	final String PREFIX_MD5 = "DF841B067BCCA123EC77F43BBAFE45FF";
 	
 	static String[] dirs = {"foo/bar/", "test/me/now/", "mutated/custard/is/dangerous/"};
 	static String[] TEST_DIR;
@@ -206,22 +212,22 @@ public class AidDAOTest extends DatabaseTestCase{
 		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Filter), deleteExpected_PATH), getDatabaseTable(enumToString(Filter)),IGNORE_CACHE_COL);
 		
 		// fileindex table
-		sql.delete(AidTables.Fileindex, "2");
-		sql.delete(AidTables.Fileindex, "3");
+		sql.delete(AidTables.Fileindex, hash(2));
+		sql.delete(AidTables.Fileindex, hash(3));
 		
-		Assertion.assertEquals(getFileTable(enumToString(Fileindex), deleteExpected_PATH), getDatabaseTable(enumToString(Fileindex)));
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), deleteExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_MD5_COL);
 		
 		// dnw table
-		sql.delete(AidTables.Dnw, "3");
-		sql.delete(AidTables.Dnw, "4");
+		sql.delete(AidTables.Dnw, hash(3));
+		sql.delete(AidTables.Dnw, hash(4));
 		
-		Assertion.assertEquals(getFileTable(enumToString(Dnw), deleteExpected_PATH), getDatabaseTable(enumToString(Dnw)));
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Dnw), deleteExpected_PATH), getDatabaseTable(enumToString(Dnw)), IGNORE_MD5_COL);
 		
 		// block table
-		sql.delete(AidTables.Block, "1");
-		sql.delete(AidTables.Block, "4");
+		sql.delete(AidTables.Block, hash(1));
+		sql.delete(AidTables.Block, hash(4));
 
-		Assertion.assertEquals(getFileTable(enumToString(Block), deleteExpected_PATH), getDatabaseTable(enumToString(Block)));
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Block), deleteExpected_PATH), getDatabaseTable(enumToString(Block)), IGNORE_MD5_COL);
 	}
 
 	@SuppressWarnings("deprecation")
@@ -274,6 +280,25 @@ public class AidDAOTest extends DatabaseTestCase{
 		Assertion.assertEqualsIgnoreCols(getFileTable("thumbs", triggerExpected_PATH), getDatabaseTable("thumbs"), IGNORE_THUMBS_TRIGGER_COL);
 	}
 	
+	@Test
+	public void testDeleteOrphanedThumbs() {
+		assertThat(sql.deleteOrphanedThumbs(5), is(5));
+		assertThat(sql.deleteOrphanedThumbs(5), is(3));
+		assertThat(sql.deleteOrphanedThumbs(5), is(0));
+		
+		assertThat(sql.getThumb("http://foo.bar/2").size(), is(4));
+		assertThat(sql.getThumb("http://foo.bar/3").size(), is(0));
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testDeleteStaleFilters() {
+		assertThat(sql.deleteStaleFilters(Calendar.getInstance().getTimeInMillis(), 10), is(2));
+		assertThat(sql.size(AidTables.Filter), is(6));
+		assertThat(sql.getFilterState("http://foo.bar/1"), is(FilterState.UNKNOWN));
+		assertThat(sql.getFilterState("http://foo.bar/2"), is(FilterState.PENDING));
+	}
+	
 	@Test
 	public void testIsCached(){
 		assertTrue(sql.isCached("1"));
@@ -290,46 +315,132 @@ public class AidDAOTest extends DatabaseTestCase{
 	
 	@Test
 	public void testIsDnw(){
-		assertTrue(sql.isDnw("2"));
+		assertTrue(sql.isDnw(hash(2)));
+		assertFalse(sql.isDnw(hash(45345)));
 		assertFalse(sql.isDnw("Brussels sprouts"));
 	}
 	
 	@Test
 	public void testIsHashed(){
-		assertTrue(sql.isHashed("1"));
+		assertTrue(sql.isHashed(hash(1)));
+		assertFalse(sql.isHashed(hash(45345)));
 		assertFalse(sql.isHashed("bananas!"));
 	}
 	
 	@Test
 	public void testIsBlacklisted(){
-		assertTrue(sql.isBlacklisted("1"));
+		assertTrue(sql.isBlacklisted(hash(1)));
+		assertFalse(sql.isBlacklisted(hash(45345)));
 		assertFalse(sql.isBlacklisted("45345"));
 	}
 	
 	@Test
 	public void testAddIndex() throws Exception{
-		sql.addIndex("54321", buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]);
+		sql.addIndex(hash(54321), buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]);
 		
-		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), addExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_ADD_HASH_COL);
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), addExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_ADD_INDEX_COL);
 		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Dirlist), addExpected_PATH), getDatabaseTable(enumToString(Dirlist)), IGNORE_PATH_COL);
 		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Filelist), addExpected_PATH), getDatabaseTable(enumToString(Filelist)), IGNORE_PATH_COL);
 	}
 	
+	@Test
+	public void testAddIndexWithMd5() {
+		assertTrue(sql.addIndex(hash(54321), MD5, null, buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]));
+		assertThat(sql.findMd5(MD5), is(AidTables.Fileindex));
+	}
+	
+	@Test
+	public void testFindMd5Unknown() {
+		assertNull(sql.findMd5(MD5));
+		assertNull(sql.findMd5("bananas!"));
+		assertNull(sql.findMd5(null));
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testAddMd5Dnw() {
+		sql.update(hash(10), AidTables.Dnw);
+		sql.addMd5(hash(10), MD5);
+		
+		assertThat(sql.findMd5(MD5), is(AidTables.Dnw));
+	}
+	
+	@Test
+	public void testAddMd5BlacklistFirst() {
+		sql.addMd5(hash(1), MD5);	// in index, dnw and block
+		
+		assertThat(sql.findMd5(MD5), is(AidTables.Block));
+	}
+	
+	@Test
+	public void testAddMd5KeepsExisting() {
+		final String OTHER_MD5 = "DF841B067BCCA123EC77F43BBAFE45FF";
+		
+		sql.addMd5(hash(7), MD5);
+		sql.addMd5(hash(7), OTHER_MD5);
+		
+		assertThat(sql.findMd5(MD5), is(AidTables.Fileindex));
+		assertNull(sql.findMd5(OTHER_MD5));
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testUpdateDnwCopiesIndexMd5() {
+		sql.addIndex(hash(54321), MD5, null, buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]);
+		sql.update(hash(54321), AidTables.Dnw);
+		sql.delete(AidTables.Fileindex, hash(54321));
+		
+		assertThat(sql.findMd5(MD5), is(AidTables.Dnw));
+	}
+	
+	@Test
+	public void testAddIndexWithFingerprint() {
+		assertTrue(sql.addIndex(hash(54321), MD5, PREFIX_MD5, buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]));
+		
+		assertThat(sql.countFingerprint(123455L, PREFIX_MD5), is(1));
+		assertThat(sql.countFingerprint(123456L, PREFIX_MD5), is(0));
+	}
+	
+	@Test
+	public void testCountFingerprintShared() {
+		sql.addIndex(hash(54321), null, PREFIX_MD5, buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]);
+		sql.addIndex(hash(54322), null, PREFIX_MD5, buildAbsolutePath("foo", "panda2.png"), 123455L, TEST_LOCATION[2]);
+		
+		assertThat(sql.countFingerprint(123455L, PREFIX_MD5), is(2));
+	}
+	
+	@Test
+	public void testCountFingerprintInvalid() {
+		assertThat(sql.countFingerprint(123455L, "bananas!"), is(0));
+		assertThat(sql.countFingerprint(123455L, null), is(0));
+	}
+	
+	@Test
+	public void testAddFingerprintKeepsExisting() {
+		sql.addIndex(hash(54321), buildAbsolutePath("foo", "panda.png"), 123455L, TEST_LOCATION[2]);
+		
+		sql.addFingerprint(hash(54321), PREFIX_MD5);
+		sql.addFingerprint(hash(54321), MD5);
+		
+		assertThat(sql.countFingerprint(123455L, PREFIX_MD5), is(1));
+		assertThat(sql.countFingerprint(123455L, MD5), is(0));
+	}
+	
 	@Test
 	public void testAddIndexInvalidLocation() {
-		assertTrue(sql.addIndex("9001", buildAbsolutePath("foobar", "apple.jpg"), 111L, "DERP"));
-		assertThat(sql.getLocationById("9001"), is("DERP"));
+		assertTrue(sql.addIndex(hash(9001), buildAbsolutePath("foobar", "apple.jpg"), 111L, "DERP"));
+		assertThat(sql.getLocationById(hash(9001)), is("DERP"));
 	}
 	
 	@Test
 	public void testAddIndexFileInfo() throws Exception{
 		Path filePath = Paths.get(buildAbsolutePath("foo", "panda.png"));
-		FileInfo info = new FileInfo(filePath, "54321");
+		FileInfo info = new FileInfo(filePath, hash(54321));
 		info.setSize(123455L);
 		
 		sql.addIndex(info, TEST_LOCATION[2]);
 		
-		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), addExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_ADD_HASH_COL);
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), addExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_ADD_INDEX_COL);
 		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Dirlist), addExpected_PATH), getDatabaseTable(enumToString(Dirlist)), IGNORE_PATH_COL);
 		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Filelist), addExpected_PATH), getDatabaseTable(enumToString(Filelist)), IGNORE_PATH_COL);
 	}
@@ -368,8 +479,12 @@ public class AidDAOTest extends DatabaseTestCase{
 	
 	@SuppressWarnings("deprecation")
 	@Test
-	public void testCachePrune(){
-		sql.pruneCache(Calendar.getInstance().getTimeInMillis());
+	public void testCachePruneBatch(){
+		long now = Calendar.getInstance().getTimeInMillis();
+		
+		assertThat(sql.pruneCache(now, 2), is(2));
+		assertThat(sql.pruneCache(now, 2), is(1));
+		assertThat(sql.pruneCache(now, 2), is(0));
 		assertThat(sql.size(AidTables.Cache), is(1));
 		assertThat(sql.isCached("1"), is(true));
 	}
@@ -392,7 +507,7 @@ public class AidDAOTest extends DatabaseTestCase{
 	
 	@Test
 	public void testAddDuplicate() throws Exception{
-		sql.addDuplicate("545", buildAbsolutePath("foo", "panda.png"), 123L, TEST_LOCATION[2]);
+		sql.addDuplicate(hash(545), buildAbsolutePath("foo", "panda.png"), 123L, TEST_LOCATION[2]);
 		
 		
 		//TODO can ignore cols be removed?
@@ -421,6 +536,13 @@ public class AidDAOTest extends DatabaseTestCase{
 		assertThat(sql.getLocationFilelist(TEST_LOCATION[3]), hasItem(relativePath(TEST_DIR[3], TEST_FILE[2])));
 	}
 	
+	/**
+	 * Hash ids in the test data are the numbers 1, 2, 3... as 32 byte values.
+	 */
+	private static String hash(int id) {
+		return String.format("%064X", id);
+	}
+	
 	private String relativePath(String... pathElements) {
 		StringBuilder sb = new StringBuilder();
 		
@@ -447,7 +569,7 @@ public class AidDAOTest extends DatabaseTestCase{
 		assertThat(sql.deleteIndexByPath(TEST_DIR[2] + "/" + TEST_FILE[2]),is(1));
 		assertThat(sql.deleteIndexByPath(TEST_DIR[3] + "/" + TEST_FILE[3]),is(1));
 
-		Assertion.assertEquals(getFileTable(enumToString(Fileindex), deleteExpected_PATH), getDatabaseTable(enumToString(Fileindex)));
+		Assertion.assertEqualsIgnoreCols(getFileTable(enumToString(Fileindex), deleteExpected_PATH), getDatabaseTable(enumToString(Fileindex)), IGNORE_MD5_COL);
 	}
 	
 	@Test
@@ -468,7 +590,7 @@ public class AidDAOTest extends DatabaseTestCase{
 	@SuppressWarnings("deprecation")
 	@Test
 	public void testMoveIndexToDuplicate() {
-		final String HASH = "5";
+		final String HASH = hash(5);
 		final String PATH = TEST_DIR[2] + TEST_FILE[2];
 		final String LOCATION = TEST_LOCATION[2];
 		final long SIZE = 123L;
@@ -485,7 +607,7 @@ public class AidDAOTest extends DatabaseTestCase{
 	@SuppressWarnings("deprecation")
 	@Test
 	public void testMoveDuplicateToIndex() {
-		final String HASH = "5";
+		final String HASH = hash(5);
 		final String PATH = TEST_DIR[2] + TEST_FILE[2];
 		final String PATH2 = TEST_DIR[1] + TEST_FILE[3];
 		final String LOCATION = TEST_LOCATION[2];
@@ -502,19 +624,19 @@ public class AidDAOTest extends DatabaseTestCase{
 	
 	@Test
 	public void testGetLocationById() {
-		String location = sql.getLocationById("3");
+		String location = sql.getLocationById(hash(3));
 		assertThat(location, is(TEST_LOCATION[3]));
 	}
 	
 	@Test
 	public void testGetLocationByIdInvalidID() {
-		String location = sql.getLocationById("999");
+		String location = sql.getLocationById(hash(999));
 		assertThat(location, is(TEST_LOCATION[1]));
 	}
 	
 	@Test
 	public void testGetBlacklisted() {
-		final String[] blacklisted = {"1", "2", "3", "4"};
+		final String[] blacklisted = {hash(1), hash(2), hash(3), hash(4)};
 		
 		assertThat(sql.getBlacklistedFiles(), hasItems(blacklisted));
 		assertThat(sql.getBlacklistedFiles().size(), is(4));
@@ -522,7 +644,7 @@ public class AidDAOTest extends DatabaseTestCase{
 	
 	@Test
 	public void testGetDuplicatesAndOriginal() {
-		final String[] duplicateId = {"1", "2", "3", "4"};
+		final String[] duplicateId = {hash(1), hash(2), hash(3), hash(4)};
 		LinkedList<String> ids = new LinkedList<>();
 
 		for(FileRecord record : sql.getDuplicatesAndOriginal()) {
@@ -533,20 +655,94 @@ public class AidDAOTest extends DatabaseTestCase{
 		assertThat(ids.size(), is(8));
 	}
 	
+	@Test
+	public void testGetDuplicatesAndOriginalIterator() {
+		final String[] duplicateId = {hash(1), hash(2), hash(3), hash(4)};
+		LinkedList<String> ids = new LinkedList<>();
+		Iterator<FileRecord> records = sql.getDuplicatesAndOriginalIterator(3);
+		
+		while(records.hasNext()) {
+			ids.add(records.next().getId());
+		}
+		
+		assertThat(ids, hasItems(duplicateId));
+		assertThat(ids.size(), is(8));
+	}
+	
+	@Test
+	public void testGetLocationIndexIterator() {
+		LinkedList<Path> paths = new LinkedList<>();
+		Iterator<IndexRecord> records = sql.getLocationIndexIterator(TEST_LOCATION[3], 1);
+		
+		while(records.hasNext()) {
+			paths.add(records.next().getRelativePath());
+		}
+		
+		assertThat(paths.size(), is(2));
+	}
+	
+	@Test
+	public void testGetLocationIndexIteratorUnknownLocation() {
+		assertThat(sql.getLocationIndexIterator("foobar").hasNext(), is(false));
+	}
+	
+	@Test
+	public void testGetAllIndexRecords() {
+		LinkedList<Path> paths = new LinkedList<>();
+		
+		for(IndexRecord record : sql.getAllIndexRecords()) {
+			paths.add(record.getRelativePath());
+		}
+		
+		assertThat(paths.size(), is(5));
+		assertThat(paths, hasItem(Paths.get(relativePath(TEST_DIR[3], TEST_FILE[2]))));
+	}
+	
+	@Test
+	public void testGetAllIndexRecordsLocation() {
+		for(IndexRecord record : sql.getAllIndexRecords()) {
+			if(record.getId().equals(hash(3))) {
+				assertThat(record.getLocation(), is(TEST_LOCATION[3]));
+				assertThat(record.getSize(), is(5789699L));
+			}
+		}
+	}
+	
+	@Test
+	public void testGetAllDuplicateRecords() {
+		assertThat(sql.getAllDuplicateRecords().size(), is(4));
+	}
+	
+	@Test
+	public void testOrphanedDuplicateIgnored() {
+		assertTrue(sql.addDuplicate(hash(545), buildAbsolutePath("foo", "panda.png"), 123L, TEST_LOCATION[2]));	// not in the index
+		
+		LinkedList<String> ids = new LinkedList<>();
+		Iterator<FileRecord> records = sql.getDuplicatesAndOriginalIterator(3);
+		
+		while(records.hasNext()) {
+			ids.add(records.next().getId());
+		}
+		
+		assertThat(sql.getAllDuplicateRecords().size(), is(4));
+		assertThat(sql.getDuplicatesAndOriginal().size(), is(8));
+		assertThat(ids.size(), is(8));
+	}
+	
 	@Test
 	public void testGetPath() {
-		assertThat(sql.getPath("1"), is(relativePath(TEST_DIR[1], TEST_FILE[1])));
+		assertThat(sql.getPath(hash(1)), is(relativePath(TEST_DIR[1], TEST_FILE[1])));
 	}
 	
 	@Test
 	public void testGetSettingVersion() {
-		assertThat(sql.getSetting(DBsettings.SchemaVersion), is("3"));
+		assertThat(sql.getSetting(DBsettings.SchemaVersion), is("4"));
 	}
 	
 	@SuppressWarnings("deprecation")
 	@Test
 	public void testUpdateDnw() {
-		final String HASH = "10";
+		final String HASH = hash(10);
 		
 		assertFalse(sql.isDnw(HASH));
 		sql.update(HASH, AidTables.Dnw);
@@ -556,7 +752,7 @@ public class AidDAOTest extends DatabaseTestCase{
 	@SuppressWarnings("deprecation")
 	@Test
 	public void testUpdateBlock() {
-		final String HASH = "10";
+		final String HASH = hash(10);
 		
 		assertFalse(sql.isBlacklisted(HASH));
 		sql.update(HASH, AidTables.Block);
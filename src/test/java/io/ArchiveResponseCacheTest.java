@@ -0,0 +1,125 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveResponseCacheTest {
+	private static final int SERVER_PORT = 5982;
+	private static final String PAGE_URL = "http://localhost:" + SERVER_PORT + "/a/";
+	
+	Server server;
+	AtomicInteger requests = new AtomicInteger();
+	Path archiveFile;
+	ArchiveResponseCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		archiveFile = Files.createTempFile("archiveResponseCacheTest", ".warc");
+		Files.delete(archiveFile);
+		
+		server = new Server(SERVER_PORT);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				response.setContentType("text/html");
+				response.getWriter().print("page " + requests.incrementAndGet());
+				baseRequest.setHandled(true);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if(cache != null){
+			cache.uninstall();
+		}
+		
+		server.stop();
+		Files.deleteIfExists(archiveFile);
+	}
+	
+	private String load(String url) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection)new URL(url).openConnection();
+		
+		try (InputStream is = conn.getInputStream(); Scanner scanner = new Scanner(is, "UTF-8")) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+	
+	private void record(int pages) throws Exception {
+		cache = ArchiveResponseCache.install(new HttpArchive(archiveFile), ArchiveResponseCache.Mode.RECORD);
+		
+		for(int i = 0; i < pages; i++){
+			load(PAGE_URL);
+		}
+		
+		cache.uninstall();
+		cache = ArchiveResponseCache.install(new HttpArchive(archiveFile), ArchiveResponseCache.Mode.REPLAY);
+	}
+
+	@Test
+	public void testRecordAndReplay() throws Exception {
+		record(2);
+		
+		assertThat(load(PAGE_URL), is("page 1"));
+		assertThat(load(PAGE_URL), is("page 2"));
+		assertThat(requests.get(), is(2));
+	}
+	
+	@Test
+	public void testReplayDoesNotConnect() throws Exception {
+		record(1);
+		server.stop();
+		
+		assertThat(load(PAGE_URL), is("page 1"));
+	}
+	
+	@Test
+	public void testReplayUnknownUrl() throws Exception {
+		record(1);
+		
+		HttpURLConnection conn = (HttpURLConnection)new URL(PAGE_URL + "res/1").openConnection();
+		
+		assertThat(conn.getResponseCode(), is(404));
+		assertThat(requests.get(), is(1));
+	}
+}
@@ -0,0 +1,216 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncDownloadEngineTest {
+	private static final int SERVER_PORT = 5984;
+	private static final String BASE_URL = "http://localhost:" + SERVER_PORT;
+	private static final int CONNECTIONS_PER_HOST = 4;
+	private static final long LARGE_FILE_DELAY = 1000;
+	
+	Server server;
+	AsyncDownloadEngine engine;
+	AtomicInteger concurrentRequests = new AtomicInteger();
+	AtomicInteger maxConcurrentRequests = new AtomicInteger();
+	
+	Map<URL, byte[]> completed = new ConcurrentHashMap<>();
+	Map<URL, Integer> failed = new ConcurrentHashMap<>();
+	Map<URL, Long> skipped = new ConcurrentHashMap<>();
+	PrefixFingerprint.Check check;
+	byte[] largeFile;
+	CountDownLatch done;
+
+	@Before
+	public void setUp() throws Exception {
+		largeFile = new byte[PrefixFingerprint.PREFIX_SIZE * 4];
+		new Random(42).nextBytes(largeFile);
+		
+		server = new Server(SERVER_PORT);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				int concurrent = concurrentRequests.incrementAndGet();
+				
+				synchronized (maxConcurrentRequests) {
+					maxConcurrentRequests.set(Math.max(maxConcurrentRequests.get(), concurrent));
+				}
+				
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				if(target.startsWith("/missing")){
+					response.setStatus(404);
+				}else if(target.startsWith("/large")){
+					// the prefix is checked on another thread, hold back the rest so the check finishes first
+					response.setContentLength(largeFile.length);
+					response.getOutputStream().write(largeFile, 0, PrefixFingerprint.PREFIX_SIZE * 2);
+					response.flushBuffer();
+					
+					try {
+						Thread.sleep(LARGE_FILE_DELAY);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					
+					response.getOutputStream().write(largeFile, PrefixFingerprint.PREFIX_SIZE * 2, largeFile.length - PrefixFingerprint.PREFIX_SIZE * 2);
+				}else{
+					response.getOutputStream().write(target.getBytes("UTF-8"));
+				}
+				
+				concurrentRequests.decrementAndGet();
+				baseRequest.setHandled(true);
+			}
+		});
+		server.start();
+		
+		engine = new AsyncDownloadEngine(CONNECTIONS_PER_HOST, 4);
+		assertThat(engine.start(), is(true));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		engine.stop();
+		server.stop();
+	}
+	
+	private void download(String url, int count) throws Exception {
+		done = new CountDownLatch(count);
+		
+		AsyncDownloadEngine.Callback callback = new AsyncDownloadEngine.Callback() {
+			@Override
+			public void completed(URL url, File fullPath, byte[] data) {
+				completed.put(url, data);
+				done.countDown();
+			}
+			
+			@Override
+			public void failed(URL url, File fullPath, int responseCode) {
+				failed.put(url, responseCode);
+				done.countDown();
+			}
+			
+			@Override
+			public void skipped(URL url, File fullPath, long size) {
+				skipped.put(url, size);
+				done.countDown();
+			}
+		};
+		
+		for(int i = 0; i < count; i++){
+			engine.download(new URL(url + i), new File("a", i + ".jpg"), check, callback);
+		}
+		
+		assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		download(BASE_URL + "/a/src/", 1);
+		
+		assertThat(new String(completed.get(new URL(BASE_URL + "/a/src/0")), "UTF-8"), is("/a/src/0"));
+		assertThat(engine.getActiveDownloads(), is(0));
+	}
+	
+	@Test
+	public void testManyDownloads() throws Exception {
+		download(BASE_URL + "/a/src/", 300);
+		
+		assertThat(completed.size(), is(300));
+		assertThat(failed.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testConnectionsPerHost() throws Exception {
+		download(BASE_URL + "/a/src/", 100);
+		
+		assertThat(maxConcurrentRequests.get() <= CONNECTIONS_PER_HOST, is(true));
+	}
+	
+	@Test
+	public void testNotFound() throws Exception {
+		download(BASE_URL + "/missing/", 1);
+		
+		assertThat(failed.get(new URL(BASE_URL + "/missing/0")), is(404));
+	}
+	
+	@Test
+	public void testConnectionFailed() throws Exception {
+		download("http://localhost:" + (SERVER_PORT + 100) + "/a/src/", 1);
+		
+		assertThat(failed.get(new URL("http://localhost:" + (SERVER_PORT + 100) + "/a/src/0")), is(-1));
+	}
+	
+	@Test
+	public void testKnownPrefixSkipped() throws Exception {
+		check = new PrefixFingerprint.Check() {
+			@Override
+			public boolean isKnown(URL url, long size, byte[] prefix) {
+				return size == largeFile.length && PrefixFingerprint.hash(prefix).equals(PrefixFingerprint.of(largeFile));
+			}
+		};
+		
+		download(BASE_URL + "/large/", 1);
+		
+		assertThat(skipped.get(new URL(BASE_URL + "/large/0")), is((long) largeFile.length));
+		assertThat(completed.isEmpty(), is(true));
+		assertThat(engine.getActiveDownloads(), is(0));
+	}
+	
+	@Test
+	public void testUnknownPrefixCompleted() throws Exception {
+		check = new PrefixFingerprint.Check() {
+			@Override
+			public boolean isKnown(URL url, long size, byte[] prefix) {
+				return false;
+			}
+		};
+		
+		download(BASE_URL + "/large/", 1);
+		
+		assertThat(completed.get(new URL(BASE_URL + "/large/0")), is(largeFile));
+		assertThat(skipped.isEmpty(), is(true));
+	}
+}
@@ -19,6 +19,7 @@ package io;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -76,7 +77,17 @@ public class CachePruneTest {
 		assertThat(cachePrune.start(), is(true));
 		Thread.sleep(1100);
 		
-		verify(sql,times(1)).pruneCache(anyLong());
+		verify(sql,times(1)).pruneCache(anyLong(), anyInt());
+	}
+	
+	@Test
+	public void testCachePruneInBatches() throws InterruptedException {
+		int batchSize = cachePrune.throttledBatch.getBatchSize();
+		when(sql.pruneCache(anyLong(), anyInt())).thenReturn(batchSize, 5);
+		assertThat(cachePrune.start(), is(true));
+		Thread.sleep(1100);
+		
+		verify(sql,times(2)).pruneCache(anyLong(), anyInt());
 	}
 	
 	static class TestHandler extends AbstractHandler{
@@ -0,0 +1,143 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DownloadQueueLogTest {
+	Path logFile;
+	DownloadQueueLog queueLog;
+	URL[] urls;
+
+	@Before
+	public void setUp() throws Exception {
+		logFile = Files.createTempFile("downloadQueueLogTest", ".queue");
+		Files.delete(logFile);
+		queueLog = new DownloadQueueLog(logFile);
+		
+		urls = new URL[3];
+		
+		for(int i = 0; i < urls.length; i++){
+			urls[i] = new URL("http://images.example.com/a/src/" + i + ".jpg");
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		queueLog.close();
+		Files.deleteIfExists(logFile);
+	}
+	
+	private void queueAll() {
+		for(int i = 0; i < urls.length; i++){
+			queueLog.add(urls[i], "a/123/" + i + ".jpg");
+		}
+	}
+	
+	private Map<URL, String> reopen() {
+		queueLog.close();
+		queueLog = new DownloadQueueLog(logFile);
+		return queueLog.getPending();
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertThat(queueLog.getPending().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		queueAll();
+		Map<URL, String> pending = reopen();
+		
+		assertThat(pending.size(), is(3));
+		assertThat(pending.get(urls[1]), is("a/123/1.jpg"));
+	}
+
+	@Test
+	public void testResumeOrder() throws Exception {
+		queueAll();
+		
+		assertThat(Arrays.asList(reopen().keySet().toArray()), is(Arrays.asList((Object[])urls)));
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		queueAll();
+		queueLog.remove(urls[0].toString());
+		Map<URL, String> pending = reopen();
+		
+		assertThat(pending.size(), is(2));
+		assertThat(pending.containsKey(urls[0]), is(false));
+	}
+
+	@Test
+	public void testAddTwice() throws Exception {
+		queueAll();
+		queueAll();
+		
+		assertThat(reopen().size(), is(3));
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		queueAll();
+		queueLog.clear();
+		
+		assertThat(reopen().isEmpty(), is(true));
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		for(int i = 0; i < 1000; i++){
+			URL url = new URL("http://images.example.com/a/src/x" + i + ".jpg");
+			queueLog.add(url, "a/1/x" + i + ".jpg");
+			queueLog.remove(url.toString());
+		}
+		
+		queueAll();
+		
+		assertThat(Files.size(logFile) < 2000, is(true));
+		assertThat(reopen().size(), is(3));
+	}
+
+	@Test
+	public void testTruncatedRecord() throws Exception {
+		queueAll();
+		queueLog.close();
+		
+		try (OutputStream os = Files.newOutputStream(logFile, StandardOpenOption.APPEND)) {
+			os.write(new byte[] {'A', 0, 40, 'h', 't'});
+		}
+		
+		assertThat(reopen().size(), is(3));
+	}
+}
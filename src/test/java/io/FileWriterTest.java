@@ -26,6 +26,7 @@ import static org.junit.matchers.JUnitMatchers.containsString;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -63,6 +64,8 @@ public class FileWriterTest {
 	File testDir;
 	byte[] testData = {12,45,6,12,99};	// SHA-256: 95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815
 	byte[] testData2 = {99,21,6,45,12}; // SHA-256: 20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB
+	final String TEST_DATA_MD5 = "F42E80BA46D78EFFEB62AE5B0F01FBC6";
+	final String TEST_DATA2_MD5 = "EFB9B6BC6199D83A1F5D3023019DE433";
 	File[] testFilesRelative = {new File("a/test1.txt"),new File("a/test2.txt"),new File("b/test1.txt"),new File("c/test1.txt"),new File("c/test2.txt")};
 	ArrayList<File> testFiles;
 	BlockListDataModel bldm;
@@ -119,7 +122,7 @@ public class FileWriterTest {
 		verify(mockFilter, times(5))
 				.addIndex(
 						eq("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"),
-						anyString(), eq(5));
+						eq(TEST_DATA_MD5), (String) isNull(), anyString(), eq(5L));
 
 		for (File f : testFiles)
 			assertThat("Test failed for " + f.getPath(), f.length(), is(5L));
@@ -302,8 +305,8 @@ public class FileWriterTest {
 		
 		assertThat(filenames,hasItem("foo.txt"));
 		assertThat(filenames,hasItem(both(containsString("foo_")).and(containsString(".txt"))));
-		verify(mockFilter,times(1)).addIndex(eq("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"),anyString(), eq(5));//TODO replace anyString() with more accurate test
-		verify(mockFilter,times(1)).addIndex(eq("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB"),anyString(), eq(5));//TODO replace anyString() with more accurate test
+		verify(mockFilter,times(1)).addIndex(eq("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"),eq(TEST_DATA_MD5),(String) isNull(),anyString(), eq(5L));//TODO replace anyString() with more accurate test
+		verify(mockFilter,times(1)).addIndex(eq("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB"),eq(TEST_DATA2_MD5),(String) isNull(),anyString(), eq(5L));//TODO replace anyString() with more accurate test
 	}
 	
 	@Test
@@ -321,7 +324,7 @@ public class FileWriterTest {
 		
 		assertThat(filenames,hasItem("foo.txt"));
 		assertThat(filenames.size(),is(1)); //TODO write custom matcher for "list does not contain" see: http://stackoverflow.com/q/6520546/891292
-		verify(mockFilter,times(2)).addIndex(eq("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"),anyString(), eq(5));//TODO replace anyString() with more accurate test
+		verify(mockFilter,times(2)).addIndex(eq("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"),eq(TEST_DATA_MD5),(String) isNull(),anyString(), eq(5L));//TODO replace anyString() with more accurate test
 	}
 	
 	@Test
@@ -340,6 +343,38 @@ public class FileWriterTest {
 	}
 	
 	
+	@Test
+	public void testExistingFileRecordsMd5() throws InvalidActivityException, InterruptedException{
+		when(mockFilter.exists("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB")).thenReturn(true);
+		fileWriter.add(new File(testDir,"bar.txt"),testData2);
+		Thread.sleep(BUFFER_CLEAR_TIME);
+		
+		verify(mockFilter).addMd5("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB", TEST_DATA2_MD5);
+		assertThat(new File(testDir,"bar.txt").exists(), is(false));
+	}
+	
+	@Test
+	public void testLargeFileRecordsFingerprint() throws InvalidActivityException, InterruptedException, SQLException{
+		byte[] largeData = new byte[PrefixFingerprint.PREFIX_SIZE + 1];
+		largeData[PrefixFingerprint.PREFIX_SIZE] = 1;
+		
+		fileWriter.add(new File(testDir,"large.bin"), largeData);
+		Thread.sleep(BUFFER_CLEAR_TIME);
+		
+		verify(mockFilter).addIndex(anyString(), anyString(), eq(PrefixFingerprint.of(largeData)), anyString(), eq((long) largeData.length));
+	}
+	
+	@Test
+	public void testExistingFileRecordsFingerprint() throws InvalidActivityException, InterruptedException{
+		byte[] largeData = new byte[PrefixFingerprint.PREFIX_SIZE + 1];	// SHA-256: 3266304F31BE278D06C3BD3EB9AA3E00C59BEDEC0A890DE466568B0B90B0E01F
+		when(mockFilter.exists("3266304F31BE278D06C3BD3EB9AA3E00C59BEDEC0A890DE466568B0B90B0E01F")).thenReturn(true);
+		
+		fileWriter.add(new File(testDir,"large.bin"), largeData);
+		Thread.sleep(BUFFER_CLEAR_TIME);
+		
+		verify(mockFilter).addFingerprint("3266304F31BE278D06C3BD3EB9AA3E00C59BEDEC0A890DE466568B0B90B0E01F", PrefixFingerprint.of(largeData));
+	}
+	
 	@Test
 	public void testBlacklistedNoWrite() throws InvalidActivityException, InterruptedException{
 		when(mockFilter.isBlacklisted("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815")).thenReturn(true);
@@ -378,7 +413,7 @@ public class FileWriterTest {
 	
 	@Test
 	public void testSqlPathAddFail() throws SQLException, InvalidActivityException, InterruptedException{
-		doThrow(new SQLException("Incorrect string value")).when(mockFilter).addIndex(anyString(), eq(new File(testDir,"foo.txt").toString()), eq(5));
+		doThrow(new SQLException("Incorrect string value")).when(mockFilter).addIndex(anyString(), anyString(), anyString(), eq(new File(testDir,"foo.txt").toString()), eq(5L));
 		
 		fileWriter.add(new File(testDir,"foo.txt"), testData);
 		
@@ -0,0 +1,168 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.dbunit.DatabaseTestCase;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.ext.mysql.MySqlDataTypeFactory;
+import org.dbunit.util.fileloader.FlatXmlDataFileLoader;
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.io.BoneConnectionPool;
+
+import config.DefaultMySQLconnection;
+
+/**
+ * Migrates tables in the layout of schema version 3 on a real database.
+ */
+public class HashMigrationTest extends DatabaseTestCase {
+	static AidDAO sql;
+	
+	final String HASH_A = "95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815";
+	final String HASH_B = "20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB";
+	final String HASH_C = "3266304F31BE278D06C3BD3EB9AA3E00C59BEDEC0A890DE466568B0B90B0E01F";
+	
+	final String[] CREATE_TABLES = {
+		"DROP TABLE IF EXISTS migration_index, migration_duplicate, migration_nokey",
+		"CREATE TABLE migration_index (id VARCHAR(64) CHARACTER SET ascii NOT NULL, size BIGINT UNSIGNED NOT NULL DEFAULT '0',"
+			+ " PRIMARY KEY (id), UNIQUE KEY hash (id), KEY size (size)) ENGINE=InnoDB",
+		"CREATE TABLE migration_duplicate (id VARCHAR(64) CHARACTER SET ascii NOT NULL, dir MEDIUMINT UNSIGNED NOT NULL DEFAULT '0',"
+			+ " filename MEDIUMINT UNSIGNED NOT NULL DEFAULT '0', PRIMARY KEY (id, dir, filename), UNIQUE KEY id_dir_filename (id, dir, filename)) ENGINE=InnoDB",
+		"CREATE TABLE migration_nokey (id VARCHAR(64) CHARACTER SET ascii NOT NULL, PRIMARY KEY (id)) ENGINE=InnoDB"
+	};
+	
+	static {
+		try {
+			BoneConnectionPool bcp = new BoneConnectionPool(new DefaultMySQLconnection("127.0.0.1", 3306, "test", "test", "test"), 2);
+			bcp.startPool();
+			sql = new AidDAO(bcp);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	HashMigration migration = new HashMigration(sql, new ThrottledBatch(2, 0, 0));
+	
+	@Override
+	protected void setUp() throws Exception {
+		// the tables have to exist before the data set is inserted
+		try (Connection cn = getConnection().getConnection(); Statement statement = cn.createStatement()) {
+			for(String create : CREATE_TABLES){
+				statement.execute(create);
+			}
+		}
+		
+		super.setUp();
+	}
+	
+	@Test
+	public void testMigrateIndex() throws Exception {
+		assertThat(migration.migrateTable("migration_index"), is(true));
+		
+		assertThat(query("SELECT HEX(id) FROM migration_index ORDER BY size"), is(Arrays.asList(HASH_A, HASH_B, HASH_C)));
+		assertThat(query("SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'migration_index' AND COLUMN_NAME = 'id'"), is(Arrays.asList("binary")));
+		assertThat(indexes("migration_index"), is(Arrays.asList("PRIMARY:id", "size:size")));
+	}
+	
+	@Test
+	public void testMigrateDuplicates() throws Exception {
+		assertThat(migration.migrateTable("migration_duplicate"), is(true));
+		
+		assertThat(query("SELECT HEX(id) FROM migration_duplicate ORDER BY dir, filename"), is(Arrays.asList(HASH_A, HASH_A, HASH_B)));
+		assertThat(indexes("migration_duplicate"), is(Arrays.asList("PRIMARY:id", "PRIMARY:dir", "PRIMARY:filename")));
+	}
+	
+	@Test
+	public void testMigrateWithoutUniqueKey() throws Exception {
+		assertThat(migration.migrateTable("migration_nokey"), is(true));
+		
+		assertThat(query("SELECT HEX(id) FROM migration_nokey ORDER BY id"), is(Arrays.asList(HASH_B, HASH_A)));
+		assertThat(indexes("migration_nokey"), is(Arrays.asList("PRIMARY:id")));
+	}
+	
+	@Test
+	public void testMigrateTwice() throws Exception {
+		assertThat(migration.migrateTable("migration_index"), is(true));
+		assertThat(migration.migrateTable("migration_index"), is(true));
+		
+		assertThat(query("SELECT COUNT(*) FROM migration_index"), is(Arrays.asList("3")));
+	}
+	
+	@Test
+	public void testResumeAfterPartialCopy() throws Exception {
+		executeUpdate("ALTER TABLE migration_index ADD COLUMN id_bin BINARY(32) NULL");
+		executeUpdate("UPDATE migration_index SET id_bin = UNHEX(id) WHERE size = 5");
+		
+		assertThat(migration.migrateTable("migration_index"), is(true));
+		assertThat(query("SELECT HEX(id) FROM migration_index ORDER BY size"), is(Arrays.asList(HASH_A, HASH_B, HASH_C)));
+	}
+	
+	private List<String> indexes(String table) throws Exception {
+		return query("SELECT CONCAT(INDEX_NAME, ':', COLUMN_NAME) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '"
+				+ table + "' ORDER BY INDEX_NAME, SEQ_IN_INDEX");
+	}
+	
+	private List<String> query(String query) throws Exception {
+		List<String> values = new LinkedList<>();
+		
+		try (Connection cn = getConnection().getConnection(); Statement statement = cn.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+			while(rs.next()){
+				values.add(rs.getString(1));
+			}
+		}
+		
+		return values;
+	}
+	
+	private void executeUpdate(String update) throws Exception {
+		try (Connection cn = getConnection().getConnection(); Statement statement = cn.createStatement()) {
+			statement.executeUpdate(update);
+		}
+	}
+	
+	// ---------- Database Setup related methods ---------- //
+	
+	@Override
+	protected IDatabaseConnection getConnection() throws Exception {
+		Class.forName("com.mysql.jdbc.Driver");
+		Connection jdbcConnection = DriverManager.getConnection("jdbc:mysql://localhost/test", "test", "test");
+		
+		DatabaseConnection dbConn = new DatabaseConnection(jdbcConnection);
+		dbConn.getConfig().setProperty("http://www.dbunit.org/properties/datatypeFactory", new MySqlDataTypeFactory());
+		
+		return dbConn;
+	}
+	
+	@Override
+	protected IDataSet getDataSet() throws Exception {
+		return new FlatXmlDataFileLoader().load("/dbData/hashMigration.xml");
+	}
+}
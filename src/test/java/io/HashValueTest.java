@@ -0,0 +1,85 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HashValueTest {
+	final String HASH = "E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855";
+	final String HASH_LOWER = HASH.toLowerCase();
+	final String HASH_HIGH = "F000000000000000000000000000000000000000000000000000000000000000";
+	final String HASH_LOW = "0000000000000000000000000000000000000000000000000000000000000001";
+
+	@Test
+	public void testRoundTrip() {
+		assertThat(HashValue.fromHex(HASH).toHex(), is(HASH));
+	}
+	
+	@Test
+	public void testLowerCaseInput() {
+		assertThat(HashValue.fromHex(HASH_LOWER).toHex(), is(HASH));
+	}
+	
+	@Test
+	public void testBytes() {
+		byte[] bytes = HashValue.fromHex(HASH).toBytes();
+		
+		assertThat(bytes.length, is(HashValue.LENGTH));
+		assertThat(bytes[0], is((byte) 0xE3));
+		assertThat(HashValue.fromBytes(bytes).toHex(), is(HASH));
+	}
+	
+	@Test
+	public void testEquals() {
+		assertThat(HashValue.fromHex(HASH), is(HashValue.fromHex(HASH_LOWER)));
+		assertThat(HashValue.fromHex(HASH).hashCode(), is(HashValue.fromHex(HASH_LOWER).hashCode()));
+		assertThat(HashValue.fromHex(HASH), is(not(HashValue.fromHex(HASH_LOW))));
+	}
+	
+	@Test
+	public void testCompareToIsUnsigned() {
+		assertTrue(HashValue.fromHex(HASH_HIGH).compareTo(HashValue.fromHex(HASH_LOW)) > 0);
+		assertTrue(HashValue.fromHex(HASH_LOW).compareTo(HashValue.fromHex(HASH_HIGH)) < 0);
+		assertThat(HashValue.fromHex(HASH).compareTo(HashValue.fromHex(HASH_LOWER)), is(0));
+	}
+	
+	@Test
+	public void testIsValidHex() {
+		assertTrue(HashValue.isValidHex(HASH));
+		assertFalse(HashValue.isValidHex(null));
+		assertFalse(HashValue.isValidHex("1"));
+		assertFalse(HashValue.isValidHex(HASH.replace('E', 'G')));
+		assertFalse(HashValue.isValidHex(HASH + "0"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFromHexInvalid() {
+		HashValue.fromHex("bananas!");
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFromBytesWrongLength() {
+		HashValue.fromBytes(new byte[]{1, 2, 3});
+	}
+}
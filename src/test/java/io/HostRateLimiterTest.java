@@ -0,0 +1,137 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HostRateLimiterTest {
+	URL imageUrl, otherImageUrl, pageUrl;
+	HostRateLimiter limiter;
+
+	@Before
+	public void setUp() throws Exception {
+		imageUrl = new URL("http://images.example.com/a/src/1.jpg");
+		otherImageUrl = new URL("http://IMAGES.example.com/a/src/2.jpg");
+		pageUrl = new URL("http://boards.example.com/a/");
+		limiter = new HostRateLimiter(2, 200, 400);
+	}
+
+	@Test
+	public void testBurst() throws Exception {
+		assertThat(limiter.reserve(imageUrl), is(0L));
+		assertThat(limiter.reserve(imageUrl), is(0L));
+		assertThat(limiter.reserve(imageUrl) > 0, is(true));
+	}
+	
+	@Test
+	public void testHostsAreIndependent() throws Exception {
+		limiter.reserve(imageUrl);
+		limiter.reserve(imageUrl);
+		
+		assertThat(limiter.reserve(pageUrl), is(0L));
+	}
+	
+	@Test
+	public void testHostIgnoresCase() throws Exception {
+		limiter.reserve(imageUrl);
+		limiter.reserve(imageUrl);
+		
+		assertThat(limiter.reserve(otherImageUrl) > 0, is(true));
+	}
+	
+	@Test
+	public void testRefill() throws Exception {
+		limiter.reserve(imageUrl);
+		limiter.reserve(imageUrl);
+		Thread.sleep(600);
+		
+		assertThat(limiter.reserve(imageUrl), is(0L));
+	}
+	
+	@Test
+	public void testAcquireWaits() throws Exception {
+		limiter.reserve(imageUrl);
+		limiter.reserve(imageUrl);
+		
+		long start = System.currentTimeMillis();
+		limiter.acquire(imageUrl);
+		
+		assertThat(System.currentTimeMillis() - start >= 400, is(true));
+	}
+	
+	@Test
+	public void testUnlimited() throws Exception {
+		limiter.setRequestsPerSecond(0);
+		
+		for(int i = 0; i < 100; i++){
+			assertThat(limiter.reserve(imageUrl), is(0L));
+		}
+	}
+	
+	@Test
+	public void testBackoff() throws Exception {
+		limiter.onResponse(imageUrl, 503);
+		
+		assertThat(limiter.isOpen(imageUrl), is(true));
+		assertThat(limiter.reserve(imageUrl) > 0, is(true));
+		assertThat(limiter.isOpen(pageUrl), is(false));
+	}
+	
+	@Test
+	public void testBackoffExpires() throws Exception {
+		limiter.onResponse(imageUrl, 429);
+		Thread.sleep(300);
+		
+		assertThat(limiter.isOpen(imageUrl), is(false));
+		assertThat(limiter.reserve(imageUrl), is(0L));
+	}
+	
+	@Test
+	public void testBackoffDoubles() throws Exception {
+		limiter.onResponse(imageUrl, 503);
+		Thread.sleep(300);
+		limiter.onResponse(imageUrl, 503);
+		Thread.sleep(300);
+		
+		assertThat(limiter.isOpen(imageUrl), is(true));
+	}
+	
+	@Test
+	public void testSuccessResetsBackoff() throws Exception {
+		limiter.onResponse(imageUrl, 503);
+		Thread.sleep(300);
+		limiter.onResponse(imageUrl, 200);
+		limiter.onResponse(imageUrl, 503);
+		Thread.sleep(300);
+		
+		assertThat(limiter.isOpen(imageUrl), is(false));
+	}
+	
+	@Test
+	public void testNotFoundDoesNotOpen() throws Exception {
+		limiter.onResponse(imageUrl, 404);
+		
+		assertThat(limiter.isOpen(imageUrl), is(false));
+	}
+}
@@ -0,0 +1,204 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpArchiveTest {
+	private static final URI PAGE = URI.create("http://boards.4chan.org/a/");
+	private static final URI IMAGE = URI.create("http://images.4chan.org/a/src/1.jpg");
+	
+	Path archiveFile;
+	HttpArchive archive;
+
+	@Before
+	public void setUp() throws Exception {
+		archiveFile = Files.createTempFile("httpArchiveTest", ".warc");
+		Files.delete(archiveFile);
+		archive = new HttpArchive(archiveFile);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		archive.close();
+		Files.deleteIfExists(archiveFile);
+	}
+	
+	private HttpArchive.Response response(String statusLine, String body) {
+		Map<String, List<String>> headers = new HashMap<>();
+		headers.put(null, Collections.singletonList(statusLine));
+		headers.put("Content-Type", Collections.singletonList("text/html"));
+		headers.put("Transfer-Encoding", Collections.singletonList("chunked"));
+		
+		return new HttpArchive.Response(Integer.parseInt(statusLine.split(" ")[1]), headers, body.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private HttpArchive reopen() throws Exception {
+		archive.close();
+		archive = new HttpArchive(archiveFile);
+		return archive;
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "<html>page</html>"));
+		
+		HttpArchive.Response replayed = reopen().replay(PAGE);
+		
+		assertThat(replayed.getStatus(), is(200));
+		assertThat(new String(replayed.getBody(), StandardCharsets.UTF_8), is("<html>page</html>"));
+		assertThat(replayed.getHeaders().get(null), is(Arrays.asList("HTTP/1.1 200 OK")));
+		assertThat(replayed.getHeaders().get("Content-Type"), is(Arrays.asList("text/html")));
+	}
+	
+	@Test
+	public void testBodyIsStoredDecoded() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "<html>page</html>"));
+		
+		HttpArchive.Response replayed = reopen().replay(PAGE);
+		
+		assertThat(replayed.getHeaders().get("Transfer-Encoding"), is(nullValue()));
+		assertThat(replayed.getHeaders().get("Content-Length"), is(Arrays.asList("17")));
+	}
+	
+	@Test
+	public void testBinaryBody() throws Exception {
+		byte[] data = new byte[256];
+		
+		for(int i = 0; i < data.length; i++){
+			data[i] = (byte)i;
+		}
+		
+		Map<String, List<String>> headers = new HashMap<>();
+		archive.record(IMAGE, new HttpArchive.Response(200, headers, data));
+		
+		HttpArchive.Response replayed = reopen().replay(IMAGE);
+		
+		assertThat(replayed.getStatus(), is(200));
+		assertThat(replayed.getBody(), is(data));
+	}
+	
+	@Test
+	public void testReplayInRecordedOrder() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "first"));
+		archive.record(IMAGE, response("HTTP/1.1 404 Not Found", ""));
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "second"));
+		
+		reopen();
+		
+		assertThat(new String(archive.replay(PAGE).getBody(), StandardCharsets.UTF_8), is("first"));
+		assertThat(new String(archive.replay(PAGE).getBody(), StandardCharsets.UTF_8), is("second"));
+		assertThat(new String(archive.replay(PAGE).getBody(), StandardCharsets.UTF_8), is("second"));
+		assertThat(archive.replay(IMAGE).getStatus(), is(404));
+	}
+	
+	@Test
+	public void testUnknownUri() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		
+		assertThat(reopen().replay(IMAGE), is(nullValue()));
+	}
+	
+	@Test
+	public void testUriCount() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "first"));
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "second"));
+		archive.record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		
+		assertThat(reopen().getUriCount(), is(2));
+	}
+	
+	@Test
+	public void testAppend() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		reopen().record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		
+		assertThat(new String(reopen().replay(PAGE).getBody(), StandardCharsets.UTF_8), is("page"));
+		assertThat(new String(archive.replay(IMAGE).getBody(), StandardCharsets.UTF_8), is("image"));
+	}
+	
+	private void cutOff(int bytes) throws Exception {
+		archive.close();
+		
+		try (FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - bytes);
+		}
+	}
+	
+	@Test
+	public void testCutOffBody() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		archive.record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		cutOff(7);
+		
+		assertThat(reopen().getUriCount(), is(1));
+		assertThat(new String(archive.replay(PAGE).getBody(), StandardCharsets.UTF_8), is("page"));
+		assertThat(archive.replay(IMAGE), is(nullValue()));
+	}
+	
+	@Test
+	public void testCutOffHeader() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		long complete = Files.size(archiveFile);
+		archive.record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		cutOff((int)(Files.size(archiveFile) - complete - 40));
+		
+		assertThat(reopen().getUriCount(), is(1));
+		assertThat(Files.size(archiveFile), is(complete));
+	}
+	
+	@Test
+	public void testCutOffVersion() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		long complete = Files.size(archiveFile);
+		archive.record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		cutOff((int)(Files.size(archiveFile) - complete - 3));
+		
+		assertThat(reopen().getUriCount(), is(1));
+		assertThat(Files.size(archiveFile), is(complete));
+	}
+	
+	@Test
+	public void testAppendAfterCutOff() throws Exception {
+		archive.record(PAGE, response("HTTP/1.1 200 OK", "page"));
+		archive.record(IMAGE, response("HTTP/1.1 200 OK", "image"));
+		cutOff(7);
+		reopen().record(IMAGE, response("HTTP/1.1 404 Not Found", ""));
+		
+		assertThat(reopen().getUriCount(), is(2));
+		assertThat(archive.replay(IMAGE).getStatus(), is(404));
+	}
+}
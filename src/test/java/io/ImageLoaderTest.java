@@ -0,0 +1,330 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.github.dozedoff.commonj.net.FileLoader;
+
+import filter.Filter;
+
+public class ImageLoaderTest {
+	private static final int WORKERS = 2;
+	private static final byte[] DATA = {1, 2, 3, 4};
+	
+	FileWriter fileWriter;
+	Filter filter;
+	DownloadQueueLog queueLog;
+	HostRateLimiter rateLimiter;
+	StubImageLoader imageLoader;
+	File workingDir;
+	URL[] urls;
+	
+	/**
+	 * Records the files handed to the workers instead of downloading them, the hooks are called like {@link FileLoader} does.
+	 */
+	class StubImageLoader extends ImageLoader {
+		final List<URL> dispatched = new CopyOnWriteArrayList<>();
+		
+		StubImageLoader(HostRateLimiter rateLimiter) {
+			super(fileWriter, filter, workingDir, WORKERS, queueLog, rateLimiter);
+		}
+		
+		@Override
+		public void add(URL url, String fileName) {
+			if(beforeFileAdd(url, fileName)){
+				afterFileAdd(url, fileName);
+				dispatched.add(url);
+			}
+		}
+		
+		/**
+		 * Finish a file the way a worker does.
+		 * @param data the downloaded file, null if the download failed
+		 */
+		void workerDone(URL url, byte[] data) {
+			afterFileDownload(data, new File(workingDir, url.getPath()), url);
+			afterProcessItem(null);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		fileWriter = mock(FileWriter.class);
+		filter = mock(Filter.class);
+		queueLog = mock(DownloadQueueLog.class);
+		rateLimiter = new HostRateLimiter(0, 0, 0);
+		workingDir = Files.createTempDirectory("imageLoaderTest").toFile();
+		
+		urls = new URL[3];
+		
+		for(int i = 0; i < urls.length; i++){
+			urls[i] = new URL("http://localhost/a/src/" + i + ".jpg");
+		}
+		
+		imageLoader = new StubImageLoader(rateLimiter);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		imageLoader.shutdown();
+	}
+	
+	private void addAll() {
+		for(URL url : urls){
+			imageLoader.add(url, url.getPath(), -1);
+		}
+	}
+	
+	private AsyncDownloadEngine useAsyncEngine() {
+		AsyncDownloadEngine engine = mock(AsyncDownloadEngine.class);
+		when(engine.getConnectionsPerHost()).thenReturn(WORKERS);
+		imageLoader.setAsyncEngine(engine);
+		return engine;
+	}
+	
+	private AsyncDownloadEngine.Callback callbackFor(AsyncDownloadEngine engine, URL url) {
+		ArgumentCaptor<AsyncDownloadEngine.Callback> callback = ArgumentCaptor.forClass(AsyncDownloadEngine.Callback.class);
+		verify(engine).download(eq(url), any(File.class), any(PrefixFingerprint.Check.class), callback.capture());
+		return callback.getValue();
+	}
+
+	@Test
+	public void testLimit() throws Exception {
+		addAll();
+		
+		assertThat(imageLoader.dispatched.size(), is(WORKERS));
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+	}
+	
+	@Test
+	public void testAddTwice() throws Exception {
+		addAll();
+		addAll();
+		
+		assertThat(MetricsRegistry.getDefault().gaugeValue(MetricNames.DOWNLOAD_QUEUE), is(1L));
+	}
+
+	@Test
+	public void testSuccessReleasesPermit() throws Exception {
+		addAll();
+		imageLoader.workerDone(urls[0], DATA);
+		
+		assertThat(imageLoader.dispatched.size(), is(3));
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		verify(fileWriter).add(any(File.class), eq(DATA));
+		verify(filter).cache(urls[0]);
+		verify(queueLog).remove(urls[0].toString());
+	}
+	
+	@Test
+	public void testAllFinished() throws Exception {
+		addAll();
+		
+		for(URL url : urls){
+			imageLoader.workerDone(url, DATA);
+		}
+		
+		assertThat(imageLoader.getInFlight(), is(0));
+	}
+
+	@Test
+	public void testFailureReleasesPermit() throws Exception {
+		addAll();
+		imageLoader.workerDone(urls[0], null);
+		
+		assertThat(imageLoader.dispatched.size(), is(3));
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		verify(fileWriter, never()).add(any(File.class), any(byte[].class));
+		verify(queueLog).remove(urls[0].toString());
+	}
+	
+	@Test
+	public void testCachedReleasesPermit() throws Exception {
+		when(filter.isCached(urls[0])).thenReturn(true);
+		addAll();
+		
+		assertThat(imageLoader.dispatched.size(), is(2));
+		assertThat(imageLoader.dispatched.contains(urls[0]), is(false));
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		verify(queueLog).remove(urls[0].toString());
+	}
+
+	@Test
+	public void testClearKeepsRunningPermits() throws Exception {
+		addAll();
+		imageLoader.clearQueue();
+		
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		assertThat(MetricsRegistry.getDefault().gaugeValue(MetricNames.DOWNLOAD_QUEUE), is(0L));
+		verify(queueLog).clear();
+	}
+	
+	@Test
+	public void testAddAfterClear() throws Exception {
+		addAll();
+		imageLoader.clearQueue();
+		imageLoader.dispatched.clear();
+		addAll();
+		
+		assertThat(imageLoader.dispatched.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testRunningFinishAfterClear() throws Exception {
+		addAll();
+		imageLoader.clearQueue();
+		imageLoader.dispatched.clear();
+		addAll();
+		imageLoader.workerDone(urls[0], DATA);
+		imageLoader.workerDone(urls[1], DATA);
+		
+		assertThat(imageLoader.dispatched.size(), is(WORKERS));
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+	}
+	
+	@Test
+	public void testAsyncCompletedReleasesPermit() throws Exception {
+		AsyncDownloadEngine engine = useAsyncEngine();
+		addAll();
+		callbackFor(engine, urls[0]).completed(urls[0], new File(workingDir, "0.jpg"), DATA);
+		
+		callbackFor(engine, urls[2]);
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		assertThat(imageLoader.dispatched.isEmpty(), is(true));
+		verify(fileWriter).add(any(File.class), eq(DATA));
+		verify(queueLog).remove(urls[0].toString());
+	}
+	
+	@Test
+	public void testAsyncFailedReleasesPermit() throws Exception {
+		AsyncDownloadEngine engine = useAsyncEngine();
+		addAll();
+		callbackFor(engine, urls[0]).failed(urls[0], new File(workingDir, "0.jpg"), 404);
+		
+		callbackFor(engine, urls[2]);
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		verify(fileWriter, never()).add(any(File.class), any(byte[].class));
+		verify(queueLog).remove(urls[0].toString());
+	}
+	
+	@Test
+	public void testAsyncSkippedReleasesPermit() throws Exception {
+		AsyncDownloadEngine engine = useAsyncEngine();
+		addAll();
+		callbackFor(engine, urls[0]).skipped(urls[0], new File(workingDir, "0.jpg"), 1024 * 1024);
+		
+		callbackFor(engine, urls[2]);
+		assertThat(imageLoader.getInFlight(), is(WORKERS));
+		verify(fileWriter, never()).add(any(File.class), any(byte[].class));
+		verify(filter).cache(urls[0]);
+		verify(queueLog).remove(urls[0].toString());
+	}
+	
+	@Test
+	public void testAsyncClearReleasesPermits() throws Exception {
+		AsyncDownloadEngine engine = useAsyncEngine();
+		addAll();
+		imageLoader.clearQueue();
+		
+		assertThat(imageLoader.getInFlight(), is(0));
+		verify(engine).cancelAll();
+	}
+	
+	@Test
+	public void testAsyncAddAfterCancel() throws Exception {
+		AsyncDownloadEngine engine = useAsyncEngine();
+		addAll();
+		when(engine.cancelAll()).thenReturn(Arrays.asList(urls[0], urls[1]));
+		imageLoader.clearQueue();
+		addAll();
+		
+		verify(engine, times(2)).download(eq(urls[0]), any(File.class), any(PrefixFingerprint.Check.class), any(AsyncDownloadEngine.Callback.class));
+	}
+	
+	@Test
+	public void testRateLimitedReleasesPermit() throws Exception {
+		rateLimiter.setRequestsPerSecond(1);
+		addAll();
+		
+		assertThat(imageLoader.dispatched.size(), is(1));
+		assertThat(imageLoader.getInFlight(), is(1));
+		assertThat(MetricsRegistry.getDefault().gaugeValue(MetricNames.DOWNLOAD_QUEUE), is(2L));
+	}
+	
+	@Test
+	public void testRateLimitedDispatchedLater() throws Exception {
+		rateLimiter.setRequestsPerSecond(1);
+		addAll();
+		Thread.sleep(1500);
+		
+		assertThat(imageLoader.dispatched.size(), is(2));
+		assertThat(imageLoader.dispatched.get(1), is(urls[1]));
+	}
+	
+	@Test
+	public void testQueuedWhileRateLimited() throws Exception {
+		imageLoader.shutdown();
+		
+		// queue the file again after it was taken from the queue, but before it is put back
+		imageLoader = new StubImageLoader(new HostRateLimiter(0, 0, 0) {
+			boolean requeued = false;
+			
+			@Override
+			public long reserve(URL url) {
+				if(url.equals(urls[1]) && !requeued){
+					requeued = true;
+					imageLoader.add(url, url.getPath(), -1);
+					return TimeUnit.MINUTES.toNanos(1);
+				}
+				
+				return 0;
+			}
+		});
+		
+		imageLoader.add(urls[1], urls[1].getPath(), -1);
+		
+		assertThat(MetricsRegistry.getDefault().gaugeValue(MetricNames.DOWNLOAD_QUEUE), is(1L));
+		assertThat(imageLoader.dispatched.isEmpty(), is(true));
+		assertThat(imageLoader.getInFlight(), is(0));
+	}
+}
@@ -0,0 +1,133 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.io.ConnectionPool;
+
+public class InstrumentedDataSourceTest {
+	private static final String SQL = "SELECT * FROM dnw WHERE id = ?";
+	
+	MetricsRegistry registry;
+	QueryMetrics queryMetrics;
+	InstrumentedDataSource dataSource;
+	ConnectionPool connPool;
+	Connection connection;
+	PreparedStatement preparedStatement;
+	Statement statement;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		queryMetrics = new QueryMetrics(registry, 1000);
+		
+		connPool = mock(ConnectionPool.class);
+		connection = mock(Connection.class);
+		preparedStatement = mock(PreparedStatement.class);
+		statement = mock(Statement.class);
+		
+		when(connPool.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(SQL)).thenReturn(preparedStatement);
+		when(connection.createStatement()).thenReturn(statement);
+		
+		dataSource = new InstrumentedDataSource(connPool, queryMetrics);
+	}
+
+	@Test
+	public void testPreparedStatement() throws Exception {
+		Connection cn = dataSource.getConnection();
+		PreparedStatement ps = cn.prepareStatement(SQL);
+		ps.setString(1, "foo");
+		ps.executeQuery();
+		
+		verify(preparedStatement).setString(1, "foo");
+		verify(preparedStatement).executeQuery();
+		assertThat(queryMetrics.getStatements().get(SQL).getCount(), is(1L));
+	}
+	
+	@Test
+	public void testStatement() throws Exception {
+		Statement st = dataSource.getConnection().createStatement();
+		st.executeUpdate("DELETE FROM cache WHERE timestamp < 5");
+		
+		assertThat(queryMetrics.getStatements().get("DELETE FROM cache WHERE timestamp < ?").getCount(), is(1L));
+	}
+	
+	@Test
+	public void testFailedStatementIsRecorded() throws Exception {
+		when(preparedStatement.executeUpdate()).thenThrow(new SQLException("test"));
+		
+		try {
+			dataSource.getConnection().prepareStatement(SQL).executeUpdate();
+		} catch (SQLException e) {
+			assertThat(e.getMessage(), is("test"));
+		}
+		
+		assertThat(queryMetrics.getStatements().get(SQL).getCount(), is(1L));
+	}
+	
+	@Test
+	public void testStatementReturnsProxy() throws Exception {
+		Connection cn = dataSource.getConnection();
+		
+		assertThat(cn.prepareStatement(SQL).getConnection(), is(sameInstance(cn)));
+	}
+	
+	@Test
+	public void testActiveConnections() throws Exception {
+		Connection cn = dataSource.getConnection();
+		assertThat(registry.gaugeValue(MetricNames.ACTIVE_CONNECTIONS), is(1L));
+		
+		cn.close();
+		cn.close();
+		
+		assertThat(registry.gaugeValue(MetricNames.ACTIVE_CONNECTIONS), is(0L));
+		verify(connection, times(2)).close();
+	}
+	
+	@Test
+	public void testPoolWait() throws Exception {
+		dataSource.getConnection();
+		
+		assertThat(registry.getHistograms().get(MetricNames.POOL_WAIT_TIME).getCount(), is(1L));
+	}
+	
+	@Test(expected=SQLException.class)
+	public void testNoConnection() throws Exception {
+		when(connPool.getConnection()).thenReturn(null);
+		dataSource.getConnection();
+	}
+}
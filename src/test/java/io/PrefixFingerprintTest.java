@@ -0,0 +1,90 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefixFingerprintTest {
+	final String ZERO_PREFIX_MD5 = "FCD6BCB56C1689FCEF28B57C22475BAD";
+	
+	Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("prefixFingerprintTest", ".bin");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testSmallFile() {
+		assertThat(PrefixFingerprint.of(new byte[PrefixFingerprint.PREFIX_SIZE]), is(nullValue()));
+	}
+	
+	@Test
+	public void testLargeFile() {
+		assertThat(PrefixFingerprint.of(new byte[PrefixFingerprint.PREFIX_SIZE + 1]), is(ZERO_PREFIX_MD5));
+	}
+	
+	@Test
+	public void testOnlyPrefixHashed() {
+		byte[] data = new byte[PrefixFingerprint.PREFIX_SIZE * 2];
+		data[PrefixFingerprint.PREFIX_SIZE] = 42;
+		
+		assertThat(PrefixFingerprint.of(data), is(ZERO_PREFIX_MD5));
+	}
+	
+	@Test
+	public void testHashPrefixOnly() {
+		assertThat(PrefixFingerprint.hash(new byte[PrefixFingerprint.PREFIX_SIZE]), is(ZERO_PREFIX_MD5));
+	}
+	
+	@Test
+	public void testFile() throws Exception {
+		byte[] data = new byte[PrefixFingerprint.PREFIX_SIZE + 100];
+		data[PrefixFingerprint.PREFIX_SIZE + 1] = 7;
+		Files.write(file, data);
+		
+		assertThat(PrefixFingerprint.of(file), is(ZERO_PREFIX_MD5));
+	}
+	
+	@Test
+	public void testSmallFileOnDisk() throws Exception {
+		Files.write(file, new byte[100]);
+		
+		assertThat(PrefixFingerprint.of(file), is(nullValue()));
+	}
+	
+	@Test
+	public void testHasFingerprint() {
+		assertThat(PrefixFingerprint.hasFingerprint(PrefixFingerprint.PREFIX_SIZE), is(false));
+		assertThat(PrefixFingerprint.hasFingerprint(PrefixFingerprint.PREFIX_SIZE + 1), is(true));
+	}
+}
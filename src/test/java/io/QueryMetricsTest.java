@@ -0,0 +1,129 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.concurrent.TimeUnit;
+
+import metrics.MetricNames;
+import metrics.MetricsRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryMetricsTest {
+	MetricsRegistry registry;
+	QueryMetrics queryMetrics;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		queryMetrics = new QueryMetrics(registry, 100);
+	}
+
+	@Test
+	public void testShapeLiterals() {
+		assertThat(QueryMetrics.shape("SELECT * FROM cache WHERE id = 'http://foo.bar/1.jpg' AND timestamp < 12345"),
+				is("SELECT * FROM cache WHERE id = ? AND timestamp < ?"));
+	}
+	
+	@Test
+	public void testShapeEscapedQuote() {
+		assertThat(QueryMetrics.shape("SELECT 'it''s' , 'a\\'b'"), is("SELECT ? , ?"));
+	}
+	
+	@Test
+	public void testShapeParameterList() {
+		assertThat(QueryMetrics.shape("DELETE FROM thumbs WHERE id IN (1, 2,3)"), is("DELETE FROM thumbs WHERE id IN (?)"));
+	}
+	
+	@Test
+	public void testShapeWhitespace() {
+		assertThat(QueryMetrics.shape("  SELECT id\n\tFROM  dnw "), is("SELECT id FROM dnw"));
+	}
+	
+	@Test
+	public void testShapeKeepsIdentifiers() {
+		assertThat(QueryMetrics.shape("SELECT id_bin2 FROM t1"), is("SELECT id_bin2 FROM t1"));
+	}
+	
+	@Test
+	public void testRecordGroupsByShape() {
+		queryMetrics.record("SELECT * FROM dnw WHERE id = 1", TimeUnit.MILLISECONDS.toNanos(1));
+		queryMetrics.record("SELECT * FROM dnw WHERE id = 2", TimeUnit.MILLISECONDS.toNanos(1));
+		
+		assertThat(queryMetrics.getStatements().size(), is(1));
+		assertThat(queryMetrics.getStatements().get("SELECT * FROM dnw WHERE id = ?").getCount(), is(2L));
+		assertThat(registry.getHistograms().get(MetricNames.QUERY_TIME).getCount(), is(2L));
+	}
+	
+	@Test
+	public void testBatch() {
+		queryMetrics.record(null, 1000);
+		
+		assertThat(queryMetrics.getStatements().firstKey(), is(QueryMetrics.BATCH_SHAPE));
+	}
+	
+	@Test
+	public void testSlowQuery() {
+		queryMetrics.record("SELECT 1", TimeUnit.MILLISECONDS.toNanos(50));
+		queryMetrics.record("SELECT 2", TimeUnit.MILLISECONDS.toNanos(150));
+		
+		assertThat(registry.getCounters().get(MetricNames.SLOW_QUERIES), is(1L));
+	}
+	
+	@Test
+	public void testShapeLimit() {
+		for(int i = 0; i < 600; i++){
+			queryMetrics.record("SELECT * FROM t" + i, 1000);
+		}
+		
+		assertThat(queryMetrics.getStatements().size(), is(501));
+		assertThat(queryMetrics.getStatements().get(QueryMetrics.OTHER_SHAPE).getCount(), is(100L));
+	}
+	
+	@Test
+	public void testReportOrder() {
+		queryMetrics.record("SELECT fast", TimeUnit.MILLISECONDS.toNanos(1));
+		queryMetrics.record("SELECT slow", TimeUnit.MILLISECONDS.toNanos(20));
+		
+		String report = queryMetrics.report(1);
+		
+		assertThat(report, containsString("SELECT slow"));
+		assertThat(report.contains("SELECT fast"), is(false));
+	}
+	
+	@Test
+	public void testConnections() {
+		queryMetrics.connectionOpened();
+		queryMetrics.connectionOpened();
+		queryMetrics.connectionClosed();
+		
+		assertThat(registry.gaugeValue(MetricNames.ACTIVE_CONNECTIONS), is(1L));
+	}
+	
+	@Test
+	public void testPoolWait() {
+		queryMetrics.recordPoolWait(1000);
+		
+		assertThat(registry.getHistograms().get(MetricNames.POOL_WAIT_TIME).getCount(), is(1L));
+	}
+}
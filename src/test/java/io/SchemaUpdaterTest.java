@@ -17,7 +17,9 @@
  */
 package io;
 
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -34,12 +36,14 @@ import com.github.dozedoff.commonj.io.DBsettings;
 public class SchemaUpdaterTest {
 	AidDAO sql;
 	Properties local;
+	HashMigration hashMigration;
 
 	@Before
 	public void setUp() throws Exception {
 		sql = mock(AidDAO.class);
 		local = new Properties();
 		local.put(DBsettings.SchemaVersion.toString(), "2");
+		hashMigration = mock(HashMigration.class);
 	}
 
 	@After
@@ -92,5 +96,94 @@ public class SchemaUpdaterTest {
 		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("3");
 		SchemaUpdater.update(sql, local);
 	}
+	
+	@Test
+	public void testUpdateToBinaryHashes() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "4");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("3");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		when(hashMigration.migrate()).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(hashMigration).migrate();
+		verify(sql,times(1)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testUpdateCascade() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "4");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("1");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		when(hashMigration.migrate()).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(hashMigration).migrate();
+		verify(sql,times(3)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testUpdateMd5Columns() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "5");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("4");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(hashMigration, never()).migrate();
+		verify(sql,times(1)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testUpdatePrefixFingerprints() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "6");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("5");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(hashMigration, never()).migrate();
+		verify(sql,times(1)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testUpdateCompactionIndexes() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "7");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("6");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(sql,times(1)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testUpdateCacheIndex() throws SchemaUpdateException {
+		local.put(DBsettings.SchemaVersion.toString(), "8");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("7");
+		when(sql.batchExecute((String[]) anyVararg())).thenReturn(true);
+		
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(sql,times(1)).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testHashMigrationFailed() {
+		local.put(DBsettings.SchemaVersion.toString(), "4");
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("3");
+		when(hashMigration.migrate()).thenReturn(false);
+		
+		try {
+			SchemaUpdater.update(sql, local, hashMigration);
+			fail("Failed migration was not reported");
+		} catch (SchemaUpdateException e) {
+			// expected, the version must not be updated
+		}
+		
+		verify(sql, never()).batchExecute((String[]) anyVararg());
+	}
+	
+	@Test
+	public void testNoHashMigrationForOlderLocal() throws SchemaUpdateException {
+		when(sql.getSetting(DBsettings.SchemaVersion)).thenReturn("2");
+		SchemaUpdater.update(sql, local, hashMigration);
+		verify(hashMigration, never()).migrate();
+	}
 
 }
@@ -0,0 +1,211 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingDownloaderTest {
+	private static final int SERVER_PORT = 5983;
+	private static final String FILE_URL = "http://localhost:" + SERVER_PORT + "/a/src/1.webm";
+	
+	Server server;
+	byte[] data;
+	boolean rangeSupport;
+	AtomicInteger rangeRequests = new AtomicInteger();
+	Path dir, target;
+	StreamingDownloader downloader;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[300 * 1024];
+		new Random(42).nextBytes(data);
+		rangeSupport = true;
+		
+		dir = Files.createTempDirectory("streamingDownloaderTest");
+		target = dir.resolve("a").resolve("1.webm");
+		downloader = new StreamingDownloader(3);
+		
+		server = new Server(SERVER_PORT);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				baseRequest.setHandled(true);
+				
+				if(! target.equals("/a/src/1.webm")){
+					response.setStatus(404);
+					return;
+				}
+				
+				String range = request.getHeader("Range");
+				int offset = 0;
+				
+				if(rangeSupport && range != null){
+					rangeRequests.incrementAndGet();
+					offset = Integer.parseInt(range.replaceAll("bytes=(\\d+)-", "$1"));
+					response.setStatus(206);
+					response.setHeader("Content-Range", "bytes " + offset + "-" + (data.length - 1) + "/" + data.length);
+				}
+				
+				response.setContentLength(data.length - offset);
+				response.getOutputStream().write(data, offset, data.length - offset);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+		
+		Files.deleteIfExists(StreamingDownloader.partFile(target));
+		Files.deleteIfExists(target.getParent());
+		Files.deleteIfExists(dir);
+	}
+	
+	private String sha256(byte[] data) throws Exception {
+		return HashValue.fromBytes(MessageDigest.getInstance("SHA-256").digest(data)).toHex();
+	}
+	
+	private void writePart(int length) throws IOException {
+		Files.createDirectories(target.getParent());
+		Files.write(StreamingDownloader.partFile(target), Arrays.copyOf(data, length));
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		String hash = downloader.download(new URL(FILE_URL), target);
+		
+		assertThat(hash, is(sha256(data)));
+		assertThat(Files.readAllBytes(StreamingDownloader.partFile(target)), is(data));
+		assertThat(rangeRequests.get(), is(0));
+	}
+	
+	@Test
+	public void testResume() throws Exception {
+		writePart(100 * 1024);
+		
+		String hash = downloader.download(new URL(FILE_URL), target);
+		
+		assertThat(hash, is(sha256(data)));
+		assertThat(Files.readAllBytes(StreamingDownloader.partFile(target)), is(data));
+		assertThat(rangeRequests.get(), is(1));
+	}
+	
+	@Test
+	public void testResumeWithoutRangeSupport() throws Exception {
+		rangeSupport = false;
+		writePart(100 * 1024);
+		
+		String hash = downloader.download(new URL(FILE_URL), target);
+		
+		assertThat(hash, is(sha256(data)));
+		assertThat(Files.readAllBytes(StreamingDownloader.partFile(target)), is(data));
+	}
+	
+	@Test(expected=StreamingDownloader.RefusedException.class)
+	public void testNotFound() throws Exception {
+		downloader.download(new URL("http://localhost:" + SERVER_PORT + "/a/src/2.webm"), target);
+	}
+	
+	@Test
+	public void testNotFoundDeletesPart() throws Exception {
+		writePart(100);
+		
+		try {
+			downloader.download(new URL("http://localhost:" + SERVER_PORT + "/a/src/2.webm"), target);
+		} catch (StreamingDownloader.RefusedException e) {
+			// expected
+		}
+		
+		assertThat(Files.exists(StreamingDownloader.partFile(target)), is(false));
+	}
+	
+	@Test
+	public void testKnownPrefix() throws Exception {
+		final AtomicInteger checks = new AtomicInteger();
+		
+		try {
+			downloader.download(new URL(FILE_URL), target, new PrefixFingerprint.Check() {
+				@Override
+				public boolean isKnown(URL url, long size, byte[] prefix) {
+					checks.incrementAndGet();
+					return size == data.length && Arrays.equals(prefix, Arrays.copyOf(data, PrefixFingerprint.PREFIX_SIZE));
+				}
+			});
+		} catch (StreamingDownloader.KnownFileException e) {
+			// expected
+		}
+		
+		assertThat(checks.get(), is(1));
+		assertThat(Files.exists(StreamingDownloader.partFile(target)), is(false));
+	}
+	
+	@Test
+	public void testUnknownPrefix() throws Exception {
+		String hash = downloader.download(new URL(FILE_URL), target, new PrefixFingerprint.Check() {
+			@Override
+			public boolean isKnown(URL url, long size, byte[] prefix) {
+				return false;
+			}
+		});
+		
+		assertThat(hash, is(sha256(data)));
+		assertThat(Files.readAllBytes(StreamingDownloader.partFile(target)), is(data));
+	}
+	
+	@Test
+	public void testResumeSkipsPrefixCheck() throws Exception {
+		writePart(100 * 1024);
+		
+		String hash = downloader.download(new URL(FILE_URL), target, new PrefixFingerprint.Check() {
+			@Override
+			public boolean isKnown(URL url, long size, byte[] prefix) {
+				return true;
+			}
+		});
+		
+		assertThat(hash, is(sha256(data)));
+	}
+	
+	@Test
+	public void testPartFile() throws Exception {
+		assertThat(StreamingDownloader.partFile(target), is(dir.resolve("a").resolve("1.webm.part")));
+	}
+}
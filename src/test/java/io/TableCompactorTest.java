@@ -0,0 +1,78 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableCompactorTest {
+	TableCompactor compactor;
+	AidDAO sql;
+
+	@Before
+	public void setUp() throws Exception {
+		sql = mock(AidDAO.class);
+		compactor = new TableCompactor(sql, 2, 0, 1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		compactor.stop();
+	}
+
+	@Test
+	public void testStart() throws InterruptedException {
+		assertThat(compactor.start(), is(true));
+		assertThat(compactor.start(), is(false));
+		Thread.sleep(500);
+		
+		verify(sql, times(1)).deleteStaleFilters(anyLong(), anyInt());
+		verify(sql, times(1)).deleteOrphanedThumbs(anyInt());
+	}
+	
+	@Test
+	public void testCompactInBatches() {
+		int batchSize = compactor.throttledBatch.getBatchSize();
+		when(sql.deleteOrphanedThumbs(anyInt())).thenReturn(batchSize, batchSize, 3);
+		
+		compactor.compact();
+		
+		verify(sql, times(3)).deleteOrphanedThumbs(batchSize);
+		verify(sql, times(1)).deleteStaleFilters(anyLong(), anyInt());
+	}
+	
+	@Test
+	public void testCompactError() {
+		when(sql.deleteStaleFilters(anyLong(), anyInt())).thenReturn(-1);
+		
+		compactor.compact();
+		
+		verify(sql, times(1)).deleteStaleFilters(anyLong(), anyInt());
+		verify(sql, times(1)).deleteOrphanedThumbs(anyInt());
+	}
+}
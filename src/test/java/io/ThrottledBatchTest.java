@@ -0,0 +1,95 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ThrottledBatchTest {
+	
+	/**
+	 * Operation that has a fixed amount of rows to process.
+	 */
+	static class CountingOperation implements BatchOperation {
+		int remaining;
+		int calls = 0;
+		
+		public CountingOperation(int rows) {
+			this.remaining = rows;
+		}
+		
+		@Override
+		public int runBatch(int batchSize) {
+			calls++;
+			int processed = Math.min(batchSize, remaining);
+			remaining -= processed;
+			return processed;
+		}
+	}
+
+	@Test
+	public void testRunUntilDone() {
+		CountingOperation operation = new CountingOperation(25);
+		ThrottledBatch batch = new ThrottledBatch(10, 0, 0);
+		
+		assertThat(batch.run(operation), is(25));
+		assertThat(operation.calls, is(3));
+	}
+	
+	@Test
+	public void testExactMultipleOfBatchSize() {
+		CountingOperation operation = new CountingOperation(20);
+		ThrottledBatch batch = new ThrottledBatch(10, 0, 0);
+		
+		assertThat(batch.run(operation), is(20));
+		assertThat(operation.calls, is(3));
+	}
+	
+	@Test
+	public void testStopOnError() {
+		BatchOperation failing = new BatchOperation() {
+			@Override
+			public int runBatch(int batchSize) {
+				return -1;
+			}
+		};
+		
+		assertThat(new ThrottledBatch(10, 0, 0).run(failing), is(0));
+	}
+	
+	@Test
+	public void testTimeBudget() {
+		CountingOperation operation = new CountingOperation(Integer.MAX_VALUE);
+		ThrottledBatch batch = new ThrottledBatch(10, 20, 100);
+		
+		long start = System.currentTimeMillis();
+		batch.run(operation);
+		long duration = System.currentTimeMillis() - start;
+		
+		assertTrue("Run took " + duration + " ms", duration < 1000);
+		assertTrue(operation.calls > 1);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidBatchSize() {
+		new ThrottledBatch(0, 0, 0);
+	}
+}
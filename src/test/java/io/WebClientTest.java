@@ -0,0 +1,174 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import io.WebClient.ResponseCodeException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebClientTest {
+	private static final int SERVER_PORT = 5985;
+	private static final String BASE_URL = "http://localhost:" + SERVER_PORT;
+	private static final String PAGE = "<html><head><title>Test board</title></head><body><p>test</p></body></html>";
+	
+	Server server;
+	String acceptEncoding;
+	HostRateLimiter rateLimiter;
+	WebClient webClient;
+
+	@Before
+	public void setUp() throws Exception {
+		rateLimiter = new HostRateLimiter(0, 1000, 10000);
+		webClient = new WebClient(rateLimiter, 1000, 200);
+		
+		server = new Server(SERVER_PORT);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+					throws IOException, ServletException {
+				baseRequest.setHandled(true);
+				acceptEncoding = request.getHeader("Accept-Encoding");
+				
+				switch (target) {
+				case "/gzip":
+					response.setContentType("text/html; charset=UTF-8");
+					response.setHeader("Content-Encoding", "gzip");
+					writeAll(new GZIPOutputStream(response.getOutputStream()), PAGE.getBytes(StandardCharsets.UTF_8));
+					break;
+				case "/deflate":
+					response.setContentType("text/html; charset=UTF-8");
+					response.setHeader("Content-Encoding", "deflate");
+					writeAll(new DeflaterOutputStream(response.getOutputStream()), PAGE.getBytes(StandardCharsets.UTF_8));
+					break;
+				case "/thumb.jpg":
+					response.setContentLength(2048);
+					response.getOutputStream().write(new byte[2048]);
+					break;
+				case "/slow":
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException e) {}
+					break;
+				case "/busy":
+					response.setStatus(503);
+					break;
+				default:
+					response.setStatus(404);
+				}
+			}
+		});
+		server.start();
+	}
+	
+	private void writeAll(OutputStream os, byte[] data) throws IOException {
+		os.write(data);
+		os.close();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void testGetPageGzip() throws Exception {
+		Document page = webClient.getPage(new URL(BASE_URL + "/gzip"));
+		
+		assertThat(page.title(), is("Test board"));
+		assertThat(acceptEncoding, is("gzip, deflate"));
+	}
+	
+	@Test
+	public void testGetPageDeflate() throws Exception {
+		Document page = webClient.getPage(new URL(BASE_URL + "/deflate"));
+		
+		assertThat(page.title(), is("Test board"));
+	}
+	
+	@Test
+	public void testGetPageNotFound() throws Exception {
+		try {
+			webClient.getPage(new URL(BASE_URL + "/missing"));
+			fail("Expected an exception for a missing page");
+		} catch (ResponseCodeException e) {
+			assertThat(e.getResponseCode(), is(404));
+		}
+	}
+	
+	@Test
+	public void testGetBytes() throws Exception {
+		byte[] data = webClient.getBytes(new URL(BASE_URL + "/thumb.jpg"), 4096);
+		
+		assertThat(data.length, is(2048));
+		assertThat(acceptEncoding, is(nullValue()));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testGetBytesTooLarge() throws Exception {
+		webClient.getBytes(new URL(BASE_URL + "/thumb.jpg"), 1024);
+	}
+	
+	@Test
+	public void testGetResponseCode() throws Exception {
+		assertThat(webClient.getResponseCode(new URL(BASE_URL + "/thumb.jpg")), is(200));
+		assertThat(webClient.getResponseCode(new URL(BASE_URL + "/missing")), is(404));
+	}
+	
+	@Test(expected=SocketTimeoutException.class)
+	public void testReadTimeout() throws Exception {
+		webClient.getPage(new URL(BASE_URL + "/slow"));
+	}
+	
+	@Test
+	public void testOverloadIsReported() throws Exception {
+		URL url = new URL(BASE_URL + "/busy");
+		
+		assertThat(webClient.getResponseCode(url), is(503));
+		assertThat(rateLimiter.isOpen(url), is(true));
+	}
+	
+	@Test
+	public void testCharset() throws Exception {
+		assertThat(WebClient.charset("text/html; charset=UTF-8"), is("UTF-8"));
+		assertThat(WebClient.charset("text/html;charset=\"ISO-8859-1\""), is("ISO-8859-1"));
+		assertThat(WebClient.charset("text/html"), is(nullValue()));
+		assertThat(WebClient.charset(null), is(nullValue()));
+	}
+}
@@ -0,0 +1,116 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistogramTest {
+	Histogram histogram;
+
+	@Before
+	public void setUp() throws Exception {
+		histogram = new Histogram();
+	}
+
+	@Test
+	public void testEmpty() {
+		Histogram.Snapshot snapshot = histogram.getSnapshot();
+		
+		assertThat(snapshot.getCount(), is(0L));
+		assertThat(snapshot.getMedian(), is(0L));
+		assertThat(snapshot.getMax(), is(0L));
+	}
+	
+	@Test
+	public void testSmallValuesExact() {
+		for(int i = 0; i < Histogram.SUB_BUCKETS * 2; i++){
+			assertThat(Histogram.bucketUpperBound(Histogram.bucketIndex(i)), is((long)i));
+		}
+	}
+	
+	@Test
+	public void testBucketBounds() {
+		long[] values = {16, 17, 100, 1000, 123456, 1L << 40};
+		
+		for(long value : values){
+			long upper = Histogram.bucketUpperBound(Histogram.bucketIndex(value));
+			
+			assertThat(upper >= value, is(true));
+			assertThat(upper <= value * 1.125, is(true));
+		}
+	}
+	
+	@Test
+	public void testLastBucket() {
+		assertThat(Histogram.bucketIndex(Long.MAX_VALUE >>> 22), is(Histogram.BUCKET_COUNT - 1));
+	}
+	
+	@Test
+	public void testPercentiles() {
+		for(int i = 1; i <= 100; i++){
+			histogram.record(i, TimeUnit.MILLISECONDS);
+		}
+		
+		Histogram.Snapshot snapshot = histogram.getSnapshot();
+		
+		assertThat(snapshot.getCount(), is(100L));
+		assertThat(snapshot.getMax(), is(100000L));
+		assertThat(snapshot.getMedian() >= 50000L, is(true));
+		assertThat(snapshot.getMedian() <= 56250L, is(true));
+		assertThat(snapshot.get99thPercentile() >= 99000L, is(true));
+		assertThat(snapshot.get99thPercentile() <= 100000L, is(true));
+	}
+	
+	@Test
+	public void testSum() {
+		histogram.record(2, TimeUnit.MILLISECONDS);
+		histogram.record(3, TimeUnit.MILLISECONDS);
+		
+		assertThat(histogram.getSnapshot().getSum(), is(5000L));
+	}
+	
+	@Test
+	public void testNegativeDuration() {
+		histogram.record(-5, TimeUnit.MILLISECONDS);
+		
+		assertThat(histogram.getSnapshot().getCount(), is(1L));
+		assertThat(histogram.getSnapshot().getMax(), is(0L));
+	}
+	
+	@Test
+	public void testTime() {
+		histogram.time(System.nanoTime());
+		
+		assertThat(histogram.getSnapshot().getCount(), is(1L));
+	}
+	
+	@Test
+	public void testReset() {
+		histogram.record(5, TimeUnit.MILLISECONDS);
+		histogram.reset();
+		
+		assertThat(histogram.getSnapshot().getCount(), is(0L));
+		assertThat(histogram.getSnapshot().getMax(), is(0L));
+	}
+}
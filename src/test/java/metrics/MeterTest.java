@@ -0,0 +1,68 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MeterTest {
+	Meter meter;
+	long start;
+
+	@Before
+	public void setUp() throws Exception {
+		start = System.currentTimeMillis();
+		meter = new Meter(1000);
+	}
+
+	@Test
+	public void testCount() {
+		meter.mark();
+		meter.mark(10);
+		
+		assertThat(meter.getCount(), is(11L));
+	}
+	
+	@Test
+	public void testRateBeforeInterval() {
+		meter.mark(100);
+		
+		assertThat(meter.getRate(), is(0.0));
+	}
+	
+	@Test
+	public void testRate() {
+		meter.mark(100);
+		meter.update(start + 2000);
+		
+		assertThat(meter.getRate() > 0.0, is(true));
+		assertThat(meter.getRate() <= 100.0, is(true));
+	}
+	
+	@Test
+	public void testReset() {
+		meter.mark(100);
+		meter.reset();
+		
+		assertThat(meter.getCount(), is(0L));
+		assertThat(meter.getRate(), is(0.0));
+	}
+}
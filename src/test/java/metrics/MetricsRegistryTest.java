@@ -0,0 +1,102 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+	MetricsRegistry registry;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+	}
+
+	@Test
+	public void testSameCounter() {
+		assertThat(registry.counter("foo"), is(sameInstance(registry.counter("foo"))));
+	}
+	
+	@Test
+	public void testSameMeter() {
+		assertThat(registry.meter("foo"), is(sameInstance(registry.meter("foo"))));
+	}
+	
+	@Test
+	public void testSameHistogram() {
+		assertThat(registry.histogram("foo"), is(sameInstance(registry.histogram("foo"))));
+	}
+	
+	@Test
+	public void testGetHistograms() {
+		registry.histogram("foo").record(5, TimeUnit.MILLISECONDS);
+		registry.histogram("bar");
+		
+		assertThat(registry.getHistograms().size(), is(2));
+		assertThat(registry.getHistograms().get("foo").getCount(), is(1L));
+		assertThat(registry.getHistograms().firstKey(), is("bar"));
+	}
+	
+	@Test
+	public void testGetCounters() {
+		registry.counter("foo").add(3);
+		registry.counter("bar").add(5);
+		
+		assertThat(registry.getCounters().size(), is(2));
+		assertThat(registry.getCounters().get("foo"), is(3L));
+		assertThat(registry.getCounters().firstKey(), is("bar"));
+	}
+	
+	@Test
+	public void testGauge() {
+		registry.register("queue", new Gauge() {
+			@Override
+			public long getValue() {
+				return 42;
+			}
+		});
+		
+		assertThat(registry.gaugeValue("queue"), is(42L));
+		assertThat(registry.getGauges().get("queue"), is(42L));
+	}
+	
+	@Test
+	public void testMissingGauge() {
+		assertThat(registry.gaugeValue("queue"), is(-1L));
+	}
+	
+	@Test
+	public void testUnregister() {
+		registry.register("queue", new Gauge() {
+			@Override
+			public long getValue() {
+				return 42;
+			}
+		});
+		registry.unregister("queue");
+		
+		assertThat(registry.gaugeValue("queue"), is(-1L));
+	}
+}
@@ -0,0 +1,74 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsReporterTest {
+	MetricsRegistry registry;
+	MetricsReporter reporter;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		reporter = new MetricsReporter(registry, 60);
+	}
+
+	@Test
+	public void testEmptySummary() {
+		registry.histogram("board.loadPage");
+		
+		assertThat(reporter.summary(), is(""));
+	}
+	
+	@Test
+	public void testSummary() {
+		registry.histogram("board.loadPage").record(2, TimeUnit.MILLISECONDS);
+		registry.histogram("writer.hash").record(1, TimeUnit.MILLISECONDS);
+		
+		String summary = reporter.summary();
+		
+		assertThat(summary, containsString("board.loadPage: n=1"));
+		assertThat(summary, containsString(" | writer.hash: n=1"));
+	}
+	
+	@Test
+	public void testSnapshot() {
+		registry.counter("writer.files.saved").add(3);
+		registry.histogram("writer.hash").record(1, TimeUnit.MILLISECONDS);
+		
+		String snapshot = reporter.snapshot();
+		
+		assertThat(snapshot, containsString("writer.files.saved = 3\n"));
+		assertThat(snapshot, containsString("writer.hash = n=1"));
+	}
+	
+	@Test
+	public void testStartTwice() {
+		assertThat(reporter.start(), is(true));
+		assertThat(reporter.start(), is(false));
+		reporter.stop();
+	}
+}
@@ -0,0 +1,90 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrometheusWriterTest {
+	MetricsRegistry registry;
+	PrometheusWriter writer;
+
+	@Before
+	public void setUp() throws Exception {
+		registry = new MetricsRegistry();
+		writer = new PrometheusWriter(registry);
+	}
+
+	@Test
+	public void testMetricName() {
+		assertThat(PrometheusWriter.metricName("board.loadPage"), is("aid_board_loadPage"));
+	}
+	
+	@Test
+	public void testEmpty() {
+		assertThat(writer.write(), is(""));
+	}
+	
+	@Test
+	public void testCounter() {
+		registry.counter("writer.files.saved").add(3);
+		
+		String output = writer.write();
+		
+		assertThat(output, containsString("# TYPE aid_writer_files_saved_total counter\n"));
+		assertThat(output, containsString("aid_writer_files_saved_total 3\n"));
+	}
+	
+	@Test
+	public void testGauge() {
+		registry.register("download.queue", new Gauge() {
+			@Override
+			public long getValue() {
+				return 7;
+			}
+		});
+		
+		assertThat(writer.write(), containsString("aid_download_queue 7\n"));
+	}
+	
+	@Test
+	public void testMeter() {
+		registry.meter("download.files").mark(4);
+		
+		assertThat(writer.write(), containsString("aid_download_files_total 4\n"));
+	}
+	
+	@Test
+	public void testHistogram() {
+		registry.histogram("writer.hash").record(2, TimeUnit.SECONDS);
+		
+		String output = writer.write();
+		
+		assertThat(output, containsString("# TYPE aid_writer_hash_seconds summary\n"));
+		assertThat(output, containsString("aid_writer_hash_seconds{quantile=\"0.5\"} 2.0\n"));
+		assertThat(output, containsString("aid_writer_hash_seconds_sum 2.0\n"));
+		assertThat(output, containsString("aid_writer_hash_seconds_count 1\n"));
+		assertThat(output, containsString("aid_writer_hash_seconds_max 2.0\n"));
+	}
+}
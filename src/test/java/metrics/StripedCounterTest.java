@@ -0,0 +1,102 @@
+/*  Copyright (C) 2012  Nicholas Wright
+	
+	part of 'Aid', an imageboard downloader.
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StripedCounterTest {
+	StripedCounter counter;
+
+	@Before
+	public void setUp() throws Exception {
+		counter = new StripedCounter();
+	}
+
+	@Test
+	public void testAdd() {
+		counter.add(5);
+		counter.add(7);
+		
+		assertThat(counter.sum(), is(12L));
+	}
+	
+	@Test
+	public void testIncrement() {
+		counter.increment();
+		counter.increment();
+		
+		assertThat(counter.sum(), is(2L));
+	}
+	
+	@Test
+	public void testReset() {
+		counter.add(42);
+		counter.reset();
+		
+		assertThat(counter.sum(), is(0L));
+	}
+	
+	@Test
+	public void testSumThenReset() {
+		counter.add(42);
+		
+		assertThat(counter.sumThenReset(), is(42L));
+		assertThat(counter.sum(), is(0L));
+	}
+	
+	@Test
+	public void testConcurrentAdd() throws InterruptedException {
+		final int THREADS = 8;
+		final int INCREMENTS = 10000;
+		List<Thread> threads = new LinkedList<>();
+		
+		for(int i = 0; i < THREADS; i++){
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for(int j = 0; j < INCREMENTS; j++){
+						counter.increment();
+					}
+				}
+			};
+			
+			threads.add(thread);
+			thread.start();
+		}
+		
+		for(Thread thread : threads){
+			thread.join();
+		}
+		
+		assertThat(counter.sum(), is((long) THREADS * INCREMENTS));
+	}
+	
+	@Test
+	public void testStripeCount() {
+		assertThat(StripedCounter.stripeCount(1), is(2));
+		assertThat(StripedCounter.stripeCount(3), is(8));
+		assertThat(StripedCounter.stripeCount(4), is(8));
+	}
+}